@@ -12,6 +12,7 @@ class MockWsServer extends WebSocketServer {
     private WebSocket conn
 
     private String next
+    private Closure<String> responder
 
     MockWsServer(int port) {
         super(new InetSocketAddress("127.0.0.1", port))
@@ -29,6 +30,15 @@ class MockWsServer extends WebSocketServer {
         next = message
     }
 
+    /**
+     * Reply to each received message which is not replied with onNextReply
+     *
+     * @param responder returns a reply to the message, or null to not reply
+     */
+    void onRequest(Closure<String> responder) {
+        this.responder = responder
+    }
+
     @Override
     void onOpen(WebSocket conn, ClientHandshake handshake) {
         this.conn = conn
@@ -48,6 +58,11 @@ class MockWsServer extends WebSocketServer {
         if (next != null) {
             reply(next)
             next = null
+        } else if (responder != null) {
+            String response = responder.call(message)
+            if (response != null) {
+                reply(response)
+            }
         }
     }
 
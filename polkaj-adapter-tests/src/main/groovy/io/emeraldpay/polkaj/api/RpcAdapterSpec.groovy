@@ -237,4 +237,85 @@ abstract class RpcAdapterSpec extends Specification{
 
     }
 
-}
\ No newline at end of file
+    def "Make batch request"() {
+        setup:
+        def response = '[' +
+                '  {"jsonrpc": "2.0", "result": 1234, "id": 1},' +
+                '  {"jsonrpc": "2.0", "result": "0x5d83f66b61701da4cbd7a60137db89c69469a4f798b62aba9176ab253b423828", "id": 0}' +
+                ']'
+        mockServer.when(
+                HttpRequest.request()
+        ).respond(
+                HttpResponse.response(response).withContentType(MediaType.APPLICATION_JSON)
+        )
+        when:
+        def act = polkadotApi.execute([
+                RpcCall.create(Hash256, "chain_getFinalisedHead"),
+                RpcCall.create(Long, "test_number", 5)
+        ])
+        then:
+        act.size() == 2
+        act[0].get() == Hash256.from("0x5d83f66b61701da4cbd7a60137db89c69469a4f798b62aba9176ab253b423828")
+        act[1].get() == 1234L
+        mockServer.verify(
+                HttpRequest.request()
+                        .withBody('[{"jsonrpc":"2.0","id":0,"method":"chain_getFinalisedHead","params":[]},{"jsonrpc":"2.0","id":1,"method":"test_number","params":[5]}]')
+        )
+    }
+
+    def "Process errors in batch response"() {
+        setup:
+        def response = '[' +
+                '  {"jsonrpc": "2.0", "error": {"code": -32601, "message": "Method not found"}, "id": 0}' +
+                ']'
+        mockServer.when(
+                HttpRequest.request()
+        ).respond(
+                HttpResponse.response(response).withContentType(MediaType.APPLICATION_JSON)
+        )
+        when:
+        def act = polkadotApi.execute([
+                RpcCall.create(String, "test_foo"),
+                RpcCall.create(String, "test_bar")
+        ])
+        act[0].get()
+        then:
+        def t = thrown(ExecutionException)
+        with((RpcException)t.cause) {
+            code == -32601
+            rpcMessage == "Method not found"
+        }
+
+        when:
+        act[1].get()
+        then:
+        t = thrown(ExecutionException)
+        with((RpcException)t.cause) {
+            code == -32603
+            rpcMessage == "Server returned no response for id: 1"
+        }
+    }
+
+    def "Fail all batch calls if non-200 status"() {
+        setup:
+        mockServer.when(
+                HttpRequest.request()
+        ).respond(
+                HttpResponse.response("").withContentType(MediaType.APPLICATION_JSON).withStatusCode(503)
+        )
+        when:
+        def act = polkadotApi.execute([
+                RpcCall.create(String, "test_foo"),
+                RpcCall.create(String, "test_bar")
+        ])
+        then:
+        act.every {
+            try {
+                it.get()
+                false
+            } catch (ExecutionException e) {
+                e.cause instanceof RpcException && e.cause.code == -32000
+            }
+        }
+    }
+}
@@ -103,5 +103,28 @@ abstract class SubscriptionAdapterSpec extends Specification{
         then:
         act == "right"
     }
-}
 
+    def "Make a batch request"() {
+        when:
+        server.onNextReply('[{"jsonrpc":"2.0","result":"second","id":1},{"jsonrpc":"2.0","error":{"code": -1, "message": "Test"},"id":2},{"jsonrpc":"2.0","result":"first","id":0}]')
+        def f = polkadotApi.execute([
+                RpcCall.create(String.class, "test_foo"),
+                RpcCall.create(String.class, "test_bar"),
+                RpcCall.create(String.class, "test_baz")
+        ])
+        then:
+        f[0].get(TIMEOUT, TimeUnit.SECONDS) == "first"
+        f[1].get(TIMEOUT, TimeUnit.SECONDS) == "second"
+        server.received.size() == 1
+        server.received[0].value == '[{"jsonrpc":"2.0","id":0,"method":"test_foo","params":[]},{"jsonrpc":"2.0","id":1,"method":"test_bar","params":[]},{"jsonrpc":"2.0","id":2,"method":"test_baz","params":[]}]'
+
+        when:
+        f[2].get(TIMEOUT, TimeUnit.SECONDS)
+        then:
+        def t = thrown(ExecutionException.class)
+        with((RpcException)t.cause) {
+            code == -1
+            rpcMessage == "Test"
+        }
+    }
+}
@@ -93,7 +93,8 @@ public abstract class AbstractCall<R> {
         if (this == o) return true;
         if (!(o instanceof AbstractCall)) return false;
         AbstractCall<?> rpcCall = (AbstractCall<?>) o;
-        return method.equals(rpcCall.method) &&
+        return list == rpcCall.list &&
+                method.equals(rpcCall.method) &&
                 Arrays.equals(params, rpcCall.params) &&
                 Objects.equals(resultClazz, rpcCall.resultClazz) &&
                 Objects.equals(resultType, rpcCall.resultType);
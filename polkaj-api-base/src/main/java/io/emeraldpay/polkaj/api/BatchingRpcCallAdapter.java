@@ -0,0 +1,367 @@
+package io.emeraldpay.polkaj.api;
+
+import io.emeraldpay.polkaj.types.ByteData;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * RpcCallAdapter which collects independent calls made within a short time window and sends them to the delegate adapter
+ * as a single JSON RPC batch. Responses are passed to the original futures, so for a caller it's the same as a direct call,
+ * just delayed up to the window duration.
+ * <br>
+ * The batch is sent when the first of the following happens:
+ * <ul>
+ *     <li>the window, started by the first call in the batch, is over</li>
+ *     <li>the batch has the max number of calls</li>
+ *     <li>the batch has the max estimated size of the request</li>
+ * </ul>
+ * <br>
+ * Example:
+ * <pre><code>
+ * RpcCallAdapter adapter = BatchingRpcCallAdapter.newBuilder()
+ *      .delegate(JavaHttpAdapter.newBuilder().build())
+ *      .window(Duration.ofMillis(2))
+ *      .build();
+ * PolkadotApi api = PolkadotApi.newBuilder().rpcCallAdapter(adapter).build();
+ * </code></pre>
+ *
+ * @see RpcCallAdapter#produceRpcFutures(List)
+ */
+public class BatchingRpcCallAdapter implements RpcCallAdapter {
+
+    private final RpcCallAdapter delegate;
+    private final long windowNanos;
+    private final int maxCalls;
+    private final int maxBytes;
+    private final ScheduledExecutorService scheduler;
+    private final Runnable onClose;
+
+    private final Object lock = new Object();
+    private List<Pending<?>> pending = new ArrayList<>();
+    private int pendingBytes = 0;
+    private ScheduledFuture<?> timer;
+    private volatile boolean closed = false;
+
+    private BatchingRpcCallAdapter(RpcCallAdapter delegate, Duration window, int maxCalls, int maxBytes,
+                                   ScheduledExecutorService scheduler, Runnable onClose) {
+        this.delegate = delegate;
+        this.windowNanos = window.toNanos();
+        this.maxCalls = maxCalls;
+        this.maxBytes = maxBytes;
+        this.scheduler = scheduler;
+        this.onClose = onClose;
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    @Override
+    public <T> CompletableFuture<T> produceRpcFuture(RpcCall<T> call) {
+        Pending<T> current = new Pending<>(call, estimateSize(call));
+        List<Pending<?>> full = null;
+        List<Pending<?>> ready = null;
+        synchronized (lock) {
+            if (closed) {
+                current.result.completeExceptionally(new IllegalStateException("Client is already closed"));
+                return current.result;
+            }
+            if (!pending.isEmpty() && pendingBytes + current.size > maxBytes) {
+                // doesn't fit into the current batch, so send it without the new call
+                full = drain();
+            }
+            pending.add(current);
+            pendingBytes += current.size;
+            if (pending.size() >= maxCalls || pendingBytes >= maxBytes) {
+                ready = drain();
+            } else if (timer == null) {
+                timer = scheduler.schedule(this::flush, windowNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+        send(full);
+        send(ready);
+        return current.result;
+    }
+
+    /**
+     * Calls which are already a batch are sent directly, without waiting for other calls
+     */
+    @Override
+    public List<CompletableFuture<?>> produceRpcFutures(List<? extends RpcCall<?>> calls) {
+        return delegate.produceRpcFutures(calls);
+    }
+
+    /**
+     * Send all calls collected so far, without waiting for the end of the window
+     */
+    public void flush() {
+        List<Pending<?>> ready;
+        synchronized (lock) {
+            ready = drain();
+        }
+        send(ready);
+    }
+
+    private List<Pending<?>> drain() {
+        if (timer != null) {
+            timer.cancel(false);
+            timer = null;
+        }
+        if (pending.isEmpty()) {
+            return null;
+        }
+        List<Pending<?>> result = pending;
+        pending = new ArrayList<>(Math.min(result.size(), maxCalls));
+        pendingBytes = 0;
+        return result;
+    }
+
+    private void send(List<Pending<?>> batch) {
+        if (batch == null) {
+            return;
+        }
+        try {
+            if (batch.size() == 1) {
+                batch.get(0).forward(delegate.produceRpcFuture(batch.get(0).call));
+                return;
+            }
+            List<RpcCall<?>> calls = new ArrayList<>(batch.size());
+            for (Pending<?> p : batch) {
+                calls.add(p.call);
+            }
+            List<CompletableFuture<?>> results = delegate.produceRpcFutures(calls);
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).forward(results.get(i));
+            }
+        } catch (Throwable t) {
+            for (Pending<?> p : batch) {
+                p.result.completeExceptionally(t);
+            }
+        }
+    }
+
+    /**
+     * Rough estimation of the size of the call encoded as JSON, good enough to keep the batch request under the limit
+     * without actually encoding it.
+     *
+     * @param call call
+     * @return estimated size in bytes
+     */
+    static int estimateSize(RpcCall<?> call) {
+        // {"jsonrpc":"2.0","id":1234567890,"method":"","params":[]}
+        int size = 56 + call.getMethod().length();
+        for (Object param : call.getParams()) {
+            size += estimateSize(param) + 1;
+        }
+        return size;
+    }
+
+    private static int estimateSize(Object value) {
+        if (value == null) {
+            return 4;
+        }
+        if (value instanceof ByteData) {
+            return ((ByteData) value).length() * 2 + 4;
+        }
+        if (value instanceof CharSequence) {
+            return ((CharSequence) value).length() + 2;
+        }
+        if (value instanceof Number || value instanceof Boolean) {
+            return 20;
+        }
+        if (value instanceof Collection) {
+            int size = 2;
+            for (Object item : (Collection<?>) value) {
+                size += estimateSize(item) + 1;
+            }
+            return size;
+        }
+        if (value instanceof Object[]) {
+            int size = 2;
+            for (Object item : (Object[]) value) {
+                size += estimateSize(item) + 1;
+            }
+            return size;
+        }
+        return 64;
+    }
+
+    /**
+     * Sends all of the pending calls and closes the delegate adapter.
+     */
+    @Override
+    public void close() throws Exception {
+        List<Pending<?>> ready;
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            ready = drain();
+        }
+        send(ready);
+        if (onClose != null) {
+            try {
+                onClose.run();
+            } catch (Throwable t) {
+                System.err.println("Error during onClose call: " + t.getMessage());
+            }
+        }
+        delegate.close();
+    }
+
+    private static class Pending<T> {
+        private final RpcCall<T> call;
+        private final int size;
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+
+        Pending(RpcCall<T> call, int size) {
+            this.call = call;
+            this.size = size;
+        }
+
+        @SuppressWarnings("unchecked")
+        void forward(CompletableFuture<?> source) {
+            ((CompletableFuture<T>) source).whenComplete((value, t) -> {
+                if (t != null) {
+                    result.completeExceptionally(t);
+                } else {
+                    result.complete(value);
+                }
+            });
+        }
+    }
+
+    public static class Builder {
+        private RpcCallAdapter delegate;
+        private Duration window;
+        private Integer maxCalls;
+        private Integer maxBytes;
+        private ScheduledExecutorService scheduler;
+        private Runnable onClose;
+
+        /**
+         * Adapter to send the batches to. Should support JSON RPC batches, otherwise the calls are just sent one by one.
+         *
+         * @param delegate adapter
+         * @return builder
+         */
+        public Builder delegate(RpcCallAdapter delegate) {
+            this.delegate = delegate;
+            return this;
+        }
+
+        /**
+         * Max time a call waits for other calls before sending the batch. Default is 2ms.
+         *
+         * @param window duration of the window
+         * @return builder
+         */
+        public Builder window(Duration window) {
+            if (window.isNegative() || window.isZero()) {
+                throw new IllegalArgumentException("Window must be positive: " + window);
+            }
+            this.window = window;
+            return this;
+        }
+
+        /**
+         * Max number of calls in a batch. Default is 100.
+         *
+         * @param maxCalls number of calls
+         * @return builder
+         */
+        public Builder maxCalls(int maxCalls) {
+            if (maxCalls < 1) {
+                throw new IllegalArgumentException("Max calls must be positive: " + maxCalls);
+            }
+            this.maxCalls = maxCalls;
+            return this;
+        }
+
+        /**
+         * Max estimated size of a batch request, in bytes. A single call larger than the limit is sent as is.
+         * Default is 256Kb.
+         *
+         * @param maxBytes size in bytes
+         * @return builder
+         */
+        public Builder maxBytes(int maxBytes) {
+            if (maxBytes < 1) {
+                throw new IllegalArgumentException("Max bytes must be positive: " + maxBytes);
+            }
+            this.maxBytes = maxBytes;
+            return this;
+        }
+
+        /**
+         * Provide a custom scheduler for the window timers. By default, the adapter creates its own single thread
+         * scheduler, which is shutdown on close.
+         *
+         * @param scheduler scheduler
+         * @return builder
+         */
+        public Builder scheduler(ScheduledExecutorService scheduler) {
+            this.scheduler = scheduler;
+            return this;
+        }
+
+        /**
+         * Provide custom cleanup method.
+         *
+         * @param onClose to be called on close.
+         * @return builder
+         */
+        public Builder onClose(Runnable onClose) {
+            this.onClose = onClose;
+            return this;
+        }
+
+        private void initDefaults() {
+            if (window == null) {
+                window = Duration.ofMillis(2);
+            }
+            if (maxCalls == null) {
+                maxCalls = 100;
+            }
+            if (maxBytes == null) {
+                maxBytes = 256 * 1024;
+            }
+            if (scheduler == null) {
+                ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                    Thread t = new Thread(r, "polkaj-batching");
+                    t.setDaemon(true);
+                    return t;
+                });
+                this.scheduler = scheduler;
+                Runnable onClose = this.onClose;
+                this.onClose = () -> {
+                    scheduler.shutdown();
+                    if (onClose != null) {
+                        onClose.run();
+                    }
+                };
+            }
+        }
+
+        /**
+         * Apply configuration and build adapter
+         *
+         * @return new instance of BatchingRpcCallAdapter
+         */
+        public BatchingRpcCallAdapter build() {
+            Objects.requireNonNull(delegate, "Delegate adapter is not set");
+            initDefaults();
+            return new BatchingRpcCallAdapter(delegate, window, maxCalls, maxBytes, scheduler, onClose);
+        }
+    }
+}
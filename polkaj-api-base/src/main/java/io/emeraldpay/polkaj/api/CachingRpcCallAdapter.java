@@ -0,0 +1,559 @@
+package io.emeraldpay.polkaj.api;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.emeraldpay.polkaj.json.BlockJson;
+import io.emeraldpay.polkaj.json.BlockResponseJson;
+import io.emeraldpay.polkaj.json.ReadProofJson;
+import io.emeraldpay.polkaj.json.RuntimeVersionJson;
+import io.emeraldpay.polkaj.json.StorageChangeSetJson;
+import io.emeraldpay.polkaj.types.ByteData;
+import io.emeraldpay.polkaj.types.Hash256;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.ToIntFunction;
+
+/**
+ * RpcCallAdapter which caches results that cannot change once known, such as a block by its hash, or a storage value
+ * at a specified block. Which calls are cacheable is decided by a {@link Rule} configured per RPC method, and calls
+ * without a rule always go to the delegate adapter.
+ * <br>
+ * The cache is limited by the total (estimated) size of the cached values, and the least recently used entries are
+ * evicted first. Errors and <code>null</code> results are never cached.
+ * <br>
+ * By default, the cache keeps the decoded objects, so a hit doesn't involve any JSON processing, but note that the same
+ * instance is returned to all of the callers and must not be modified. Alternatively the cache can keep the results
+ * as JSON (see {@link Builder#storeJson(ObjectMapper)}), in which case each hit gets its own copy, and the size of an entry
+ * is known exactly.
+ * <br>
+ * Example:
+ * <pre><code>
+ * CachingRpcCallAdapter adapter = CachingRpcCallAdapter.newBuilder()
+ *      .delegate(JavaHttpAdapter.newBuilder().build())
+ *      .maxBytes(128 * 1024 * 1024)
+ *      .build();
+ * PolkadotApi api = PolkadotApi.newBuilder().rpcCallAdapter(adapter).build();
+ * </code></pre>
+ */
+public class CachingRpcCallAdapter implements RpcCallAdapter {
+
+    private final RpcCallAdapter delegate;
+    private final Map<String, Rule> rules;
+    private final long maxBytes;
+    private final ObjectMapper jsonMapper;
+    private final ToIntFunction<Object> weigher;
+    private final Runnable onClose;
+
+    private final LinkedHashMap<RpcCall<?>, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private long currentBytes = 0;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    private volatile boolean closed = false;
+
+    private CachingRpcCallAdapter(RpcCallAdapter delegate, Map<String, Rule> rules, long maxBytes,
+                                  ObjectMapper jsonMapper, ToIntFunction<Object> weigher, Runnable onClose) {
+        this.delegate = delegate;
+        this.rules = rules;
+        this.maxBytes = maxBytes;
+        this.jsonMapper = jsonMapper;
+        this.weigher = weigher;
+        this.onClose = onClose;
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    @Override
+    public <T> CompletableFuture<T> produceRpcFuture(RpcCall<T> call) {
+        if (closed) {
+            CompletableFuture<T> future = new CompletableFuture<>();
+            future.completeExceptionally(new IllegalStateException("Client is already closed"));
+            return future;
+        }
+        if (!isCacheable(call)) {
+            return delegate.produceRpcFuture(call);
+        }
+        Entry cached = get(call);
+        if (cached != null) {
+            hits.increment();
+            return CompletableFuture.completedFuture(read(call, cached));
+        }
+        misses.increment();
+        return delegate.produceRpcFuture(call).thenApply(value -> {
+            put(call, value);
+            return value;
+        });
+    }
+
+    /**
+     * Calls of the batch which are cached are served from the cache, and the rest are sent to the delegate as a batch.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<CompletableFuture<?>> produceRpcFutures(List<? extends RpcCall<?>> calls) {
+        if (closed) {
+            List<CompletableFuture<?>> result = new ArrayList<>(calls.size());
+            for (RpcCall<?> call : calls) {
+                result.add(produceRpcFuture(call));
+            }
+            return result;
+        }
+        List<CompletableFuture<?>> result = new ArrayList<>(calls.size());
+        List<RpcCall<?>> sent = new ArrayList<>(calls.size());
+        List<Integer> sentPositions = new ArrayList<>(calls.size());
+        for (int i = 0; i < calls.size(); i++) {
+            RpcCall<Object> call = (RpcCall<Object>) calls.get(i);
+            boolean cacheable = isCacheable(call);
+            Entry cached = cacheable ? get(call) : null;
+            if (cached != null) {
+                hits.increment();
+                result.add(CompletableFuture.completedFuture(read(call, cached)));
+            } else {
+                if (cacheable) {
+                    misses.increment();
+                }
+                result.add(null);
+                sent.add(call);
+                sentPositions.add(i);
+            }
+        }
+        if (sent.isEmpty()) {
+            return result;
+        }
+        List<CompletableFuture<?>> responses = delegate.produceRpcFutures(sent);
+        for (int i = 0; i < sent.size(); i++) {
+            RpcCall<Object> call = (RpcCall<Object>) sent.get(i);
+            CompletableFuture<Object> response = (CompletableFuture<Object>) responses.get(i);
+            if (isCacheable(call)) {
+                response = response.thenApply(value -> {
+                    put(call, value);
+                    return value;
+                });
+            }
+            result.set(sentPositions.get(i), response);
+        }
+        return result;
+    }
+
+    /**
+     * @param call call to check
+     * @return true if the result of the call can be cached
+     */
+    public boolean isCacheable(RpcCall<?> call) {
+        Rule rule = rules.get(call.getMethod());
+        return rule != null && rule.isCacheable(call);
+    }
+
+    private Entry get(RpcCall<?> call) {
+        synchronized (entries) {
+            return entries.get(call);
+        }
+    }
+
+    private <T> T read(RpcCall<T> call, Entry entry) {
+        if (entry.json == null) {
+            @SuppressWarnings("unchecked")
+            T value = (T) entry.value;
+            return value;
+        }
+        try {
+            return jsonMapper.readerFor(call.getResultType(jsonMapper.getTypeFactory())).readValue(entry.json);
+        } catch (IOException e) {
+            // it was produced by the same mapper, so it's not supposed to happen
+            throw new IllegalStateException("Cached JSON cannot be decoded", e);
+        }
+    }
+
+    private void put(RpcCall<?> call, Object value) {
+        if (value == null) {
+            return;
+        }
+        Entry entry;
+        if (jsonMapper != null) {
+            byte[] json;
+            try {
+                json = jsonMapper.writeValueAsBytes(value);
+            } catch (IOException e) {
+                return;
+            }
+            entry = new Entry(null, json, BatchingRpcCallAdapter.estimateSize(call) + json.length);
+        } else {
+            entry = new Entry(value, null, BatchingRpcCallAdapter.estimateSize(call) + weigher.applyAsInt(value));
+        }
+        if (entry.size > maxBytes) {
+            return;
+        }
+        synchronized (entries) {
+            Entry previous = entries.put(call, entry);
+            if (previous != null) {
+                currentBytes -= previous.size;
+            }
+            currentBytes += entry.size;
+            Iterator<Entry> eldest = entries.values().iterator();
+            while (currentBytes > maxBytes && eldest.hasNext()) {
+                currentBytes -= eldest.next().size;
+                eldest.remove();
+                evictions.increment();
+            }
+        }
+    }
+
+    /**
+     * Remove all cached entries
+     */
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+            currentBytes = 0;
+        }
+    }
+
+    /**
+     *
+     * @return number of calls served from the cache
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     *
+     * @return number of cacheable calls which were not in the cache
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     *
+     * @return number of entries removed from the cache to free space
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     *
+     * @return share of cacheable calls served from the cache, from 0.0 to 1.0
+     */
+    public double getHitRatio() {
+        long hits = this.hits.sum();
+        long total = hits + misses.sum();
+        return total == 0 ? 0.0 : (double) hits / total;
+    }
+
+    /**
+     *
+     * @return number of cached entries
+     */
+    public int getCount() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     *
+     * @return total estimated size of the cached entries, in bytes
+     */
+    public long getSize() {
+        synchronized (entries) {
+            return currentBytes;
+        }
+    }
+
+    @Override
+    public void close() throws Exception {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        clear();
+        if (onClose != null) {
+            try {
+                onClose.run();
+            } catch (Throwable t) {
+                System.err.println("Error during onClose call: " + t.getMessage());
+            }
+        }
+        delegate.close();
+    }
+
+    /**
+     * Default estimation of the memory used by a decoded value. Blocks, headers and other standard results are measured
+     * by their actual data, i.e. a block is as large as its extrinsics, and only an unknown type gets a flat size.
+     *
+     * @param value value
+     * @return estimated size in bytes
+     */
+    static int estimateSize(Object value) {
+        if (value == null) {
+            return 0;
+        }
+        if (value instanceof ByteData) {
+            return ((ByteData) value).length() + 32;
+        }
+        if (value instanceof CharSequence) {
+            return ((CharSequence) value).length() * 2 + 40;
+        }
+        if (value instanceof Number || value instanceof Boolean) {
+            return 16;
+        }
+        if (value instanceof Collection) {
+            int size = 32;
+            for (Object item : (Collection<?>) value) {
+                size += estimateSize(item) + 8;
+            }
+            return size;
+        }
+        if (value instanceof Object[]) {
+            int size = 16;
+            for (Object item : (Object[]) value) {
+                size += estimateSize(item) + 8;
+            }
+            return size;
+        }
+        if (value instanceof Map) {
+            int size = 48;
+            for (Map.Entry<?, ?> item : ((Map<?, ?>) value).entrySet()) {
+                size += estimateSize(item.getKey()) + estimateSize(item.getValue()) + 32;
+            }
+            return size;
+        }
+        if (value instanceof BlockResponseJson) {
+            BlockResponseJson block = (BlockResponseJson) value;
+            return 24 + estimateSize(block.getBlock()) + estimateSize(block.getJustifications());
+        }
+        if (value instanceof BlockJson) {
+            BlockJson block = (BlockJson) value;
+            return 24 + estimateSize(block.getExtrinsics()) + estimateSize(block.getHeader());
+        }
+        if (value instanceof BlockJson.Header) {
+            BlockJson.Header header = (BlockJson.Header) value;
+            int size = 40 + estimateSize(header.getNumber())
+                    + estimateSize(header.getParentHash())
+                    + estimateSize(header.getStateRoot())
+                    + estimateSize(header.getExtrinsicsRoot());
+            if (header.getDigest() != null) {
+                size += 16 + estimateSize(header.getDigest().getLogs());
+            }
+            return size;
+        }
+        if (value instanceof ReadProofJson) {
+            ReadProofJson proof = (ReadProofJson) value;
+            return 24 + estimateSize(proof.getAt()) + estimateSize(proof.getProof());
+        }
+        if (value instanceof StorageChangeSetJson) {
+            StorageChangeSetJson changes = (StorageChangeSetJson) value;
+            return 24 + estimateSize(changes.getBlock()) + estimateSize(changes.getChanges());
+        }
+        if (value instanceof StorageChangeSetJson.KeyValueOption) {
+            StorageChangeSetJson.KeyValueOption change = (StorageChangeSetJson.KeyValueOption) value;
+            return 24 + estimateSize(change.getKey()) + estimateSize(change.getData());
+        }
+        if (value instanceof RuntimeVersionJson) {
+            RuntimeVersionJson version = (RuntimeVersionJson) value;
+            return 64 + estimateSize(version.getApis())
+                    + estimateSize(version.getImplName())
+                    + estimateSize(version.getSpecName());
+        }
+        return 1024;
+    }
+
+    private static class Entry {
+        private final Object value;
+        private final byte[] json;
+        private final int size;
+
+        Entry(Object value, byte[] json, int size) {
+            this.value = value;
+            this.json = json;
+            this.size = size;
+        }
+    }
+
+    /**
+     * Decides if the result of a call cannot change, i.e. can be cached
+     */
+    public interface Rule {
+
+        boolean isCacheable(RpcCall<?> call);
+
+        /**
+         * Result is pinned to a block by the block hash param, like <code>state_getStorage(key, at)</code>.
+         * A call without the block hash is relative to the current head and is not cacheable.
+         *
+         * @param index position of the block hash in the params
+         * @return rule
+         */
+        static Rule pinned(int index) {
+            return (call) -> {
+                Object[] params = call.getParams();
+                return params.length > index && params[index] instanceof Hash256;
+            };
+        }
+
+        /**
+         * Result is pinned to a block by its number, like <code>chain_getBlockHash(number)</code>, which is
+         * cacheable only for finalized blocks.
+         *
+         * @param index position of the block number in the params
+         * @param finalizedHeight provider of the current finalized height
+         * @return rule
+         */
+        static Rule finalized(int index, LongSupplier finalizedHeight) {
+            return (call) -> {
+                Object[] params = call.getParams();
+                return params.length > index && params[index] instanceof Number
+                        && ((Number) params[index]).longValue() <= finalizedHeight.getAsLong();
+            };
+        }
+
+        /**
+         * Result never changes
+         *
+         * @return rule
+         */
+        static Rule always() {
+            return (call) -> true;
+        }
+    }
+
+    public static class Builder {
+        private RpcCallAdapter delegate;
+        private final Map<String, Rule> rules = new HashMap<>();
+        private long maxBytes = 64 * 1024 * 1024;
+        private ObjectMapper jsonMapper;
+        private ToIntFunction<Object> weigher;
+        private Runnable onClose;
+
+        public Builder() {
+            rules.put(PolkadotMethod.CHAIN_GET_BLOCK, Rule.pinned(0));
+            rules.put(PolkadotMethod.CHAIN_GET_HEADER, Rule.pinned(0));
+            rules.put(PolkadotMethod.STATE_GET_METADATA, Rule.pinned(0));
+            rules.put(PolkadotMethod.STATE_GET_RUNTIME_VERSION, Rule.pinned(0));
+            rules.put(PolkadotMethod.STATE_GET_STORAGE, Rule.pinned(1));
+            rules.put(PolkadotMethod.STATE_GET_STORAGE_HASH, Rule.pinned(1));
+            rules.put(PolkadotMethod.STATE_GET_STORAGE_SIZE, Rule.pinned(1));
+            rules.put(PolkadotMethod.STATE_GET_PAIRS, Rule.pinned(1));
+            rules.put(PolkadotMethod.STATE_GET_READ_PROOF, Rule.pinned(1));
+            rules.put(PolkadotMethod.STATE_QUERY_STORAGE_AT, Rule.pinned(1));
+            rules.put(PolkadotMethod.STATE_CALL, Rule.pinned(2));
+            rules.put(PolkadotMethod.STATE_KEYS_PAGED, Rule.pinned(3));
+        }
+
+        /**
+         * Adapter to make actual calls
+         *
+         * @param delegate adapter
+         * @return builder
+         */
+        public Builder delegate(RpcCallAdapter delegate) {
+            this.delegate = delegate;
+            return this;
+        }
+
+        /**
+         * Set the rule for a method, replacing the default one
+         *
+         * @param method RPC method
+         * @param rule rule, or null to never cache the method
+         * @return builder
+         */
+        public Builder rule(String method, Rule rule) {
+            if (rule == null) {
+                rules.remove(method);
+            } else {
+                rules.put(method, rule);
+            }
+            return this;
+        }
+
+        /**
+         * Enable caching of <code>chain_getBlockHash(number)</code> for finalized blocks.
+         *
+         * @param finalizedHeight provider of the current finalized height, ex. updated from a finalized heads subscription
+         * @return builder
+         */
+        public Builder finalizedHeight(LongSupplier finalizedHeight) {
+            return rule(PolkadotMethod.CHAIN_GET_BLOCK_HASH, Rule.finalized(0, finalizedHeight));
+        }
+
+        /**
+         * Max total size of the cache. Default is 64Mb.
+         *
+         * @param maxBytes size in bytes
+         * @return builder
+         */
+        public Builder maxBytes(long maxBytes) {
+            if (maxBytes < 1) {
+                throw new IllegalArgumentException("Max bytes must be positive: " + maxBytes);
+            }
+            this.maxBytes = maxBytes;
+            return this;
+        }
+
+        /**
+         * Keep the results encoded as JSON, instead of the decoded objects.
+         *
+         * @param objectMapper mapper to encode and decode the results, must support all of the result types
+         * @return builder
+         */
+        public Builder storeJson(ObjectMapper objectMapper) {
+            this.jsonMapper = objectMapper;
+            return this;
+        }
+
+        /**
+         * Provide a custom estimation of the memory used by a decoded value. Not used when results are kept as JSON.
+         * The default estimation knows the standard result types, but a value of another type counts as 1Kb,
+         * so a weigher (or {@link #storeJson(ObjectMapper)}) should be set when custom calls with large results are cached.
+         *
+         * @param weigher function returning the size in bytes
+         * @return builder
+         */
+        public Builder weigher(ToIntFunction<Object> weigher) {
+            this.weigher = weigher;
+            return this;
+        }
+
+        /**
+         * Provide custom cleanup method.
+         *
+         * @param onClose to be called on close.
+         * @return builder
+         */
+        public Builder onClose(Runnable onClose) {
+            this.onClose = onClose;
+            return this;
+        }
+
+        /**
+         * Apply configuration and build adapter
+         *
+         * @return new instance of CachingRpcCallAdapter
+         */
+        public CachingRpcCallAdapter build() {
+            Objects.requireNonNull(delegate, "Delegate adapter is not set");
+            ToIntFunction<Object> weigher = this.weigher;
+            if (weigher == null) {
+                weigher = CachingRpcCallAdapter::estimateSize;
+            }
+            return new CachingRpcCallAdapter(delegate, new HashMap<>(rules), maxBytes, jsonMapper, weigher, onClose);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package io.emeraldpay.polkaj.api;
+
+/**
+ * Priority lane of an RPC call. When the number of concurrent requests is limited, waiting calls with a higher
+ * priority are executed first.
+ *
+ * @see ConcurrencyLimiter
+ * @see RpcCall#priority(CallPriority)
+ */
+public enum CallPriority {
+
+    /**
+     * Bulk traffic, ex. a backfill of historical data
+     */
+    BULK,
+
+    /**
+     * Default priority
+     */
+    NORMAL,
+
+    /**
+     * Latency critical calls, ex. an extrinsic submission
+     */
+    HIGH
+}
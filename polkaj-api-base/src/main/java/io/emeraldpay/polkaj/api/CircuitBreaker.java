@@ -0,0 +1,129 @@
+package io.emeraldpay.polkaj.api;
+
+import java.time.Duration;
+import java.util.function.LongSupplier;
+
+/**
+ * Circuit breaker for an upstream node. After a number of consecutive failures it's opened, and the node doesn't get
+ * any calls for the configured time. After that it's half-open: the node gets calls again, and the first success closes
+ * the breaker, but the first failure opens it again.
+ * <br>
+ * Only errors that mean the node is unavailable are counted as failures, a JSON RPC error returned by the node
+ * is not a failure.
+ *
+ * @see LoadBalancingAdapter
+ */
+public class CircuitBreaker {
+
+    private final int failureThreshold;
+    private final long openNanos;
+    private final LongSupplier clock;
+
+    private State state = State.CLOSED;
+    private int failures = 0;
+    private long openedAt;
+    private long openCount = 0;
+
+    /**
+     *
+     * @param failureThreshold number of consecutive failures to open the breaker
+     * @param openDuration how long the breaker stays open
+     */
+    public CircuitBreaker(int failureThreshold, Duration openDuration) {
+        this(failureThreshold, openDuration.toNanos(), System::nanoTime);
+    }
+
+    CircuitBreaker(int failureThreshold, long openNanos, LongSupplier clock) {
+        if (failureThreshold < 1) {
+            throw new IllegalArgumentException("Failure threshold must be positive: " + failureThreshold);
+        }
+        if (openNanos < 0) {
+            throw new IllegalArgumentException("Open duration is negative: " + openNanos);
+        }
+        this.failureThreshold = failureThreshold;
+        this.openNanos = openNanos;
+        this.clock = clock;
+    }
+
+    /**
+     *
+     * @return true if a call can be made now
+     */
+    public synchronized boolean isCallPermitted() {
+        if (state == State.OPEN && clock.getAsLong() - openedAt >= openNanos) {
+            state = State.HALF_OPEN;
+        }
+        return state != State.OPEN;
+    }
+
+    /**
+     * Record a successful call
+     */
+    public synchronized void onSuccess() {
+        failures = 0;
+        state = State.CLOSED;
+    }
+
+    /**
+     * Record a failed call
+     */
+    public synchronized void onFailure() {
+        failures++;
+        if (state == State.HALF_OPEN || (state == State.CLOSED && failures >= failureThreshold)) {
+            open();
+        }
+    }
+
+    /**
+     * Record the result of a call, counting only errors which mean the node is unavailable
+     *
+     * @param t error, or null if the call succeeded
+     */
+    public void onResult(Throwable t) {
+        if (t == null || !RpcException.isUnavailable(t)) {
+            onSuccess();
+        } else {
+            onFailure();
+        }
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedAt = clock.getAsLong();
+        openCount++;
+    }
+
+    /**
+     *
+     * @return current state
+     */
+    public synchronized State getState() {
+        if (state == State.OPEN && clock.getAsLong() - openedAt >= openNanos) {
+            return State.HALF_OPEN;
+        }
+        return state;
+    }
+
+    /**
+     *
+     * @return how many times the breaker was opened
+     */
+    public synchronized long getOpenCount() {
+        return openCount;
+    }
+
+    public enum State {
+        /**
+         * Calls are permitted
+         */
+        CLOSED,
+        /**
+         * Calls are not permitted
+         */
+        OPEN,
+        /**
+         * Calls are permitted to check if the node is back
+         */
+        HALF_OPEN
+    }
+}
@@ -0,0 +1,344 @@
+package io.emeraldpay.polkaj.api;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Limits the number of concurrent requests made by an adapter. When the limit is reached new requests wait in a bounded
+ * queue, with a separate lane for each {@link CallPriority}, and a waiting request with a higher priority is always
+ * executed before the lower priority ones. If the queue is full, a new request replaces the latest queued request with
+ * a lower priority, or is rejected with {@link RejectedExecutionException} if there is no such request.
+ * <br>
+ * The limit can be either fixed, or adaptive (AIMD), i.e. it grows while the requests are fast and successful, and drops
+ * when a request is too slow or fails because of the server or connection.
+ * <br>
+ * A single limiter can be shared by multiple adapters connected to the same node.
+ *
+ * @see CallPriority
+ */
+public class ConcurrencyLimiter {
+
+    private static final CallPriority[] PRIORITIES = CallPriority.values();
+    /**
+     * Requests to start on the current thread, when it's already starting a request. Used to start the next requests
+     * in a loop, instead of a recursion when a request completes right in its action.
+     */
+    private static final ThreadLocal<ArrayDeque<Runnable>> STARTING = new ThreadLocal<>();
+
+    private final Limit limit;
+    private final int maxQueue;
+
+    private final ArrayDeque<Waiting<?>>[] lanes;
+    private int queued = 0;
+    private int inFlight = 0;
+
+    private final LongAdder rejected = new LongAdder();
+
+    @SuppressWarnings("unchecked")
+    private ConcurrencyLimiter(Limit limit, int maxQueue) {
+        if (maxQueue < 0) {
+            throw new IllegalArgumentException("Queue size cannot be negative: " + maxQueue);
+        }
+        this.limit = limit;
+        this.maxQueue = maxQueue;
+        this.lanes = new ArrayDeque[PRIORITIES.length];
+        for (int i = 0; i < lanes.length; i++) {
+            lanes[i] = new ArrayDeque<>();
+        }
+    }
+
+    /**
+     * Create limiter with a fixed limit
+     *
+     * @param maxInFlight max number of concurrent requests
+     * @param maxQueue max number of waiting requests
+     * @return limiter
+     */
+    public static ConcurrencyLimiter fixed(int maxInFlight, int maxQueue) {
+        return new ConcurrencyLimiter(new FixedLimit(maxInFlight), maxQueue);
+    }
+
+    /**
+     * Create limiter with an adaptive limit, which starts from the min value, and increases by one after each
+     * <code>limit</code> of fast and successful requests. When a request takes longer than the latency threshold,
+     * or fails with a connection/server error, the limit is decreased by 10%.
+     *
+     * @param minInFlight min number of concurrent requests
+     * @param maxInFlight max number of concurrent requests
+     * @param latencyThreshold max latency of a request which is considered as fast
+     * @param maxQueue max number of waiting requests
+     * @return limiter
+     */
+    public static ConcurrencyLimiter aimd(int minInFlight, int maxInFlight, Duration latencyThreshold, int maxQueue) {
+        return new ConcurrencyLimiter(new AimdLimit(minInFlight, maxInFlight, latencyThreshold.toNanos()), maxQueue);
+    }
+
+    /**
+     * Execute the action when the limit allows it
+     *
+     * @param priority priority lane
+     * @param action action starting the request, called once, either immediately or when there is a free slot
+     * @param <T> type of the result
+     * @return future for the result of the action
+     */
+    public <T> CompletableFuture<T> execute(CallPriority priority, Supplier<CompletableFuture<T>> action) {
+        Waiting<T> current = new Waiting<>(action);
+        Waiting<?> replaced = null;
+        boolean start = false;
+        synchronized (this) {
+            if (inFlight < limit.get()) {
+                inFlight++;
+                start = true;
+            } else if (queued < maxQueue) {
+                lanes[priority.ordinal()].addLast(current);
+                queued++;
+            } else {
+                for (int i = 0; i < priority.ordinal(); i++) {
+                    if (!lanes[i].isEmpty()) {
+                        replaced = lanes[i].pollLast();
+                        lanes[priority.ordinal()].addLast(current);
+                        break;
+                    }
+                }
+                if (replaced == null) {
+                    replaced = current;
+                }
+            }
+        }
+        if (replaced != null) {
+            rejected.increment();
+            replaced.result.completeExceptionally(new RejectedExecutionException("Too many pending requests"));
+        }
+        if (start) {
+            start(current);
+        } else if (replaced != current) {
+            // a cancelled request shouldn't keep a place in the queue
+            current.result.whenComplete((value, t) -> {
+                if (current.result.isCancelled()) {
+                    remove(current, priority);
+                }
+            });
+        }
+        return current.result;
+    }
+
+    /**
+     * Remove a cancelled request from the queue
+     */
+    private synchronized void remove(Waiting<?> waiting, CallPriority priority) {
+        if (lanes[priority.ordinal()].remove(waiting)) {
+            queued--;
+        }
+    }
+
+    private void start(Waiting<?> waiting) {
+        ArrayDeque<Runnable> pending = STARTING.get();
+        if (pending != null) {
+            // called from a request completed in its action, so the loop below runs it after that action
+            pending.addLast(() -> run(waiting));
+            return;
+        }
+        pending = new ArrayDeque<>();
+        STARTING.set(pending);
+        try {
+            run(waiting);
+            Runnable next;
+            while ((next = pending.pollFirst()) != null) {
+                next.run();
+            }
+        } finally {
+            STARTING.remove();
+        }
+    }
+
+    private <T> void run(Waiting<T> waiting) {
+        if (waiting.result.isDone()) {
+            // cancelled after it was taken from the queue
+            release();
+            return;
+        }
+        final long startTime = System.nanoTime();
+        CompletableFuture<T> response;
+        try {
+            response = waiting.action.get();
+        } catch (Throwable t) {
+            response = new CompletableFuture<>();
+            response.completeExceptionally(t);
+        }
+        response.whenComplete((value, t) -> {
+            release(System.nanoTime() - startTime, t != null && RpcException.isUnavailable(t));
+            if (t != null) {
+                waiting.result.completeExceptionally(t);
+            } else {
+                waiting.result.complete(value);
+            }
+        });
+    }
+
+    private void release(long latency, boolean dropped) {
+        List<Waiting<?>> next;
+        synchronized (this) {
+            limit.onSample(latency, dropped);
+            next = releaseSlot();
+        }
+        startAll(next);
+    }
+
+    /**
+     * Release a slot without a latency sample, i.e. when the request wasn't executed
+     */
+    private void release() {
+        List<Waiting<?>> next;
+        synchronized (this) {
+            next = releaseSlot();
+        }
+        startAll(next);
+    }
+
+    private List<Waiting<?>> releaseSlot() {
+        List<Waiting<?>> next = null;
+        inFlight--;
+        // the limit may grow by more than one slot
+        while (inFlight < limit.get()) {
+            Waiting<?> waiting = poll();
+            if (waiting == null) {
+                break;
+            }
+            if (next == null) {
+                next = new ArrayList<>(1);
+            }
+            next.add(waiting);
+            inFlight++;
+        }
+        return next;
+    }
+
+    private void startAll(List<Waiting<?>> next) {
+        if (next != null) {
+            next.forEach(this::start);
+        }
+    }
+
+    private Waiting<?> poll() {
+        for (int i = lanes.length - 1; i >= 0; i--) {
+            Waiting<?> next;
+            while ((next = lanes[i].pollFirst()) != null) {
+                queued--;
+                // skip cancelled requests
+                if (!next.result.isDone()) {
+                    return next;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     *
+     * @return current limit of concurrent requests
+     */
+    public synchronized int getLimit() {
+        return limit.get();
+    }
+
+    /**
+     *
+     * @return number of requests executing now
+     */
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    /**
+     *
+     * @return number of requests waiting for a free slot
+     */
+    public synchronized int getQueued() {
+        return queued;
+    }
+
+    /**
+     *
+     * @return total number of requests rejected because the queue was full
+     */
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    private static class Waiting<T> {
+        private final Supplier<CompletableFuture<T>> action;
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+
+        Waiting(Supplier<CompletableFuture<T>> action) {
+            this.action = action;
+        }
+    }
+
+    /**
+     * Limit of concurrent requests. Accessed only under the lock of the limiter.
+     */
+    interface Limit {
+        int get();
+
+        void onSample(long latencyNanos, boolean dropped);
+    }
+
+    static class FixedLimit implements Limit {
+        private final int value;
+
+        FixedLimit(int value) {
+            if (value < 1) {
+                throw new IllegalArgumentException("Limit must be positive: " + value);
+            }
+            this.value = value;
+        }
+
+        @Override
+        public int get() {
+            return value;
+        }
+
+        @Override
+        public void onSample(long latencyNanos, boolean dropped) {
+        }
+    }
+
+    static class AimdLimit implements Limit {
+        private static final double BACKOFF = 0.9;
+
+        private final int min;
+        private final int max;
+        private final long latencyThreshold;
+        private double value;
+
+        AimdLimit(int min, int max, long latencyThreshold) {
+            if (min < 1 || max < min) {
+                throw new IllegalArgumentException("Invalid limit range: " + min + ".." + max);
+            }
+            this.min = min;
+            this.max = max;
+            this.latencyThreshold = latencyThreshold;
+            this.value = min;
+        }
+
+        @Override
+        public int get() {
+            return (int) value;
+        }
+
+        @Override
+        public void onSample(long latencyNanos, boolean dropped) {
+            if (dropped || latencyNanos > latencyThreshold) {
+                value = Math.max(min, value * BACKOFF);
+            } else {
+                value = Math.min(max, value + 1.0 / value);
+            }
+        }
+    }
+}
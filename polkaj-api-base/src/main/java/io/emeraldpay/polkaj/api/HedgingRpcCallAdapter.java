@@ -0,0 +1,433 @@
+package io.emeraldpay.polkaj.api;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * RpcCallAdapter which cuts the tail latency by hedging the requests. If a call is not completed within the configured
+ * percentile of the recent latency of its method, the same call is made again, and the first successful response
+ * is returned to the caller. The other request is cancelled, or its response is ignored if it cannot be cancelled.
+ * <br>
+ * The load added by the hedged requests is limited by a budget, which by default allows to hedge 5% of the calls.
+ * Each call adds a fraction of a token to the budget, and each hedged request takes a whole token, so when the nodes
+ * are slow in general, not just for a few calls, the load doesn't double.
+ * <br>
+ * Only idempotent calls are hedged (see {@link PolkadotMethod#isIdempotent(String)}), and only after there are enough
+ * latency measurements for the method. Batches are sent as is.
+ * <br>
+ * The hedged request is sent through the same delegate adapter, and with a {@link LoadBalancingAdapter} it goes to
+ * another endpoint.
+ * <br>
+ * Example:
+ * <pre><code>
+ * HedgingRpcCallAdapter adapter = HedgingRpcCallAdapter.newBuilder()
+ *      .delegate(LoadBalancingAdapter.newBuilder()
+ *          .endpoint(JavaHttpAdapter.newBuilder().connectTo("http://node-1:9933").build())
+ *          .endpoint(JavaHttpAdapter.newBuilder().connectTo("http://node-2:9933").build())
+ *          .build())
+ *      .percentile(95)
+ *      .build();
+ * PolkadotApi api = PolkadotApi.newBuilder().rpcCallAdapter(adapter).build();
+ * </code></pre>
+ */
+public class HedgingRpcCallAdapter implements RpcCallAdapter {
+
+    /**
+     * Number of the latest responses used to find the latency percentile
+     */
+    static final int WINDOW = 128;
+    /**
+     * Minimal number of responses before making hedged requests
+     */
+    static final int MIN_SAMPLES = 20;
+    /**
+     * Number of responses before recalculating the delay
+     */
+    private static final int UPDATE_EVERY = 16;
+    /**
+     * Max tokens in the budget, i.e. how many hedged requests can be made in a burst
+     */
+    private static final double MAX_TOKENS = 10;
+
+    private final RpcCallAdapter delegate;
+    private final double percentile;
+    private final long minDelay;
+    private final Predicate<RpcCall<?>> filter;
+    private final ScheduledExecutorService scheduler;
+    private final boolean ownScheduler;
+    private final Runnable onClose;
+
+    private final TokenBudget budget;
+    private final ConcurrentMap<String, LatencyWindow> latencies = new ConcurrentHashMap<>();
+
+    private final LongAdder hedged = new LongAdder();
+    private final LongAdder wins = new LongAdder();
+    private final LongAdder overBudget = new LongAdder();
+
+    private volatile boolean closed = false;
+
+    private HedgingRpcCallAdapter(RpcCallAdapter delegate, double percentile, long minDelay, double budgetRatio,
+                                  Predicate<RpcCall<?>> filter, ScheduledExecutorService scheduler,
+                                  boolean ownScheduler, Runnable onClose) {
+        this.delegate = delegate;
+        this.percentile = percentile;
+        this.minDelay = minDelay;
+        this.budget = new TokenBudget(budgetRatio, MAX_TOKENS, 0);
+        this.filter = filter;
+        this.scheduler = scheduler;
+        this.ownScheduler = ownScheduler;
+        this.onClose = onClose;
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    @Override
+    public <T> CompletableFuture<T> produceRpcFuture(RpcCall<T> call) {
+        if (closed) {
+            CompletableFuture<T> future = new CompletableFuture<>();
+            future.completeExceptionally(new IllegalStateException("Client is already closed"));
+            return future;
+        }
+        if (!filter.test(call)) {
+            return delegate.produceRpcFuture(call);
+        }
+        LatencyWindow window = latencies.computeIfAbsent(call.getMethod(), (method) -> new LatencyWindow());
+        budget.deposit();
+        CompletableFuture<T> primary = send(call, window);
+        long delay = window.getDelay();
+        if (delay < 0 || primary.isDone()) {
+            return primary;
+        }
+        return new Hedged<>(call, window, primary).start(Math.max(delay, minDelay));
+    }
+
+    @Override
+    public List<CompletableFuture<?>> produceRpcFutures(List<? extends RpcCall<?>> calls) {
+        if (closed) {
+            return RpcCallAdapter.super.produceRpcFutures(calls);
+        }
+        return delegate.produceRpcFutures(calls);
+    }
+
+    private <T> CompletableFuture<T> send(RpcCall<T> call, LatencyWindow window) {
+        long startTime = System.nanoTime();
+        CompletableFuture<T> response;
+        try {
+            response = delegate.produceRpcFuture(call);
+        } catch (Throwable t) {
+            response = new CompletableFuture<>();
+            response.completeExceptionally(t);
+        }
+        response.whenComplete((value, t) -> {
+            if (t == null) {
+                window.add(System.nanoTime() - startTime, percentile);
+            }
+        });
+        return response;
+    }
+
+    /**
+     *
+     * @return number of hedged requests made
+     */
+    public long getHedged() {
+        return hedged.sum();
+    }
+
+    /**
+     *
+     * @return number of calls where the hedged request responded first
+     */
+    public long getWins() {
+        return wins.sum();
+    }
+
+    /**
+     *
+     * @return number of hedged requests not made because the budget was exhausted
+     */
+    public long getOverBudget() {
+        return overBudget.sum();
+    }
+
+    /**
+     * Current delay before making a hedged request for the method
+     *
+     * @param method RPC method
+     * @return delay, or null if there is not enough data for the method yet
+     */
+    public Duration getDelay(String method) {
+        LatencyWindow window = latencies.get(method);
+        if (window == null || window.getDelay() < 0) {
+            return null;
+        }
+        return Duration.ofNanos(Math.max(window.getDelay(), minDelay));
+    }
+
+    @Override
+    public void close() throws Exception {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (ownScheduler) {
+            scheduler.shutdownNow();
+        }
+        if (onClose != null) {
+            try {
+                onClose.run();
+            } catch (Throwable t) {
+                System.err.println("Error during onClose call: " + t.getMessage());
+            }
+        }
+        delegate.close();
+    }
+
+    /**
+     * A call with a hedged request scheduled
+     */
+    private class Hedged<T> {
+        private final RpcCall<T> call;
+        private final LatencyWindow window;
+        private final CompletableFuture<T> primary;
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+        private CompletableFuture<T> secondary;
+        private ScheduledFuture<?> timer;
+
+        Hedged(RpcCall<T> call, LatencyWindow window, CompletableFuture<T> primary) {
+            this.call = call;
+            this.window = window;
+            this.primary = primary;
+        }
+
+        CompletableFuture<T> start(long delay) {
+            try {
+                timer = scheduler.schedule(this::hedge, delay, TimeUnit.NANOSECONDS);
+            } catch (Throwable t) {
+                // scheduler is shut down, just proceed without hedging
+                return primary;
+            }
+            primary.whenComplete((value, t) -> onComplete(primary, value, t));
+            result.whenComplete((value, t) -> {
+                timer.cancel(false);
+                if (!primary.isDone()) {
+                    primary.cancel(false);
+                }
+                CompletableFuture<T> secondary = getSecondary();
+                if (secondary != null && !secondary.isDone()) {
+                    secondary.cancel(false);
+                }
+            });
+            return result;
+        }
+
+        private synchronized CompletableFuture<T> getSecondary() {
+            return secondary;
+        }
+
+        private void hedge() {
+            CompletableFuture<T> secondary;
+            synchronized (this) {
+                if (result.isDone()) {
+                    return;
+                }
+                if (!budget.withdraw()) {
+                    overBudget.increment();
+                    return;
+                }
+                hedged.increment();
+                secondary = send(call, window);
+                this.secondary = secondary;
+            }
+            secondary.whenComplete((value, t) -> onComplete(secondary, value, t));
+        }
+
+        private void onComplete(CompletableFuture<T> source, T value, Throwable t) {
+            if (t == null) {
+                if (result.complete(value) && source != primary) {
+                    wins.increment();
+                }
+                return;
+            }
+            synchronized (this) {
+                CompletableFuture<T> other = source == primary ? secondary : primary;
+                if (other != null && !other.isDone()) {
+                    // wait for the other request, it may succeed
+                    return;
+                }
+                result.completeExceptionally(t);
+            }
+        }
+    }
+
+    /**
+     * Latest latencies of a method
+     */
+    static class LatencyWindow {
+        private final long[] samples = new long[WINDOW];
+        private int size = 0;
+        private int position = 0;
+        private int sinceUpdate = 0;
+        private volatile long delay = -1;
+
+        synchronized void add(long latency, double percentile) {
+            samples[position] = latency;
+            position = (position + 1) % WINDOW;
+            if (size < WINDOW) {
+                size++;
+            }
+            sinceUpdate++;
+            if (size >= MIN_SAMPLES && (delay < 0 || sinceUpdate >= UPDATE_EVERY)) {
+                long[] sorted = Arrays.copyOf(samples, size);
+                Arrays.sort(sorted);
+                int index = (int) Math.ceil(percentile / 100.0 * size) - 1;
+                delay = sorted[Math.max(0, Math.min(size - 1, index))];
+                sinceUpdate = 0;
+            }
+        }
+
+        /**
+         *
+         * @return latency at the percentile in nanoseconds, or -1 if there is not enough measurements
+         */
+        long getDelay() {
+            return delay;
+        }
+    }
+
+    public static class Builder {
+        private RpcCallAdapter delegate;
+        private double percentile = 95;
+        private Duration minDelay = Duration.ofMillis(5);
+        private double budgetRatio = 0.05;
+        private Predicate<RpcCall<?>> filter;
+        private ScheduledExecutorService scheduler;
+        private Runnable onClose;
+
+        /**
+         * Adapter to make actual calls
+         *
+         * @param delegate adapter
+         * @return builder
+         */
+        public Builder delegate(RpcCallAdapter delegate) {
+            this.delegate = delegate;
+            return this;
+        }
+
+        /**
+         * Percentile of the recent latency after which a hedged request is made. Default is 95.
+         *
+         * @param percentile percentile, between 0 and 100
+         * @return builder
+         */
+        public Builder percentile(double percentile) {
+            if (!(percentile > 0 && percentile <= 100)) {
+                throw new IllegalArgumentException("Percentile must be in (0, 100]: " + percentile);
+            }
+            this.percentile = percentile;
+            return this;
+        }
+
+        /**
+         * Minimal delay before a hedged request, so very fast calls are never hedged. Default is 5ms.
+         *
+         * @param minDelay delay
+         * @return builder
+         */
+        public Builder minDelay(Duration minDelay) {
+            if (minDelay.isNegative()) {
+                throw new IllegalArgumentException("Delay is negative: " + minDelay);
+            }
+            this.minDelay = minDelay;
+            return this;
+        }
+
+        /**
+         * Max share of the hedged requests relative to the total number of calls. Default is 0.05, i.e. at most 5%
+         * additional requests.
+         *
+         * @param ratio ratio, between 0 and 1
+         * @return builder
+         */
+        public Builder budget(double ratio) {
+            if (!(ratio >= 0 && ratio <= 1)) {
+                throw new IllegalArgumentException("Budget must be in [0, 1]: " + ratio);
+            }
+            this.budgetRatio = ratio;
+            return this;
+        }
+
+        /**
+         * Which calls can be hedged. By default, all calls of idempotent methods.
+         *
+         * @param filter filter returning true for calls which are safe to make twice
+         * @return builder
+         * @see PolkadotMethod#isIdempotent(String)
+         */
+        public Builder filter(Predicate<RpcCall<?>> filter) {
+            this.filter = filter;
+            return this;
+        }
+
+        /**
+         * Scheduler for the hedged requests. By default, a new single thread scheduler is created, and it's shut down
+         * when the adapter is closed.
+         *
+         * @param scheduler scheduler
+         * @return builder
+         */
+        public Builder scheduler(ScheduledExecutorService scheduler) {
+            this.scheduler = scheduler;
+            return this;
+        }
+
+        /**
+         * Provide custom cleanup method.
+         *
+         * @param onClose to be called on close.
+         * @return builder
+         */
+        public Builder onClose(Runnable onClose) {
+            this.onClose = onClose;
+            return this;
+        }
+
+        /**
+         * Apply configuration and build adapter
+         *
+         * @return new instance of HedgingRpcCallAdapter
+         */
+        public HedgingRpcCallAdapter build() {
+            Objects.requireNonNull(delegate, "Delegate adapter is not set");
+            Predicate<RpcCall<?>> filter = this.filter;
+            if (filter == null) {
+                filter = (call) -> PolkadotMethod.isIdempotent(call.getMethod());
+            }
+            ScheduledExecutorService scheduler = this.scheduler;
+            boolean ownScheduler = scheduler == null;
+            if (ownScheduler) {
+                scheduler = Executors.newSingleThreadScheduledExecutor((runnable) -> {
+                    Thread thread = new Thread(runnable, "polkaj-hedging");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
+            return new HedgingRpcCallAdapter(delegate, percentile, minDelay.toNanos(), budgetRatio, filter,
+                    scheduler, ownScheduler, onClose);
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package io.emeraldpay.polkaj.api;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * RpcMetrics which keeps the metrics in memory, per RPC method. The values can be read directly, or exported
+ * with {@link PrometheusTextWriter}.
+ * <br>
+ * Example:
+ * <pre><code>
+ * InMemoryRpcMetrics metrics = new InMemoryRpcMetrics();
+ * JavaHttpAdapter adapter = JavaHttpAdapter.newBuilder()
+ *      .metrics(metrics)
+ *      .build();
+ * ...
+ * System.out.println("p99: " + metrics.get("chain_getBlock").getLatency().getValueAtPercentile(99));
+ * </code></pre>
+ *
+ * @see PrometheusTextWriter
+ */
+public class InMemoryRpcMetrics implements RpcMetrics {
+
+    private final ConcurrentMap<String, MethodMetrics> methods = new ConcurrentHashMap<>();
+
+    private MethodMetrics forMethod(String method) {
+        MethodMetrics current = methods.get(method);
+        if (current != null) {
+            return current;
+        }
+        return methods.computeIfAbsent(method, (ignore) -> new MethodMetrics());
+    }
+
+    @Override
+    public void onRequest(String method) {
+        forMethod(method).inFlight.increment();
+    }
+
+    @Override
+    public void onResponse(String method, long latencyNanos, Throwable error) {
+        MethodMetrics metrics = forMethod(method);
+        metrics.inFlight.decrement();
+        metrics.latency.record(latencyNanos);
+        if (error != null) {
+            metrics.errors.computeIfAbsent(errorCode(error), (ignore) -> new LongAdder()).increment();
+        }
+    }
+
+    @Override
+    public void onRequestBytes(String method, long bytes) {
+        forMethod(method).requestBytes.add(bytes);
+    }
+
+    @Override
+    public void onResponseBytes(String method, long bytes) {
+        forMethod(method).responseBytes.add(bytes);
+    }
+
+    @Override
+    public void onDecode(String method, long nanos) {
+        forMethod(method).decodeTime.record(nanos);
+    }
+
+    @Override
+    public void onSubscriptionEvent(String method) {
+        forMethod(method).subscriptionEvents.increment();
+    }
+
+    @Override
+    public void onSubscriptionQueue(String method, int delta) {
+        forMethod(method).subscriptionQueue.add(delta);
+    }
+
+    @Override
+    public void onSubscriptionDropped(String method) {
+        forMethod(method).subscriptionDropped.increment();
+    }
+
+    /**
+     * Code of the error, i.e. the code of an RpcException, or the class name for other errors (ex. a timeout)
+     */
+    static String errorCode(Throwable error) {
+        while ((error instanceof CompletionException || error instanceof ExecutionException) && error.getCause() != null) {
+            error = error.getCause();
+        }
+        if (error instanceof RpcException) {
+            return String.valueOf(((RpcException) error).getCode());
+        }
+        return error.getClass().getSimpleName();
+    }
+
+    /**
+     *
+     * @param method RPC or subscription method
+     * @return metrics of the method, or null if nothing was recorded for it
+     */
+    public MethodMetrics get(String method) {
+        return methods.get(method);
+    }
+
+    /**
+     *
+     * @return metrics of all methods recorded so far, sorted by the method name
+     */
+    public Map<String, MethodMetrics> getMethods() {
+        return Collections.unmodifiableMap(new TreeMap<>(methods));
+    }
+
+    /**
+     *
+     * @return total number of requests waiting for a response
+     */
+    public long getInFlight() {
+        long result = 0;
+        for (MethodMetrics metrics : methods.values()) {
+            result += metrics.getInFlight();
+        }
+        return result;
+    }
+
+    /**
+     * Metrics of a single method
+     */
+    public static class MethodMetrics {
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LatencyHistogram decodeTime = new LatencyHistogram();
+        private final LongAdder inFlight = new LongAdder();
+        private final LongAdder requestBytes = new LongAdder();
+        private final LongAdder responseBytes = new LongAdder();
+        private final LongAdder subscriptionEvents = new LongAdder();
+        private final LongAdder subscriptionQueue = new LongAdder();
+        private final LongAdder subscriptionDropped = new LongAdder();
+        private final ConcurrentMap<String, LongAdder> errors = new ConcurrentHashMap<>();
+
+        /**
+         *
+         * @return latency of the requests, including failed requests
+         */
+        public LatencyHistogram getLatency() {
+            return latency;
+        }
+
+        /**
+         *
+         * @return time spent on decoding the responses
+         */
+        public LatencyHistogram getDecodeTime() {
+            return decodeTime;
+        }
+
+        /**
+         *
+         * @return number of requests waiting for a response
+         */
+        public long getInFlight() {
+            return inFlight.sum();
+        }
+
+        /**
+         *
+         * @return total size of the requests, in bytes
+         */
+        public long getRequestBytes() {
+            return requestBytes.sum();
+        }
+
+        /**
+         *
+         * @return total size of the responses, in bytes
+         */
+        public long getResponseBytes() {
+            return responseBytes.sum();
+        }
+
+        /**
+         *
+         * @return number of received subscription events
+         */
+        public long getSubscriptionEvents() {
+            return subscriptionEvents.sum();
+        }
+
+        /**
+         *
+         * @return number of subscription events waiting for the handler
+         */
+        public long getSubscriptionQueue() {
+            return subscriptionQueue.sum();
+        }
+
+        /**
+         *
+         * @return number of subscription events dropped without passing them to the handler
+         */
+        public long getSubscriptionDropped() {
+            return subscriptionDropped.sum();
+        }
+
+        /**
+         *
+         * @return number of failed requests by the error code, which is the code of an RpcException, or the class name
+         * for other errors
+         */
+        public Map<String, Long> getErrors() {
+            Map<String, Long> result = new TreeMap<>();
+            errors.forEach((code, count) -> result.put(code, count.sum()));
+            return result;
+        }
+    }
+}
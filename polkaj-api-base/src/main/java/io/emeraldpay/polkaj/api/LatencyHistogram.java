@@ -0,0 +1,128 @@
+package io.emeraldpay.polkaj.api;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram of durations in nanoseconds, with the same layout as HdrHistogram: each power of two range is
+ * split into 32 linear buckets, so a percentile is reported with a precision of about 3%, regardless of the
+ * magnitude of the value. Values are tracked up to about 36 minutes, and larger values are counted as the max.
+ * <br>
+ * Recording is wait-free and doesn't allocate, so it's safe to call from any thread.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_BIT = 41;
+    private static final long MAX_VALUE = (1L << MAX_BIT) - 1;
+    private static final int BUCKETS = SUB_BUCKETS * 2 + (MAX_BIT - SUB_BUCKET_BITS - 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Record a value
+     *
+     * @param nanos duration in nanoseconds, a negative value is recorded as 0
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(index(Math.min(value, MAX_VALUE)));
+        count.increment();
+        sum.add(value);
+        long current;
+        while ((current = max.get()) < value && !max.compareAndSet(current, value)) {
+            // retry
+        }
+    }
+
+    static int index(long value) {
+        if (value < SUB_BUCKETS * 2) {
+            return (int) value;
+        }
+        int bit = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (bit - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return SUB_BUCKETS * 2 + (bit - SUB_BUCKET_BITS - 1) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * @return the largest value which is counted in the bucket
+     */
+    static long highestEquivalentValue(int index) {
+        if (index < SUB_BUCKETS * 2) {
+            return index;
+        }
+        int bit = (index - SUB_BUCKETS * 2) / SUB_BUCKETS + SUB_BUCKET_BITS + 1;
+        long sub = (index - SUB_BUCKETS * 2) % SUB_BUCKETS;
+        long width = 1L << (bit - SUB_BUCKET_BITS);
+        return (1L << bit) + sub * width + width - 1;
+    }
+
+    /**
+     *
+     * @return number of recorded values
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     *
+     * @return sum of all recorded values, in nanoseconds
+     */
+    public long getSum() {
+        return sum.sum();
+    }
+
+    /**
+     *
+     * @return the largest recorded value, in nanoseconds
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     *
+     * @return mean of the recorded values, in nanoseconds, or 0 if nothing is recorded
+     */
+    public double getMean() {
+        long count = getCount();
+        return count == 0 ? 0 : (double) getSum() / count;
+    }
+
+    /**
+     * Find the value at the percentile. The result is the highest value of the bucket, i.e. the real value may be up to
+     * 3% less, but never greater than the max recorded value.
+     *
+     * @param percentile percentile, between 0 and 100
+     * @return the value, in nanoseconds, or 0 if nothing is recorded
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("Percentile must be between 0 and 100: " + percentile);
+        }
+        long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(percentile / 100.0 * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= target) {
+                return Math.min(highestEquivalentValue(i), getMax());
+            }
+        }
+        return getMax();
+    }
+}
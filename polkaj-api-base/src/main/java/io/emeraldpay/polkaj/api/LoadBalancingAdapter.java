@@ -0,0 +1,705 @@
+package io.emeraldpay.polkaj.api;
+
+import io.emeraldpay.polkaj.json.SystemHealthJson;
+import io.emeraldpay.polkaj.types.Hash256;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Adapter which spreads calls over several upstream nodes, each connected through its own adapter. A call is sent to
+ * the endpoint with the least outstanding requests, or to the endpoint with the lowest latency (see {@link Strategy}).
+ * <br>
+ * Routing is sticky in two cases:
+ * <ul>
+ *     <li>a call pinned to a block by a block hash param, like <code>state_getStorage(key, at)</code>, always goes
+ *     to the same endpoint for the same block, so a node lagging behind doesn't answer for one block and then fails
+ *     for another, and the node cache is reused</li>
+ *     <li>all subscriptions are made on the same endpoint, so events of different subscriptions are consistent
+ *     with each other. A new endpoint is chosen only if the current one is ejected.</li>
+ * </ul>
+ * <br>
+ * Each endpoint has a {@link CircuitBreaker}, and it's ejected for {@link Builder#ejectFor(Duration)} after a number of
+ * consecutive failures (see {@link Builder#ejectAfter(int)}). A JSON RPC error returned by the node doesn't count as
+ * a failure, unless it's a non-200 HTTP status. When the ejection expires the endpoint gets traffic again, but the first
+ * failure ejects it again.
+ * <br>
+ * With {@link Builder#healthCheck(Duration)} each node is periodically checked with <code>system_health</code>, and
+ * a node which is syncing, or has no peers, doesn't get any calls until it's healthy again. A successful health check
+ * also closes the circuit breaker, so a restarted node is back without waiting for the ejection to expire.
+ * <br>
+ * If all endpoints are ejected or unhealthy the calls are made anyway.
+ * <br>
+ * An identical call already in flight, such as a request made by {@link HedgingRpcCallAdapter}, is sent to a different
+ * endpoint, if there is any.
+ * <br>
+ * Subscriptions are made only on endpoints with a {@link SubscriptionAdapter}. Closing the adapter closes all
+ * the upstream adapters.
+ * <br>
+ * Example:
+ * <pre><code>
+ * LoadBalancingAdapter adapter = LoadBalancingAdapter.newBuilder()
+ *      .endpoint("archive-1", JavaHttpAdapter.newBuilder().connectTo("http://archive-1:9933").build())
+ *      .endpoint("archive-2", JavaHttpAdapter.newBuilder().connectTo("http://archive-2:9933").build())
+ *      .strategy(LoadBalancingAdapter.Strategy.EWMA_LATENCY)
+ *      .build();
+ * PolkadotApi api = PolkadotApi.newBuilder().rpcCallAdapter(adapter).build();
+ * </code></pre>
+ */
+public class LoadBalancingAdapter implements SubscriptionAdapter {
+
+    private final List<Endpoint> endpoints;
+    private final Strategy strategy;
+    private final boolean stickyBlocks;
+    private final double ewmaWeight;
+    private final LongSupplier clock;
+    private final Predicate<SystemHealthJson> healthy;
+    private final ScheduledExecutorService scheduler;
+    private final boolean ownScheduler;
+    private final Runnable onClose;
+
+    private final AtomicInteger nextStart = new AtomicInteger(0);
+    private final ConcurrentMap<RpcCall<?>, Endpoint> inFlight = new ConcurrentHashMap<>();
+    private volatile Endpoint subscriptionEndpoint;
+    private volatile ScheduledFuture<?> healthCheck;
+    private volatile boolean closed = false;
+
+    private LoadBalancingAdapter(List<Endpoint> endpoints, Strategy strategy, boolean stickyBlocks,
+                                 double ewmaWeight, LongSupplier clock, Predicate<SystemHealthJson> healthy,
+                                 ScheduledExecutorService scheduler, boolean ownScheduler, Runnable onClose) {
+        this.endpoints = endpoints;
+        this.strategy = strategy;
+        this.stickyBlocks = stickyBlocks;
+        this.ewmaWeight = ewmaWeight;
+        this.clock = clock;
+        this.healthy = healthy;
+        this.scheduler = scheduler;
+        this.ownScheduler = ownScheduler;
+        this.onClose = onClose;
+    }
+
+    private void startHealthCheck(long intervalNanos) {
+        healthCheck = scheduler.scheduleWithFixedDelay(this::checkHealth, 0, intervalNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    @Override
+    public <T> CompletableFuture<T> produceRpcFuture(RpcCall<T> call) {
+        if (closed) {
+            return closedFuture();
+        }
+        Endpoint endpoint = select(call, endpoints, inFlight.get(call));
+        inFlight.put(call, endpoint);
+        CompletableFuture<T> result = track(endpoint, () -> endpoint.adapter.produceRpcFuture(call));
+        result.whenComplete((value, t) -> inFlight.remove(call, endpoint));
+        return result;
+    }
+
+    /**
+     * The whole batch is sent to a single endpoint, chosen by the first call of the batch
+     */
+    @Override
+    public List<CompletableFuture<?>> produceRpcFutures(List<? extends RpcCall<?>> calls) {
+        if (closed || calls.isEmpty()) {
+            return SubscriptionAdapter.super.produceRpcFutures(calls);
+        }
+        Endpoint endpoint = select(calls.get(0), endpoints, null);
+        endpoint.outstanding.addAndGet(calls.size());
+        long startTime = clock.getAsLong();
+        List<CompletableFuture<?>> result;
+        try {
+            result = endpoint.adapter.produceRpcFutures(calls);
+        } catch (Throwable t) {
+            endpoint.outstanding.addAndGet(-calls.size());
+            onResult(endpoint, startTime, t);
+            throw t;
+        }
+        CompletableFuture.allOf(result.toArray(new CompletableFuture[0])).whenComplete((ignored, t) -> {
+            endpoint.outstanding.addAndGet(-calls.size());
+            onResult(endpoint, startTime, t);
+        });
+        return result;
+    }
+
+    @Override
+    public <T> CompletableFuture<Subscription<T>> subscribe(SubscribeCall<T> call) {
+        if (closed) {
+            return closedFuture();
+        }
+        Endpoint endpoint = subscriptionEndpoint;
+        if (endpoint == null || !endpoint.isAvailable()) {
+            List<Endpoint> capable = new ArrayList<>(endpoints.size());
+            for (Endpoint candidate : endpoints) {
+                if (candidate.adapter instanceof SubscriptionAdapter) {
+                    capable.add(candidate);
+                }
+            }
+            if (capable.isEmpty()) {
+                CompletableFuture<Subscription<T>> future = new CompletableFuture<>();
+                future.completeExceptionally(new UnsupportedOperationException("No endpoint supports subscriptions"));
+                return future;
+            }
+            endpoint = select(null, capable, null);
+            subscriptionEndpoint = endpoint;
+        }
+        SubscriptionAdapter adapter = (SubscriptionAdapter) endpoint.adapter;
+        return track(endpoint, () -> adapter.subscribe(call));
+    }
+
+    private <T> CompletableFuture<T> track(Endpoint endpoint, Supplier<CompletableFuture<T>> request) {
+        endpoint.outstanding.incrementAndGet();
+        long startTime = clock.getAsLong();
+        CompletableFuture<T> response;
+        try {
+            response = request.get();
+        } catch (Throwable t) {
+            response = new CompletableFuture<>();
+            response.completeExceptionally(t);
+        }
+        CompletableFuture<T> source = response;
+        CompletableFuture<T> result = source.whenComplete((value, t) -> {
+            endpoint.outstanding.decrementAndGet();
+            onResult(endpoint, startTime, t);
+        });
+        result.whenComplete((value, t) -> {
+            if (t instanceof CancellationException) {
+                // the caller doesn't need it anymore, ex. a hedged request lost
+                source.cancel(false);
+            }
+        });
+        return result;
+    }
+
+    private void onResult(Endpoint endpoint, long startTime, Throwable t) {
+        if (t instanceof CancellationException) {
+            // cancelled by the caller, says nothing about the endpoint
+            return;
+        }
+        endpoint.breaker.onResult(t);
+        if (t != null && RpcException.isUnavailable(t)) {
+            return;
+        }
+        synchronized (endpoint) {
+            long latency = clock.getAsLong() - startTime;
+            endpoint.latency = endpoint.latency < 0
+                    ? latency
+                    : (long) (ewmaWeight * latency + (1 - ewmaWeight) * endpoint.latency);
+        }
+    }
+
+    /**
+     * Choose an endpoint for the call
+     *
+     * @param call call to route, or null for a subscription
+     * @param candidates endpoints to choose from
+     * @param avoid endpoint to use only if there is no other, or null
+     * @return endpoint
+     */
+    private Endpoint select(RpcCall<?> call, List<Endpoint> candidates, Endpoint avoid) {
+        List<Endpoint> available = new ArrayList<>(candidates.size());
+        for (Endpoint endpoint : candidates) {
+            if (endpoint.isAvailable()) {
+                available.add(endpoint);
+            }
+        }
+        if (available.isEmpty()) {
+            // better to try an unhealthy endpoint than to fail without trying
+            available = new ArrayList<>(candidates);
+        }
+        if (avoid != null && available.size() > 1) {
+            available.remove(avoid);
+        }
+        if (available.size() == 1) {
+            return available.get(0);
+        }
+        Hash256 block = stickyBlocks && call != null ? findBlock(call) : null;
+        if (block != null) {
+            return selectByHash(block, available);
+        }
+        // start from a different endpoint each time, so the ties are distributed evenly
+        int start = Math.floorMod(nextStart.getAndIncrement(), available.size());
+        Endpoint best = null;
+        double bestScore = Double.MAX_VALUE;
+        for (int i = 0; i < available.size(); i++) {
+            Endpoint endpoint = available.get((start + i) % available.size());
+            double score = score(endpoint);
+            if (score < bestScore) {
+                best = endpoint;
+                bestScore = score;
+            }
+        }
+        return best;
+    }
+
+    private double score(Endpoint endpoint) {
+        int outstanding = endpoint.outstanding.get();
+        if (strategy == Strategy.EWMA_LATENCY) {
+            long latency = endpoint.latency;
+            // an endpoint without any measurement is tried first
+            return latency < 0 ? -1 : (double) latency * (outstanding + 1);
+        }
+        return outstanding;
+    }
+
+    /**
+     * Rendezvous hashing, so the same block goes to the same endpoint, and only the blocks of an ejected endpoint
+     * are moved to other ones
+     */
+    private static Endpoint selectByHash(Hash256 block, List<Endpoint> available) {
+        long key = block.hashCode();
+        Endpoint best = null;
+        long bestWeight = Long.MIN_VALUE;
+        for (Endpoint endpoint : available) {
+            long weight = mix(key * 31 + endpoint.id);
+            if (best == null || weight > bestWeight) {
+                best = endpoint;
+                bestWeight = weight;
+            }
+        }
+        return best;
+    }
+
+    private static long mix(long value) {
+        // finalizer of the MurmurHash3
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+
+    private static Hash256 findBlock(RpcCall<?> call) {
+        for (Object param : call.getParams()) {
+            if (param instanceof Hash256) {
+                return (Hash256) param;
+            }
+        }
+        return null;
+    }
+
+    private static <T> CompletableFuture<T> closedFuture() {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(new IllegalStateException("Client is already closed"));
+        return future;
+    }
+
+    /**
+     * Check the health of all endpoints now. It's called periodically if {@link Builder#healthCheck(Duration)} is set.
+     *
+     * @return future completed when all endpoints are checked
+     */
+    public CompletableFuture<Void> checkHealth() {
+        CompletableFuture<?>[] checks = new CompletableFuture[endpoints.size()];
+        for (int i = 0; i < endpoints.size(); i++) {
+            checks[i] = checkHealth(endpoints.get(i));
+        }
+        return CompletableFuture.allOf(checks);
+    }
+
+    private CompletableFuture<Void> checkHealth(Endpoint endpoint) {
+        CompletableFuture<Void> current = endpoint.healthCheck;
+        if (current != null && !current.isDone()) {
+            // previous check is not finished yet
+            return current;
+        }
+        CompletableFuture<SystemHealthJson> response;
+        try {
+            response = endpoint.adapter.produceRpcFuture(StandardCommands.getInstance().systemHealth());
+        } catch (Throwable t) {
+            response = new CompletableFuture<>();
+            response.completeExceptionally(t);
+        }
+        current = response.handle((health, t) -> {
+            endpoint.health = health;
+            if (t != null) {
+                endpoint.healthy = false;
+                endpoint.breaker.onResult(t);
+            } else {
+                endpoint.healthy = health != null && healthy.test(health);
+                endpoint.breaker.onSuccess();
+            }
+            return null;
+        });
+        endpoint.healthCheck = current;
+        return current;
+    }
+
+    /**
+     * Default health check: the node is not syncing, and is connected to peers unless it's not supposed to have them
+     */
+    static boolean isHealthy(SystemHealthJson health) {
+        if (Boolean.TRUE.equals(health.getSyncing())) {
+            return false;
+        }
+        if (Boolean.FALSE.equals(health.getShouldHavePeers())) {
+            return true;
+        }
+        return health.getPeers() == null || health.getPeers() > 0;
+    }
+
+    /**
+     *
+     * @return all configured endpoints, in the order they were added
+     */
+    public List<Endpoint> getEndpoints() {
+        return endpoints;
+    }
+
+    @Override
+    public void close() throws Exception {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (healthCheck != null) {
+            healthCheck.cancel(false);
+        }
+        if (ownScheduler && scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        if (onClose != null) {
+            try {
+                onClose.run();
+            } catch (Throwable t) {
+                System.err.println("Error during onClose call: " + t.getMessage());
+            }
+        }
+        Exception error = null;
+        for (Endpoint endpoint : endpoints) {
+            try {
+                endpoint.adapter.close();
+            } catch (Exception e) {
+                if (error == null) {
+                    error = e;
+                } else {
+                    error.addSuppressed(e);
+                }
+            }
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    /**
+     * How to choose an endpoint for a call that is not pinned to a block
+     */
+    public enum Strategy {
+        /**
+         * Endpoint with the least number of requests waiting for a response
+         */
+        LEAST_OUTSTANDING,
+        /**
+         * Endpoint with the lowest exponentially weighted moving average of the latency, multiplied by the number
+         * of outstanding requests + 1, so a fast endpoint doesn't get all the load
+         */
+        EWMA_LATENCY
+    }
+
+    /**
+     * Upstream node with its current state
+     */
+    public static class Endpoint {
+        private final int id;
+        private final String name;
+        private final RpcCallAdapter adapter;
+        private final CircuitBreaker breaker;
+
+        private final AtomicInteger outstanding = new AtomicInteger(0);
+        private volatile long latency = -1;
+        private volatile boolean healthy = true;
+        private volatile SystemHealthJson health;
+        private volatile CompletableFuture<Void> healthCheck;
+
+        Endpoint(int id, String name, RpcCallAdapter adapter, CircuitBreaker breaker) {
+            this.id = id;
+            this.name = name;
+            this.adapter = adapter;
+            this.breaker = breaker;
+        }
+
+        private boolean isAvailable() {
+            return healthy && breaker.isCallPermitted();
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public RpcCallAdapter getAdapter() {
+            return adapter;
+        }
+
+        public CircuitBreaker getCircuitBreaker() {
+            return breaker;
+        }
+
+        /**
+         *
+         * @return number of requests waiting for a response
+         */
+        public int getOutstanding() {
+            return outstanding.get();
+        }
+
+        /**
+         *
+         * @return moving average of the latency in nanoseconds, or -1 if there were no successful calls yet
+         */
+        public long getLatency() {
+            return latency;
+        }
+
+        /**
+         *
+         * @return how many times the endpoint was ejected
+         */
+        public long getEjections() {
+            return breaker.getOpenCount();
+        }
+
+        /**
+         *
+         * @return true if the endpoint is currently ejected because of failures
+         */
+        public boolean isEjected() {
+            return breaker.getState() == CircuitBreaker.State.OPEN;
+        }
+
+        /**
+         *
+         * @return false if the last health check failed, or the node is not healthy
+         */
+        public boolean isHealthy() {
+            return healthy;
+        }
+
+        /**
+         *
+         * @return result of the last health check, or null
+         */
+        public SystemHealthJson getHealth() {
+            return health;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    public static class Builder {
+        private final List<String> names = new ArrayList<>();
+        private final List<RpcCallAdapter> adapters = new ArrayList<>();
+        private Strategy strategy = Strategy.LEAST_OUTSTANDING;
+        private boolean stickyBlocks = true;
+        private int ejectAfter = 5;
+        private Duration ejectFor = Duration.ofSeconds(30);
+        private double ewmaWeight = 0.2;
+        private Duration healthCheckInterval;
+        private Predicate<SystemHealthJson> healthy;
+        private ScheduledExecutorService scheduler;
+        private LongSupplier clock = System::nanoTime;
+        private Runnable onClose;
+
+        /**
+         * Add an endpoint, named by its position
+         *
+         * @param adapter adapter connected to the node
+         * @return builder
+         */
+        public Builder endpoint(RpcCallAdapter adapter) {
+            return endpoint("endpoint-" + adapters.size(), adapter);
+        }
+
+        /**
+         * Add an endpoint
+         *
+         * @param name name of the endpoint
+         * @param adapter adapter connected to the node
+         * @return builder
+         */
+        public Builder endpoint(String name, RpcCallAdapter adapter) {
+            if (adapter == null) {
+                throw new NullPointerException("Adapter is null");
+            }
+            names.add(name);
+            adapters.add(adapter);
+            return this;
+        }
+
+        /**
+         * How to choose an endpoint. Default is {@link Strategy#LEAST_OUTSTANDING}.
+         *
+         * @param strategy routing strategy
+         * @return builder
+         */
+        public Builder strategy(Strategy strategy) {
+            if (strategy == null) {
+                throw new NullPointerException("Strategy is null");
+            }
+            this.strategy = strategy;
+            return this;
+        }
+
+        /**
+         * Route calls pinned to a block hash to the same endpoint. Enabled by default.
+         *
+         * @param stickyBlocks false to route them as any other call
+         * @return builder
+         */
+        public Builder stickyBlocks(boolean stickyBlocks) {
+            this.stickyBlocks = stickyBlocks;
+            return this;
+        }
+
+        /**
+         * Number of consecutive failures to eject an endpoint. Default is 5.
+         *
+         * @param failures number of failures
+         * @return builder
+         */
+        public Builder ejectAfter(int failures) {
+            if (failures < 1) {
+                throw new IllegalArgumentException("Failures must be positive: " + failures);
+            }
+            this.ejectAfter = failures;
+            return this;
+        }
+
+        /**
+         * How long an ejected endpoint doesn't get any calls. Default is 30 seconds.
+         *
+         * @param duration time of ejection
+         * @return builder
+         */
+        public Builder ejectFor(Duration duration) {
+            if (duration.isNegative()) {
+                throw new IllegalArgumentException("Duration is negative: " + duration);
+            }
+            this.ejectFor = duration;
+            return this;
+        }
+
+        /**
+         * Weight of the latest response in the latency moving average, between 0 and 1. Default is 0.2.
+         *
+         * @param weight weight of the latest value
+         * @return builder
+         */
+        public Builder ewmaWeight(double weight) {
+            if (!(weight > 0 && weight <= 1)) {
+                throw new IllegalArgumentException("Weight must be in (0, 1]: " + weight);
+            }
+            this.ewmaWeight = weight;
+            return this;
+        }
+
+        /**
+         * Periodically check the health of the nodes with <code>system_health</code>. Disabled by default.
+         *
+         * @param interval interval between the checks
+         * @return builder
+         */
+        public Builder healthCheck(Duration interval) {
+            if (interval.isNegative() || interval.isZero()) {
+                throw new IllegalArgumentException("Interval must be positive: " + interval);
+            }
+            this.healthCheckInterval = interval;
+            return this;
+        }
+
+        /**
+         * Custom condition for a healthy node. By default, a node is healthy if it's not syncing, and is connected to
+         * some peers (unless it's not supposed to have peers, like a dev node).
+         *
+         * @param healthy predicate returning true for a healthy node
+         * @return builder
+         */
+        public Builder healthy(Predicate<SystemHealthJson> healthy) {
+            this.healthy = healthy;
+            return this;
+        }
+
+        /**
+         * Scheduler for the health checks. By default, a new single thread scheduler is created when the health check
+         * is enabled, and it's shut down when the adapter is closed.
+         *
+         * @param scheduler scheduler
+         * @return builder
+         */
+        public Builder scheduler(ScheduledExecutorService scheduler) {
+            this.scheduler = scheduler;
+            return this;
+        }
+
+        Builder clock(LongSupplier clock) {
+            this.clock = clock;
+            return this;
+        }
+
+        /**
+         * Provide custom cleanup method.
+         *
+         * @param onClose to be called on close.
+         * @return builder
+         */
+        public Builder onClose(Runnable onClose) {
+            this.onClose = onClose;
+            return this;
+        }
+
+        /**
+         * Apply configuration and build adapter
+         *
+         * @return new instance of LoadBalancingAdapter
+         */
+        public LoadBalancingAdapter build() {
+            if (adapters.isEmpty()) {
+                throw new IllegalStateException("No endpoints are set");
+            }
+            List<Endpoint> endpoints = new ArrayList<>(adapters.size());
+            for (int i = 0; i < adapters.size(); i++) {
+                CircuitBreaker breaker = new CircuitBreaker(ejectAfter, ejectFor.toNanos(), clock);
+                endpoints.add(new Endpoint(i, names.get(i), adapters.get(i), breaker));
+            }
+            Predicate<SystemHealthJson> healthy = this.healthy;
+            if (healthy == null) {
+                healthy = LoadBalancingAdapter::isHealthy;
+            }
+            ScheduledExecutorService scheduler = this.scheduler;
+            boolean ownScheduler = scheduler == null && healthCheckInterval != null;
+            if (ownScheduler) {
+                scheduler = Executors.newSingleThreadScheduledExecutor((runnable) -> {
+                    Thread thread = new Thread(runnable, "polkaj-health-check");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
+            LoadBalancingAdapter adapter = new LoadBalancingAdapter(Collections.unmodifiableList(endpoints), strategy,
+                    stickyBlocks, ewmaWeight, clock, healthy, scheduler, ownScheduler, onClose);
+            if (healthCheckInterval != null) {
+                adapter.startHealthCheck(healthCheckInterval.toNanos());
+            }
+            return adapter;
+        }
+    }
+}
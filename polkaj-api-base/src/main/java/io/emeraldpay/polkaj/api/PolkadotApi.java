@@ -1,5 +1,7 @@
 package io.emeraldpay.polkaj.api;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 
 /**
@@ -17,6 +19,23 @@ public interface PolkadotApi extends AutoCloseable {
      */
     <T> CompletableFuture<T> execute(RpcCall<T> call);
 
+    /**
+     * Execute multiple JSON RPC requests as a batch, i.e. in one round-trip to the server if the adapter supports it.
+     * The default implementation executes each call separately.
+     *
+     * @param calls calls details to execute
+     * @return CompletableFuture for each of the calls, in the same order as the calls. Each of them completes
+     * independently, and may throw RpcException when it get
+     * @see RpcException
+     */
+    default List<CompletableFuture<?>> execute(List<? extends RpcCall<?>> calls) {
+        List<CompletableFuture<?>> result = new ArrayList<>(calls.size());
+        for (RpcCall<?> call : calls) {
+            result.add(execute(call));
+        }
+        return result;
+    }
+
     /**
      * Subscribe to a method that provides multiple responses
      *
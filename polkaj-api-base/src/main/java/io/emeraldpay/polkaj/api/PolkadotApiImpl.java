@@ -1,5 +1,7 @@
 package io.emeraldpay.polkaj.api;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 
 
@@ -35,6 +37,27 @@ final class PolkadotApiImpl implements PolkadotApi {
         return rpcCallAdapter.produceRpcFuture(call);
     }
 
+    @Override
+    public List<CompletableFuture<?>> execute(List<? extends RpcCall<?>> calls) {
+        if (closed) {
+            return failed(calls.size(), new IllegalStateException("Client is already closed"));
+        }
+        if(rpcCallAdapter == null){
+            return failed(calls.size(), new IllegalStateException("RpcCallAdapter Not set"));
+        }
+        return rpcCallAdapter.produceRpcFutures(calls);
+    }
+
+    private static List<CompletableFuture<?>> failed(int count, Throwable t) {
+        List<CompletableFuture<?>> result = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            CompletableFuture<?> future = new CompletableFuture<>();
+            future.completeExceptionally(t);
+            result.add(future);
+        }
+        return result;
+    }
+
     @Override
     public <T> CompletableFuture<Subscription<T>> subscribe(SubscribeCall<T> call) {
         if (closed) {
@@ -1,5 +1,10 @@
 package io.emeraldpay.polkaj.api;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
 public class PolkadotMethod {
 
     /**
@@ -327,4 +332,34 @@ public class PolkadotMethod {
      * Retrieves the fee information for an encoded extrinsic
      */
     public static final String PAYMENT_QUERY_INFO = "payment_queryInfo";
+
+    private static final Set<String> IDEMPOTENT = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            RPC_METHODS,
+            CHAIN_GET_BLOCK, CHAIN_GET_BLOCK_HASH, CHAIN_GET_FINALIZED_HEAD, CHAIN_GET_HEADER,
+            STATE_CALL, STATE_GET_PAIRS, STATE_KEYS_PAGED, STATE_GET_STORAGE, STATE_GET_STORAGE_HASH,
+            STATE_GET_STORAGE_SIZE, STATE_GET_METADATA, STATE_GET_RUNTIME_VERSION, STATE_QUERY_STORAGE,
+            STATE_QUERY_STORAGE_AT, STATE_GET_READ_PROOF,
+            "state_getChildKeys", "state_getChildStorage", "state_getChildStorageHash", "state_getChildStorageSize",
+            SYSTEM_NAME, SYSTEM_VERSION, SYSTEM_CHAIN, SYSTEM_CHAIN_TYPE, SYSTEM_PROPERTIES, SYSTEM_HEALTH,
+            SYSTEM_LOCAL_PEER_ID, SYSTEM_LOCAL_LISTEN_ADDRESSES, SYSTEM_PEERS, SYSTEM_NODE_ROLES,
+            AUTHOR_PENDING_EXTRINSICS, AUTHOR_HAS_KEY, AUTHOR_HAS_SESSION_KEYS,
+            ACCOUNT_NEXT_INDEX,
+            PAYMENT_QUERY_INFO,
+            "contracts_call", "contracts_getStorage", "contracts_rentProjection"
+    )));
+
+    /**
+     * Check if the method only reads data, so making the same call twice has the same effect as making it once.
+     * Such calls can be retried, or sent to several nodes at the same time. Note that it doesn't mean the result is
+     * the same, ex. <code>chain_getFinalizedHead</code> returns a new block each time.
+     * <br>
+     * Methods which change the state of the node, like <code>author_submitExtrinsic</code>, are not idempotent.
+     * Unknown methods are not idempotent either.
+     *
+     * @param method RPC method
+     * @return true if the method is idempotent
+     */
+    public static boolean isIdempotent(String method) {
+        return IDEMPOTENT.contains(method);
+    }
 }
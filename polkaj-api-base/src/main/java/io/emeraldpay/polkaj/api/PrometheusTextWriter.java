@@ -0,0 +1,191 @@
+package io.emeraldpay.polkaj.api;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Writes metrics from InMemoryRpcMetrics in the Prometheus text exposition format (version 0.0.4), so they can be
+ * served on a <code>/metrics</code> endpoint of the application. Latency and decode time are exported as summaries
+ * with 0.5, 0.9, 0.99 and 0.999 quantiles.
+ * <br>
+ * Exported metrics, all labeled with the method:
+ * <ul>
+ *     <li><code>polkaj_rpc_latency_seconds</code> - summary of the request latency</li>
+ *     <li><code>polkaj_rpc_decode_seconds</code> - summary of the response decode time</li>
+ *     <li><code>polkaj_rpc_in_flight</code> - requests waiting for a response</li>
+ *     <li><code>polkaj_rpc_request_bytes_total</code> - size of the requests</li>
+ *     <li><code>polkaj_rpc_response_bytes_total</code> - size of the responses</li>
+ *     <li><code>polkaj_rpc_errors_total</code> - failed requests, additionally labeled with the error code</li>
+ *     <li><code>polkaj_subscription_events_total</code> - received subscription events</li>
+ *     <li><code>polkaj_subscription_queue</code> - subscription events waiting for the handler</li>
+ *     <li><code>polkaj_subscription_dropped_total</code> - subscription events dropped without passing them to the handler</li>
+ * </ul>
+ *
+ * @see InMemoryRpcMetrics
+ */
+public class PrometheusTextWriter {
+
+    /**
+     * Content-Type of the output
+     */
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+    private static final double NANOS_IN_SECOND = 1_000_000_000.0;
+
+    private final InMemoryRpcMetrics metrics;
+    private final String namespace;
+
+    public PrometheusTextWriter(InMemoryRpcMetrics metrics) {
+        this(metrics, "polkaj");
+    }
+
+    /**
+     *
+     * @param metrics source metrics
+     * @param namespace prefix of the metric names
+     */
+    public PrometheusTextWriter(InMemoryRpcMetrics metrics, String namespace) {
+        if (!namespace.matches("[a-zA-Z_:][a-zA-Z0-9_:]*")) {
+            throw new IllegalArgumentException("Invalid metric namespace: " + namespace);
+        }
+        this.metrics = metrics;
+        this.namespace = namespace;
+    }
+
+    /**
+     * Write current values of the metrics
+     *
+     * @param out target
+     * @throws IOException if the target failed to write
+     */
+    public void write(Appendable out) throws IOException {
+        Map<String, InMemoryRpcMetrics.MethodMetrics> methods = metrics.getMethods();
+
+        String name = namespace + "_rpc_latency_seconds";
+        header(out, name, "summary", "Latency of RPC requests");
+        for (Map.Entry<String, InMemoryRpcMetrics.MethodMetrics> e : methods.entrySet()) {
+            summary(out, name, e.getKey(), e.getValue().getLatency());
+        }
+
+        name = namespace + "_rpc_decode_seconds";
+        header(out, name, "summary", "Time spent on decoding RPC responses");
+        for (Map.Entry<String, InMemoryRpcMetrics.MethodMetrics> e : methods.entrySet()) {
+            summary(out, name, e.getKey(), e.getValue().getDecodeTime());
+        }
+
+        name = namespace + "_rpc_in_flight";
+        header(out, name, "gauge", "RPC requests waiting for a response");
+        for (Map.Entry<String, InMemoryRpcMetrics.MethodMetrics> e : methods.entrySet()) {
+            if (e.getValue().getLatency().getCount() > 0 || e.getValue().getInFlight() > 0) {
+                sample(out, name, e.getKey(), null, e.getValue().getInFlight());
+            }
+        }
+
+        name = namespace + "_rpc_request_bytes_total";
+        header(out, name, "counter", "Size of RPC requests");
+        for (Map.Entry<String, InMemoryRpcMetrics.MethodMetrics> e : methods.entrySet()) {
+            if (e.getValue().getRequestBytes() > 0) {
+                sample(out, name, e.getKey(), null, e.getValue().getRequestBytes());
+            }
+        }
+
+        name = namespace + "_rpc_response_bytes_total";
+        header(out, name, "counter", "Size of RPC responses and subscription events");
+        for (Map.Entry<String, InMemoryRpcMetrics.MethodMetrics> e : methods.entrySet()) {
+            if (e.getValue().getResponseBytes() > 0) {
+                sample(out, name, e.getKey(), null, e.getValue().getResponseBytes());
+            }
+        }
+
+        name = namespace + "_rpc_errors_total";
+        header(out, name, "counter", "Failed RPC requests");
+        for (Map.Entry<String, InMemoryRpcMetrics.MethodMetrics> e : methods.entrySet()) {
+            for (Map.Entry<String, Long> error : e.getValue().getErrors().entrySet()) {
+                sample(out, name, e.getKey(), "code=\"" + escape(error.getKey()) + "\"", error.getValue());
+            }
+        }
+
+        name = namespace + "_subscription_events_total";
+        header(out, name, "counter", "Received subscription events");
+        for (Map.Entry<String, InMemoryRpcMetrics.MethodMetrics> e : methods.entrySet()) {
+            if (e.getValue().getSubscriptionEvents() > 0) {
+                sample(out, name, e.getKey(), null, e.getValue().getSubscriptionEvents());
+            }
+        }
+
+        name = namespace + "_subscription_queue";
+        header(out, name, "gauge", "Subscription events waiting for the handler");
+        for (Map.Entry<String, InMemoryRpcMetrics.MethodMetrics> e : methods.entrySet()) {
+            if (e.getValue().getSubscriptionEvents() > 0) {
+                sample(out, name, e.getKey(), null, e.getValue().getSubscriptionQueue());
+            }
+        }
+
+        name = namespace + "_subscription_dropped_total";
+        header(out, name, "counter", "Subscription events dropped without passing them to the handler");
+        for (Map.Entry<String, InMemoryRpcMetrics.MethodMetrics> e : methods.entrySet()) {
+            if (e.getValue().getSubscriptionDropped() > 0) {
+                sample(out, name, e.getKey(), null, e.getValue().getSubscriptionDropped());
+            }
+        }
+    }
+
+    /**
+     *
+     * @return current values of the metrics
+     */
+    public String format() {
+        StringBuilder buf = new StringBuilder();
+        try {
+            write(buf);
+        } catch (IOException e) {
+            // StringBuilder never throws it
+            throw new IllegalStateException(e);
+        }
+        return buf.toString();
+    }
+
+    private static void header(Appendable out, String name, String type, String help) throws IOException {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void summary(Appendable out, String name, String method, LatencyHistogram histogram) throws IOException {
+        long count = histogram.getCount();
+        if (count == 0) {
+            return;
+        }
+        for (double quantile : QUANTILES) {
+            sample(out, name, method, "quantile=\"" + quantile + "\"",
+                    histogram.getValueAtPercentile(quantile * 100) / NANOS_IN_SECOND);
+        }
+        sample(out, name + "_sum", method, null, histogram.getSum() / NANOS_IN_SECOND);
+        sample(out, name + "_count", method, null, count);
+    }
+
+    private static void sample(Appendable out, String name, String method, String labels, Object value) throws IOException {
+        out.append(name).append("{method=\"").append(escape(method)).append('"');
+        if (labels != null) {
+            out.append(',').append(labels);
+        }
+        out.append("} ").append(String.valueOf(value)).append('\n');
+    }
+
+    static String escape(String value) {
+        StringBuilder buf = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\') {
+                buf.append("\\\\");
+            } else if (c == '"') {
+                buf.append("\\\"");
+            } else if (c == '\n') {
+                buf.append("\\n");
+            } else {
+                buf.append(c);
+            }
+        }
+        return buf.toString();
+    }
+}
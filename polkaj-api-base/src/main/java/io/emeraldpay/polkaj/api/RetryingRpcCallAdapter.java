@@ -0,0 +1,321 @@
+package io.emeraldpay.polkaj.api;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * RpcCallAdapter which retries calls failed because the node is unavailable, such as a refused connection or
+ * a <code>503</code> HTTP status. A JSON RPC error returned by the node is never retried.
+ * <br>
+ * Only idempotent calls are retried (see {@link PolkadotMethod#isIdempotent(String)}), so a call like
+ * <code>author_submitExtrinsic</code> is never sent twice. Retries are made with an exponential backoff and
+ * a "full jitter", i.e. a random delay between zero and the current backoff, so the clients don't retry all at the same
+ * time when a node restarts.
+ * <br>
+ * The load added by the retries is limited by a budget, which by default allows to retry 10% of the calls, plus
+ * a burst of 10 retries. When a node is down for a longer time the calls just fail, instead of tripling the load.
+ * <br>
+ * Batches are sent as is.
+ * <br>
+ * Example, with a retry going to another node:
+ * <pre><code>
+ * RetryingRpcCallAdapter adapter = RetryingRpcCallAdapter.newBuilder()
+ *      .delegate(LoadBalancingAdapter.newBuilder()
+ *          .endpoint(JavaHttpAdapter.newBuilder().connectTo("http://node-1:9933").build())
+ *          .endpoint(JavaHttpAdapter.newBuilder().connectTo("http://node-2:9933").build())
+ *          .healthCheck(Duration.ofSeconds(10))
+ *          .build())
+ *      .maxAttempts(3)
+ *      .build();
+ * PolkadotApi api = PolkadotApi.newBuilder().rpcCallAdapter(adapter).build();
+ * </code></pre>
+ */
+public class RetryingRpcCallAdapter implements RpcCallAdapter {
+
+    /**
+     * Max tokens in the budget, i.e. how many retries can be made in a burst
+     */
+    private static final double MAX_TOKENS = 10;
+
+    private final RpcCallAdapter delegate;
+    private final int maxAttempts;
+    private final long initialBackoff;
+    private final long maxBackoff;
+    private final Predicate<RpcCall<?>> filter;
+    private final ScheduledExecutorService scheduler;
+    private final boolean ownScheduler;
+    private final Runnable onClose;
+
+    private final TokenBudget budget;
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder overBudget = new LongAdder();
+
+    private volatile boolean closed = false;
+
+    private RetryingRpcCallAdapter(RpcCallAdapter delegate, int maxAttempts, long initialBackoff, long maxBackoff,
+                                   double budgetRatio, Predicate<RpcCall<?>> filter,
+                                   ScheduledExecutorService scheduler, boolean ownScheduler, Runnable onClose) {
+        this.delegate = delegate;
+        this.maxAttempts = maxAttempts;
+        this.initialBackoff = initialBackoff;
+        this.maxBackoff = maxBackoff;
+        this.budget = new TokenBudget(budgetRatio, MAX_TOKENS, budgetRatio > 0 ? MAX_TOKENS : 0);
+        this.filter = filter;
+        this.scheduler = scheduler;
+        this.ownScheduler = ownScheduler;
+        this.onClose = onClose;
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    @Override
+    public <T> CompletableFuture<T> produceRpcFuture(RpcCall<T> call) {
+        if (closed) {
+            CompletableFuture<T> future = new CompletableFuture<>();
+            future.completeExceptionally(new IllegalStateException("Client is already closed"));
+            return future;
+        }
+        if (maxAttempts == 1 || !filter.test(call)) {
+            return delegate.produceRpcFuture(call);
+        }
+        budget.deposit();
+        CompletableFuture<T> result = new CompletableFuture<>();
+        attempt(call, 1, result);
+        return result;
+    }
+
+    @Override
+    public List<CompletableFuture<?>> produceRpcFutures(List<? extends RpcCall<?>> calls) {
+        if (closed) {
+            return RpcCallAdapter.super.produceRpcFutures(calls);
+        }
+        return delegate.produceRpcFutures(calls);
+    }
+
+    private <T> void attempt(RpcCall<T> call, int attempt, CompletableFuture<T> result) {
+        if (result.isDone()) {
+            // cancelled by the caller
+            return;
+        }
+        CompletableFuture<T> response;
+        try {
+            response = delegate.produceRpcFuture(call);
+        } catch (Throwable t) {
+            response = new CompletableFuture<>();
+            response.completeExceptionally(t);
+        }
+        response.whenComplete((value, t) -> {
+            if (t == null) {
+                result.complete(value);
+                return;
+            }
+            if (attempt >= maxAttempts || closed || result.isDone() || !RpcException.isUnavailable(t)) {
+                result.completeExceptionally(t);
+                return;
+            }
+            if (!budget.withdraw()) {
+                overBudget.increment();
+                result.completeExceptionally(t);
+                return;
+            }
+            retries.increment();
+            try {
+                scheduler.schedule(() -> attempt(call, attempt + 1, result), backoff(attempt), TimeUnit.NANOSECONDS);
+            } catch (RejectedExecutionException e) {
+                result.completeExceptionally(t);
+            }
+        });
+    }
+
+    /**
+     * Delay before the next attempt
+     *
+     * @param attempt number of the failed attempt, starting from 1
+     * @return random delay between 0 and the exponential backoff
+     */
+    long backoff(int attempt) {
+        long backoff = initialBackoff;
+        for (int i = 1; i < attempt && backoff < maxBackoff; i++) {
+            backoff *= 2;
+        }
+        backoff = Math.min(backoff, maxBackoff);
+        if (backoff <= 0) {
+            return 0;
+        }
+        return ThreadLocalRandom.current().nextLong(backoff + 1);
+    }
+
+    /**
+     *
+     * @return number of retries made
+     */
+    public long getRetries() {
+        return retries.sum();
+    }
+
+    /**
+     *
+     * @return number of retries not made because the budget was exhausted
+     */
+    public long getOverBudget() {
+        return overBudget.sum();
+    }
+
+    @Override
+    public void close() throws Exception {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (ownScheduler) {
+            scheduler.shutdownNow();
+        }
+        if (onClose != null) {
+            try {
+                onClose.run();
+            } catch (Throwable t) {
+                System.err.println("Error during onClose call: " + t.getMessage());
+            }
+        }
+        delegate.close();
+    }
+
+    public static class Builder {
+        private RpcCallAdapter delegate;
+        private int maxAttempts = 3;
+        private Duration initialBackoff = Duration.ofMillis(100);
+        private Duration maxBackoff = Duration.ofSeconds(5);
+        private double budgetRatio = 0.1;
+        private Predicate<RpcCall<?>> filter;
+        private ScheduledExecutorService scheduler;
+        private Runnable onClose;
+
+        /**
+         * Adapter to make actual calls
+         *
+         * @param delegate adapter
+         * @return builder
+         */
+        public Builder delegate(RpcCallAdapter delegate) {
+            this.delegate = delegate;
+            return this;
+        }
+
+        /**
+         * Max number of attempts for a call, including the first one. Default is 3.
+         *
+         * @param maxAttempts number of attempts
+         * @return builder
+         */
+        public Builder maxAttempts(int maxAttempts) {
+            if (maxAttempts < 1) {
+                throw new IllegalArgumentException("Max attempts must be positive: " + maxAttempts);
+            }
+            this.maxAttempts = maxAttempts;
+            return this;
+        }
+
+        /**
+         * Backoff before the first retry, doubled for each next one. Default is 100ms, up to 5 seconds.
+         *
+         * @param initial backoff before the first retry
+         * @param max max backoff
+         * @return builder
+         */
+        public Builder backoff(Duration initial, Duration max) {
+            if (initial.isNegative() || max.compareTo(initial) < 0) {
+                throw new IllegalArgumentException("Invalid backoff: " + initial + " to " + max);
+            }
+            this.initialBackoff = initial;
+            this.maxBackoff = max;
+            return this;
+        }
+
+        /**
+         * Max share of the retries relative to the total number of calls. Default is 0.1, i.e. at most 10%
+         * additional requests.
+         *
+         * @param ratio ratio, between 0 and 1
+         * @return builder
+         */
+        public Builder budget(double ratio) {
+            if (!(ratio >= 0 && ratio <= 1)) {
+                throw new IllegalArgumentException("Budget must be in [0, 1]: " + ratio);
+            }
+            this.budgetRatio = ratio;
+            return this;
+        }
+
+        /**
+         * Which calls can be retried. By default, all calls of idempotent methods. Never include methods which change
+         * the state of the node, such as <code>author_submitExtrinsic</code>, because a call may fail after it was
+         * already processed by the node.
+         *
+         * @param filter filter returning true for calls which are safe to make twice
+         * @return builder
+         * @see PolkadotMethod#isIdempotent(String)
+         */
+        public Builder filter(Predicate<RpcCall<?>> filter) {
+            this.filter = filter;
+            return this;
+        }
+
+        /**
+         * Scheduler for the retries. By default, a new single thread scheduler is created, and it's shut down
+         * when the adapter is closed.
+         *
+         * @param scheduler scheduler
+         * @return builder
+         */
+        public Builder scheduler(ScheduledExecutorService scheduler) {
+            this.scheduler = scheduler;
+            return this;
+        }
+
+        /**
+         * Provide custom cleanup method.
+         *
+         * @param onClose to be called on close.
+         * @return builder
+         */
+        public Builder onClose(Runnable onClose) {
+            this.onClose = onClose;
+            return this;
+        }
+
+        /**
+         * Apply configuration and build adapter
+         *
+         * @return new instance of RetryingRpcCallAdapter
+         */
+        public RetryingRpcCallAdapter build() {
+            Objects.requireNonNull(delegate, "Delegate adapter is not set");
+            Predicate<RpcCall<?>> filter = this.filter;
+            if (filter == null) {
+                filter = (call) -> PolkadotMethod.isIdempotent(call.getMethod());
+            }
+            ScheduledExecutorService scheduler = this.scheduler;
+            boolean ownScheduler = scheduler == null;
+            if (ownScheduler) {
+                scheduler = Executors.newSingleThreadScheduledExecutor((runnable) -> {
+                    Thread thread = new Thread(runnable, "polkaj-retry");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
+            return new RetryingRpcCallAdapter(delegate, maxAttempts, initialBackoff.toNanos(), maxBackoff.toNanos(),
+                    budgetRatio, filter, scheduler, ownScheduler, onClose);
+        }
+    }
+}
@@ -11,6 +11,8 @@ import java.util.List;
  */
 public class RpcCall<R> extends AbstractCall<R> {
 
+    private CallPriority priority = CallPriority.NORMAL;
+
     private RpcCall(String method, Object[] params) {
         super(method, params);
     }
@@ -89,6 +91,30 @@ public class RpcCall<R> extends AbstractCall<R> {
         return (RpcCall<T>) super.cast(resultClazz);
     }
 
+    /**
+     * Set the priority lane of the call. The priority doesn't change the call itself, i.e. it's not a part of
+     * equals/hashCode, and it's used only if the adapter limits the number of concurrent requests.
+     *
+     * @param priority priority of the call
+     * @return the same call
+     * @see ConcurrencyLimiter
+     */
+    public RpcCall<R> priority(CallPriority priority) {
+        if (priority == null) {
+            throw new NullPointerException("Priority is null");
+        }
+        this.priority = priority;
+        return this;
+    }
+
+    /**
+     *
+     * @return priority lane of the call, NORMAL by default
+     */
+    public CallPriority getPriority() {
+        return priority;
+    }
+
     @SuppressWarnings("unchecked")
     public RpcCall<List<R>> expectList() {
         super.expectList();
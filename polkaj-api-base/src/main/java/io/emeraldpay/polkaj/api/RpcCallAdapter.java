@@ -1,8 +1,25 @@
 package io.emeraldpay.polkaj.api;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 
 public interface RpcCallAdapter extends AutoCloseable {
 
     <T> CompletableFuture<T> produceRpcFuture(RpcCall<T> call);
+
+    /**
+     * Execute multiple calls. An adapter supporting JSON RPC batches sends them in one request, otherwise each call
+     * is executed separately (the default implementation).
+     *
+     * @param calls calls to execute
+     * @return futures for the results, in the same order as the calls
+     */
+    default List<CompletableFuture<?>> produceRpcFutures(List<? extends RpcCall<?>> calls) {
+        List<CompletableFuture<?>> result = new ArrayList<>(calls.size());
+        for (RpcCall<?> call : calls) {
+            result.add(produceRpcFuture(call));
+        }
+        return result;
+    }
 }
@@ -0,0 +1,48 @@
+package io.emeraldpay.polkaj.api;
+
+/**
+ * Java Flight Recorder event for an RPC call made by an adapter. The JAR is a Multi-Release JAR, and on Java 11+ this
+ * class is replaced with an actual JFR event named <code>io.emeraldpay.polkaj.RpcCall</code>, which is disabled
+ * by default. On Java 8 it does nothing.
+ * <br>
+ * Usage:
+ * <pre><code>
+ * RpcCallEvent event = RpcCallEvent.start(method, id, payload.length, false);
+ * ...
+ * if (event != null) {
+ *     event.complete(error);
+ * }
+ * </code></pre>
+ */
+public class RpcCallEvent {
+
+    RpcCallEvent() {
+    }
+
+    /**
+     * Start the event
+     *
+     * @param method RPC method
+     * @param id id of the request
+     * @param requestBytes size of the request, or the whole batch
+     * @param batch true if the call is a part of a batch
+     * @return the event, or null if the event is not recorded
+     */
+    public static RpcCallEvent start(String method, int id, long requestBytes, boolean batch) {
+        return null;
+    }
+
+    /**
+     * @param responseBytes size of the response
+     */
+    public void setResponseBytes(long responseBytes) {
+    }
+
+    /**
+     * Finish and commit the event
+     *
+     * @param error the error, or null if the call was successful
+     */
+    public void complete(Throwable error) {
+    }
+}
@@ -1,9 +1,18 @@
 package io.emeraldpay.polkaj.api;
 
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.JavaType;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletionException;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -47,13 +56,152 @@ public class RpcCoder {
      * @throws CompletionException with RpcException details to let executor know that the response is invalid
      */
     final public <T> T decode(int id, String content, JavaType clazz) {
-        JavaType type = objectMapper.getTypeFactory().constructParametricType(RpcResponse.class, clazz);
         RpcResponse<T> response;
         try {
-            response = objectMapper.readerFor(type).readValue(content);
+            response = responseReader(clazz).readValue(content);
+        } catch (JsonProcessingException e) {
+            throw invalidJson(e);
+        }
+        return extractResult(id, response);
+    }
+
+    /**
+     * Decode JSON RPC response from UTF-8 bytes, without converting it to a String first
+     *
+     * @param id expected id
+     * @param content full JSON content
+     * @param clazz expected JavaType for the result field
+     * @param <T> returning type
+     * @return The decoded result
+     * @throws CompletionException with RpcException details to let executor know that the response is invalid
+     */
+    final public <T> T decode(int id, byte[] content, JavaType clazz) {
+        RpcResponse<T> response;
+        try {
+            response = responseReader(clazz).readValue(content);
+        } catch (IOException e) {
+            throw invalidJson(e);
+        }
+        return extractResult(id, response);
+    }
+
+    /**
+     * Decode JSON RPC response from a stream. The stream is read until the end of the JSON, but not closed.
+     *
+     * @param id expected id
+     * @param content stream with the JSON content
+     * @param clazz expected JavaType for the result field
+     * @param <T> returning type
+     * @return The decoded result
+     * @throws CompletionException with RpcException details to let executor know that the response is invalid
+     */
+    final public <T> T decode(int id, InputStream content, JavaType clazz) {
+        RpcResponse<T> response;
+        try {
+            response = responseReader(clazz).readValue(content);
         } catch (JsonProcessingException e) {
+            throw invalidJson(e);
+        } catch (IOException e) {
+            throw new CompletionException(
+                    new RpcException(-32603, "Failed to read response: " + e.getMessage(), e)
+            );
+        }
+        return extractResult(id, response);
+    }
+
+    /**
+     * Decode JSON RPC response from a parser, which may be a buffer of already parsed tokens
+     *
+     * @param id expected id
+     * @param content parser positioned before the response JSON
+     * @param clazz expected JavaType for the result field
+     * @param <T> returning type
+     * @return The decoded result
+     * @throws CompletionException with RpcException details to let executor know that the response is invalid
+     */
+    final public <T> T decode(int id, JsonParser content, JavaType clazz) {
+        RpcResponse<T> response;
+        try {
+            response = responseReader(clazz).readValue(content);
+        } catch (IOException e) {
+            throw invalidJson(e);
+        }
+        return extractResult(id, response);
+    }
+
+    /**
+     * Decode JSON RPC batch response. The server may return responses in any order, so each of them is matched
+     * to a request by its id. Responses with an unknown id are skipped.
+     * <br>
+     * If the server rejected the whole batch it returns a single error object instead of an array, which is
+     * reported as an exception.
+     *
+     * @param content parser positioned before the response JSON
+     * @param types expected JavaType for the result field, by request id
+     * @return decoded responses, in the order they were returned by the server
+     * @throws CompletionException with RpcException details to let executor know that the response is invalid
+     */
+    final public List<RpcResponse<?>> decodeBatch(JsonParser content, Map<Integer, JavaType> types) {
+        List<RpcResponse<?>> result = new ArrayList<>(types.size());
+        try {
+            JavaType itemType = objectMapper.getTypeFactory().constructParametricType(RpcResponse.class, TokenBuffer.class);
+            ObjectReader itemReader = objectMapper.readerFor(itemType);
+            if (content.nextToken() == JsonToken.START_OBJECT) {
+                RpcResponse<TokenBuffer> response = itemReader.readValue(content);
+                if (response.getError() != null) {
+                    throw new CompletionException(
+                            new RpcException(response.getError().getCode(), response.getError().getMessage(), response.getError().getData())
+                    );
+                }
+                throw new CompletionException(
+                        new RpcException(-32603, "Server returned a single response for a batch")
+                );
+            }
+            if (content.currentToken() != JsonToken.START_ARRAY) {
+                throw new CompletionException(
+                        new RpcException(-32603, "Server returned invalid batch response")
+                );
+            }
+            while (content.nextToken() == JsonToken.START_OBJECT) {
+                RpcResponse<TokenBuffer> response = itemReader.readValue(content);
+                JavaType type = types.get(response.getId());
+                if (type == null) {
+                    continue;
+                }
+                if (response.getError() != null) {
+                    result.add(new RpcResponse<>(response.getId(), response.getError()));
+                } else {
+                    TokenBuffer tokens = response.getResult();
+                    Object value = tokens == null ? null : objectMapper.readerFor(type).readValue(tokens.asParser());
+                    result.add(new RpcResponse<>(response.getId(), value));
+                }
+            }
+            if (content.currentToken() != JsonToken.END_ARRAY) {
+                throw new CompletionException(
+                        new RpcException(-32603, "Server returned invalid batch response")
+                );
+            }
+        } catch (IOException e) {
+            throw invalidJson(e);
+        }
+        return result;
+    }
+
+    private ObjectReader responseReader(JavaType clazz) {
+        JavaType type = objectMapper.getTypeFactory().constructParametricType(RpcResponse.class, clazz);
+        return objectMapper.readerFor(type);
+    }
+
+    private static CompletionException invalidJson(IOException e) {
+        return new CompletionException(
+                new RpcException(-32603, "Server returned invalid JSON", e)
+        );
+    }
+
+    private static <T> T extractResult(int id, RpcResponse<T> response) {
+        if (response == null) {
             throw new CompletionException(
-                    new RpcException(-32603, "Server returned invalid JSON", e)
+                    new RpcException(-32603, "Server returned empty response")
             );
         }
         if (id != response.getId()) {
@@ -81,4 +229,24 @@ public class RpcCoder {
         RpcRequest request = new RpcRequest(id, call.getMethod(), call.getParams());
         return objectMapper.writeValueAsBytes(request);
     }
+
+    /**
+     * Encode multiple RPC requests as a JSON RPC batch, i.e. a JSON array of requests
+     *
+     * @param ids ids of the requests, one for each call
+     * @param calls the RpcCalls to encode
+     * @return full JSON of the batch
+     * @throws JsonProcessingException if cannot encode some of the params into JSON
+     */
+    final public byte[] encodeBatch(int[] ids, List<? extends RpcCall<?>> calls) throws JsonProcessingException {
+        if (ids.length != calls.size()) {
+            throw new IllegalArgumentException("Expected " + calls.size() + " ids, received " + ids.length);
+        }
+        RpcRequest[] requests = new RpcRequest[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            RpcCall<?> call = calls.get(i);
+            requests[i] = new RpcRequest(ids[i], call.getMethod(), call.getParams());
+        }
+        return objectMapper.writeValueAsBytes(requests);
+    }
 }
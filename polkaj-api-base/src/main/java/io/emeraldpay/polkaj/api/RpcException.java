@@ -1,5 +1,7 @@
 package io.emeraldpay.polkaj.api;
 
+import java.util.concurrent.CompletionException;
+
 public class RpcException extends RuntimeException {
 
     private final int code;
@@ -36,4 +38,23 @@ public class RpcException extends RuntimeException {
     public String getRpcData() {
         return rpcData;
     }
+
+    /**
+     * Check if the error means the node is unavailable or overloaded, i.e. it's anything but a JSON RPC error
+     * returned by the node. Such an error says nothing about the call itself, and the same call may succeed later
+     * or on another node.
+     *
+     * @param t error
+     * @return true if the node didn't process the call
+     */
+    static boolean isUnavailable(Throwable t) {
+        if (t instanceof CompletionException && t.getCause() != null) {
+            t = t.getCause();
+        }
+        if (t instanceof RpcException) {
+            // -32000 is a non-200 HTTP status, such as 429 or 503
+            return ((RpcException) t).getCode() == -32000;
+        }
+        return true;
+    }
 }
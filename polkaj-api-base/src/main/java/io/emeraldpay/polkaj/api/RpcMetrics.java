@@ -0,0 +1,92 @@
+package io.emeraldpay.polkaj.api;
+
+/**
+ * Instrumentation of an adapter. The adapter calls it for each request it makes and for each subscription event
+ * it receives, and the implementation can record it into any metrics system. All methods are no-op by default,
+ * and {@link RpcMetrics#NONE} is used by the adapters unless another implementation is provided.
+ * <br>
+ * Methods are called from the threads of the adapter, sometimes from the IO thread, so an implementation must be
+ * thread-safe and must not block.
+ *
+ * @see InMemoryRpcMetrics
+ */
+public interface RpcMetrics {
+
+    /**
+     * Implementation which doesn't record anything
+     */
+    RpcMetrics NONE = new RpcMetrics() {
+    };
+
+    /**
+     * Name used instead of the RPC method when a value cannot be split between the calls, i.e. the size of a batch
+     */
+    String BATCH = "batch";
+
+    /**
+     * Called when a request is sent. Each call to this method is followed by a call to
+     * {@link #onResponse(String, long, Throwable)}
+     *
+     * @param method RPC method
+     */
+    default void onRequest(String method) {
+    }
+
+    /**
+     * Called when a request is completed, either with a result or an error
+     *
+     * @param method RPC method
+     * @param latencyNanos time since the request was sent, in nanoseconds
+     * @param error the error, or null if the request was successful
+     */
+    default void onResponse(String method, long latencyNanos, Throwable error) {
+    }
+
+    /**
+     * @param method RPC method, or {@link #BATCH}
+     * @param bytes size of the request payload
+     */
+    default void onRequestBytes(String method, long bytes) {
+    }
+
+    /**
+     * @param method RPC method, subscription method, or {@link #BATCH}
+     * @param bytes size of the response payload
+     */
+    default void onResponseBytes(String method, long bytes) {
+    }
+
+    /**
+     * @param method RPC method, subscription method, or {@link #BATCH}
+     * @param nanos time spent on decoding the response JSON into the result object, in nanoseconds
+     */
+    default void onDecode(String method, long nanos) {
+    }
+
+    /**
+     * Called when an event of a subscription is received
+     *
+     * @param method subscription method, i.e. <code>chain_newHead</code>
+     */
+    default void onSubscriptionEvent(String method) {
+    }
+
+    /**
+     * Called when the number of subscription events waiting for the handler changes, i.e. when an event is put into
+     * the dispatch queue of a subscription, or taken from it
+     *
+     * @param method subscription method, i.e. <code>chain_newHead</code>
+     * @param delta <code>+1</code> when an event is queued, <code>-1</code> when it's taken or discarded
+     */
+    default void onSubscriptionQueue(String method, int delta) {
+    }
+
+    /**
+     * Called when a subscription event is dropped without passing it to the handler, because it's replaced by a newer
+     * event, or because the dispatch queue is full
+     *
+     * @param method subscription method, i.e. <code>chain_newHead</code>
+     */
+    default void onSubscriptionDropped(String method) {
+    }
+}
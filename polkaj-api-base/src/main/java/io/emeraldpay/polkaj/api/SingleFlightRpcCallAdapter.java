@@ -0,0 +1,295 @@
+package io.emeraldpay.polkaj.api;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * RpcCallAdapter which shares a single request between identical calls made at the same time. If there is already
+ * a request in flight for an equal call (same method, params and result type) the caller gets the result of that request
+ * instead of making a new one. Once the request is completed, the next call goes to the delegate adapter again, i.e.
+ * it is not a cache.
+ * <br>
+ * Each caller gets its own future, so cancelling it doesn't affect the other callers.
+ * <br>
+ * Only calls of idempotent methods are shared by default (see {@link Builder#filter(Predicate)}), i.e. two calls which
+ * change the state of the node, like <code>author_rotateKeys</code>, are always sent separately. A call is shared only
+ * with a request of the same or higher {@link CallPriority}, so it doesn't wait for a lower priority request queued
+ * by a {@link ConcurrencyLimiter}.
+ * <br>
+ * Example:
+ * <pre><code>
+ * SingleFlightRpcCallAdapter adapter = SingleFlightRpcCallAdapter.newBuilder()
+ *      .delegate(JavaHttpAdapter.newBuilder().build())
+ *      .build();
+ * PolkadotApi api = PolkadotApi.newBuilder().rpcCallAdapter(adapter).build();
+ * </code></pre>
+ *
+ * @see RpcCall#equals(Object)
+ */
+public class SingleFlightRpcCallAdapter implements RpcCallAdapter {
+
+    private static final CallPriority[] PRIORITIES = CallPriority.values();
+
+    private final RpcCallAdapter delegate;
+    private final Predicate<RpcCall<?>> filter;
+    private final Runnable onClose;
+    /**
+     * Requests in flight, per priority of the call that made them
+     */
+    private final ConcurrentMap<RpcCall<?>, CompletableFuture<?>>[] inFlight;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    private volatile boolean closed = false;
+
+    @SuppressWarnings("unchecked")
+    private SingleFlightRpcCallAdapter(RpcCallAdapter delegate, Predicate<RpcCall<?>> filter, Runnable onClose) {
+        this.delegate = delegate;
+        this.filter = filter;
+        this.onClose = onClose;
+        this.inFlight = new ConcurrentMap[PRIORITIES.length];
+        for (int i = 0; i < inFlight.length; i++) {
+            inFlight[i] = new ConcurrentHashMap<>();
+        }
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> CompletableFuture<T> produceRpcFuture(RpcCall<T> call) {
+        if (closed) {
+            CompletableFuture<T> future = new CompletableFuture<>();
+            future.completeExceptionally(new IllegalStateException("Client is already closed"));
+            return future;
+        }
+        if (!filter.test(call)) {
+            return delegate.produceRpcFuture(call);
+        }
+        CompletableFuture<T> created = new CompletableFuture<>();
+        CompletableFuture<T> existing = (CompletableFuture<T>) register(call, created);
+        if (existing != null) {
+            hits.increment();
+            return share(existing);
+        }
+        misses.increment();
+        CompletableFuture<T> response;
+        try {
+            response = delegate.produceRpcFuture(call);
+        } catch (Throwable t) {
+            lane(call).remove(call, created);
+            created.completeExceptionally(t);
+            return share(created);
+        }
+        forward(call, response, created);
+        return share(created);
+    }
+
+    /**
+     * Calls of the batch which are already in flight are shared, and the rest are sent to the delegate as a batch.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<CompletableFuture<?>> produceRpcFutures(List<? extends RpcCall<?>> calls) {
+        if (closed) {
+            List<CompletableFuture<?>> result = new ArrayList<>(calls.size());
+            for (int i = 0; i < calls.size(); i++) {
+                CompletableFuture<?> future = new CompletableFuture<>();
+                future.completeExceptionally(new IllegalStateException("Client is already closed"));
+                result.add(future);
+            }
+            return result;
+        }
+        List<CompletableFuture<?>> result = new ArrayList<>(calls.size());
+        List<RpcCall<?>> sent = new ArrayList<>(calls.size());
+        List<CompletableFuture<Object>> handlers = new ArrayList<>(calls.size());
+        for (RpcCall<?> call : calls) {
+            CompletableFuture<Object> created = new CompletableFuture<>();
+            if (!filter.test(call)) {
+                // sent as is, and not registered for sharing
+                sent.add(call);
+                handlers.add(created);
+                result.add(created);
+                continue;
+            }
+            CompletableFuture<Object> existing = (CompletableFuture<Object>) register(call, created);
+            if (existing != null) {
+                hits.increment();
+                result.add(share(existing));
+            } else {
+                misses.increment();
+                sent.add(call);
+                handlers.add(created);
+                result.add(share(created));
+            }
+        }
+        if (sent.isEmpty()) {
+            return result;
+        }
+        try {
+            List<CompletableFuture<?>> responses = sent.size() == 1
+                    ? singletonList(delegate.produceRpcFuture(sent.get(0)))
+                    : delegate.produceRpcFutures(sent);
+            for (int i = 0; i < sent.size(); i++) {
+                forward(sent.get(i), (CompletableFuture<Object>) responses.get(i), handlers.get(i));
+            }
+        } catch (Throwable t) {
+            for (int i = 0; i < sent.size(); i++) {
+                lane(sent.get(i)).remove(sent.get(i), handlers.get(i));
+                handlers.get(i).completeExceptionally(t);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Find a request in flight for the same call with the same or higher priority, or register a new one
+     *
+     * @param call call
+     * @param created future for a new request
+     * @return existing request, or null if the new one is registered
+     */
+    private CompletableFuture<?> register(RpcCall<?> call, CompletableFuture<?> created) {
+        int priority = call.getPriority().ordinal();
+        for (int i = inFlight.length - 1; i > priority; i--) {
+            CompletableFuture<?> existing = inFlight[i].get(call);
+            if (existing != null) {
+                return existing;
+            }
+        }
+        return inFlight[priority].putIfAbsent(call, created);
+    }
+
+    private ConcurrentMap<RpcCall<?>, CompletableFuture<?>> lane(RpcCall<?> call) {
+        return inFlight[call.getPriority().ordinal()];
+    }
+
+    private static List<CompletableFuture<?>> singletonList(CompletableFuture<?> future) {
+        List<CompletableFuture<?>> result = new ArrayList<>(1);
+        result.add(future);
+        return result;
+    }
+
+    private <T> void forward(RpcCall<?> call, CompletableFuture<T> response, CompletableFuture<T> target) {
+        response.whenComplete((value, t) -> {
+            // remove before completing, so a call made by a handler of the result goes to the server
+            lane(call).remove(call, target);
+            if (t != null) {
+                target.completeExceptionally(t);
+            } else {
+                target.complete(value);
+            }
+        });
+    }
+
+    private static <T> CompletableFuture<T> share(CompletableFuture<T> source) {
+        return source.thenApply(Function.identity());
+    }
+
+    /**
+     *
+     * @return number of calls which received a result of another call already in flight
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     *
+     * @return number of calls sent to the delegate adapter
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     *
+     * @return number of distinct calls currently in flight
+     */
+    public int getInFlight() {
+        int count = 0;
+        for (ConcurrentMap<RpcCall<?>, CompletableFuture<?>> lane : inFlight) {
+            count += lane.size();
+        }
+        return count;
+    }
+
+    @Override
+    public void close() throws Exception {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (onClose != null) {
+            try {
+                onClose.run();
+            } catch (Throwable t) {
+                System.err.println("Error during onClose call: " + t.getMessage());
+            }
+        }
+        delegate.close();
+    }
+
+    public static class Builder {
+        private RpcCallAdapter delegate;
+        private Predicate<RpcCall<?>> filter;
+        private Runnable onClose;
+
+        /**
+         * Adapter to make actual calls
+         *
+         * @param delegate adapter
+         * @return builder
+         */
+        public Builder delegate(RpcCallAdapter delegate) {
+            this.delegate = delegate;
+            return this;
+        }
+
+        /**
+         * Which calls can share a request. By default, all calls of idempotent methods.
+         *
+         * @param filter filter returning true for calls which can get a result of another identical call
+         * @return builder
+         * @see PolkadotMethod#isIdempotent(String)
+         */
+        public Builder filter(Predicate<RpcCall<?>> filter) {
+            this.filter = filter;
+            return this;
+        }
+
+        /**
+         * Provide custom cleanup method.
+         *
+         * @param onClose to be called on close.
+         * @return builder
+         */
+        public Builder onClose(Runnable onClose) {
+            this.onClose = onClose;
+            return this;
+        }
+
+        /**
+         * Apply configuration and build adapter
+         *
+         * @return new instance of SingleFlightRpcCallAdapter
+         */
+        public SingleFlightRpcCallAdapter build() {
+            Objects.requireNonNull(delegate, "Delegate adapter is not set");
+            Predicate<RpcCall<?>> filter = this.filter;
+            if (filter == null) {
+                filter = (call) -> PolkadotMethod.isIdempotent(call.getMethod());
+            }
+            return new SingleFlightRpcCallAdapter(delegate, filter, onClose);
+        }
+    }
+}
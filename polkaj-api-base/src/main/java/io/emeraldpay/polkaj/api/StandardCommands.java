@@ -379,10 +379,11 @@ public class StandardCommands {
         if (extrinsic == null) {
             throw new NullPointerException("Extrinsic cannot be null");
         }
-        if (extrinsic.getBytes().length == 0) {
+        if (extrinsic.length() == 0) {
             throw new IllegalArgumentException("Empty extrinsic");
         }
-        return RpcCall.create(Hash256.class, PolkadotMethod.AUTHOR_SUBMIT_EXTRINSIC, extrinsic);
+        return RpcCall.create(Hash256.class, PolkadotMethod.AUTHOR_SUBMIT_EXTRINSIC, extrinsic)
+                .priority(CallPriority.HIGH);
     }
 
 
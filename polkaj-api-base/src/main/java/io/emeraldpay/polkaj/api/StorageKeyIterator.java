@@ -0,0 +1,375 @@
+package io.emeraldpay.polkaj.api;
+
+import io.emeraldpay.polkaj.types.ByteData;
+import io.emeraldpay.polkaj.types.Hash256;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Iterates over all storage keys with a prefix, such as all keys of a storage map, at a specific block. Keys are
+ * requested page by page with <code>state_getKeysPaged</code>, or with <code>childstate_getKeysPaged</code> for a child
+ * storage, and the next page is requested as soon as the current one is received, so it's already in flight while the
+ * current page is consumed.
+ * <br>
+ * The page size is adapted to the response time: if a page is received faster than a half of the target latency
+ * the next one is doubled, and if it's slower than the target latency the next one is halved.
+ * <br>
+ * Only the current and the next page are kept in memory, so a scan of the whole storage uses a constant memory.
+ * <br>
+ * Example:
+ * <pre><code>
+ * try (StorageKeyIterator keys = StorageKeyIterator.newBuilder()
+ *          .api(api)
+ *          .prefix(accountsPrefix)
+ *          .at(blockHash)
+ *          .build()) {
+ *     long count = keys.stream().count();
+ * }
+ * </code></pre>
+ */
+public class StorageKeyIterator implements Iterator<ByteData>, AutoCloseable {
+
+    /**
+     * Max page size accepted by Substrate
+     */
+    public static final int MAX_PAGE_SIZE = 1000;
+
+    private static final String CHILD_KEYS_PAGED = "childstate_getKeysPaged";
+
+    private final PolkadotApi api;
+    private final ByteData childKey;
+    private final ByteData prefix;
+    private final Hash256 at;
+    private final int minPageSize;
+    private final int maxPageSize;
+    private final long targetLatency;
+
+    private int pageSize;
+    private List<ByteData> current = Collections.emptyList();
+    private int position = 0;
+    private CompletableFuture<Page> next;
+    private boolean started = false;
+    private volatile boolean closed = false;
+
+    private StorageKeyIterator(PolkadotApi api, ByteData childKey, ByteData prefix, Hash256 at,
+                               int minPageSize, int initialPageSize, int maxPageSize, long targetLatency) {
+        this.api = api;
+        this.childKey = childKey;
+        this.prefix = prefix;
+        this.at = at;
+        this.minPageSize = minPageSize;
+        this.pageSize = initialPageSize;
+        this.maxPageSize = maxPageSize;
+        this.targetLatency = targetLatency;
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    /**
+     * Call to request a page of keys
+     *
+     * @param startKey the last key of the previous page, or null for the first page
+     * @param count page size
+     * @return call
+     */
+    RpcCall<List<ByteData>> pageCall(ByteData startKey, int count) {
+        if (childKey != null) {
+            return RpcCall.create(ByteData.class, CHILD_KEYS_PAGED, childKey, prefix, count, startKey, at).expectList();
+        }
+        return RpcCall.create(ByteData.class, PolkadotMethod.STATE_KEYS_PAGED, prefix, count, startKey, at).expectList();
+    }
+
+    private CompletableFuture<Page> request(ByteData startKey) {
+        int count = pageSize;
+        long startTime = System.nanoTime();
+        return api.execute(pageCall(startKey, count)).thenApply((keys) -> {
+            adapt(System.nanoTime() - startTime);
+            return new Page(keys == null ? Collections.emptyList() : keys, count);
+        });
+    }
+
+    private synchronized void adapt(long latency) {
+        if (latency < targetLatency / 2) {
+            pageSize = Math.min(maxPageSize, pageSize * 2);
+        } else if (latency > targetLatency) {
+            pageSize = Math.max(minPageSize, pageSize / 2);
+        }
+    }
+
+    /**
+     * Take the next page and request the one after it
+     *
+     * @return true if there is a new page
+     */
+    private boolean advance() {
+        if (next == null) {
+            return false;
+        }
+        Page page;
+        try {
+            page = next.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CompletionException(e);
+        } catch (ExecutionException e) {
+            next = null;
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new CompletionException(e.getCause());
+        }
+        current = page.keys;
+        position = 0;
+        next = page.isLast() ? null : request(page.lastKey());
+        return !current.isEmpty();
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (closed) {
+            return false;
+        }
+        if (!started) {
+            started = true;
+            next = request(null);
+        }
+        while (position >= current.size()) {
+            if (!advance()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public ByteData next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return current.get(position++);
+    }
+
+    /**
+     *
+     * @return current page size
+     */
+    public synchronized int getPageSize() {
+        return pageSize;
+    }
+
+    /**
+     * Stream of the keys. Closing the stream closes the iterator.
+     *
+     * @return stream of keys
+     */
+    public Stream<ByteData> stream() {
+        Spliterator<ByteData> spliterator = Spliterators.spliteratorUnknownSize(this,
+                Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL | Spliterator.IMMUTABLE);
+        return StreamSupport.stream(spliterator, false).onClose(this::close);
+    }
+
+    /**
+     * Read all keys page by page without blocking. The next page is requested before the handler is called with
+     * the current one. Must not be mixed with the use of the iterator.
+     *
+     * @param handler handler for each page, called with non-empty pages in the order of the keys
+     * @return future with the total number of keys, completed after the last page is handled
+     */
+    public CompletableFuture<Long> forEachPage(Consumer<List<ByteData>> handler) {
+        CompletableFuture<Long> result = new CompletableFuture<>();
+        handlePages(request(null), handler, 0, result);
+        return result;
+    }
+
+    private void handlePages(CompletableFuture<Page> pageFuture, Consumer<List<ByteData>> handler, long total,
+                             CompletableFuture<Long> result) {
+        CompletableFuture<Page> pending = pageFuture;
+        long count = total;
+        // pages already received are handled in a loop, so a fast adapter doesn't make a recursion for each page
+        while (pending.isDone()) {
+            Page page;
+            try {
+                page = pending.join();
+            } catch (CompletionException e) {
+                result.completeExceptionally(e.getCause() != null ? e.getCause() : e);
+                return;
+            } catch (CancellationException e) {
+                result.completeExceptionally(e);
+                return;
+            }
+            if (closed) {
+                result.cancel(false);
+                return;
+            }
+            CompletableFuture<Page> following = page.isLast() ? null : request(page.lastKey());
+            try {
+                if (!page.keys.isEmpty()) {
+                    handler.accept(page.keys);
+                }
+            } catch (Throwable handlerError) {
+                if (following != null) {
+                    following.cancel(false);
+                }
+                result.completeExceptionally(handlerError);
+                return;
+            }
+            count += page.keys.size();
+            if (following == null) {
+                result.complete(count);
+                return;
+            }
+            pending = following;
+        }
+        final CompletableFuture<Page> waiting = pending;
+        final long handled = count;
+        waiting.whenComplete((page, t) -> handlePages(waiting, handler, handled, result));
+    }
+
+    /**
+     * Stop iterating, and cancel the request in flight
+     */
+    @Override
+    public void close() {
+        closed = true;
+        current = Collections.emptyList();
+        if (next != null) {
+            next.cancel(false);
+            next = null;
+        }
+    }
+
+    private static class Page {
+        private final List<ByteData> keys;
+        private final int requested;
+
+        Page(List<ByteData> keys, int requested) {
+            this.keys = keys;
+            this.requested = requested;
+        }
+
+        boolean isLast() {
+            return keys.size() < requested;
+        }
+
+        ByteData lastKey() {
+            return keys.get(keys.size() - 1);
+        }
+    }
+
+    public static class Builder {
+        private PolkadotApi api;
+        private ByteData childKey;
+        private ByteData prefix = ByteData.empty();
+        private Hash256 at;
+        private int minPageSize = 64;
+        private int initialPageSize = 256;
+        private int maxPageSize = MAX_PAGE_SIZE;
+        private Duration targetLatency = Duration.ofMillis(250);
+
+        /**
+         * Api to make the calls
+         *
+         * @param api api
+         * @return builder
+         */
+        public Builder api(PolkadotApi api) {
+            this.api = api;
+            return this;
+        }
+
+        /**
+         * Prefix of the keys, ex. a storage map prefix. Default is empty, i.e. all keys.
+         *
+         * @param prefix keys prefix
+         * @return builder
+         */
+        public Builder prefix(ByteData prefix) {
+            this.prefix = prefix;
+            return this;
+        }
+
+        /**
+         * Read keys of a child storage, instead of the main storage
+         *
+         * @param childKey child storage key
+         * @return builder
+         */
+        public Builder child(ByteData childKey) {
+            this.childKey = childKey;
+            return this;
+        }
+
+        /**
+         * Block to read the keys at. Required, because iterating over a changing storage would give inconsistent
+         * results.
+         *
+         * @param at block hash
+         * @return builder
+         */
+        public Builder at(Hash256 at) {
+            this.at = at;
+            return this;
+        }
+
+        /**
+         * Limits of the page size. Default is 64 to 1000, starting with 256.
+         *
+         * @param min min page size
+         * @param initial size of the first page
+         * @param max max page size, cannot be larger than {@link #MAX_PAGE_SIZE}
+         * @return builder
+         */
+        public Builder pageSize(int min, int initial, int max) {
+            if (min < 1 || initial < min || max < initial || max > MAX_PAGE_SIZE) {
+                throw new IllegalArgumentException("Invalid page size: " + min + " <= " + initial + " <= " + max);
+            }
+            this.minPageSize = min;
+            this.initialPageSize = initial;
+            this.maxPageSize = max;
+            return this;
+        }
+
+        /**
+         * Target response time for a page. Default is 250ms.
+         *
+         * @param targetLatency latency
+         * @return builder
+         */
+        public Builder targetLatency(Duration targetLatency) {
+            if (targetLatency.isNegative() || targetLatency.isZero()) {
+                throw new IllegalArgumentException("Latency must be positive: " + targetLatency);
+            }
+            this.targetLatency = targetLatency;
+            return this;
+        }
+
+        /**
+         * Apply configuration and build iterator. No calls are made until the iterator is used.
+         *
+         * @return new instance of StorageKeyIterator
+         */
+        public StorageKeyIterator build() {
+            Objects.requireNonNull(api, "Api is not set");
+            Objects.requireNonNull(prefix, "Prefix is not set");
+            Objects.requireNonNull(at, "Block hash is not set");
+            return new StorageKeyIterator(api, childKey, prefix, at,
+                    minPageSize, initialPageSize, maxPageSize, targetLatency.toNanos());
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package io.emeraldpay.polkaj.api;
+
+/**
+ * Limits additional requests, such as retries or hedged requests, to a share of the original calls. Each call
+ * deposits a fraction of a token, and each additional request withdraws a whole token.
+ */
+class TokenBudget {
+
+    private final double ratio;
+    private final double maxTokens;
+    private double tokens;
+
+    /**
+     *
+     * @param ratio tokens added per call, i.e. the max share of the additional requests
+     * @param maxTokens max tokens kept, i.e. how many additional requests can be made in a burst
+     * @param initialTokens tokens available from the start
+     */
+    TokenBudget(double ratio, double maxTokens, double initialTokens) {
+        this.ratio = ratio;
+        this.maxTokens = maxTokens;
+        this.tokens = initialTokens;
+    }
+
+    synchronized void deposit() {
+        tokens = Math.min(maxTokens, tokens + ratio);
+    }
+
+    synchronized boolean withdraw() {
+        if (tokens < 1) {
+            return false;
+        }
+        tokens -= 1;
+        return true;
+    }
+}
@@ -0,0 +1,73 @@
+package io.emeraldpay.polkaj.api;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Java Flight Recorder event for an RPC call made by an adapter. Disabled by default, enable
+ * <code>io.emeraldpay.polkaj.RpcCall</code> in the JFR settings to record it.
+ */
+@Name("io.emeraldpay.polkaj.RpcCall")
+@Label("RPC Call")
+@Description("JSON RPC call made by an adapter")
+@Category({"Polkaj", "RPC"})
+@Enabled(false)
+@StackTrace(false)
+public class RpcCallEvent extends Event {
+
+    @Label("Method")
+    String method;
+
+    @Label("Id")
+    int id;
+
+    @Label("Request Size")
+    @Description("Size of the request, or of the whole batch")
+    @DataAmount
+    long requestBytes;
+
+    @Label("Response Size")
+    @DataAmount
+    long responseBytes;
+
+    @Label("Batch")
+    boolean batch;
+
+    @Label("Outcome")
+    @Description("success, the code of RpcException, or the name of the error")
+    String outcome;
+
+    RpcCallEvent() {
+    }
+
+    public static RpcCallEvent start(String method, int id, long requestBytes, boolean batch) {
+        RpcCallEvent event = new RpcCallEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.method = method;
+        event.id = id;
+        event.requestBytes = requestBytes;
+        event.batch = batch;
+        event.begin();
+        return event;
+    }
+
+    public void setResponseBytes(long responseBytes) {
+        this.responseBytes = responseBytes;
+    }
+
+    public void complete(Throwable error) {
+        end();
+        if (shouldCommit()) {
+            outcome = error == null ? "success" : InMemoryRpcMetrics.errorCode(error);
+            commit();
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package io.emeraldpay.polkaj.api
+
+import io.emeraldpay.polkaj.types.ByteData
+import spock.lang.Specification
+
+import java.time.Duration
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.TimeUnit
+
+class BatchingRpcCallAdapterSpec extends Specification {
+
+    RpcCallAdapter delegate = Mock()
+
+    def "Sends calls made within the window as a batch"() {
+        setup:
+        def adapter = BatchingRpcCallAdapter.newBuilder()
+                .delegate(delegate)
+                .window(Duration.ofMillis(100))
+                .build()
+        def call1 = RpcCall.create(String, "test_foo")
+        def call2 = RpcCall.create(Integer, "test_bar", 1)
+        when:
+        def f1 = adapter.produceRpcFuture(call1)
+        def f2 = adapter.produceRpcFuture(call2)
+        def r1 = f1.get(1, TimeUnit.SECONDS)
+        def r2 = f2.get(1, TimeUnit.SECONDS)
+        then:
+        1 * delegate.produceRpcFutures([call1, call2]) >> [CompletableFuture.completedFuture("foo"), CompletableFuture.completedFuture(2)]
+        0 * delegate.produceRpcFuture(_)
+        r1 == "foo"
+        r2 == 2
+    }
+
+    def "Sends single call without batch"() {
+        setup:
+        def adapter = BatchingRpcCallAdapter.newBuilder()
+                .delegate(delegate)
+                .window(Duration.ofMillis(10))
+                .build()
+        def call = RpcCall.create(String, "test_foo")
+        when:
+        def act = adapter.produceRpcFuture(call).get(1, TimeUnit.SECONDS)
+        then:
+        1 * delegate.produceRpcFuture(call) >> CompletableFuture.completedFuture("foo")
+        0 * delegate.produceRpcFutures(_)
+        act == "foo"
+    }
+
+    def "Sends batch immediately when max calls reached"() {
+        setup:
+        def adapter = BatchingRpcCallAdapter.newBuilder()
+                .delegate(delegate)
+                .window(Duration.ofMinutes(1))
+                .maxCalls(2)
+                .build()
+        def call1 = RpcCall.create(String, "test_foo")
+        def call2 = RpcCall.create(String, "test_bar")
+        when:
+        adapter.produceRpcFuture(call1)
+        then:
+        0 * delegate._
+
+        when:
+        def f2 = adapter.produceRpcFuture(call2)
+        then:
+        1 * delegate.produceRpcFutures([call1, call2]) >> [CompletableFuture.completedFuture("foo"), CompletableFuture.completedFuture("bar")]
+        f2.isDone()
+    }
+
+    def "Splits batch by estimated size"() {
+        setup:
+        def adapter = BatchingRpcCallAdapter.newBuilder()
+                .delegate(delegate)
+                .window(Duration.ofMinutes(1))
+                .maxBytes(300)
+                .build()
+        def call1 = RpcCall.create(String, "test_foo", ByteData.from(new byte[32]))
+        def call2 = RpcCall.create(String, "test_bar", ByteData.from(new byte[32]))
+        def call3 = RpcCall.create(String, "test_baz", ByteData.from(new byte[32]))
+        when:
+        adapter.produceRpcFuture(call1)
+        adapter.produceRpcFuture(call2)
+        then:
+        0 * delegate._
+
+        when:
+        adapter.produceRpcFuture(call3)
+        then:
+        1 * delegate.produceRpcFutures([call1, call2]) >> [new CompletableFuture(), new CompletableFuture()]
+    }
+
+    def "Passes errors to the original futures"() {
+        setup:
+        def adapter = BatchingRpcCallAdapter.newBuilder()
+                .delegate(delegate)
+                .maxCalls(2)
+                .build()
+        def call1 = RpcCall.create(String, "test_foo")
+        def call2 = RpcCall.create(String, "test_bar")
+        def failed = new CompletableFuture()
+        failed.completeExceptionally(new RpcException(-32601, "Method not found"))
+        when:
+        def f1 = adapter.produceRpcFuture(call1)
+        def f2 = adapter.produceRpcFuture(call2)
+        then:
+        1 * delegate.produceRpcFutures([call1, call2]) >> [CompletableFuture.completedFuture("foo"), failed]
+        f1.get() == "foo"
+
+        when:
+        f2.get()
+        then:
+        def t = thrown(ExecutionException)
+        t.cause instanceof RpcException
+        t.cause.code == -32601
+    }
+
+    def "Sends batch as is"() {
+        setup:
+        def adapter = BatchingRpcCallAdapter.newBuilder()
+                .delegate(delegate)
+                .window(Duration.ofMinutes(1))
+                .build()
+        def calls = [RpcCall.create(String, "test_foo"), RpcCall.create(String, "test_bar")]
+        when:
+        adapter.produceRpcFutures(calls)
+        then:
+        1 * delegate.produceRpcFutures(calls)
+    }
+
+    def "Sends pending calls on close"() {
+        setup:
+        def onClose = Mock(Runnable)
+        def adapter = BatchingRpcCallAdapter.newBuilder()
+                .delegate(delegate)
+                .window(Duration.ofMinutes(1))
+                .onClose(onClose)
+                .build()
+        def call = RpcCall.create(String, "test_foo")
+        adapter.produceRpcFuture(call)
+        when:
+        adapter.close()
+        then:
+        1 * delegate.produceRpcFuture(call) >> CompletableFuture.completedFuture("foo")
+        1 * onClose.run()
+        1 * delegate.close()
+
+        when:
+        adapter.produceRpcFuture(call).get()
+        then:
+        def t = thrown(ExecutionException)
+        t.cause instanceof IllegalStateException
+    }
+
+    def "Estimate call size"() {
+        expect:
+        BatchingRpcCallAdapter.estimateSize(RpcCall.create(String, "test_foo")) >= '{"jsonrpc":"2.0","id":1,"method":"test_foo","params":[]}'.length()
+        BatchingRpcCallAdapter.estimateSize(RpcCall.create(String, "test_foo", ByteData.from(new byte[32]))) >= 2 * 32 + 2
+    }
+}
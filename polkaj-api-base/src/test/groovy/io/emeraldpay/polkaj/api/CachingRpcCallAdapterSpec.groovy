@@ -0,0 +1,217 @@
+package io.emeraldpay.polkaj.api
+
+import com.fasterxml.jackson.databind.ObjectMapper
+import io.emeraldpay.polkaj.json.BlockJson
+import io.emeraldpay.polkaj.json.BlockResponseJson
+import io.emeraldpay.polkaj.json.RuntimeVersionJson
+import io.emeraldpay.polkaj.json.jackson.PolkadotModule
+import io.emeraldpay.polkaj.types.ByteData
+import io.emeraldpay.polkaj.types.Hash256
+import spock.lang.Specification
+
+import java.util.concurrent.CompletableFuture
+
+class CachingRpcCallAdapterSpec extends Specification {
+
+    static Hash256 HASH = Hash256.from("0x5d83f66b61701da4cbd7a60137db89c69469a4f798b62aba9176ab253b423828")
+
+    RpcCallAdapter delegate = Mock()
+
+    def "Caches call pinned to a block"() {
+        setup:
+        def adapter = CachingRpcCallAdapter.newBuilder().delegate(delegate).build()
+        def call = StandardCommands.getInstance().stateCall("Core_version", ByteData.empty(), HASH)
+        when:
+        def r1 = adapter.produceRpcFuture(call).get()
+        def r2 = adapter.produceRpcFuture(call).get()
+        then:
+        1 * delegate.produceRpcFuture(call) >> CompletableFuture.completedFuture(ByteData.from("0x0102"))
+        r1 == ByteData.from("0x0102")
+        r2 == ByteData.from("0x0102")
+        adapter.hits == 1
+        adapter.misses == 1
+        adapter.hitRatio == 0.5d
+        adapter.count == 1
+        adapter.size > 0
+    }
+
+    def "Doesn't cache head relative calls"() {
+        setup:
+        def adapter = CachingRpcCallAdapter.newBuilder().delegate(delegate).build()
+        def call = StandardCommands.getInstance().stateGetStorage(ByteData.from("0x0102"))
+        when:
+        adapter.produceRpcFuture(call).get()
+        adapter.produceRpcFuture(call).get()
+        then:
+        2 * delegate.produceRpcFuture(call) >> CompletableFuture.completedFuture(ByteData.from("0x0102"))
+        adapter.count == 0
+        adapter.misses == 0
+    }
+
+    def "Doesn't cache methods without rule"() {
+        setup:
+        def adapter = CachingRpcCallAdapter.newBuilder().delegate(delegate).build()
+        def call = RpcCall.create(String, "system_chain")
+        when:
+        adapter.produceRpcFuture(call).get()
+        adapter.produceRpcFuture(call).get()
+        then:
+        2 * delegate.produceRpcFuture(call) >> CompletableFuture.completedFuture("Polkadot")
+    }
+
+    def "Uses custom rule"() {
+        setup:
+        def adapter = CachingRpcCallAdapter.newBuilder()
+                .delegate(delegate)
+                .rule("system_chain", CachingRpcCallAdapter.Rule.always())
+                .rule(PolkadotMethod.STATE_CALL, null)
+                .build()
+        when:
+        adapter.produceRpcFuture(RpcCall.create(String, "system_chain")).get()
+        adapter.produceRpcFuture(RpcCall.create(String, "system_chain")).get()
+        then:
+        1 * delegate.produceRpcFuture(_) >> CompletableFuture.completedFuture("Polkadot")
+        !adapter.isCacheable(StandardCommands.getInstance().stateCall("Core_version", ByteData.empty(), HASH))
+    }
+
+    def "Caches block hash only for finalized heights"() {
+        setup:
+        long finalized = 100
+        def adapter = CachingRpcCallAdapter.newBuilder()
+                .delegate(delegate)
+                .finalizedHeight({ finalized })
+                .build()
+        expect:
+        adapter.isCacheable(StandardCommands.getInstance().getBlockHash(99))
+        adapter.isCacheable(StandardCommands.getInstance().getBlockHash(100))
+        !adapter.isCacheable(StandardCommands.getInstance().getBlockHash(101))
+        !adapter.isCacheable(StandardCommands.getInstance().getBlockHash())
+    }
+
+    def "Doesn't cache null and errors"() {
+        setup:
+        def adapter = CachingRpcCallAdapter.newBuilder().delegate(delegate).build()
+        def call = StandardCommands.getInstance().getBlock(HASH)
+        def failed = new CompletableFuture()
+        failed.completeExceptionally(new RpcException(-32000, "Test"))
+        when:
+        adapter.produceRpcFuture(call).get()
+        adapter.produceRpcFuture(call).handle { v, t -> t }.get()
+        then:
+        2 * delegate.produceRpcFuture(call) >>> [CompletableFuture.completedFuture(null), failed]
+        adapter.count == 0
+    }
+
+    def "Evicts least recently used entries"() {
+        setup:
+        def adapter = CachingRpcCallAdapter.newBuilder()
+                .delegate(delegate)
+                .weigher({ 1000 })
+                .maxBytes(3000)
+                .build()
+        def calls = (0..3).collect { StandardCommands.getInstance().stateCall("Core_version", ByteData.from([it] as byte[]), HASH) }
+        delegate.produceRpcFuture(_) >> { RpcCall call -> CompletableFuture.completedFuture(call.params[1]) }
+        when:
+        adapter.produceRpcFuture(calls[0]).get()
+        adapter.produceRpcFuture(calls[1]).get()
+        // access the first, so the second becomes the least recently used
+        adapter.produceRpcFuture(calls[0]).get()
+        adapter.produceRpcFuture(calls[2]).get()
+        then:
+        adapter.count == 2
+        adapter.evictions == 1
+        adapter.size <= 3000
+
+        when:
+        adapter.produceRpcFuture(calls[0]).get()
+        adapter.produceRpcFuture(calls[2]).get()
+        then:
+        adapter.hits == 3
+    }
+
+    def "Evicts blocks by their actual size"() {
+        setup:
+        def adapter = CachingRpcCallAdapter.newBuilder()
+                .delegate(delegate)
+                .maxBytes(250 * 1024)
+                .build()
+        def hashes = (0..3).collect { Hash256.from(String.format("0x%064x", it)) }
+        delegate.produceRpcFuture(_) >> { RpcCall call -> CompletableFuture.completedFuture(block(100 * 1024)) }
+        when:
+        hashes.each { adapter.produceRpcFuture(StandardCommands.getInstance().getBlock(it)).get() }
+        then:
+        adapter.count == 2
+        adapter.evictions == 2
+        adapter.size > 200 * 1024
+        adapter.size <= 250 * 1024
+    }
+
+    def "Estimates size of a block by its extrinsics"() {
+        when:
+        def small = CachingRpcCallAdapter.estimateSize(block(0))
+        def large = CachingRpcCallAdapter.estimateSize(block(1024 * 1024))
+        then:
+        small < 1024
+        large > 1024 * 1024
+        large < 1024 * 1024 + 1024
+    }
+
+    def "Stores results as JSON"() {
+        setup:
+        def objectMapper = new ObjectMapper().tap { registerModule(new PolkadotModule()) }
+        def adapter = CachingRpcCallAdapter.newBuilder()
+                .delegate(delegate)
+                .storeJson(objectMapper)
+                .build()
+        def call = RpcCall.create(RuntimeVersionJson, PolkadotMethod.STATE_GET_RUNTIME_VERSION, HASH)
+        def value = new RuntimeVersionJson().tap {
+            specName = "polkadot"
+            specVersion = 26
+        }
+        when:
+        def r1 = adapter.produceRpcFuture(call).get()
+        def r2 = adapter.produceRpcFuture(call).get()
+        def r3 = adapter.produceRpcFuture(call).get()
+        then:
+        1 * delegate.produceRpcFuture(call) >> CompletableFuture.completedFuture(value)
+        r1.is(value)
+        r2 == value
+        !r2.is(value)
+        !r3.is(r2)
+    }
+
+    def "Serves cached calls of a batch"() {
+        setup:
+        def adapter = CachingRpcCallAdapter.newBuilder().delegate(delegate).build()
+        def call1 = StandardCommands.getInstance().getBlock(HASH)
+        def call2 = RpcCall.create(String, "system_chain")
+        def call3 = StandardCommands.getInstance().stateCall("Core_version", ByteData.empty(), HASH)
+        delegate.produceRpcFuture(call3) >> CompletableFuture.completedFuture(ByteData.from("0x01"))
+        adapter.produceRpcFuture(call3).get()
+        when:
+        def act = adapter.produceRpcFutures([call1, call2, call3])
+        then:
+        1 * delegate.produceRpcFutures([call1, call2]) >> [CompletableFuture.completedFuture(null), CompletableFuture.completedFuture("Polkadot")]
+        act*.get() == [null, "Polkadot", ByteData.from("0x01")]
+        adapter.hits == 1
+    }
+
+    static BlockResponseJson block(int extrinsicsSize) {
+        def header = new BlockJson.Header().tap {
+            number = 1L
+            parentHash = HASH
+            stateRoot = HASH
+            extrinsicsRoot = HASH
+            digest = new BlockJson.Header.Digest().tap {
+                logs = [ByteData.from("0x0102")]
+            }
+        }
+        def body = new BlockJson().tap {
+            it.header = header
+            extrinsics = extrinsicsSize > 0 ? [new ByteData(new byte[extrinsicsSize])] : []
+        }
+        return new BlockResponseJson().tap {
+            it.block = body
+        }
+    }
+}
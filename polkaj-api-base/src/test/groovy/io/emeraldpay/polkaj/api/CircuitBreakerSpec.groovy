@@ -0,0 +1,90 @@
+package io.emeraldpay.polkaj.api
+
+import spock.lang.Specification
+
+import java.time.Duration
+import java.util.concurrent.CompletionException
+import java.util.concurrent.atomic.AtomicLong
+
+class CircuitBreakerSpec extends Specification {
+
+    AtomicLong clock = new AtomicLong(0)
+    CircuitBreaker breaker = new CircuitBreaker(3, Duration.ofSeconds(10).toNanos(), clock.&get)
+
+    def "Opens after consecutive failures"() {
+        when:
+        2.times { breaker.onFailure() }
+        then:
+        breaker.state == CircuitBreaker.State.CLOSED
+        breaker.callPermitted
+
+        when:
+        breaker.onFailure()
+        then:
+        breaker.state == CircuitBreaker.State.OPEN
+        !breaker.callPermitted
+        breaker.openCount == 1
+    }
+
+    def "Success resets failures"() {
+        when:
+        2.times { breaker.onFailure() }
+        breaker.onSuccess()
+        2.times { breaker.onFailure() }
+        then:
+        breaker.state == CircuitBreaker.State.CLOSED
+    }
+
+    def "Half-open after duration and closed on success"() {
+        setup:
+        3.times { breaker.onFailure() }
+        when:
+        clock.addAndGet(Duration.ofSeconds(9).toNanos())
+        then:
+        !breaker.callPermitted
+
+        when:
+        clock.addAndGet(Duration.ofSeconds(1).toNanos())
+        then:
+        breaker.callPermitted
+        breaker.state == CircuitBreaker.State.HALF_OPEN
+
+        when:
+        breaker.onSuccess()
+        then:
+        breaker.state == CircuitBreaker.State.CLOSED
+    }
+
+    def "Half-open is opened again on first failure"() {
+        setup:
+        3.times { breaker.onFailure() }
+        clock.addAndGet(Duration.ofSeconds(10).toNanos())
+        breaker.callPermitted
+        when:
+        breaker.onFailure()
+        then:
+        breaker.state == CircuitBreaker.State.OPEN
+        breaker.openCount == 2
+    }
+
+    def "Counts only unavailable node as failure"() {
+        when:
+        3.times { breaker.onResult(new RpcException(-32602, "Invalid params")) }
+        then:
+        breaker.state == CircuitBreaker.State.CLOSED
+
+        when:
+        breaker.onResult(new CompletionException(new IOException("Connection refused")))
+        breaker.onResult(new RpcException(-32000, "Server returned error status: 503"))
+        breaker.onResult(new IOException("Connection refused"))
+        then:
+        breaker.state == CircuitBreaker.State.OPEN
+    }
+
+    def "Requires positive threshold"() {
+        when:
+        new CircuitBreaker(0, Duration.ofSeconds(1))
+        then:
+        thrown(IllegalArgumentException)
+    }
+}
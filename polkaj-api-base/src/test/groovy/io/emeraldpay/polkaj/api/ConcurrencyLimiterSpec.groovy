@@ -0,0 +1,209 @@
+package io.emeraldpay.polkaj.api
+
+import spock.lang.Specification
+
+import java.time.Duration
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.RejectedExecutionException
+
+class ConcurrencyLimiterSpec extends Specification {
+
+    def "Executes immediately under the limit"() {
+        setup:
+        def limiter = ConcurrencyLimiter.fixed(2, 10)
+        def r1 = new CompletableFuture<String>()
+        def r2 = new CompletableFuture<String>()
+        when:
+        def f1 = limiter.execute(CallPriority.NORMAL, { r1 })
+        def f2 = limiter.execute(CallPriority.NORMAL, { r2 })
+        then:
+        limiter.inFlight == 2
+        limiter.queued == 0
+
+        when:
+        r1.complete("foo")
+        r2.complete("bar")
+        then:
+        f1.get() == "foo"
+        f2.get() == "bar"
+        limiter.inFlight == 0
+    }
+
+    def "Queues over the limit"() {
+        setup:
+        def limiter = ConcurrencyLimiter.fixed(1, 10)
+        def r1 = new CompletableFuture<String>()
+        def started = false
+        when:
+        limiter.execute(CallPriority.NORMAL, { r1 })
+        def f2 = limiter.execute(CallPriority.NORMAL, { started = true; CompletableFuture.completedFuture("bar") })
+        then:
+        !started
+        limiter.inFlight == 1
+        limiter.queued == 1
+
+        when:
+        r1.complete("foo")
+        then:
+        started
+        f2.get() == "bar"
+        limiter.inFlight == 0
+        limiter.queued == 0
+    }
+
+    def "Executes higher priority first"() {
+        setup:
+        def limiter = ConcurrencyLimiter.fixed(1, 10)
+        def r1 = new CompletableFuture<String>()
+        def order = []
+        limiter.execute(CallPriority.NORMAL, { r1 })
+        when:
+        [CallPriority.BULK, CallPriority.NORMAL, CallPriority.HIGH, CallPriority.BULK].eachWithIndex { priority, i ->
+            limiter.execute(priority, { order << "$priority-$i".toString(); CompletableFuture.completedFuture(i) })
+        }
+        r1.complete("foo")
+        then:
+        order == ["HIGH-2", "NORMAL-1", "BULK-0", "BULK-3"]
+    }
+
+    def "Rejects when queue is full"() {
+        setup:
+        def limiter = ConcurrencyLimiter.fixed(1, 1)
+        limiter.execute(CallPriority.NORMAL, { new CompletableFuture() })
+        limiter.execute(CallPriority.NORMAL, { new CompletableFuture() })
+        when:
+        limiter.execute(CallPriority.NORMAL, { new CompletableFuture() }).get()
+        then:
+        def t = thrown(ExecutionException)
+        t.cause instanceof RejectedExecutionException
+        limiter.rejected == 1
+        limiter.queued == 1
+    }
+
+    def "Replaces lower priority when queue is full"() {
+        setup:
+        def limiter = ConcurrencyLimiter.fixed(1, 1)
+        def r1 = new CompletableFuture<String>()
+        limiter.execute(CallPriority.NORMAL, { r1 })
+        def bulk = limiter.execute(CallPriority.BULK, { CompletableFuture.completedFuture("bulk") })
+        when:
+        def high = limiter.execute(CallPriority.HIGH, { CompletableFuture.completedFuture("high") })
+        then:
+        bulk.isCompletedExceptionally()
+        !high.isDone()
+        limiter.rejected == 1
+
+        when:
+        r1.complete("foo")
+        then:
+        high.get() == "high"
+    }
+
+    def "Releases slot on error"() {
+        setup:
+        def limiter = ConcurrencyLimiter.fixed(1, 10)
+        when:
+        def f1 = limiter.execute(CallPriority.NORMAL, { throw new IllegalStateException("Test") })
+        def f2 = limiter.execute(CallPriority.NORMAL, { CompletableFuture.completedFuture("bar") })
+        then:
+        f1.isCompletedExceptionally()
+        f2.get() == "bar"
+        limiter.inFlight == 0
+    }
+
+    def "Runs many queued requests failing immediately"() {
+        setup:
+        def limiter = ConcurrencyLimiter.fixed(1, 100000)
+        def r1 = new CompletableFuture<String>()
+        limiter.execute(CallPriority.NORMAL, { r1 })
+        def queued = (0..<100000).collect {
+            limiter.execute(CallPriority.NORMAL, {
+                def failed = new CompletableFuture<String>()
+                failed.completeExceptionally(new IllegalStateException("Closed"))
+                failed
+            })
+        }
+        when:
+        // each of them completes in its action, which must not start the next one recursively
+        r1.complete("foo")
+        then:
+        queued.every { it.isCompletedExceptionally() }
+        limiter.inFlight == 0
+        limiter.queued == 0
+    }
+
+    def "Doesn't execute cancelled request"() {
+        setup:
+        def limiter = ConcurrencyLimiter.fixed(1, 10)
+        def r1 = new CompletableFuture<String>()
+        def started = false
+        limiter.execute(CallPriority.NORMAL, { r1 })
+        def f2 = limiter.execute(CallPriority.NORMAL, { started = true; CompletableFuture.completedFuture("bar") })
+        when:
+        f2.cancel(false)
+        then:
+        limiter.queued == 0
+
+        when:
+        def f3 = limiter.execute(CallPriority.NORMAL, { CompletableFuture.completedFuture("baz") })
+        r1.complete("foo")
+        then:
+        !started
+        f3.get() == "baz"
+        limiter.inFlight == 0
+    }
+
+    def "Adaptive limit grows with fast responses"() {
+        setup:
+        def limiter = ConcurrencyLimiter.aimd(1, 4, Duration.ofSeconds(10), 100)
+        when:
+        100.times {
+            limiter.execute(CallPriority.NORMAL, { CompletableFuture.completedFuture("foo") }).get()
+        }
+        then:
+        limiter.limit == 4
+    }
+
+    def "Adaptive limit drops on server errors"() {
+        setup:
+        def limiter = ConcurrencyLimiter.aimd(1, 10, Duration.ofSeconds(10), 100)
+        100.times {
+            limiter.execute(CallPriority.NORMAL, { CompletableFuture.completedFuture("foo") }).get()
+        }
+        def failed = new CompletableFuture()
+        failed.completeExceptionally(new RpcException(-32000, "Server returned error status: 503"))
+        when:
+        limiter.execute(CallPriority.NORMAL, { failed }).handle { v, t -> t }.get()
+        then:
+        limiter.limit == 9
+    }
+
+    def "Adaptive limit ignores JSON RPC errors"() {
+        setup:
+        def limiter = ConcurrencyLimiter.aimd(2, 10, Duration.ofSeconds(10), 100)
+        def failed = new CompletableFuture()
+        failed.completeExceptionally(new RpcException(-32602, "Invalid params"))
+        when:
+        limiter.execute(CallPriority.NORMAL, { failed }).handle { v, t -> t }.get()
+        then:
+        limiter.limit == 2
+    }
+
+    def "Cannot create with invalid limits"() {
+        when:
+        ConcurrencyLimiter.fixed(0, 10)
+        then:
+        thrown(IllegalArgumentException)
+
+        when:
+        ConcurrencyLimiter.aimd(5, 2, Duration.ofSeconds(1), 10)
+        then:
+        thrown(IllegalArgumentException)
+
+        when:
+        ConcurrencyLimiter.fixed(1, -1)
+        then:
+        thrown(IllegalArgumentException)
+    }
+}
@@ -0,0 +1,281 @@
+package io.emeraldpay.polkaj.api
+
+import io.emeraldpay.polkaj.types.ByteData
+import spock.lang.Specification
+
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.ScheduledExecutorService
+import java.util.concurrent.ScheduledFuture
+import java.util.concurrent.TimeUnit
+
+class HedgingRpcCallAdapterSpec extends Specification {
+
+    StubAdapter delegate = new StubAdapter()
+    ScheduledExecutorService scheduler = Mock()
+    ScheduledFuture timer = Mock()
+    List<Runnable> tasks = []
+
+    def setup() {
+        scheduler.schedule(_ as Runnable, _ as Long, _ as TimeUnit) >> { Runnable task, long delay, TimeUnit unit ->
+            tasks.add(task)
+            return timer
+        }
+    }
+
+    HedgingRpcCallAdapter warmUp(HedgingRpcCallAdapter adapter) {
+        HedgingRpcCallAdapter.MIN_SAMPLES.times {
+            adapter.produceRpcFuture(RpcCall.create(String, "system_chain")).get()
+        }
+        delegate.futures.clear()
+        delegate.calls.clear()
+        delegate.pending = true
+        return adapter
+    }
+
+    def "Doesn't hedge before there are enough measurements"() {
+        setup:
+        def adapter = HedgingRpcCallAdapter.newBuilder()
+                .delegate(delegate)
+                .scheduler(scheduler)
+                .build()
+        (HedgingRpcCallAdapter.MIN_SAMPLES - 1).times {
+            adapter.produceRpcFuture(RpcCall.create(String, "system_chain")).get()
+        }
+        delegate.pending = true
+        when:
+        def f = adapter.produceRpcFuture(RpcCall.create(String, "system_chain"))
+        then:
+        !f.done
+        tasks.isEmpty()
+        adapter.getDelay("system_chain") == null
+    }
+
+    def "Hedged request wins"() {
+        setup:
+        def adapter = warmUp(HedgingRpcCallAdapter.newBuilder()
+                .delegate(delegate)
+                .scheduler(scheduler)
+                .budget(0.5)
+                .build())
+        when:
+        def f = adapter.produceRpcFuture(RpcCall.create(String, "system_chain"))
+        then:
+        tasks.size() == 1
+        delegate.calls.size() == 1
+        adapter.getDelay("system_chain") != null
+
+        when:
+        tasks[0].run()
+        then:
+        delegate.calls.size() == 2
+        adapter.hedged == 1
+
+        when:
+        delegate.futures[1].complete("second")
+        then:
+        f.get() == "second"
+        delegate.futures[0].cancelled
+        adapter.wins == 1
+        1 * timer.cancel(false)
+    }
+
+    def "Primary request wins"() {
+        setup:
+        def adapter = warmUp(HedgingRpcCallAdapter.newBuilder()
+                .delegate(delegate)
+                .scheduler(scheduler)
+                .budget(0.5)
+                .build())
+        when:
+        def f = adapter.produceRpcFuture(RpcCall.create(String, "system_chain"))
+        tasks[0].run()
+        delegate.futures[0].complete("first")
+        then:
+        f.get() == "first"
+        delegate.futures[1].cancelled
+        adapter.hedged == 1
+        adapter.wins == 0
+    }
+
+    def "Doesn't hedge when completed before the delay"() {
+        setup:
+        def adapter = warmUp(HedgingRpcCallAdapter.newBuilder()
+                .delegate(delegate)
+                .scheduler(scheduler)
+                .budget(0.5)
+                .build())
+        when:
+        def f = adapter.produceRpcFuture(RpcCall.create(String, "system_chain"))
+        delegate.futures[0].complete("first")
+        tasks[0].run()
+        then:
+        f.get() == "first"
+        delegate.calls.size() == 1
+        adapter.hedged == 0
+    }
+
+    def "Waits for hedged request if primary fails"() {
+        setup:
+        def adapter = warmUp(HedgingRpcCallAdapter.newBuilder()
+                .delegate(delegate)
+                .scheduler(scheduler)
+                .budget(0.5)
+                .build())
+        when:
+        def f = adapter.produceRpcFuture(RpcCall.create(String, "system_chain"))
+        tasks[0].run()
+        delegate.futures[0].completeExceptionally(new IOException("Connection reset"))
+        then:
+        !f.done
+
+        when:
+        delegate.futures[1].complete("second")
+        then:
+        f.get() == "second"
+    }
+
+    def "Fails when both requests fail"() {
+        setup:
+        def adapter = warmUp(HedgingRpcCallAdapter.newBuilder()
+                .delegate(delegate)
+                .scheduler(scheduler)
+                .budget(0.5)
+                .build())
+        when:
+        def f = adapter.produceRpcFuture(RpcCall.create(String, "system_chain"))
+        tasks[0].run()
+        delegate.futures[1].completeExceptionally(new IOException("Connection reset"))
+        delegate.futures[0].completeExceptionally(new IOException("Connection refused"))
+        f.get()
+        then:
+        def t = thrown(ExecutionException)
+        t.cause instanceof IOException
+        t.cause.message == "Connection refused"
+    }
+
+    def "Fails without hedging if primary fails before the delay"() {
+        setup:
+        def adapter = warmUp(HedgingRpcCallAdapter.newBuilder()
+                .delegate(delegate)
+                .scheduler(scheduler)
+                .budget(0.5)
+                .build())
+        when:
+        def f = adapter.produceRpcFuture(RpcCall.create(String, "system_chain"))
+        delegate.futures[0].completeExceptionally(new IOException("Connection refused"))
+        tasks[0].run()
+        f.get()
+        then:
+        thrown(ExecutionException)
+        delegate.calls.size() == 1
+    }
+
+    def "Doesn't hedge over budget"() {
+        setup:
+        def adapter = warmUp(HedgingRpcCallAdapter.newBuilder()
+                .delegate(delegate)
+                .scheduler(scheduler)
+                .budget(0)
+                .build())
+        when:
+        def f = adapter.produceRpcFuture(RpcCall.create(String, "system_chain"))
+        tasks[0].run()
+        then:
+        delegate.calls.size() == 1
+        adapter.hedged == 0
+        adapter.overBudget == 1
+    }
+
+    def "Doesn't hedge non-idempotent calls"() {
+        setup:
+        def adapter = warmUp(HedgingRpcCallAdapter.newBuilder()
+                .delegate(delegate)
+                .scheduler(scheduler)
+                .budget(0.5)
+                .build())
+        when:
+        adapter.produceRpcFuture(StandardCommands.getInstance().authorSubmitExtrinsic(ByteData.from("0x0102")))
+        then:
+        delegate.calls.size() == 1
+        tasks.isEmpty()
+    }
+
+    def "Sends batch to delegate"() {
+        setup:
+        def delegate = Mock(RpcCallAdapter)
+        def adapter = HedgingRpcCallAdapter.newBuilder()
+                .delegate(delegate)
+                .scheduler(scheduler)
+                .build()
+        def calls = [RpcCall.create(String, "system_chain"), RpcCall.create(String, "system_name")]
+        when:
+        def act = adapter.produceRpcFutures(calls)
+        then:
+        1 * delegate.produceRpcFutures(calls) >> [CompletableFuture.completedFuture("Polkadot"), CompletableFuture.completedFuture("Parity")]
+        act*.get() == ["Polkadot", "Parity"]
+    }
+
+    def "Calculates percentile of latest latencies"() {
+        setup:
+        def window = new HedgingRpcCallAdapter.LatencyWindow()
+        when:
+        (1..HedgingRpcCallAdapter.MIN_SAMPLES - 1).each { window.add(it, 95) }
+        then:
+        window.delay == -1
+
+        when:
+        (1..100).each { window.add(it, 95) }
+        then:
+        window.delay >= 90
+        window.delay <= 96
+
+        when: "old values are dropped"
+        (1..HedgingRpcCallAdapter.WINDOW).each { window.add(1000 + it, 50) }
+        then:
+        window.delay > 1000
+        window.delay < 1000 + HedgingRpcCallAdapter.WINDOW
+    }
+
+    def "Closes delegate"() {
+        setup:
+        def delegate = Mock(RpcCallAdapter)
+        def onClose = Mock(Runnable)
+        def adapter = HedgingRpcCallAdapter.newBuilder()
+                .delegate(delegate)
+                .onClose(onClose)
+                .build()
+        when:
+        adapter.close()
+        then:
+        1 * onClose.run()
+        1 * delegate.close()
+
+        when:
+        adapter.produceRpcFuture(RpcCall.create(String, "system_chain")).get()
+        then:
+        def t = thrown(ExecutionException)
+        t.cause instanceof IllegalStateException
+    }
+
+    static class StubAdapter implements RpcCallAdapter {
+        List<RpcCall> calls = []
+        List<CompletableFuture> futures = []
+        boolean pending = false
+
+        @Override
+        def <T> CompletableFuture<T> produceRpcFuture(RpcCall<T> call) {
+            calls.add(call)
+            def f = new CompletableFuture()
+            futures.add(f)
+            if (!pending) {
+                f.complete("test")
+            }
+            return f
+        }
+
+        @Override
+        void close() {
+        }
+    }
+}
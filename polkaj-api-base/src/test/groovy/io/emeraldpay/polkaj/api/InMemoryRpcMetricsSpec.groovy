@@ -0,0 +1,80 @@
+package io.emeraldpay.polkaj.api
+
+import spock.lang.Specification
+
+import java.net.http.HttpTimeoutException
+import java.util.concurrent.CompletionException
+
+class InMemoryRpcMetricsSpec extends Specification {
+
+    def "Records request"() {
+        setup:
+        def metrics = new InMemoryRpcMetrics()
+        when:
+        metrics.onRequest("chain_getBlock")
+        metrics.onRequestBytes("chain_getBlock", 100)
+        then:
+        metrics.inFlight == 1
+        metrics.get("chain_getBlock").inFlight == 1
+        metrics.get("chain_getBlock").latency.count == 0
+
+        when:
+        metrics.onResponseBytes("chain_getBlock", 2000)
+        metrics.onDecode("chain_getBlock", 50_000)
+        metrics.onResponse("chain_getBlock", 1_000_000, null)
+        def act = metrics.get("chain_getBlock")
+        then:
+        metrics.inFlight == 0
+        act.latency.count == 1
+        act.latency.max == 1_000_000
+        act.decodeTime.max == 50_000
+        act.requestBytes == 100
+        act.responseBytes == 2000
+        act.errors.isEmpty()
+    }
+
+    def "Records errors by code"() {
+        setup:
+        def metrics = new InMemoryRpcMetrics()
+        when:
+        3.times { metrics.onRequest("test_foo") }
+        metrics.onResponse("test_foo", 1000, new RpcException(-32601, "Method not found"))
+        metrics.onResponse("test_foo", 1000, new CompletionException(new RpcException(-32601, "Method not found")))
+        metrics.onResponse("test_foo", 1000, new HttpTimeoutException("timeout"))
+        then:
+        metrics.get("test_foo").errors == ["-32601": 2L, "HttpTimeoutException": 1L]
+        metrics.get("test_foo").latency.count == 3
+    }
+
+    def "Records subscription events"() {
+        setup:
+        def metrics = new InMemoryRpcMetrics()
+        when:
+        5.times { metrics.onSubscriptionEvent("chain_newHead") }
+        then:
+        metrics.get("chain_newHead").subscriptionEvents == 5
+        metrics.get("chain_getBlock") == null
+    }
+
+    def "Records subscription queue"() {
+        setup:
+        def metrics = new InMemoryRpcMetrics()
+        when:
+        3.times { metrics.onSubscriptionQueue("chain_newHead", 1) }
+        metrics.onSubscriptionQueue("chain_newHead", -1)
+        2.times { metrics.onSubscriptionDropped("chain_newHead") }
+        then:
+        metrics.get("chain_newHead").subscriptionQueue == 2
+        metrics.get("chain_newHead").subscriptionDropped == 2
+    }
+
+    def "Lists methods sorted"() {
+        setup:
+        def metrics = new InMemoryRpcMetrics()
+        when:
+        metrics.onSubscriptionEvent("state_storage")
+        metrics.onSubscriptionEvent("chain_newHead")
+        then:
+        metrics.methods.keySet().toList() == ["chain_newHead", "state_storage"]
+    }
+}
@@ -0,0 +1,72 @@
+package io.emeraldpay.polkaj.api
+
+import spock.lang.Specification
+
+class LatencyHistogramSpec extends Specification {
+
+    def "Empty histogram"() {
+        when:
+        def act = new LatencyHistogram()
+        then:
+        act.count == 0
+        act.sum == 0
+        act.max == 0
+        act.mean == 0
+        act.getValueAtPercentile(99) == 0
+    }
+
+    def "Records exact small values"() {
+        setup:
+        def act = new LatencyHistogram()
+        when:
+        (1..10).each { act.record(it) }
+        then:
+        act.count == 10
+        act.sum == 55
+        act.max == 10
+        act.mean == 5.5d
+        act.getValueAtPercentile(50) == 5
+        act.getValueAtPercentile(90) == 9
+        act.getValueAtPercentile(100) == 10
+    }
+
+    def "Percentile is within 3%"() {
+        setup:
+        def act = new LatencyHistogram()
+        when:
+        (1..10000).each { act.record(it * 1000L) }
+        then:
+        Math.abs(act.getValueAtPercentile(50) - 5_000_000) <= 5_000_000 * 0.03
+        Math.abs(act.getValueAtPercentile(99) - 9_900_000) <= 9_900_000 * 0.03
+        act.getValueAtPercentile(100) == 10_000_000
+    }
+
+    def "Bucket covers its values"() {
+        expect:
+        LatencyHistogram.highestEquivalentValue(LatencyHistogram.index(value)) >= value
+        LatencyHistogram.index(LatencyHistogram.highestEquivalentValue(LatencyHistogram.index(value))) == LatencyHistogram.index(value)
+        LatencyHistogram.index(LatencyHistogram.highestEquivalentValue(LatencyHistogram.index(value)) + 1) == LatencyHistogram.index(value) + 1
+        where:
+        value << [0L, 1L, 63L, 64L, 65L, 127L, 128L, 1_000L, 1_000_000L, 123_456_789L, 60_000_000_000L]
+    }
+
+    def "Counts large values as max"() {
+        setup:
+        def act = new LatencyHistogram()
+        when:
+        act.record(Long.MAX_VALUE)
+        act.record(-5)
+        then:
+        act.count == 2
+        act.max == Long.MAX_VALUE
+        act.getValueAtPercentile(0) == 0
+        act.getValueAtPercentile(100) > 2_000_000_000_000L
+    }
+
+    def "Cannot get invalid percentile"() {
+        when:
+        new LatencyHistogram().getValueAtPercentile(101)
+        then:
+        thrown(IllegalArgumentException)
+    }
+}
@@ -0,0 +1,494 @@
+package io.emeraldpay.polkaj.api
+
+import io.emeraldpay.polkaj.json.SystemHealthJson
+import io.emeraldpay.polkaj.types.Hash256
+import spock.lang.Specification
+
+import java.time.Duration
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.ScheduledExecutorService
+import java.util.concurrent.ScheduledFuture
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicLong
+
+class LoadBalancingAdapterSpec extends Specification {
+
+    static Hash256 HASH = Hash256.from("0x5d83f66b61701da4cbd7a60137db89c69469a4f798b62aba9176ab253b423828")
+
+    AtomicLong clock = new AtomicLong(0)
+
+    def "Sends to endpoint with least outstanding requests"() {
+        setup:
+        def a = new StubAdapter()
+        def b = new StubAdapter()
+        def adapter = LoadBalancingAdapter.newBuilder()
+                .endpoint("a", a)
+                .endpoint("b", b)
+                .build()
+        when:
+        a.pending = true
+        b.pending = true
+        4.times { adapter.produceRpcFuture(RpcCall.create(String, "system_chain")) }
+        then:
+        a.calls.size() == 2
+        b.calls.size() == 2
+        adapter.endpoints*.outstanding == [2, 2]
+
+        when:
+        a.futures[0].complete("Polkadot")
+        a.futures[1].complete("Polkadot")
+        adapter.produceRpcFuture(RpcCall.create(String, "system_chain"))
+        then:
+        a.calls.size() == 3
+        adapter.endpoints*.outstanding == [1, 2]
+    }
+
+    def "Prefers endpoint with lower latency"() {
+        setup:
+        def a = new StubAdapter(pending: true)
+        def b = new StubAdapter(pending: true)
+        def adapter = LoadBalancingAdapter.newBuilder()
+                .endpoint("a", a)
+                .endpoint("b", b)
+                .strategy(LoadBalancingAdapter.Strategy.EWMA_LATENCY)
+                .clock(clock.&get)
+                .build()
+        when:
+        adapter.produceRpcFuture(RpcCall.create(String, "system_chain"))
+        adapter.produceRpcFuture(RpcCall.create(String, "system_chain"))
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(10))
+        a.futures[0].complete("Polkadot")
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(90))
+        b.futures[0].complete("Polkadot")
+        then:
+        adapter.endpoints*.latency == [TimeUnit.MILLISECONDS.toNanos(10), TimeUnit.MILLISECONDS.toNanos(100)]
+
+        when:
+        5.times { adapter.produceRpcFuture(RpcCall.create(String, "system_chain")) }
+        then:
+        a.calls.size() == 6
+        b.calls.size() == 1
+    }
+
+    def "Spreads load on equal latency"() {
+        setup:
+        def a = new StubAdapter(pending: true)
+        def b = new StubAdapter(pending: true)
+        def adapter = LoadBalancingAdapter.newBuilder()
+                .endpoint("a", a)
+                .endpoint("b", b)
+                .strategy(LoadBalancingAdapter.Strategy.EWMA_LATENCY)
+                .clock(clock.&get)
+                .build()
+        adapter.produceRpcFuture(RpcCall.create(String, "system_chain"))
+        adapter.produceRpcFuture(RpcCall.create(String, "system_chain"))
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(10))
+        a.futures[0].complete("Polkadot")
+        b.futures[0].complete("Polkadot")
+        when:
+        10.times { adapter.produceRpcFuture(RpcCall.create(String, "system_chain")) }
+        then:
+        a.calls.size() == 6
+        b.calls.size() == 6
+    }
+
+    def "Sends calls pinned to the same block to the same endpoint"() {
+        setup:
+        def a = new StubAdapter()
+        def b = new StubAdapter()
+        def c = new StubAdapter()
+        def adapter = LoadBalancingAdapter.newBuilder()
+                .endpoint(a)
+                .endpoint(b)
+                .endpoint(c)
+                .build()
+        when:
+        10.times { adapter.produceRpcFuture(StandardCommands.getInstance().getBlock(HASH)) }
+        then:
+        [a, b, c].count { it.calls.size() == 10 } == 1
+        [a, b, c].count { it.calls.isEmpty() } == 2
+
+        when:
+        100.times { i ->
+            def hash = Hash256.from(String.format("0x%064x", i))
+            adapter.produceRpcFuture(StandardCommands.getInstance().getBlock(hash))
+        }
+        then:
+        [a, b, c].every { it.calls.size() > 10 }
+    }
+
+    def "Sends identical call in flight to another endpoint"() {
+        setup:
+        def a = new StubAdapter(pending: true)
+        def b = new StubAdapter(pending: true)
+        def adapter = LoadBalancingAdapter.newBuilder()
+                .endpoint(a)
+                .endpoint(b)
+                .build()
+        def call = StandardCommands.getInstance().getBlock(HASH)
+        when:
+        adapter.produceRpcFuture(call)
+        adapter.produceRpcFuture(call)
+        then:
+        a.calls.size() == 1
+        b.calls.size() == 1
+    }
+
+    def "Cancels upstream request"() {
+        setup:
+        def a = new StubAdapter(pending: true)
+        def adapter = LoadBalancingAdapter.newBuilder()
+                .endpoint("a", a)
+                .ejectAfter(1)
+                .build()
+        when:
+        def f = adapter.produceRpcFuture(RpcCall.create(String, "system_chain"))
+        f.cancel(false)
+        then:
+        a.futures[0].cancelled
+        adapter.endpoints[0].outstanding == 0
+        !adapter.endpoints[0].ejected
+    }
+
+    def "Doesn't pin blocks when disabled"() {
+        setup:
+        def a = new StubAdapter()
+        def b = new StubAdapter()
+        def adapter = LoadBalancingAdapter.newBuilder()
+                .endpoint(a)
+                .endpoint(b)
+                .stickyBlocks(false)
+                .build()
+        when:
+        10.times { adapter.produceRpcFuture(StandardCommands.getInstance().getBlock(HASH)) }
+        then:
+        a.calls.size() == 5
+        b.calls.size() == 5
+    }
+
+    def "Ejects failing endpoint"() {
+        setup:
+        def a = new StubAdapter(error: new IOException("Connection refused"))
+        def b = new StubAdapter()
+        def adapter = LoadBalancingAdapter.newBuilder()
+                .endpoint("a", a)
+                .endpoint("b", b)
+                .ejectAfter(2)
+                .ejectFor(Duration.ofSeconds(10))
+                .clock(clock.&get)
+                .build()
+        when:
+        10.times { adapter.produceRpcFuture(RpcCall.create(String, "system_chain")) }
+        then:
+        a.calls.size() == 2
+        b.calls.size() == 8
+        adapter.endpoints[0].ejected
+        adapter.endpoints[0].ejections == 1
+
+        when: "ejection expires, and it fails again"
+        clock.addAndGet(Duration.ofSeconds(10).toNanos())
+        10.times { adapter.produceRpcFuture(RpcCall.create(String, "system_chain")) }
+        then:
+        a.calls.size() == 3
+        b.calls.size() == 17
+        adapter.endpoints[0].ejections == 2
+
+        when: "ejection expires, and it's recovered"
+        a.error = null
+        clock.addAndGet(Duration.ofSeconds(10).toNanos())
+        10.times { adapter.produceRpcFuture(RpcCall.create(String, "system_chain")) }
+        then:
+        a.calls.size() == 8
+        !adapter.endpoints[0].ejected
+    }
+
+    def "Uses ejected endpoints when all are ejected"() {
+        setup:
+        def a = new StubAdapter(error: new IOException("Connection refused"))
+        def adapter = LoadBalancingAdapter.newBuilder()
+                .endpoint("a", a)
+                .ejectAfter(1)
+                .build()
+        when:
+        3.times { adapter.produceRpcFuture(RpcCall.create(String, "system_chain")) }
+        then:
+        a.calls.size() == 3
+        adapter.endpoints[0].ejected
+    }
+
+    def "Doesn't eject on RPC error"() {
+        setup:
+        def a = new StubAdapter(error: new RpcException(-32602, "Invalid params"))
+        def b = new StubAdapter()
+        def adapter = LoadBalancingAdapter.newBuilder()
+                .endpoint("a", a)
+                .endpoint("b", b)
+                .ejectAfter(1)
+                .build()
+        when:
+        def f = adapter.produceRpcFuture(RpcCall.create(String, "system_chain"))
+        4.times { adapter.produceRpcFuture(RpcCall.create(String, "system_chain")) }
+        f.get()
+        then:
+        def t = thrown(ExecutionException)
+        t.cause instanceof RpcException
+        a.calls.size() == 3
+        !adapter.endpoints[0].ejected
+    }
+
+    def "Ejects on HTTP error"() {
+        setup:
+        def a = new StubAdapter(error: new RpcException(-32000, "Server returned error status: 503"))
+        def b = new StubAdapter()
+        def adapter = LoadBalancingAdapter.newBuilder()
+                .endpoint("a", a)
+                .endpoint("b", b)
+                .ejectAfter(1)
+                .build()
+        when:
+        4.times { adapter.produceRpcFuture(RpcCall.create(String, "system_chain")) }
+        then:
+        a.calls.size() == 1
+        adapter.endpoints[0].ejected
+    }
+
+    def "Doesn't send to unhealthy endpoint"() {
+        setup:
+        def a = new StubAdapter(health: new SystemHealthJson(syncing: true, peers: 5, shouldHavePeers: true))
+        def b = new StubAdapter(health: new SystemHealthJson(syncing: false, peers: 5, shouldHavePeers: true))
+        def adapter = LoadBalancingAdapter.newBuilder()
+                .endpoint("a", a)
+                .endpoint("b", b)
+                .build()
+        when:
+        adapter.checkHealth().get()
+        4.times { adapter.produceRpcFuture(RpcCall.create(String, "system_chain")) }
+        then:
+        !adapter.endpoints[0].healthy
+        adapter.endpoints[1].healthy
+        a.calls.size() == 1
+        b.calls.size() == 5
+
+        when:
+        a.health = new SystemHealthJson(syncing: false, peers: 5, shouldHavePeers: true)
+        adapter.checkHealth().get()
+        4.times { adapter.produceRpcFuture(RpcCall.create(String, "system_chain")) }
+        then:
+        adapter.endpoints[0].healthy
+        a.calls.size() == 4
+    }
+
+    def "Failed health check makes endpoint unhealthy"() {
+        setup:
+        def a = new StubAdapter(error: new IOException("Connection refused"))
+        def b = new StubAdapter()
+        def adapter = LoadBalancingAdapter.newBuilder()
+                .endpoint("a", a)
+                .endpoint("b", b)
+                .build()
+        when:
+        adapter.checkHealth().get()
+        then:
+        !adapter.endpoints[0].healthy
+        adapter.endpoints[1].healthy
+    }
+
+    def "Successful health check closes circuit breaker"() {
+        setup:
+        def a = new StubAdapter(error: new IOException("Connection refused"))
+        def b = new StubAdapter()
+        def adapter = LoadBalancingAdapter.newBuilder()
+                .endpoint("a", a)
+                .endpoint("b", b)
+                .ejectAfter(1)
+                .build()
+        adapter.produceRpcFuture(RpcCall.create(String, "system_chain"))
+        when:
+        a.error = null
+        adapter.checkHealth().get()
+        then:
+        !adapter.endpoints[0].ejected
+        adapter.endpoints[0].circuitBreaker.state == CircuitBreaker.State.CLOSED
+    }
+
+    def "Runs health check periodically"() {
+        setup:
+        def scheduler = Mock(ScheduledExecutorService)
+        def future = Mock(ScheduledFuture)
+        def task = null
+        when:
+        def adapter = LoadBalancingAdapter.newBuilder()
+                .endpoint(new StubAdapter())
+                .healthCheck(Duration.ofSeconds(15))
+                .scheduler(scheduler)
+                .build()
+        then:
+        1 * scheduler.scheduleWithFixedDelay(_, 0, Duration.ofSeconds(15).toNanos(), TimeUnit.NANOSECONDS) >> { args ->
+            task = args[0]
+            return future
+        }
+
+        when:
+        task.run()
+        then:
+        adapter.endpoints[0].health != null
+    }
+
+    def "Default health condition"() {
+        expect:
+        LoadBalancingAdapter.isHealthy(new SystemHealthJson(syncing: syncing, peers: peers, shouldHavePeers: shouldHavePeers)) == healthy
+        where:
+        syncing | peers | shouldHavePeers | healthy
+        false   | 5     | true            | true
+        true    | 5     | true            | false
+        false   | 0     | true            | false
+        false   | 0     | false           | true
+        null    | null  | null            | true
+    }
+
+    def "Sends batch to a single endpoint"() {
+        setup:
+        def a = new StubAdapter(pending: true)
+        def b = new StubAdapter(pending: true)
+        def adapter = LoadBalancingAdapter.newBuilder()
+                .endpoint("a", a)
+                .endpoint("b", b)
+                .build()
+        when:
+        adapter.produceRpcFutures([
+                RpcCall.create(String, "system_chain"),
+                RpcCall.create(String, "system_name"),
+                RpcCall.create(String, "system_version")
+        ])
+        then:
+        a.calls.size() == 3
+        b.calls.isEmpty()
+        adapter.endpoints*.outstanding == [3, 0]
+
+        when:
+        a.futures.each { it.complete("test") }
+        then:
+        adapter.endpoints*.outstanding == [0, 0]
+    }
+
+    def "Keeps subscriptions on the same endpoint"() {
+        setup:
+        def http = Mock(RpcCallAdapter)
+        def a = new StubAdapter()
+        def b = new StubAdapter()
+        def adapter = LoadBalancingAdapter.newBuilder()
+                .endpoint("http", http)
+                .endpoint("a", a)
+                .endpoint("b", b)
+                .build()
+        when:
+        def subs = (0..<4).collect {
+            adapter.subscribe(StandardSubscriptions.getInstance().newHeads()).get()
+        }
+        then:
+        0 * http._
+        [a, b].count { it.subscribed.size() == 4 } == 1
+        subs.every { it != null }
+    }
+
+    def "Moves subscriptions from ejected endpoint"() {
+        setup:
+        def a = new StubAdapter()
+        def b = new StubAdapter()
+        def adapter = LoadBalancingAdapter.newBuilder()
+                .endpoint("a", a)
+                .endpoint("b", b)
+                .ejectAfter(1)
+                .build()
+        adapter.subscribe(StandardSubscriptions.getInstance().newHeads()).get()
+        def current = a.subscribed.size() == 1 ? a : b
+        def other = current == a ? b : a
+        when:
+        current.error = new IOException("Connection closed")
+        adapter.subscribe(StandardSubscriptions.getInstance().newHeads())
+        adapter.subscribe(StandardSubscriptions.getInstance().newHeads()).get()
+        then:
+        current.subscribed.size() == 2
+        other.subscribed.size() == 1
+    }
+
+    def "Fails subscription without subscription endpoints"() {
+        setup:
+        def adapter = LoadBalancingAdapter.newBuilder()
+                .endpoint(Mock(RpcCallAdapter))
+                .build()
+        when:
+        adapter.subscribe(StandardSubscriptions.getInstance().newHeads()).get()
+        then:
+        def t = thrown(ExecutionException)
+        t.cause instanceof UnsupportedOperationException
+    }
+
+    def "Closes all endpoints"() {
+        setup:
+        def a = Mock(RpcCallAdapter)
+        def b = Mock(RpcCallAdapter)
+        def onClose = Mock(Runnable)
+        def adapter = LoadBalancingAdapter.newBuilder()
+                .endpoint(a)
+                .endpoint(b)
+                .onClose(onClose)
+                .build()
+        when:
+        adapter.close()
+        then:
+        1 * onClose.run()
+        1 * a.close()
+        1 * b.close()
+
+        when:
+        adapter.produceRpcFuture(RpcCall.create(String, "system_chain")).get()
+        then:
+        def t = thrown(ExecutionException)
+        t.cause instanceof IllegalStateException
+    }
+
+    def "Requires endpoints"() {
+        when:
+        LoadBalancingAdapter.newBuilder().build()
+        then:
+        thrown(IllegalStateException)
+    }
+
+    static class StubAdapter implements SubscriptionAdapter {
+        List<RpcCall> calls = []
+        List<SubscribeCall> subscribed = []
+        List<CompletableFuture> futures = []
+        boolean pending = false
+        Throwable error = null
+        SystemHealthJson health = new SystemHealthJson(syncing: false, peers: 1, shouldHavePeers: true)
+
+        @Override
+        def <T> CompletableFuture<T> produceRpcFuture(RpcCall<T> call) {
+            calls.add(call)
+            return respond(call.method == PolkadotMethod.SYSTEM_HEALTH ? health : "test")
+        }
+
+        @Override
+        def <T> CompletableFuture<Subscription<T>> subscribe(SubscribeCall<T> call) {
+            subscribed.add(call)
+            return respond([handler: {}, close: {}] as Subscription)
+        }
+
+        private CompletableFuture respond(Object value) {
+            def f = new CompletableFuture()
+            futures.add(f)
+            if (error != null) {
+                f.completeExceptionally(error)
+            } else if (!pending) {
+                f.complete(value)
+            }
+            return f
+        }
+
+        @Override
+        void close() {
+        }
+    }
+}
@@ -2,6 +2,7 @@ package io.emeraldpay.polkaj.api
 
 import spock.lang.Specification
 
+import java.util.concurrent.CompletableFuture
 import java.util.concurrent.ExecutionException
 
 class PolkadotApiSpec extends Specification{
@@ -154,4 +155,74 @@ class PolkadotApiSpec extends Specification{
     def "returns StandardCommands shortcut"(){
         assert PolkadotApi.commands() == StandardCommands.getInstance();
     }
+
+    def "uses RpcCallAdapter when batch is executed"(){
+        setup:
+        def polkadotApi = PolkadotApi.newBuilder()
+                .rpcCallAdapter(rpcCallAdapter)
+                .onClose(onClose)
+                .build()
+        def calls = [RpcCall.create(String, "test"), RpcCall.create(Integer, "test2")]
+        when:
+        polkadotApi.execute(calls)
+        then:
+        1 * rpcCallAdapter.produceRpcFutures(calls)
+    }
+
+    def "batch execution when closed causes exception for each call"(){
+        setup:
+        def polkadotApi = PolkadotApi.newBuilder()
+                .rpcCallAdapter(rpcCallAdapter)
+                .onClose(onClose)
+                .build()
+        def calls = [RpcCall.create(String, "test"), RpcCall.create(Integer, "test2")]
+        polkadotApi.close()
+        when:
+        def act = polkadotApi.execute(calls)
+        then:
+        0 * rpcCallAdapter.produceRpcFutures(_)
+        act.size() == 2
+        act.every { it.isCompletedExceptionally() }
+    }
+
+    def "default batch implementation executes each call"(){
+        setup:
+        def adapter = new RpcCallAdapter() {
+            @Override
+            <T> CompletableFuture<T> produceRpcFuture(RpcCall<T> call) {
+                return CompletableFuture.completedFuture((T) call.method)
+            }
+
+            @Override
+            void close() {
+            }
+        }
+        when:
+        def act = adapter.produceRpcFutures([RpcCall.create(String, "test"), RpcCall.create(String, "test2")])
+        then:
+        act*.get() == ["test", "test2"]
+    }
+
+    def "default batch execution of api executes each call"(){
+        setup:
+        def api = new PolkadotApi() {
+            @Override
+            <T> CompletableFuture<T> execute(RpcCall<T> call) {
+                return CompletableFuture.completedFuture((T) call.method)
+            }
+
+            @Override
+            <T> CompletableFuture<Subscription<T>> subscribe(SubscribeCall<T> call) {
+                return null
+            }
+
+            @Override
+            void close() {
+            }
+        }
+        when:
+        def act = api.execute([RpcCall.create(String, "test"), RpcCall.create(String, "test2")])
+        then:
+        act*.get() == ["test", "test2"]
+    }
 }
@@ -0,0 +1,36 @@
+package io.emeraldpay.polkaj.api
+
+import spock.lang.Specification
+
+class PolkadotMethodSpec extends Specification {
+
+    def "Read methods are idempotent"() {
+        expect:
+        PolkadotMethod.isIdempotent(method)
+        where:
+        method << [
+                PolkadotMethod.CHAIN_GET_BLOCK,
+                PolkadotMethod.CHAIN_GET_FINALIZED_HEAD,
+                PolkadotMethod.STATE_GET_STORAGE,
+                PolkadotMethod.STATE_CALL,
+                PolkadotMethod.SYSTEM_HEALTH,
+                PolkadotMethod.ACCOUNT_NEXT_INDEX,
+                "state_getChildStorage"
+        ]
+    }
+
+    def "Methods changing the node state are not idempotent"() {
+        expect:
+        !PolkadotMethod.isIdempotent(method)
+        where:
+        method << [
+                PolkadotMethod.AUTHOR_SUBMIT_EXTRINSIC,
+                PolkadotMethod.AUTHOR_REMOVE_EXTRINSIC,
+                PolkadotMethod.AUTHOR_INSERT_KEY,
+                PolkadotMethod.AUTHOR_ROTATE_KEYS,
+                PolkadotMethod.SYSTEM_ADD_RESERVED_PEER,
+                PolkadotMethod.CHAIN_SUBSCRIBE_NEW_HEADS,
+                "unknown_method"
+        ]
+    }
+}
@@ -0,0 +1,72 @@
+package io.emeraldpay.polkaj.api
+
+import spock.lang.Specification
+
+class PrometheusTextWriterSpec extends Specification {
+
+    def "Writes metrics"() {
+        setup:
+        def metrics = new InMemoryRpcMetrics()
+        metrics.onRequest("system_chain")
+        metrics.onRequestBytes("system_chain", 60)
+        metrics.onResponseBytes("system_chain", 50)
+        metrics.onDecode("system_chain", 20_000)
+        metrics.onResponse("system_chain", 2_000_000, null)
+        metrics.onRequest("test_foo")
+        metrics.onResponse("test_foo", 1_000_000, new RpcException(-32601, "Method not found"))
+        metrics.onSubscriptionEvent("chain_newHead")
+        metrics.onSubscriptionEvent("chain_newHead")
+        metrics.onSubscriptionQueue("chain_newHead", 1)
+        metrics.onSubscriptionDropped("chain_newHead")
+        when:
+        def act = new PrometheusTextWriter(metrics).format()
+        def lines = act.readLines()
+        then:
+        lines.contains("# TYPE polkaj_rpc_latency_seconds summary")
+        lines.contains('polkaj_rpc_latency_seconds{method="system_chain",quantile="0.5"} 0.002')
+        lines.contains('polkaj_rpc_latency_seconds_sum{method="system_chain"} 0.002')
+        lines.contains('polkaj_rpc_latency_seconds_count{method="system_chain"} 1')
+        lines.contains('polkaj_rpc_latency_seconds_count{method="test_foo"} 1')
+        lines.contains('polkaj_rpc_decode_seconds_count{method="system_chain"} 1')
+        lines.contains('polkaj_rpc_in_flight{method="system_chain"} 0')
+        lines.contains('polkaj_rpc_request_bytes_total{method="system_chain"} 60')
+        lines.contains('polkaj_rpc_response_bytes_total{method="system_chain"} 50')
+        lines.contains('polkaj_rpc_errors_total{method="test_foo",code="-32601"} 1')
+        lines.contains('polkaj_subscription_events_total{method="chain_newHead"} 2')
+        lines.contains('polkaj_subscription_queue{method="chain_newHead"} 1')
+        lines.contains('polkaj_subscription_dropped_total{method="chain_newHead"} 1')
+        !act.contains('polkaj_subscription_queue{method="system_chain"}')
+        // subscription doesn't have rpc metrics
+        !act.contains('polkaj_rpc_in_flight{method="chain_newHead"}')
+        act.endsWith("\n")
+    }
+
+    def "Every metric has help and type"() {
+        setup:
+        def metrics = new InMemoryRpcMetrics()
+        when:
+        def act = new PrometheusTextWriter(metrics, "test").format().readLines()
+        then:
+        act.size() == 18
+        act.findAll { it.startsWith("# TYPE test_") }.size() == 9
+        act.findAll { it.startsWith("# HELP test_") }.size() == 9
+    }
+
+    def "Escapes label values"() {
+        expect:
+        PrometheusTextWriter.escape(value) == exp
+        where:
+        value           | exp
+        'test_foo'      | 'test_foo'
+        'a"b'           | 'a\\"b'
+        'a\\b'          | 'a\\\\b'
+        'a\nb'          | 'a\\nb'
+    }
+
+    def "Cannot use invalid namespace"() {
+        when:
+        new PrometheusTextWriter(new InMemoryRpcMetrics(), "my-app")
+        then:
+        thrown(IllegalArgumentException)
+    }
+}
@@ -0,0 +1,175 @@
+package io.emeraldpay.polkaj.api
+
+import io.emeraldpay.polkaj.types.ByteData
+import spock.lang.Specification
+
+import java.time.Duration
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.ScheduledExecutorService
+import java.util.concurrent.TimeUnit
+
+class RetryingRpcCallAdapterSpec extends Specification {
+
+    RpcCallAdapter delegate = Mock()
+    ScheduledExecutorService scheduler = Mock()
+    List<Long> delays = []
+
+    def setup() {
+        // run retries immediately
+        scheduler.schedule(_ as Runnable, _ as Long, _ as TimeUnit) >> { Runnable task, long delay, TimeUnit unit ->
+            delays.add(delay)
+            task.run()
+            return null
+        }
+    }
+
+    static <T> CompletableFuture<T> failed(Throwable t) {
+        def f = new CompletableFuture<T>()
+        f.completeExceptionally(t)
+        return f
+    }
+
+    def "Retries unavailable node"() {
+        setup:
+        def adapter = RetryingRpcCallAdapter.newBuilder()
+                .delegate(delegate)
+                .scheduler(scheduler)
+                .build()
+        def call = RpcCall.create(String, "system_chain")
+        when:
+        def act = adapter.produceRpcFuture(call).get()
+        then:
+        2 * delegate.produceRpcFuture(call) >>> [failed(new IOException("Connection refused")), CompletableFuture.completedFuture("Polkadot")]
+        act == "Polkadot"
+        adapter.retries == 1
+        delays.size() == 1
+    }
+
+    def "Retries HTTP error status"() {
+        setup:
+        def adapter = RetryingRpcCallAdapter.newBuilder()
+                .delegate(delegate)
+                .scheduler(scheduler)
+                .build()
+        def call = RpcCall.create(String, "system_chain")
+        when:
+        def act = adapter.produceRpcFuture(call).get()
+        then:
+        2 * delegate.produceRpcFuture(call) >>> [failed(new RpcException(-32000, "Server returned error status: 503")), CompletableFuture.completedFuture("Polkadot")]
+        act == "Polkadot"
+    }
+
+    def "Doesn't retry RPC error"() {
+        setup:
+        def adapter = RetryingRpcCallAdapter.newBuilder()
+                .delegate(delegate)
+                .scheduler(scheduler)
+                .build()
+        def call = RpcCall.create(String, "system_chain")
+        when:
+        adapter.produceRpcFuture(call).get()
+        then:
+        1 * delegate.produceRpcFuture(call) >> failed(new RpcException(-32602, "Invalid params"))
+        def t = thrown(ExecutionException)
+        t.cause instanceof RpcException
+    }
+
+    def "Never retries extrinsic submit"() {
+        setup:
+        def adapter = RetryingRpcCallAdapter.newBuilder()
+                .delegate(delegate)
+                .scheduler(scheduler)
+                .build()
+        def call = StandardCommands.getInstance().authorSubmitExtrinsic(ByteData.from("0x0102"))
+        when:
+        adapter.produceRpcFuture(call).get()
+        then:
+        1 * delegate.produceRpcFuture(call) >> failed(new IOException("Connection reset"))
+        def t = thrown(ExecutionException)
+        t.cause instanceof IOException
+    }
+
+    def "Stops after max attempts"() {
+        setup:
+        def adapter = RetryingRpcCallAdapter.newBuilder()
+                .delegate(delegate)
+                .scheduler(scheduler)
+                .maxAttempts(4)
+                .build()
+        def call = RpcCall.create(String, "system_chain")
+        when:
+        adapter.produceRpcFuture(call).get()
+        then:
+        4 * delegate.produceRpcFuture(call) >> { failed(new IOException("Connection refused")) }
+        thrown(ExecutionException)
+        adapter.retries == 3
+    }
+
+    def "Stops when budget is exhausted"() {
+        setup:
+        def adapter = RetryingRpcCallAdapter.newBuilder()
+                .delegate(delegate)
+                .scheduler(scheduler)
+                .maxAttempts(2)
+                .budget(0.1)
+                .build()
+        def call = RpcCall.create(String, "system_chain")
+        when:
+        20.times {
+            adapter.produceRpcFuture(call).handle { v, t -> null }.get()
+        }
+        then:
+        _ * delegate.produceRpcFuture(call) >> { failed(new IOException("Connection refused")) }
+        // initial burst of 10, plus 0.1 for each call
+        adapter.retries == 11
+        adapter.overBudget == 9
+    }
+
+    def "Backoff grows exponentially with jitter"() {
+        setup:
+        def adapter = RetryingRpcCallAdapter.newBuilder()
+                .delegate(delegate)
+                .backoff(Duration.ofMillis(100), Duration.ofSeconds(1))
+                .build()
+        expect:
+        (0..<100).collect { adapter.backoff(1) }.every { it >= 0 && it <= Duration.ofMillis(100).toNanos() }
+        (0..<100).collect { adapter.backoff(3) }.every { it >= 0 && it <= Duration.ofMillis(400).toNanos() }
+        (0..<100).collect { adapter.backoff(3) }.any { it > Duration.ofMillis(100).toNanos() }
+        (0..<100).collect { adapter.backoff(30) }.every { it >= 0 && it <= Duration.ofSeconds(1).toNanos() }
+    }
+
+    def "Sends batch to delegate"() {
+        setup:
+        def adapter = RetryingRpcCallAdapter.newBuilder()
+                .delegate(delegate)
+                .scheduler(scheduler)
+                .build()
+        def calls = [RpcCall.create(String, "system_chain"), RpcCall.create(String, "system_name")]
+        when:
+        def act = adapter.produceRpcFutures(calls)
+        then:
+        1 * delegate.produceRpcFutures(calls) >> [CompletableFuture.completedFuture("Polkadot"), CompletableFuture.completedFuture("Parity")]
+        act*.get() == ["Polkadot", "Parity"]
+    }
+
+    def "Closes delegate"() {
+        setup:
+        def onClose = Mock(Runnable)
+        def adapter = RetryingRpcCallAdapter.newBuilder()
+                .delegate(delegate)
+                .onClose(onClose)
+                .build()
+        when:
+        adapter.close()
+        then:
+        1 * onClose.run()
+        1 * delegate.close()
+
+        when:
+        adapter.produceRpcFuture(RpcCall.create(String, "system_chain")).get()
+        then:
+        def t = thrown(ExecutionException)
+        t.cause instanceof IllegalStateException
+    }
+}
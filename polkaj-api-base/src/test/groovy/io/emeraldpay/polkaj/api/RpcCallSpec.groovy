@@ -186,4 +186,28 @@ class RpcCallSpec extends Specification {
         a != b
     }
 
+    def "Normal priority by default"() {
+        when:
+        def act = RpcCall.create(Integer.class, "test_foo")
+        then:
+        act.priority == CallPriority.NORMAL
+    }
+
+    def "Priority is not part of equality"() {
+        when:
+        def a = RpcCall.create(Integer.class, "test_foo", 1).priority(CallPriority.BULK)
+        def b = RpcCall.create(Integer.class, "test_foo", 1).priority(CallPriority.HIGH)
+        then:
+        a.priority == CallPriority.BULK
+        a == b
+        a.hashCode() == b.hashCode()
+    }
+
+    def "Cannot set null priority"() {
+        when:
+        RpcCall.create(Integer.class, "test_foo").priority(null)
+        then:
+        thrown(NullPointerException)
+    }
+
 }
@@ -6,6 +6,7 @@ import io.emeraldpay.polkaj.json.BlockResponseJson
 import io.emeraldpay.polkaj.json.jackson.PolkadotModule
 import spock.lang.Specification
 
+import java.nio.charset.StandardCharsets
 import java.util.concurrent.CompletionException
 
 class RpcCoderSpec extends Specification {
@@ -135,4 +136,125 @@ class RpcCoderSpec extends Specification {
         }
     }
 
+    def "Decode from bytes"() {
+        setup:
+        def response = '{"jsonrpc":"2.0","result":"0x5d83f66b61701da4cbd7a60137db89c69469a4f798b62aba9176ab253b423828","id":0}'
+        when:
+        def act = rpcCoder.decode(0, response.getBytes(StandardCharsets.UTF_8), rpcCoder.responseType(Hash256))
+        then:
+        act == Hash256.from("0x5d83f66b61701da4cbd7a60137db89c69469a4f798b62aba9176ab253b423828")
+    }
+
+    def "Decode from stream"() {
+        setup:
+        def response = '{"jsonrpc":"2.0","result":"Parity Polkadot","id":3}'
+        when:
+        def act = rpcCoder.decode(3, new ByteArrayInputStream(response.getBytes(StandardCharsets.UTF_8)), rpcCoder.responseType(String))
+        then:
+        act == "Parity Polkadot"
+    }
+
+    def "Decode from parser"() {
+        setup:
+        def response = '{"jsonrpc":"2.0","result":"Parity Polkadot","id":3}'
+        def parser = rpcCoder.objectMapper.getFactory().createParser(response)
+        when:
+        def act = rpcCoder.decode(3, parser, rpcCoder.responseType(String))
+        then:
+        act == "Parity Polkadot"
+    }
+
+    def "Fail to decode if invalid json bytes"() {
+        setup:
+        def response = '{\n  "jsonrpc": "2'.getBytes(StandardCharsets.UTF_8)
+        when:
+        rpcCoder.decode(1, response, rpcCoder.responseType(String))
+        then:
+        def t = thrown(CompletionException)
+        with((RpcException)t.cause) {
+            code == -32603
+            rpcMessage == "Server returned invalid JSON"
+        }
+    }
+
+    def "Fail to decode if empty stream"() {
+        when:
+        rpcCoder.decode(1, new ByteArrayInputStream(new byte[0]), rpcCoder.responseType(String))
+        then:
+        def t = thrown(CompletionException)
+        with((RpcException)t.cause) {
+            code == -32603
+        }
+    }
+
+    def "Encode batch request"() {
+        when:
+        def act = rpcCoder.encodeBatch([3, 4] as int[], [RpcCall.create(Void.class, "test_foo"), RpcCall.create(Void.class, "test_bar", 1, "x")])
+        then:
+        new String(act) == '[{"jsonrpc":"2.0","id":3,"method":"test_foo","params":[]},{"jsonrpc":"2.0","id":4,"method":"test_bar","params":[1,"x"]}]'
+    }
+
+    def "Fail to encode batch with wrong number of ids"() {
+        when:
+        rpcCoder.encodeBatch([3] as int[], [RpcCall.create(Void.class, "test_foo"), RpcCall.create(Void.class, "test_bar")])
+        then:
+        thrown(IllegalArgumentException)
+    }
+
+    def "Decode batch response in any order"() {
+        setup:
+        def response = '[' +
+                '{"jsonrpc":"2.0","result":12,"id":2},' +
+                '{"jsonrpc":"2.0","error":{"code":-32601,"message":"Method not found"},"id":1},' +
+                '{"jsonrpc":"2.0","result":"0x5d83f66b61701da4cbd7a60137db89c69469a4f798b62aba9176ab253b423828","id":0},' +
+                '{"jsonrpc":"2.0","result":null,"id":3},' +
+                '{"jsonrpc":"2.0","result":"unknown","id":100}' +
+                ']'
+        def types = [
+                0: rpcCoder.responseType(Hash256),
+                1: rpcCoder.responseType(String),
+                2: rpcCoder.responseType(Long),
+                3: rpcCoder.responseType(String),
+        ]
+        when:
+        def act = rpcCoder.decodeBatch(rpcCoder.objectMapper.getFactory().createParser(response), types)
+        then:
+        act.size() == 4
+        act[0].id == 2
+        act[0].result == 12L
+        act[1].id == 1
+        act[1].error.code == -32601
+        act[2].id == 0
+        act[2].result == Hash256.from("0x5d83f66b61701da4cbd7a60137db89c69469a4f798b62aba9176ab253b423828")
+        act[3].id == 3
+        act[3].result == null
+        act[3].error == null
+    }
+
+    def "Fail to decode batch if server rejected it"() {
+        setup:
+        def response = '{"jsonrpc":"2.0","error":{"code":-32600,"message":"Invalid Request"},"id":null}'
+        when:
+        rpcCoder.decodeBatch(rpcCoder.objectMapper.getFactory().createParser(response), [0: rpcCoder.responseType(String)])
+        then:
+        def t = thrown(CompletionException)
+        with((RpcException)t.cause) {
+            code == -32600
+            rpcMessage == "Invalid Request"
+        }
+    }
+
+    def "Fail to decode batch if invalid json"() {
+        setup:
+        def response = '[{"jsonrpc":"2.0","result":12,"id":2},'
+        when:
+        rpcCoder.decodeBatch(rpcCoder.objectMapper.getFactory().createParser(response), [2: rpcCoder.responseType(Long)])
+        then:
+        def t = thrown(CompletionException)
+        with((RpcException)t.cause) {
+            code == -32603
+            rpcMessage == "Server returned invalid JSON"
+        }
+    }
+
 }
@@ -0,0 +1,190 @@
+package io.emeraldpay.polkaj.api
+
+import io.emeraldpay.polkaj.types.Hash256
+import spock.lang.Specification
+
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.ExecutionException
+
+class SingleFlightRpcCallAdapterSpec extends Specification {
+
+    RpcCallAdapter delegate = Mock()
+
+    def "Shares request between identical calls"() {
+        setup:
+        def adapter = SingleFlightRpcCallAdapter.newBuilder().delegate(delegate).build()
+        def response = new CompletableFuture<String>()
+        when:
+        def f1 = adapter.produceRpcFuture(RpcCall.create(String, "chain_getFinalizedHead"))
+        def f2 = adapter.produceRpcFuture(RpcCall.create(String, "chain_getFinalizedHead"))
+        then:
+        1 * delegate.produceRpcFuture(RpcCall.create(String, "chain_getFinalizedHead")) >> response
+        adapter.hits == 1
+        adapter.misses == 1
+        adapter.inFlight == 1
+        !f1.isDone()
+        !f2.isDone()
+
+        when:
+        response.complete("0x01")
+        then:
+        f1.get() == "0x01"
+        f2.get() == "0x01"
+        adapter.inFlight == 0
+    }
+
+    def "Makes a new request after completion"() {
+        setup:
+        def adapter = SingleFlightRpcCallAdapter.newBuilder().delegate(delegate).build()
+        def call = RpcCall.create(String, "chain_getFinalizedHead")
+        when:
+        def r1 = adapter.produceRpcFuture(call).get()
+        def r2 = adapter.produceRpcFuture(call).get()
+        then:
+        2 * delegate.produceRpcFuture(call) >>> [CompletableFuture.completedFuture("0x01"), CompletableFuture.completedFuture("0x02")]
+        r1 == "0x01"
+        r2 == "0x02"
+        adapter.hits == 0
+        adapter.misses == 2
+    }
+
+    def "Doesn't share different calls"() {
+        setup:
+        def adapter = SingleFlightRpcCallAdapter.newBuilder().delegate(delegate).build()
+        def hash = Hash256.from("0x5d83f66b61701da4cbd7a60137db89c69469a4f798b62aba9176ab253b423828")
+        when:
+        adapter.produceRpcFuture(RpcCall.create(String, "chain_getBlock", hash))
+        adapter.produceRpcFuture(RpcCall.create(String, "chain_getHeader", hash))
+        adapter.produceRpcFuture(RpcCall.create(String, "chain_getBlock"))
+        adapter.produceRpcFuture(RpcCall.create(Map, "chain_getBlock", hash))
+        adapter.produceRpcFuture(RpcCall.create(String, "chain_getBlock", hash).expectList())
+        then:
+        5 * delegate.produceRpcFuture(_) >> new CompletableFuture()
+        adapter.hits == 0
+    }
+
+    def "Shares errors"() {
+        setup:
+        def adapter = SingleFlightRpcCallAdapter.newBuilder().delegate(delegate).build()
+        def call = RpcCall.create(String, "chain_getFinalizedHead")
+        def response = new CompletableFuture<String>()
+        delegate.produceRpcFuture(call) >> response
+        def f1 = adapter.produceRpcFuture(call)
+        def f2 = adapter.produceRpcFuture(call)
+        when:
+        response.completeExceptionally(new RpcException(-32000, "Test"))
+        f2.get()
+        then:
+        def t = thrown(ExecutionException)
+        t.cause instanceof RpcException
+        f1.isCompletedExceptionally()
+        adapter.inFlight == 0
+    }
+
+    def "Cancel doesn't affect other callers"() {
+        setup:
+        def adapter = SingleFlightRpcCallAdapter.newBuilder().delegate(delegate).build()
+        def call = RpcCall.create(String, "chain_getFinalizedHead")
+        def response = new CompletableFuture<String>()
+        delegate.produceRpcFuture(call) >> response
+        def f1 = adapter.produceRpcFuture(call)
+        def f2 = adapter.produceRpcFuture(call)
+        when:
+        f1.cancel(true)
+        response.complete("0x01")
+        then:
+        f2.get() == "0x01"
+    }
+
+    def "Sends only new calls of a batch"() {
+        setup:
+        def adapter = SingleFlightRpcCallAdapter.newBuilder().delegate(delegate).build()
+        def call1 = RpcCall.create(String, "system_name")
+        def call2 = RpcCall.create(String, "system_chain")
+        def call3 = RpcCall.create(String, "system_version")
+        def response1 = new CompletableFuture<String>()
+        when:
+        adapter.produceRpcFuture(call1)
+        def act = adapter.produceRpcFutures([call1, call2, call3, call2])
+        then:
+        1 * delegate.produceRpcFuture(call1) >> response1
+        1 * delegate.produceRpcFutures([call2, call3]) >> [CompletableFuture.completedFuture("bar"), CompletableFuture.completedFuture("baz")]
+        act.size() == 4
+        act[1].get() == "bar"
+        act[2].get() == "baz"
+        act[3].get() == "bar"
+        adapter.hits == 2
+        adapter.misses == 3
+
+        when:
+        response1.complete("foo")
+        then:
+        act[0].get() == "foo"
+    }
+
+    def "Fails when closed"() {
+        setup:
+        def adapter = SingleFlightRpcCallAdapter.newBuilder().delegate(delegate).build()
+        when:
+        adapter.close()
+        adapter.produceRpcFuture(RpcCall.create(String, "test_foo")).get()
+        then:
+        1 * delegate.close()
+        def t = thrown(ExecutionException)
+        t.cause instanceof IllegalStateException
+    }
+
+    def "Doesn't share calls changing state"() {
+        setup:
+        def adapter = SingleFlightRpcCallAdapter.newBuilder().delegate(delegate).build()
+        def call = RpcCall.create(String, "author_rotateKeys")
+        when:
+        adapter.produceRpcFuture(call)
+        adapter.produceRpcFuture(call)
+        adapter.produceRpcFutures([call, call])
+        then:
+        2 * delegate.produceRpcFuture(call) >> new CompletableFuture<String>()
+        1 * delegate.produceRpcFutures([call, call]) >> [new CompletableFuture<String>(), new CompletableFuture<String>()]
+        adapter.hits == 0
+        adapter.inFlight == 0
+    }
+
+    def "Uses custom filter"() {
+        setup:
+        def adapter = SingleFlightRpcCallAdapter.newBuilder()
+                .delegate(delegate)
+                .filter { true }
+                .build()
+        def call = RpcCall.create(String, "test_foo")
+        when:
+        adapter.produceRpcFuture(call)
+        adapter.produceRpcFuture(call)
+        then:
+        1 * delegate.produceRpcFuture(call) >> new CompletableFuture<String>()
+        adapter.hits == 1
+    }
+
+    def "Doesn't share a lower priority request"() {
+        setup:
+        def adapter = SingleFlightRpcCallAdapter.newBuilder().delegate(delegate).build()
+        def bulk = RpcCall.create(String, "system_name").priority(CallPriority.BULK)
+        def high = RpcCall.create(String, "system_name").priority(CallPriority.HIGH)
+        def bulkResponse = new CompletableFuture<String>()
+        def highResponse = new CompletableFuture<String>()
+        when:
+        def f1 = adapter.produceRpcFuture(bulk)
+        def f2 = adapter.produceRpcFuture(high)
+        // a lower priority call can use the higher priority request
+        def f3 = adapter.produceRpcFuture(RpcCall.create(String, "system_name").priority(CallPriority.NORMAL))
+        then:
+        2 * delegate.produceRpcFuture(_) >>> [bulkResponse, highResponse]
+        adapter.hits == 1
+
+        when:
+        highResponse.complete("high")
+        then:
+        f2.get() == "high"
+        f3.get() == "high"
+        !f1.isDone()
+    }
+}
@@ -260,6 +260,7 @@ class StandardCommandsSpec extends Specification {
                 ByteData.from("0x0011223344")
         ]
         act.getResultType(typeFactory).getRawClass() == Hash256.class
+        act.priority == CallPriority.HIGH
 
         when:
         StandardCommands.getInstance().authorSubmitExtrinsic(null)
@@ -0,0 +1,236 @@
+package io.emeraldpay.polkaj.api
+
+import io.emeraldpay.polkaj.types.ByteData
+import io.emeraldpay.polkaj.types.Hash256
+import spock.lang.Specification
+
+import java.time.Duration
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.TimeUnit
+import java.util.stream.Collectors
+
+class StorageKeyIteratorSpec extends Specification {
+
+    static Hash256 HASH = Hash256.from("0x5d83f66b61701da4cbd7a60137db89c69469a4f798b62aba9176ab253b423828")
+    static ByteData PREFIX = ByteData.from("0x26aa394eea5630e07c48ae0c9558cef7b99d880ec681799c0cf30e8886371da9")
+
+    PolkadotApi api = Mock()
+
+    static ByteData key(int i) {
+        return ByteData.from(PREFIX.toString() + String.format("%08x", i))
+    }
+
+    static List<ByteData> keys(int from, int count) {
+        return (from..<(from + count)).collect { key(it) }
+    }
+
+    def "Reads all pages"() {
+        setup:
+        def iterator = StorageKeyIterator.newBuilder()
+                .api(api)
+                .prefix(PREFIX)
+                .at(HASH)
+                .pageSize(2, 2, 2)
+                .build()
+        when:
+        def act = iterator.collect()
+        then:
+        1 * api.execute(iterator.pageCall(null, 2)) >> CompletableFuture.completedFuture(keys(0, 2))
+        1 * api.execute(iterator.pageCall(key(1), 2)) >> CompletableFuture.completedFuture(keys(2, 2))
+        1 * api.execute(iterator.pageCall(key(3), 2)) >> CompletableFuture.completedFuture(keys(4, 1))
+        0 * api.execute(_)
+        act == keys(0, 5)
+    }
+
+    def "Makes pinned page calls"() {
+        setup:
+        def iterator = StorageKeyIterator.newBuilder()
+                .api(api)
+                .prefix(PREFIX)
+                .at(HASH)
+                .build()
+        when:
+        def act = iterator.pageCall(key(1), 100)
+        then:
+        act.method == "state_getKeysPaged"
+        act.params.toList() == [PREFIX, 100, key(1), HASH]
+    }
+
+    def "Requests next page before the current is consumed"() {
+        setup:
+        def iterator = StorageKeyIterator.newBuilder()
+                .api(api)
+                .prefix(PREFIX)
+                .at(HASH)
+                .pageSize(2, 2, 2)
+                .build()
+        def second = new CompletableFuture()
+        when:
+        def first = iterator.next()
+        then:
+        1 * api.execute(iterator.pageCall(null, 2)) >> CompletableFuture.completedFuture(keys(0, 2))
+        1 * api.execute(iterator.pageCall(key(1), 2)) >> second
+        first == key(0)
+        !second.done
+    }
+
+    def "Stops on empty page"() {
+        setup:
+        def iterator = StorageKeyIterator.newBuilder()
+                .api(api)
+                .prefix(PREFIX)
+                .at(HASH)
+                .pageSize(2, 2, 2)
+                .build()
+        when:
+        def act = iterator.collect()
+        then:
+        1 * api.execute(iterator.pageCall(null, 2)) >> CompletableFuture.completedFuture(keys(0, 2))
+        1 * api.execute(iterator.pageCall(key(1), 2)) >> CompletableFuture.completedFuture([])
+        act == keys(0, 2)
+        !iterator.hasNext()
+    }
+
+    def "Reads child storage keys"() {
+        setup:
+        def child = ByteData.from("0x3a6368696c645f73746f726167653a64656661756c743a01")
+        def iterator = StorageKeyIterator.newBuilder()
+                .api(api)
+                .child(child)
+                .at(HASH)
+                .pageSize(2, 2, 2)
+                .build()
+        when:
+        def act = iterator.collect()
+        then:
+        1 * api.execute({ RpcCall call ->
+            call.method == "childstate_getKeysPaged" && call.params.toList() == [child, ByteData.empty(), 2, null, HASH]
+        }) >> CompletableFuture.completedFuture(keys(0, 1))
+        act == keys(0, 1)
+    }
+
+    def "Increases page size when fast"() {
+        setup:
+        def iterator = StorageKeyIterator.newBuilder()
+                .api(api)
+                .prefix(PREFIX)
+                .at(HASH)
+                .pageSize(10, 10, 40)
+                .targetLatency(Duration.ofSeconds(10))
+                .build()
+        when:
+        def act = iterator.stream().count()
+        then:
+        1 * api.execute(iterator.pageCall(null, 10)) >> CompletableFuture.completedFuture(keys(0, 10))
+        1 * api.execute(iterator.pageCall(key(9), 20)) >> CompletableFuture.completedFuture(keys(10, 20))
+        1 * api.execute(iterator.pageCall(key(29), 40)) >> CompletableFuture.completedFuture(keys(30, 40))
+        1 * api.execute(iterator.pageCall(key(69), 40)) >> CompletableFuture.completedFuture(keys(70, 5))
+        act == 75
+        iterator.pageSize == 40
+    }
+
+    def "Decreases page size when slow"() {
+        setup:
+        def iterator = StorageKeyIterator.newBuilder()
+                .api(api)
+                .prefix(PREFIX)
+                .at(HASH)
+                .pageSize(10, 40, 40)
+                .targetLatency(Duration.ofMillis(20))
+                .build()
+        when:
+        def act = iterator.stream().count()
+        then:
+        1 * api.execute(iterator.pageCall(null, 40)) >> CompletableFuture.supplyAsync {
+            Thread.sleep(100)
+            keys(0, 40)
+        }
+        1 * api.execute(iterator.pageCall(key(39), 20)) >> CompletableFuture.completedFuture(keys(40, 5))
+        act == 45
+    }
+
+    def "Reads pages without blocking"() {
+        setup:
+        def iterator = StorageKeyIterator.newBuilder()
+                .api(api)
+                .prefix(PREFIX)
+                .at(HASH)
+                .pageSize(2, 2, 2)
+                .build()
+        List<List<ByteData>> pages = []
+        when:
+        def act = iterator.forEachPage { pages.add(it) }.get()
+        then:
+        1 * api.execute(iterator.pageCall(null, 2)) >> CompletableFuture.completedFuture(keys(0, 2))
+        1 * api.execute(iterator.pageCall(key(1), 2)) >> CompletableFuture.completedFuture(keys(2, 1))
+        act == 3
+        pages == [keys(0, 2), keys(2, 1)]
+    }
+
+    def "Reads many pages received immediately"() {
+        setup:
+        def iterator = StorageKeyIterator.newBuilder()
+                .api(api)
+                .prefix(PREFIX)
+                .at(HASH)
+                .pageSize(2, 2, 2)
+                .build()
+        int pages = 0
+        api.execute(_) >> {
+            pages++
+            // a full page for all but the last one
+            CompletableFuture.completedFuture(keys(pages * 2, pages < 20000 ? 2 : 1))
+        }
+        when:
+        def act = iterator.forEachPage { }.get(30, TimeUnit.SECONDS)
+        then:
+        pages == 20000
+        act == 20000 * 2 - 1
+    }
+
+    def "Fails on error"() {
+        setup:
+        def iterator = StorageKeyIterator.newBuilder()
+                .api(api)
+                .prefix(PREFIX)
+                .at(HASH)
+                .pageSize(2, 2, 2)
+                .build()
+        def failed = new CompletableFuture()
+        failed.completeExceptionally(new RpcException(-32602, "Invalid params"))
+        when:
+        iterator.stream().collect(Collectors.toList())
+        then:
+        1 * api.execute(iterator.pageCall(null, 2)) >> CompletableFuture.completedFuture(keys(0, 2))
+        1 * api.execute(iterator.pageCall(key(1), 2)) >> failed
+        thrown(RpcException)
+    }
+
+    def "Stream close stops iteration"() {
+        setup:
+        def iterator = StorageKeyIterator.newBuilder()
+                .api(api)
+                .prefix(PREFIX)
+                .at(HASH)
+                .pageSize(2, 2, 2)
+                .build()
+        def second = new CompletableFuture()
+        when:
+        def stream = iterator.stream()
+        def act = stream.limit(1).collect(Collectors.toList())
+        stream.close()
+        then:
+        1 * api.execute(iterator.pageCall(null, 2)) >> CompletableFuture.completedFuture(keys(0, 2))
+        1 * api.execute(iterator.pageCall(key(1), 2)) >> second
+        act == [key(0)]
+        second.cancelled
+        !iterator.hasNext()
+    }
+
+    def "Requires block hash"() {
+        when:
+        StorageKeyIterator.newBuilder().api(api).prefix(PREFIX).build()
+        then:
+        thrown(NullPointerException)
+    }
+}
@@ -3,20 +3,30 @@ package io.emeraldpay.polkaj.apihttp;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JavaType;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
 import io.emeraldpay.polkaj.api.*;
 import io.emeraldpay.polkaj.json.jackson.PolkadotModule;
 
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.io.IOException;
 import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.function.LongConsumer;
+import java.util.function.Supplier;
 
 /**
  * Default JSON RPC HTTP client for Polkadot API. It uses Java 11 HttpClient implementation for requests.
@@ -41,10 +51,13 @@ public class JavaHttpAdapter implements RpcCallAdapter {
     private final HttpRequest.Builder request;
     private final Runnable onClose;
     private final RpcCoder rpcCoder;
+    private final ConcurrencyLimiter limiter;
+    private final RpcMetrics metrics;
 
     private boolean closed = false;
 
-    private JavaHttpAdapter(URI target, HttpClient httpClient, String basicAuth, Duration timeout, Runnable onClose, RpcCoder rpcCoder) {
+    private JavaHttpAdapter(URI target, HttpClient httpClient, String basicAuth, Duration timeout, Runnable onClose, RpcCoder rpcCoder,
+                            ConcurrencyLimiter limiter, RpcMetrics metrics) {
         this.httpClient = httpClient;
 
         HttpRequest.Builder request = HttpRequest.newBuilder()
@@ -60,6 +73,8 @@ public class JavaHttpAdapter implements RpcCallAdapter {
         this.request = request;
         this.onClose = onClose;
         this.rpcCoder = rpcCoder;
+        this.limiter = limiter;
+        this.metrics = metrics;
     }
 
     /**
@@ -77,16 +92,45 @@ public class JavaHttpAdapter implements RpcCallAdapter {
                     new IllegalStateException("Client is already closed")
             );
         }
+        if (limiter != null) {
+            return limiter.execute(call.getPriority(), () -> send(call));
+        }
+        return send(call);
+    }
+
+    private <T> CompletableFuture<T> send(RpcCall<T> call) {
         final ObjectMapper objectMapper = rpcCoder.getObjectMapper();
+        final String method = call.getMethod();
         int id = rpcCoder.nextId();
         JavaType type = call.getResultType(objectMapper.getTypeFactory());
         try {
+            byte[] payload = rpcCoder.encode(id, call);
             HttpRequest.Builder request = this.request.copy()
-                    .POST(HttpRequest.BodyPublishers.ofByteArray(rpcCoder.encode(id, call)));
-            return httpClient.sendAsync(request.build(), HttpResponse.BodyHandlers.ofString())
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(payload));
+            metrics.onRequest(method);
+            metrics.onRequestBytes(method, payload.length);
+            final RpcCallEvent event = RpcCallEvent.start(method, id, payload.length, false);
+            final long start = System.nanoTime();
+            return httpClient.sendAsync(request.build(), jsonBodyHandler(objectMapper, (size) -> {
+                        metrics.onResponseBytes(method, size);
+                        if (event != null) {
+                            event.setResponseBytes(size);
+                        }
+                    }))
                     .thenApply(this::verify)
                     .thenApply(HttpResponse::body)
-                    .thenApply(content -> rpcCoder.decode(id, content, type));
+                    .thenApply(content -> {
+                        long decodeStart = System.nanoTime();
+                        T result = rpcCoder.decode(id, content.asParser(), type);
+                        metrics.onDecode(method, System.nanoTime() - decodeStart);
+                        return result;
+                    })
+                    .whenComplete((result, t) -> {
+                        metrics.onResponse(method, System.nanoTime() - start, t);
+                        if (event != null) {
+                            event.complete(t);
+                        }
+                    });
         } catch (JsonProcessingException e) {
             return CompletableFuture.failedFuture(
                     new RpcException(-32600, "Unable to encode request as JSON: " + e.getMessage(), e)
@@ -96,28 +140,162 @@ public class JavaHttpAdapter implements RpcCallAdapter {
         }
     }
 
+    /**
+     * Execute multiple JSON RPC requests as a single HTTP request with a JSON RPC batch. If the whole batch fails
+     * (ex. because of a connection error) all of the futures fail with the same error.
+     * <br>
+     * When the adapter has a ConcurrencyLimiter the batch takes a single slot, with the highest priority of its calls.
+     *
+     * @param calls RPC calls to execute
+     * @return CompletableFuture for each of the calls, in the same order as the calls
+     * @see RpcException
+     */
+    @Override
+    public List<CompletableFuture<?>> produceRpcFutures(List<? extends RpcCall<?>> calls) {
+        if (calls.isEmpty()) {
+            return Collections.emptyList();
+        }
+        final ObjectMapper objectMapper = rpcCoder.getObjectMapper();
+        final int[] ids = new int[calls.size()];
+        final Map<Integer, JavaType> types = new HashMap<>(calls.size() * 2);
+        final Map<Integer, CompletableFuture<Object>> handlers = new HashMap<>(calls.size() * 2);
+        final List<CompletableFuture<?>> result = new ArrayList<>(calls.size());
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = rpcCoder.nextId();
+            types.put(ids[i], calls.get(i).getResultType(objectMapper.getTypeFactory()));
+            CompletableFuture<Object> handler = new CompletableFuture<>();
+            handlers.put(ids[i], handler);
+            result.add(handler);
+        }
+        if (closed) {
+            failAll(handlers, new IllegalStateException("Client is already closed"));
+            return result;
+        }
+        final byte[] payload;
+        try {
+            payload = rpcCoder.encodeBatch(ids, calls);
+        } catch (JsonProcessingException e) {
+            failAll(handlers, new RpcException(-32600, "Unable to encode request as JSON: " + e.getMessage(), e));
+            return result;
+        }
+        Supplier<CompletableFuture<List<RpcResponse<?>>>> send = () -> {
+            HttpRequest.Builder request = this.request.copy()
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(payload));
+            final long start = System.nanoTime();
+            for (int i = 0; i < calls.size(); i++) {
+                final String method = calls.get(i).getMethod();
+                final RpcCallEvent event = RpcCallEvent.start(method, ids[i], payload.length, true);
+                metrics.onRequest(method);
+                result.get(i).whenComplete((value, t) -> {
+                    metrics.onResponse(method, System.nanoTime() - start, t);
+                    if (event != null) {
+                        event.complete(t);
+                    }
+                });
+            }
+            metrics.onRequestBytes(RpcMetrics.BATCH, payload.length);
+            return httpClient.sendAsync(request.build(), jsonBodyHandler(objectMapper, (size) -> metrics.onResponseBytes(RpcMetrics.BATCH, size)))
+                    .thenApply(this::verify)
+                    .thenApply(HttpResponse::body)
+                    .thenApply(content -> {
+                        long decodeStart = System.nanoTime();
+                        List<RpcResponse<?>> values = rpcCoder.decodeBatch(content.asParser(), types);
+                        metrics.onDecode(RpcMetrics.BATCH, System.nanoTime() - decodeStart);
+                        return values;
+                    });
+        };
+        CompletableFuture<List<RpcResponse<?>>> responses = limiter != null
+                ? limiter.execute(highestPriority(calls), send)
+                : send.get();
+        responses.whenComplete((values, t) -> {
+            if (t != null) {
+                failAll(handlers, t instanceof CompletionException && t.getCause() != null ? t.getCause() : t);
+                return;
+            }
+            for (RpcResponse<?> response : values) {
+                CompletableFuture<Object> handler = handlers.remove(response.getId());
+                if (handler == null) {
+                    continue;
+                }
+                if (response.getError() != null) {
+                    handler.completeExceptionally(
+                            new RpcException(response.getError().getCode(), response.getError().getMessage(), response.getError().getData())
+                    );
+                } else {
+                    handler.complete(response.getResult());
+                }
+            }
+            handlers.forEach((id, handler) -> handler.completeExceptionally(
+                    new RpcException(-32603, "Server returned no response for id: " + id)
+            ));
+        });
+        return result;
+    }
+
+    private static CallPriority highestPriority(List<? extends RpcCall<?>> calls) {
+        CallPriority result = CallPriority.BULK;
+        for (RpcCall<?> call : calls) {
+            if (call.getPriority().compareTo(result) > 0) {
+                result = call.getPriority();
+            }
+        }
+        return result;
+    }
+
+    private static void failAll(Map<Integer, CompletableFuture<Object>> handlers, Throwable t) {
+        handlers.values().forEach(handler -> handler.completeExceptionally(t));
+    }
+
+    /**
+     * Body handler which parses the JSON while it's being received, instead of collecting it into a String.
+     * A response with invalid meta is not parsed, the body is just discarded.
+     *
+     * @param objectMapper mapper to create the parser
+     * @param onReceived called with the size of the body
+     * @return body handler
+     */
+    private static HttpResponse.BodyHandler<TokenBuffer> jsonBodyHandler(ObjectMapper objectMapper, LongConsumer onReceived) {
+        return (info) -> {
+            if (check(info.statusCode(), info.headers()) != null) {
+                return HttpResponse.BodySubscribers.replacing(null);
+            }
+            try {
+                return new JsonBodySubscriber(objectMapper.getFactory(), onReceived);
+            } catch (IOException e) {
+                throw new CompletionException(
+                        new RpcException(-32603, "Unable to create JSON parser: " + e.getMessage(), e)
+                );
+            }
+        };
+    }
+
     /**
      * Verify the HTTP response meta, i.e. statuc code, headers, etc.
      *
      * @param response HTTP response from server
+     * @param <B> type of the body
      * @return The response itself if all is ok
      * @throws CompletionException with RpcException details to let executor know that the response is invalid
      * @see CompletionException
      * @see RpcException
      */
-    public HttpResponse<String> verify(HttpResponse<String> response) {
-        if (response.statusCode() != 200) {
-            throw new CompletionException(
-                    new RpcException(-32000, "Server returned error status: " + response.statusCode())
-            );
+    public <B> HttpResponse<B> verify(HttpResponse<B> response) {
+        RpcException error = check(response.statusCode(), response.headers());
+        if (error != null) {
+            throw new CompletionException(error);
+        }
+        return response;
+    }
+
+    private static RpcException check(int statusCode, HttpHeaders headers) {
+        if (statusCode != 200) {
+            return new RpcException(-32000, "Server returned error status: " + statusCode);
         }
         //response shouldn't contain non-ascii so charset can be ignored
-        if (!response.headers().firstValue("content-type").orElse(APPLICATION_JSON).startsWith(APPLICATION_JSON)) {
-            throw new CompletionException(
-                    new RpcException(-32000, "Server returned invalid content-type: " + response.headers().firstValue("content-type"))
-            );
+        if (!headers.firstValue("content-type").orElse(APPLICATION_JSON).startsWith(APPLICATION_JSON)) {
+            return new RpcException(-32000, "Server returned invalid content-type: " + headers.firstValue("content-type"));
         }
-        return response;
+        return null;
     }
 
     public static Builder newBuilder() {
@@ -156,6 +334,8 @@ public class JavaHttpAdapter implements RpcCallAdapter {
         private RpcCoder rpcCoder;
         private Runnable onClose;
         private Duration timeout;
+        private ConcurrencyLimiter limiter;
+        private RpcMetrics metrics;
 
         /**
          * Setup Basic Auth for RPC calls
@@ -253,7 +433,34 @@ public class JavaHttpAdapter implements RpcCallAdapter {
             return this;
         }
 
+        /**
+         * Limit the number of concurrent requests. By default, there is no limit.
+         *
+         * @param limiter limiter
+         * @return builder
+         * @see ConcurrencyLimiter
+         */
+        public Builder limiter(ConcurrencyLimiter limiter) {
+            this.limiter = limiter;
+            return this;
+        }
+
+        /**
+         * Record metrics of the requests. By default, nothing is recorded.
+         *
+         * @param metrics metrics implementation
+         * @return builder
+         * @see InMemoryRpcMetrics
+         */
+        public Builder metrics(RpcMetrics metrics) {
+            this.metrics = metrics;
+            return this;
+        }
+
         private void initDefaults() {
+            if (metrics == null) {
+                metrics = RpcMetrics.NONE;
+            }
             if (rpcCoder == null) {
                 final ObjectMapper objectMapper = new ObjectMapper();
                 objectMapper.registerModule(new PolkadotModule());
@@ -292,7 +499,7 @@ public class JavaHttpAdapter implements RpcCallAdapter {
          */
         public JavaHttpAdapter build() {
             initDefaults();
-            return new JavaHttpAdapter(target, httpClient, basicAuth, timeout, onClose, rpcCoder);
+            return new JavaHttpAdapter(target, httpClient, basicAuth, timeout, onClose, rpcCoder, limiter, metrics);
         }
 
     }
@@ -0,0 +1,126 @@
+package io.emeraldpay.polkaj.apihttp;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import io.emeraldpay.polkaj.api.RpcException;
+
+import java.io.IOException;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+import java.util.function.LongConsumer;
+
+/**
+ * HTTP Body Subscriber which parses JSON as the bytes arrive, with a Jackson non-blocking parser. The parsed tokens
+ * are collected into a TokenBuffer, which can be then mapped to the target type without parsing the text again,
+ * i.e. the response body is never joined into one buffer.
+ */
+class JsonBodySubscriber implements HttpResponse.BodySubscriber<TokenBuffer> {
+
+    private final CompletableFuture<TokenBuffer> result = new CompletableFuture<>();
+    private final JsonParser parser;
+    private final ByteArrayFeeder feeder;
+    private final TokenBuffer tokens;
+    private final LongConsumer onReceived;
+
+    private Flow.Subscription subscription;
+    private long received = 0;
+    /**
+     * A buffer for the data that doesn't have a backing array
+     */
+    private byte[] copy = new byte[0];
+
+    JsonBodySubscriber(JsonFactory jsonFactory) throws IOException {
+        this(jsonFactory, null);
+    }
+
+    /**
+     * @param jsonFactory factory to create the parser
+     * @param onReceived called with the total size of the body, in bytes, once it's fully received
+     */
+    JsonBodySubscriber(JsonFactory jsonFactory, LongConsumer onReceived) throws IOException {
+        this.parser = jsonFactory.createNonBlockingByteArrayParser();
+        this.feeder = (ByteArrayFeeder) parser.getNonBlockingInputFeeder();
+        this.tokens = new TokenBuffer(parser);
+        this.onReceived = onReceived;
+    }
+
+    @Override
+    public CompletionStage<TokenBuffer> getBody() {
+        return result;
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        this.subscription = subscription;
+        subscription.request(Long.MAX_VALUE);
+    }
+
+    @Override
+    public void onNext(List<ByteBuffer> items) {
+        if (result.isDone()) {
+            return;
+        }
+        try {
+            for (ByteBuffer item : items) {
+                received += item.remaining();
+                if (item.hasArray()) {
+                    int start = item.arrayOffset() + item.position();
+                    feeder.feedInput(item.array(), start, start + item.remaining());
+                } else {
+                    int len = item.remaining();
+                    if (copy.length < len) {
+                        copy = new byte[len];
+                    }
+                    item.get(copy, 0, len);
+                    feeder.feedInput(copy, 0, len);
+                }
+                // the fed array is used by the parser until it asks for more input, so consume all tokens right away
+                readAvailable();
+            }
+        } catch (IOException e) {
+            subscription.cancel();
+            result.completeExceptionally(invalidJson(e));
+        }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        result.completeExceptionally(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+        if (result.isDone()) {
+            return;
+        }
+        if (onReceived != null) {
+            onReceived.accept(received);
+        }
+        try {
+            feeder.endOfInput();
+            readAvailable();
+            parser.close();
+            result.complete(tokens);
+        } catch (IOException e) {
+            result.completeExceptionally(invalidJson(e));
+        }
+    }
+
+    private static RpcException invalidJson(IOException e) {
+        return new RpcException(-32603, "Server returned invalid JSON", e);
+    }
+
+    private void readAvailable() throws IOException {
+        JsonToken token;
+        while ((token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+            tokens.copyCurrentEvent(parser);
+        }
+    }
+}
@@ -1,11 +1,17 @@
 package io.emeraldpay.polkaj.apihttp
 
 import com.fasterxml.jackson.databind.ObjectMapper
+import io.emeraldpay.polkaj.api.CallPriority
+import io.emeraldpay.polkaj.api.ConcurrencyLimiter
+import io.emeraldpay.polkaj.api.InMemoryRpcMetrics
 import io.emeraldpay.polkaj.api.RpcCall
 import io.emeraldpay.polkaj.api.RpcCallAdapter
 import io.emeraldpay.polkaj.api.RpcCoder
 import io.emeraldpay.polkaj.api.RpcAdapterSpec
 import io.emeraldpay.polkaj.json.jackson.PolkadotModule
+import org.mockserver.model.HttpRequest
+import org.mockserver.model.HttpResponse
+import org.mockserver.model.MediaType
 
 import java.time.Duration
 import java.util.concurrent.ExecutorService
@@ -50,4 +56,64 @@ class JavaHttpAdapterSpec extends RpcAdapterSpec {
         1 * rpcCoder.nextId()
     }
 
+    def "Uses provided limiter"() {
+        setup:
+        def limiter = ConcurrencyLimiter.fixed(1, 10)
+        def adapter = JavaHttpAdapter.newBuilder()
+            .connectTo("http://localhost:18080")
+            .limiter(limiter)
+            .build()
+        mockServer.when(
+                HttpRequest.request()
+        ).respond(
+                HttpResponse.response('{"jsonrpc": "2.0", "result": "Polkadot", "id": 0}').withContentType(MediaType.APPLICATION_JSON)
+        )
+        when:
+        def f1 = adapter.produceRpcFuture(RpcCall.create(String, "system_chain"))
+        def f2 = adapter.produceRpcFuture(RpcCall.create(String, "system_chain").priority(CallPriority.HIGH))
+        then:
+        f1.get() == "Polkadot"
+        f2.get() == "Polkadot"
+        limiter.inFlight == 0
+        cleanup:
+        adapter.close()
+    }
+
+    def "Records metrics"() {
+        setup:
+        def metrics = new InMemoryRpcMetrics()
+        def adapter = JavaHttpAdapter.newBuilder()
+            .connectTo("http://localhost:18080")
+            .metrics(metrics)
+            .build()
+        def response = '{"jsonrpc": "2.0", "error": {"code": -32601, "message": "Method not found"}, "id": 1}'
+        mockServer.when(
+                HttpRequest.request()
+                        .withBody('{"jsonrpc":"2.0","id":0,"method":"system_chain","params":[]}')
+        ).respond(
+                HttpResponse.response('{"jsonrpc": "2.0", "result": "Polkadot", "id": 0}').withContentType(MediaType.APPLICATION_JSON)
+        )
+        mockServer.when(
+                HttpRequest.request()
+        ).respond(
+                HttpResponse.response(response).withContentType(MediaType.APPLICATION_JSON)
+        )
+        when:
+        adapter.produceRpcFuture(RpcCall.create(String, "system_chain")).get()
+        adapter.produceRpcFuture(RpcCall.create(String, "test_foo")).handle { v, t -> t }.get()
+        def chain = metrics.get("system_chain")
+        def foo = metrics.get("test_foo")
+        then:
+        chain.latency.count == 1
+        chain.decodeTime.count == 1
+        chain.requestBytes == '{"jsonrpc":"2.0","id":0,"method":"system_chain","params":[]}'.length()
+        chain.responseBytes == '{"jsonrpc": "2.0", "result": "Polkadot", "id": 0}'.length()
+        chain.errors.isEmpty()
+        foo.latency.count == 1
+        foo.errors == ["-32601": 1L]
+        metrics.inFlight == 0
+        cleanup:
+        adapter.close()
+    }
+
 }
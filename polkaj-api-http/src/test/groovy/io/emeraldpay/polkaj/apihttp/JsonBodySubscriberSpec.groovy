@@ -0,0 +1,124 @@
+package io.emeraldpay.polkaj.apihttp
+
+import com.fasterxml.jackson.databind.ObjectMapper
+import io.emeraldpay.polkaj.api.RpcCoder
+import io.emeraldpay.polkaj.api.RpcException
+import io.emeraldpay.polkaj.json.jackson.PolkadotModule
+import io.emeraldpay.polkaj.types.Hash256
+import spock.lang.Specification
+
+import java.nio.ByteBuffer
+import java.nio.charset.StandardCharsets
+import java.util.concurrent.CompletionException
+import java.util.concurrent.Flow
+import java.util.concurrent.TimeUnit
+
+class JsonBodySubscriberSpec extends Specification {
+
+    ObjectMapper objectMapper = new ObjectMapper().tap { registerModule(new PolkadotModule()) }
+    RpcCoder rpcCoder = new RpcCoder(objectMapper)
+
+    static List<ByteBuffer> chunks(String json, int size, boolean direct) {
+        def bytes = json.getBytes(StandardCharsets.UTF_8)
+        def result = []
+        for (int i = 0; i < bytes.length; i += size) {
+            int len = Math.min(size, bytes.length - i)
+            def buf = direct ? ByteBuffer.allocateDirect(len) : ByteBuffer.allocate(len)
+            buf.put(bytes, i, len).flip()
+            result << (direct ? buf : buf.asReadOnlyBuffer())
+        }
+        return result
+    }
+
+    def "Parse response split into chunks"() {
+        setup:
+        def json = '{"jsonrpc":"2.0","result":"0x5d83f66b61701da4cbd7a60137db89c69469a4f798b62aba9176ab253b423828","id":5}'
+        def subscriber = new JsonBodySubscriber(objectMapper.getFactory())
+        def subscription = Mock(Flow.Subscription)
+        when:
+        subscriber.onSubscribe(subscription)
+        chunks(json, size, direct).each { subscriber.onNext([it]) }
+        subscriber.onComplete()
+        def tokens = subscriber.getBody().toCompletableFuture().get(1, TimeUnit.SECONDS)
+        def act = rpcCoder.decode(5, tokens.asParser(), rpcCoder.responseType(Hash256))
+        then:
+        1 * subscription.request(Long.MAX_VALUE)
+        0 * subscription.cancel()
+        act == Hash256.from("0x5d83f66b61701da4cbd7a60137db89c69469a4f798b62aba9176ab253b423828")
+        where:
+        size | direct
+        1    | false
+        7    | true
+        1024 | false
+    }
+
+    def "Parse multiple chunks at once"() {
+        setup:
+        def json = '{"jsonrpc":"2.0","result":{"peers":5,"isSyncing":false},"id":1}'
+        def subscriber = new JsonBodySubscriber(objectMapper.getFactory())
+        when:
+        subscriber.onSubscribe(Mock(Flow.Subscription))
+        subscriber.onNext(chunks(json, 3, false))
+        subscriber.onComplete()
+        def act = rpcCoder.decode(1, subscriber.getBody().toCompletableFuture().get().asParser(), rpcCoder.responseType(Map))
+        then:
+        act == [peers: 5, isSyncing: false]
+    }
+
+    def "Reports size of the body"() {
+        setup:
+        def json = '{"jsonrpc":"2.0","result":{"peers":5,"isSyncing":false},"id":1}'
+        long received = -1
+        def subscriber = new JsonBodySubscriber(objectMapper.getFactory(), { received = it })
+        when:
+        subscriber.onSubscribe(Mock(Flow.Subscription))
+        chunks(json, 5, true).each { subscriber.onNext([it]) }
+        subscriber.onComplete()
+        then:
+        received == json.length()
+    }
+
+    def "Fail on invalid JSON and cancel subscription"() {
+        setup:
+        def subscriber = new JsonBodySubscriber(objectMapper.getFactory())
+        def subscription = Mock(Flow.Subscription)
+        when:
+        subscriber.onSubscribe(subscription)
+        subscriber.onNext(chunks('{"jsonrpc":"2.0","result":[1,,2]}', 4, false))
+        subscriber.onComplete()
+        subscriber.getBody().toCompletableFuture().join()
+        then:
+        1 * subscription.cancel()
+        def t = thrown(CompletionException)
+        with((RpcException)t.cause) {
+            code == -32603
+            rpcMessage == "Server returned invalid JSON"
+        }
+    }
+
+    def "Fail on incomplete JSON"() {
+        setup:
+        def subscriber = new JsonBodySubscriber(objectMapper.getFactory())
+        when:
+        subscriber.onSubscribe(Mock(Flow.Subscription))
+        subscriber.onNext(chunks('{"jsonrpc":"2.0","res', 4, false))
+        subscriber.onComplete()
+        subscriber.getBody().toCompletableFuture().join()
+        then:
+        def t = thrown(CompletionException)
+        t.cause instanceof RpcException
+    }
+
+    def "Pass transport error"() {
+        setup:
+        def subscriber = new JsonBodySubscriber(objectMapper.getFactory())
+        def error = new IOException("connection reset")
+        when:
+        subscriber.onSubscribe(Mock(Flow.Subscription))
+        subscriber.onError(error)
+        subscriber.getBody().toCompletableFuture().join()
+        then:
+        def t = thrown(CompletionException)
+        t.cause == error
+    }
+}
@@ -2,18 +2,26 @@ package io.emeraldpay.polkaj.apiws;
 
 import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonStreamContext;
 import com.fasterxml.jackson.core.JsonToken;
-import com.fasterxml.jackson.core.TreeNode;
 import com.fasterxml.jackson.databind.JavaType;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
 import io.emeraldpay.polkaj.api.RpcResponse;
 import io.emeraldpay.polkaj.api.RpcResponseError;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Decoded JSON response from WebSocket message. The message itself may be a JSON with Subscription event, or standard JSON RPC response.
  * The decoder verifies the content, and depending on it, returns WsResponse with correct type.
+ * <br>
+ * The result is bound to its Java type right from the parser when the id of the request or subscription comes before it
+ * in the JSON. Otherwise, its tokens are kept until the id is found, and the type is known.
  *
  * @see WsResponse
  */
@@ -22,6 +30,7 @@ public class DecodeResponse {
     private final TypeMapping<String> subscriptionMapping;
     private final TypeMapping<Integer> rpcMapping;
     private final ObjectMapper objectMapper;
+    private final ConcurrentHashMap<JavaType, ObjectReader> readers = new ConcurrentHashMap<>();
 
     public DecodeResponse(ObjectMapper objectMapper, TypeMapping<Integer> rpcMapping, TypeMapping<String> subscriptionMapping) {
         this.rpcMapping = rpcMapping;
@@ -31,13 +40,142 @@ public class DecodeResponse {
 
     public WsResponse decode(final String json) throws IOException {
         JsonFactory jsonFactory = objectMapper.getFactory();
-        JsonParser parser = jsonFactory.createParser(json);
+        return decode(jsonFactory.createParser(json));
+    }
+
+    /**
+     * Decode a message which is already parsed into tokens
+     *
+     * @param tokens JSON tokens of the message
+     * @return decoded response
+     * @throws IOException if JSON is invalid
+     */
+    public WsResponse decode(final TokenBuffer tokens) throws IOException {
+        return decode(tokens.asParser());
+    }
+
+    /**
+     * Decode a JSON RPC batch response, i.e. an array of RPC responses. Elements which cannot be mapped to a request
+     * are skipped.
+     *
+     * @param json JSON array with responses
+     * @return decoded responses, in the same order as in the JSON
+     * @throws IOException if JSON is invalid
+     * @throws IllegalStateException if JSON is not an array
+     */
+    public List<WsResponse> decodeBatch(final String json) throws IOException {
+        JsonFactory jsonFactory = objectMapper.getFactory();
+        return decodeBatch(jsonFactory.createParser(json));
+    }
+
+    /**
+     * Decode a JSON RPC batch response which is already parsed into tokens
+     *
+     * @param tokens JSON tokens of the array with responses
+     * @return decoded responses, in the same order as in the JSON
+     * @throws IOException if JSON is invalid
+     * @throws IllegalStateException if JSON is not an array
+     */
+    public List<WsResponse> decodeBatch(final TokenBuffer tokens) throws IOException {
+        return decodeBatch(tokens.asParser());
+    }
+
+    protected List<WsResponse> decodeBatch(final JsonParser parser) throws IOException {
+        if (parser.nextToken() != JsonToken.START_ARRAY) {
+            throw new IllegalStateException("Not an array");
+        }
+        JsonStreamContext array = parser.getParsingContext();
+        List<WsResponse> result = new ArrayList<>();
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            try {
+                result.add(decodeObject(parser));
+            } catch (IllegalStateException e) {
+                // unknown request, or invalid response, which doesn't affect other responses
+            }
+            // decoding of an item may stop before the end of the object
+            skipTo(parser, array);
+        }
+        if (parser.currentToken() != JsonToken.END_ARRAY) {
+            throw new IllegalStateException("JSON finished before data received");
+        }
+        return result;
+    }
+
+    /**
+     * Check if the message is a batch response, i.e. a JSON array
+     *
+     * @param json message
+     * @return true if the message starts with an array
+     */
+    public static boolean isBatch(final CharSequence json) {
+        for (int i = 0; i < json.length(); i++) {
+            char c = json.charAt(i);
+            if (!Character.isWhitespace(c)) {
+                return c == '[';
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Check if the message is a batch response, i.e. a JSON array
+     *
+     * @param tokens JSON tokens of the message
+     * @return true if the message is an array
+     */
+    public static boolean isBatch(final TokenBuffer tokens) {
+        return tokens.firstToken() == JsonToken.START_ARRAY;
+    }
+
+    /**
+     * Decode an error response without an id, which a server returns when it rejects a whole batch, ex. when the batch
+     * is too large
+     *
+     * @param tokens JSON tokens of the message
+     * @return the error, or null if the message is not an error without an id
+     * @throws IOException if JSON is invalid
+     */
+    public RpcResponseError decodeErrorWithoutId(final TokenBuffer tokens) throws IOException {
+        JsonParser parser = tokens.asParser();
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            return null;
+        }
+        RpcResponseError error = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if ("id".equals(field)) {
+                if (value != JsonToken.VALUE_NULL) {
+                    return null;
+                }
+            } else if ("error".equals(field) && value == JsonToken.START_OBJECT) {
+                error = decodeError(parser);
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return error;
+    }
+
+    protected WsResponse decode(final JsonParser parser) throws IOException {
         if (parser.nextToken() != JsonToken.START_OBJECT) {
             throw new IllegalStateException("Not an object");
         }
+        return decodeObject(parser);
+    }
+
+    /**
+     * Decode a response object, starting at its START_OBJECT token. It stops when the response is decoded, which may be
+     * before the end of the object.
+     *
+     * @param parser parser at the start of the object
+     * @return decoded response
+     * @throws IOException if JSON is invalid
+     */
+    protected WsResponse decodeObject(final JsonParser parser) throws IOException {
         String method = null;
         WsResponse.IdValue<String> value = null;
-        Preparsed<Integer> preparsed = new Preparsed<>(objectMapper);
+        Preparsed<Integer> preparsed = new Preparsed<>();
         while (parser.nextToken() != JsonToken.END_OBJECT) {
             if (parser.currentToken() == null) {
                 throw new IllegalStateException("JSON finished before data received");
@@ -56,8 +194,7 @@ public class DecodeResponse {
                     return WsResponse.rpc(new RpcResponse<>(result.getId(), result.getValue()));
                 }
             } else if ("result".equals(field)) {
-                parser.nextToken();
-                preparsed.node = parser.readValueAsTree();
+                readResult(parser, preparsed);
                 if (preparsed.isReady()) {
                     var result = preparsed.build();
                     return WsResponse.rpc(new RpcResponse<>(result.getId(), result.getValue()));
@@ -78,12 +215,15 @@ public class DecodeResponse {
                     );
                 }
             } else if ("params".equals(field)) {
+                JsonStreamContext response = parser.getParsingContext();
                 value = decodeSubscription(subscriptionMapping, parser);
                 if (method != null) {
                     return WsResponse.subscription(
                             new JavaHttpSubscriptionAdapter.SubscriptionResponse<>(value.getId(), method, value.getValue())
                     );
                 }
+                // the method comes after params, which may be decoded before their end
+                skipTo(parser, response);
             }
         }
         throw new IllegalStateException("Either id or result not found in JSON");
@@ -111,7 +251,7 @@ public class DecodeResponse {
     }
 
     protected WsResponse.IdValue<String> decodeSubscription(TypeMapping<String> typeMapping, JsonParser parser) throws IOException {
-        Preparsed<String> preparsed = new Preparsed<>(objectMapper);
+        Preparsed<String> preparsed = new Preparsed<>();
         while (parser.nextToken() != JsonToken.END_OBJECT) {
             if (parser.currentToken() == null) {
                 throw new IllegalStateException("JSON finished before data received");
@@ -125,8 +265,7 @@ public class DecodeResponse {
                     return preparsed.build();
                 }
             } else if ("result".equals(field)) {
-                parser.nextToken();
-                preparsed.node = parser.readValueAsTree();
+                readResult(parser, preparsed);
                 if (preparsed.isReady()) {
                     return preparsed.build();
                 }
@@ -136,6 +275,42 @@ public class DecodeResponse {
         throw new IllegalStateException("Either id or result not found in JSON");
     }
 
+    /**
+     * Read the result value, which is bound to the type if it's already known, or otherwise kept as tokens
+     *
+     * @param parser parser at the result field name
+     * @param preparsed current state
+     */
+    private void readResult(JsonParser parser, Preparsed<?> preparsed) throws IOException {
+        parser.nextToken();
+        if (preparsed.type != null) {
+            preparsed.value = reader(preparsed.type).readValue(parser);
+        } else {
+            TokenBuffer buffer = new TokenBuffer(parser);
+            buffer.copyCurrentStructure(parser);
+            preparsed.buffered = buffer;
+        }
+        preparsed.hasValue = true;
+    }
+
+    /**
+     * Skip tokens until the parser is back to the context, i.e. after the end of the current value inside it
+     *
+     * @param parser parser
+     * @param context context to return to
+     */
+    private void skipTo(JsonParser parser, JsonStreamContext context) throws IOException {
+        while (parser.getParsingContext() != context) {
+            if (parser.nextToken() == null) {
+                throw new IllegalStateException("JSON finished before data received");
+            }
+        }
+    }
+
+    private ObjectReader reader(JavaType type) {
+        return readers.computeIfAbsent(type, objectMapper::readerFor);
+    }
+
     private <T> JavaType findType(TypeMapping<T> typeMapping, T id) {
         JavaType type;
         type = typeMapping.get(id);
@@ -169,22 +344,21 @@ public class DecodeResponse {
         JavaType get(T id);
     }
 
-    private static class Preparsed<T> {
-        private final ObjectMapper objectMapper;
-
+    private class Preparsed<T> {
         T id = null;
         JavaType type = null;
-        TreeNode node = null;
+        boolean hasValue = false;
+        Object value = null;
+        /**
+         * Tokens of the result, if it's received before the type is known
+         */
+        TokenBuffer buffered = null;
 
         RpcResponseError error;
 
-        public Preparsed(ObjectMapper objectMapper) {
-            this.objectMapper = objectMapper;
-        }
-
         public boolean isReady() {
             return id != null &&
-                    error != null || (type != null && node != null);
+                    error != null || (type != null && hasValue);
         }
 
         public WsResponse.IdValue<T> build() throws IOException {
@@ -197,10 +371,11 @@ public class DecodeResponse {
             if (type == null) {
                 throw new IllegalStateException("Type is not set");
             }
-            if (node != null) {
-                Object value = objectMapper
-                        .readerFor(type)
-                        .readValue(node.traverse(objectMapper));
+            if (hasValue) {
+                if (buffered != null) {
+                    value = reader(type).readValue(buffered.asParser());
+                    buffered = null;
+                }
                 return new WsResponse.IdValue<>(id, value);
             }
             throw new IllegalStateException("Not ready");
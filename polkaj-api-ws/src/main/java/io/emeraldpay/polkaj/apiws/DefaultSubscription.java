@@ -2,22 +2,112 @@ package io.emeraldpay.polkaj.apiws;
 
 import com.fasterxml.jackson.databind.JavaType;
 import io.emeraldpay.polkaj.api.RpcCall;
+import io.emeraldpay.polkaj.api.RpcMetrics;
+import io.emeraldpay.polkaj.api.StandardCommands;
+import io.emeraldpay.polkaj.api.SubscribeCall;
 import io.emeraldpay.polkaj.api.Subscription;
+import io.emeraldpay.polkaj.json.BlockJson;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 
 public class DefaultSubscription<T> implements Subscription<T>, Consumer<Subscription.Event<? extends T>> {
 
-    private String id;
+    /**
+     * Max number of events kept until a handler is set
+     */
+    static final int EARLY_EVENTS_LIMIT = 256;
+
+    /**
+     * Max number of events passed to the handler in one task of the executor, so other subscriptions
+     * get their turn on a limited executor
+     */
+    static final int DISPATCH_BATCH = 64;
+
+    private volatile String id;
     private final JavaType type;
     private final String unsubscribeMethod;
     private final JavaHttpSubscriptionAdapter adapter;
-    private Consumer<? extends Event<? extends T>> handlers;
+    private volatile Consumer<? extends Event<? extends T>> handlers;
+    /**
+     * Events received before a handler is set, because the server may send the first event right after the subscription
+     * id, i.e. before the caller gets the subscription
+     */
+    private List<Subscription.Event<? extends T>> early = new ArrayList<>();
+
+    /**
+     * Executor to call the handler, or null to call it from the thread that received the event
+     */
+    private final Executor executor;
+    private final RpcMetrics metrics;
+    /**
+     * Demand of the connection, which is paused when too many events are waiting for the handlers, or null
+     */
+    private final FlowControl flowControl;
+    /**
+     * Queue of events waiting for the handler, or null if only the latest event is kept
+     */
+    private final EventRingBuffer<Subscription.Event<? extends T>> queue;
+    private final AtomicReference<Subscription.Event<? extends T>> latest = new AtomicReference<>();
+    /**
+     * Events which must be passed to the handler even if only the latest event is kept, i.e. the missed headers,
+     * taken before the latest
+     */
+    private final ConcurrentLinkedQueue<Subscription.Event<? extends T>> replay = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+    private volatile boolean closed = false;
+
+    /**
+     * Original call, to subscribe again after reconnect
+     */
+    private SubscribeCall<T> call;
+    /**
+     * Number of the last received block header, if the events are headers
+     */
+    private Long lastHead;
+    /**
+     * Events received while the headers missed during reconnect are requested, or null if there is no backfill
+     */
+    private List<Subscription.Event<? extends T>> backfill;
+    private int backfillLimit;
 
     public DefaultSubscription(JavaType type, String unsubscribeMethod, JavaHttpSubscriptionAdapter client) {
+        this(type, unsubscribeMethod, client, null, 0, false, RpcMetrics.NONE);
+    }
+
+    /**
+     *
+     * @param type type of the event data
+     * @param unsubscribeMethod method to unsubscribe
+     * @param client adapter
+     * @param executor executor to call the handler, or null to call it from the thread that received the event
+     * @param queueSize max number of events waiting for the handler
+     * @param latestOnly if true only the latest event waits for the handler, and it replaces the previous one
+     * @param metrics metrics of the queue
+     */
+    public DefaultSubscription(JavaType type, String unsubscribeMethod, JavaHttpSubscriptionAdapter client,
+                               Executor executor, int queueSize, boolean latestOnly, RpcMetrics metrics) {
+        this(type, unsubscribeMethod, client, executor, queueSize, latestOnly, metrics, null);
+    }
+
+    DefaultSubscription(JavaType type, String unsubscribeMethod, JavaHttpSubscriptionAdapter client,
+                        Executor executor, int queueSize, boolean latestOnly, RpcMetrics metrics,
+                        FlowControl flowControl) {
         this.type = type;
         this.unsubscribeMethod = unsubscribeMethod;
         this.adapter = client;
+        this.executor = executor;
+        this.metrics = metrics;
+        this.flowControl = flowControl;
+        this.queue = (executor == null || latestOnly) ? null : new EventRingBuffer<>(queueSize);
     }
 
     public String getId() {
@@ -35,18 +125,275 @@ public class DefaultSubscription<T> implements Subscription<T>, Consumer<Subscri
         this.id = id;
     }
 
+    SubscribeCall<T> getCall() {
+        return call;
+    }
+
+    void setCall(SubscribeCall<T> call) {
+        this.call = call;
+    }
+
+    boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Continue the subscription under a new id, after it's made again on a new connection. If the events are block
+     * headers, the headers between the last received one and the first one of the new subscription are requested
+     * and passed to the handler before the new events.
+     *
+     * @param id new id
+     * @param backfillLimit max number of missed headers to request, or 0 to not request them
+     */
+    synchronized void resubscribed(String id, int backfillLimit) {
+        this.id = id;
+        if (backfillLimit > 0 && lastHead != null && backfill == null) {
+            this.backfillLimit = backfillLimit;
+            this.backfill = new ArrayList<>();
+        }
+    }
+
     @Override
-    public void handler(Consumer<? extends Event<? extends T>> handler) {
+    public synchronized void handler(Consumer<? extends Event<? extends T>> handler) {
         this.handlers = handler;
+        if (handler != null && early != null) {
+            List<Subscription.Event<? extends T>> events = early;
+            early = null;
+            // deliver while holding the lock, so new events are not delivered before them
+            if (executor == null) {
+                events.forEach(this::dispatch);
+            } else {
+                events.forEach(this::enqueue);
+            }
+        }
     }
 
-    @SuppressWarnings("unchecked")
     public void accept(Subscription.Event<? extends T> event) {
+        synchronized (this) {
+            if (backfill != null) {
+                backfill.add(event);
+                if (backfill.size() == 1) {
+                    requestMissed(event);
+                }
+                return;
+            }
+            trackHead(event);
+            if (this.handlers == null) {
+                if (early != null && early.size() < EARLY_EVENTS_LIMIT) {
+                    early.add(event);
+                }
+                return;
+            }
+        }
+        if (executor == null) {
+            dispatch(event);
+        } else {
+            enqueue(event);
+        }
+    }
+
+    private void trackHead(Subscription.Event<? extends T> event) {
+        if (event.getResult() instanceof BlockJson.Header) {
+            Long number = ((BlockJson.Header) event.getResult()).getNumber();
+            if (number != null) {
+                lastHead = number;
+            }
+        }
+    }
+
+    /**
+     * Request the headers missed before the first event of the new subscription
+     *
+     * @param first first event of the new subscription
+     */
+    private void requestMissed(Subscription.Event<? extends T> first) {
+        Long firstNumber = first.getResult() instanceof BlockJson.Header
+                ? ((BlockJson.Header) first.getResult()).getNumber()
+                : null;
+        if (firstNumber == null || firstNumber <= lastHead + 1) {
+            flushBackfill(first.getMethod(), Collections.emptyList());
+            return;
+        }
+        long to = firstNumber - 1;
+        long from = Math.max(lastHead + 1, to - backfillLimit + 1);
+        StandardCommands commands = StandardCommands.getInstance();
+        List<CompletableFuture<BlockJson.Header>> headers = new ArrayList<>((int) (to - from + 1));
+        for (long height = from; height <= to; height++) {
+            headers.add(adapter.produceRpcFuture(commands.getBlockHash(height))
+                    .thenCompose((hash) -> hash == null
+                            ? CompletableFuture.completedFuture(null)
+                            : adapter.produceRpcFuture(commands.getBlock(hash)))
+                    .thenApply((block) -> block == null || block.getBlock() == null ? null : block.getBlock().getHeader()));
+        }
+        CompletableFuture.allOf(headers.toArray(new CompletableFuture[0])).whenComplete((ignore, t) -> {
+            List<BlockJson.Header> received = new ArrayList<>(headers.size());
+            for (CompletableFuture<BlockJson.Header> header : headers) {
+                // if some are failed still pass the others, it's the best we can do
+                BlockJson.Header value = header.isCompletedExceptionally() ? null : header.join();
+                if (value != null) {
+                    received.add(value);
+                }
+            }
+            if (t != null) {
+                System.err.println("Failed to request missed headers: " + t.getMessage());
+            }
+            flushBackfill(first.getMethod(), received);
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private synchronized void flushBackfill(String method, List<BlockJson.Header> headers) {
+        if (backfill == null) {
+            return;
+        }
+        List<Subscription.Event<? extends T>> events = new ArrayList<>(headers.size() + backfill.size());
+        for (BlockJson.Header header : headers) {
+            events.add(new Subscription.Event<>(method, (T) header));
+        }
+        events.addAll(backfill);
+        backfill = null;
+        if (closed) {
+            return;
+        }
+        for (Subscription.Event<? extends T> event : events) {
+            trackHead(event);
+            if (this.handlers == null) {
+                if (early != null && early.size() < EARLY_EVENTS_LIMIT) {
+                    early.add(event);
+                }
+            } else if (executor == null) {
+                dispatch(event);
+            } else if (queue == null) {
+                replay.add(event);
+                onQueue(event, 1);
+                schedule();
+            } else {
+                enqueue(event);
+            }
+        }
+    }
+
+    private void enqueue(Subscription.Event<? extends T> event) {
+        if (closed) {
+            return;
+        }
+        if (queue == null) {
+            Subscription.Event<? extends T> replaced = latest.getAndSet(event);
+            if (replaced != null) {
+                metrics.onSubscriptionDropped(replaced.getMethod());
+            } else {
+                onQueue(event, 1);
+            }
+        } else if (queue.offer(event)) {
+            onQueue(event, 1);
+        } else {
+            metrics.onSubscriptionDropped(event.getMethod());
+        }
+        schedule();
+    }
+
+    private Subscription.Event<? extends T> take() {
+        Subscription.Event<? extends T> event;
+        if (queue == null) {
+            event = replay.poll();
+            if (event == null) {
+                event = latest.getAndSet(null);
+            }
+        } else {
+            event = queue.poll();
+        }
+        if (event != null) {
+            onQueue(event, -1);
+        }
+        return event;
+    }
+
+    private void onQueue(Subscription.Event<? extends T> event, int delta) {
+        metrics.onSubscriptionQueue(event.getMethod(), delta);
+        if (flowControl != null) {
+            flowControl.onBuffered(delta);
+        }
+    }
+
+    private boolean hasQueued() {
+        return queue == null ? (latest.get() != null || !replay.isEmpty()) : !queue.isEmpty();
+    }
+
+    private void schedule() {
+        if (!scheduled.compareAndSet(false, true)) {
+            // already running or scheduled, it will take the new event
+            return;
+        }
+        try {
+            executor.execute(this::drain);
+        } catch (RejectedExecutionException e) {
+            // the executor is shut down, i.e. the adapter is closed
+            scheduled.set(false);
+            discard();
+        }
+    }
+
+    private void drain() {
+        for (int i = 0; i < DISPATCH_BATCH; i++) {
+            Subscription.Event<? extends T> event = take();
+            if (event == null) {
+                break;
+            }
+            if (!closed) {
+                dispatch(event);
+            }
+        }
+        scheduled.set(false);
+        // an event could be queued after the last take() but before the flag is reset
+        if (hasQueued()) {
+            schedule();
+        }
+    }
+
+    private void discard() {
+        if (executor == null) {
+            return;
+        }
+        while (take() != null) {
+            // just drop
+        }
+    }
+
+    /**
+     *
+     * @return number of events waiting for the handler
+     */
+    public int getQueueSize() {
+        if (queue == null) {
+            return replay.size() + (latest.get() == null ? 0 : 1);
+        }
+        return queue.size();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void dispatch(Subscription.Event<? extends T> event) {
         Consumer<Subscription.Event<? extends T>> handler = (Consumer<Subscription.Event<? extends T>>) this.handlers;
         if (handler == null) {
             return;
         }
-        handler.accept(event);
+        SubscriptionDispatchEvent dispatch = new SubscriptionDispatchEvent();
+        dispatch.begin();
+        try {
+            handler.accept(event);
+        } catch (Throwable t) {
+            if (executor == null) {
+                throw t;
+            }
+            // nobody else to report it to on the executor thread
+            System.err.println("Error in subscription handler: " + t.getMessage());
+        } finally {
+            dispatch.end();
+            if (dispatch.shouldCommit()) {
+                dispatch.method = event.getMethod();
+                dispatch.subscriptionId = id;
+                dispatch.commit();
+            }
+        }
     }
 
     @Override
@@ -54,6 +401,8 @@ public class DefaultSubscription<T> implements Subscription<T>, Consumer<Subscri
         if (id == null) {
             return;
         }
+        closed = true;
+        discard();
         adapter.produceRpcFuture(RpcCall.create(Boolean.class, unsubscribeMethod, id));
         adapter.removeSubscription(id);
     }
@@ -0,0 +1,114 @@
+package io.emeraldpay.polkaj.apiws;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded lock-free queue of subscription events. Each slot has a sequence number which tells whether it's ready to be
+ * written or read for the current position, so producers and consumers only race on the position counters.
+ * <br>
+ * The capacity is rounded up to a power of two.
+ *
+ * @param <E> type of the elements
+ */
+class EventRingBuffer<E> {
+
+    private final AtomicReferenceArray<E> buffer;
+    private final AtomicLongArray sequence;
+    private final int mask;
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+
+    EventRingBuffer(int capacity) {
+        if (capacity < 1 || capacity > (1 << 30)) {
+            throw new IllegalArgumentException("Invalid capacity: " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.buffer = new AtomicReferenceArray<>(size);
+        this.sequence = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequence.set(i, i);
+        }
+        this.mask = size - 1;
+    }
+
+    /**
+     * Add an element to the end of the queue
+     *
+     * @param element element
+     * @return false if the queue is full
+     */
+    boolean offer(E element) {
+        long position = tail.get();
+        while (true) {
+            int index = (int) (position & mask);
+            long diff = sequence.get(index) - position;
+            if (diff == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    buffer.lazySet(index, element);
+                    // publishes the element to the consumer
+                    sequence.set(index, position + 1);
+                    return true;
+                }
+                position = tail.get();
+            } else if (diff < 0) {
+                // the slot is not consumed yet, i.e. the queue is full
+                return false;
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    /**
+     * Take an element from the head of the queue
+     *
+     * @return element, or null if the queue is empty
+     */
+    E poll() {
+        long position = head.get();
+        while (true) {
+            int index = (int) (position & mask);
+            long diff = sequence.get(index) - (position + 1);
+            if (diff == 0) {
+                if (head.compareAndSet(position, position + 1)) {
+                    E element = buffer.get(index);
+                    buffer.lazySet(index, null);
+                    // frees the slot for the next round of the producer
+                    sequence.set(index, position + mask + 1);
+                    return element;
+                }
+                position = head.get();
+            } else if (diff < 0) {
+                // the slot is not written yet, i.e. the queue is empty
+                return null;
+            } else {
+                position = head.get();
+            }
+        }
+    }
+
+    /**
+     *
+     * @return current number of elements, approximate if the queue is modified concurrently
+     */
+    int size() {
+        long size = tail.get() - head.get();
+        if (size < 0) {
+            return 0;
+        }
+        return (int) Math.min(size, capacity());
+    }
+
+    boolean isEmpty() {
+        return size() == 0;
+    }
+
+    int capacity() {
+        return mask + 1;
+    }
+}
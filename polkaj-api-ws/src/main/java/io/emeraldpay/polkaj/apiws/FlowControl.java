@@ -0,0 +1,132 @@
+package io.emeraldpay.polkaj.apiws;
+
+import java.net.http.WebSocket;
+
+/**
+ * Credit based demand for incoming WebSocket messages. Instead of requesting the next message only after the previous
+ * one is processed, it requests a window of messages ahead, so the connection keeps reading while a message is decoded.
+ * The credit is replenished when a half of the window is consumed.
+ * <br>
+ * Subscription events waiting for a handler are counted as buffered, and when there are too many of them the demand
+ * is paused, i.e. the server is slowed down by TCP instead of the events being dropped. It's resumed when the
+ * handlers consume a half of the limit. Note that the messages already requested before the pause are still received.
+ */
+class FlowControl {
+
+    private final int window;
+    private final int bufferLimit;
+    private final int replenishAt;
+
+    private WebSocket webSocket;
+    /**
+     * Messages requested but not received yet
+     */
+    private long outstanding = 0;
+    /**
+     * Messages received since the last request
+     */
+    private long consumed = 0;
+    private long buffered = 0;
+    private boolean paused = false;
+
+    /**
+     *
+     * @param window number of messages requested ahead
+     * @param bufferLimit number of buffered events when the demand is paused
+     */
+    FlowControl(int window, int bufferLimit) {
+        if (window < 1) {
+            throw new IllegalArgumentException("Window must be positive: " + window);
+        }
+        if (bufferLimit < 1) {
+            throw new IllegalArgumentException("Buffer limit must be positive: " + bufferLimit);
+        }
+        this.window = window;
+        this.bufferLimit = bufferLimit;
+        this.replenishAt = Math.max(1, window / 2);
+    }
+
+    /**
+     * Start the demand on a new connection
+     *
+     * @param webSocket connection
+     */
+    void start(WebSocket webSocket) {
+        synchronized (this) {
+            this.webSocket = webSocket;
+            this.consumed = 0;
+            this.outstanding = window;
+            this.paused = buffered >= bufferLimit;
+        }
+        webSocket.request(window);
+    }
+
+    /**
+     * Mark a message, or a part of it, as received and processed
+     */
+    void onMessage() {
+        WebSocket target;
+        long request;
+        synchronized (this) {
+            if (outstanding > 0) {
+                outstanding--;
+            }
+            consumed++;
+            if (paused || consumed < replenishAt) {
+                return;
+            }
+            target = webSocket;
+            request = consumed;
+            outstanding += request;
+            consumed = 0;
+        }
+        // outside of the lock because the connection may call the listener right from the request
+        target.request(request);
+    }
+
+    /**
+     * Change the number of buffered events
+     *
+     * @param delta positive when an event is added to a buffer, negative when it's taken from it
+     */
+    void onBuffered(int delta) {
+        WebSocket target = null;
+        long request = 0;
+        synchronized (this) {
+            buffered += delta;
+            if (buffered < 0) {
+                buffered = 0;
+            }
+            if (!paused && buffered >= bufferLimit) {
+                paused = true;
+            } else if (paused && buffered <= bufferLimit / 2) {
+                paused = false;
+                if (consumed > 0 && webSocket != null) {
+                    target = webSocket;
+                    request = consumed;
+                    outstanding += request;
+                    consumed = 0;
+                }
+            }
+        }
+        if (target != null) {
+            target.request(request);
+        }
+    }
+
+    synchronized boolean isPaused() {
+        return paused;
+    }
+
+    /**
+     *
+     * @return number of messages requested but not received yet
+     */
+    synchronized long getOutstanding() {
+        return outstanding;
+    }
+
+    synchronized long getBuffered() {
+        return buffered;
+    }
+}
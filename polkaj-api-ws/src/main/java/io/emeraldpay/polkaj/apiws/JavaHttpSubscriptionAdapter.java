@@ -3,17 +3,24 @@ package io.emeraldpay.polkaj.apiws;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JavaType;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
 import io.emeraldpay.polkaj.api.*;
 import io.emeraldpay.polkaj.json.jackson.PolkadotModule;
 
+import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.http.HttpClient;
 import java.net.http.WebSocket;
 import java.nio.ByteBuffer;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 
 /**
@@ -21,25 +28,75 @@ import java.util.concurrent.atomic.AtomicReference;
  * when a call provides multiple responses.
  * <br>
  * Before making calls, a {@link JavaHttpSubscriptionAdapter#connect()} must be called to establish a connection.
+ * <br>
+ * Subscription events are passed to the handlers on a separate executor, so a slow handler doesn't delay responses
+ * to the calls and events of other subscriptions. Each subscription has its own bounded queue of events waiting for
+ * the handler, and for subscriptions where only the current state matters, such as new heads, only the latest event
+ * is kept.
+ * <br>
+ * Incoming messages are requested from the connection a window ahead, and the demand is paused when too many events
+ * are waiting for the handlers, see {@link Builder#receiveWindow(int)} and {@link Builder#receiveBufferLimit(int)}.
+ * <br>
+ * When the connection is lost the calls waiting for a response fail, and the adapter reconnects with a backoff and
+ * makes all current subscriptions again, so their handlers continue to receive events. For new heads and finalized heads
+ * the headers produced while the connection was lost are requested and passed to the handlers before the new ones.
  */
 public class JavaHttpSubscriptionAdapter implements SubscriptionAdapter, RpcCallAdapter {
 
     private final AtomicReference<WebSocket> webSocket = new AtomicReference<>(null);
     private final ConcurrentHashMap<Integer, RequestExpectation<?>> execution = new ConcurrentHashMap<>();
     private final ConcurrentHashMap<String, DefaultSubscription<?>> subscriptions = new ConcurrentHashMap<>();
+    /**
+     * Subscriptions lost with the connection, waiting to be made again on a new one
+     */
+    private final Set<DefaultSubscription<?>> detached = ConcurrentHashMap.newKeySet();
+    /**
+     * Batches waiting for a response, by the ids of their calls
+     */
+    private final ConcurrentHashMap<Integer, PendingBatch> batches = new ConcurrentHashMap<>();
+    /**
+     * Batches waiting for a response, in the order they were sent
+     */
+    private final ConcurrentLinkedQueue<PendingBatch> batchOrder = new ConcurrentLinkedQueue<>();
     private final URI target;
     private final RpcCoder rpcCoder;
     private final DecodeResponse decodeResponse;
     private final HttpClient httpClient;
     private final Runnable onClose;
+    private final ConcurrencyLimiter limiter;
+    private final RpcMetrics metrics;
+    private final Executor dispatchExecutor;
+    private final int dispatchQueueSize;
+    private final Set<String> coalesce;
+    private final FlowControl flowControl;
+    /**
+     * Backoff before the first reconnect attempt, in nanoseconds, or 0 to not reconnect
+     */
+    private final long initialBackoff;
+    private final long maxBackoff;
+    private final int backfillLimit;
+    private final AtomicBoolean reconnecting = new AtomicBoolean(false);
+    private volatile boolean closed = false;
+    private final AtomicReference<ScheduledFuture<?>> ping = new AtomicReference<>(null);
 
     private final ScheduledExecutorService control = Executors.newSingleThreadScheduledExecutor();
-    private final MessageBuffer messageBuffer = new MessageBuffer();
 
-    private JavaHttpSubscriptionAdapter(URI target, HttpClient httpClient, Runnable onClose, RpcCoder rpcCoder) {
+    private JavaHttpSubscriptionAdapter(URI target, HttpClient httpClient, Runnable onClose, RpcCoder rpcCoder,
+                                        ConcurrencyLimiter limiter, RpcMetrics metrics,
+                                        Executor dispatchExecutor, int dispatchQueueSize, Set<String> coalesce,
+                                        FlowControl flowControl, long initialBackoff, long maxBackoff, int backfillLimit) {
         this.target = target;
         this.httpClient = httpClient;
         this.onClose = onClose;
+        this.limiter = limiter;
+        this.metrics = metrics;
+        this.dispatchExecutor = dispatchExecutor;
+        this.dispatchQueueSize = dispatchQueueSize;
+        this.coalesce = coalesce;
+        this.flowControl = flowControl;
+        this.initialBackoff = initialBackoff;
+        this.maxBackoff = maxBackoff;
+        this.backfillLimit = backfillLimit;
         var rpcMapping = new DecodeResponse.TypeMapping<Integer>() {
             @Override
             public JavaType get(Integer id) {
@@ -74,6 +131,16 @@ public class JavaHttpSubscriptionAdapter implements SubscriptionAdapter, RpcCall
      * @return a future for the connection. It always completed with <code>true</code> or and exception if failed to connect
      */
     public CompletableFuture<Boolean> connect() {
+        return open(true);
+    }
+
+    /**
+     * Open a new connection
+     *
+     * @param reset true to forget current calls and subscriptions, false to keep subscriptions for a reconnect
+     * @return a future for the connection
+     */
+    private CompletableFuture<Boolean> open(boolean reset) {
         CompletableFuture<Boolean> whenConnected = new CompletableFuture<>();
         WebSocket.Listener listener = newListener(whenConnected);
 
@@ -88,35 +155,68 @@ public class JavaHttpSubscriptionAdapter implements SubscriptionAdapter, RpcCall
                     && !oldWebSocket.isOutputClosed()) {
                 oldWebSocket.sendClose(WebSocket.NORMAL_CLOSURE, "reconnect");
             }
-            execution.clear();
-            subscriptions.clear();
-            rpcCoder.resetId();
+            if (reset) {
+                execution.clear();
+                batches.clear();
+                batchOrder.clear();
+                subscriptions.clear();
+                detached.clear();
+                rpcCoder.resetId();
+            }
 
             // need to send ping, otherwise remote can drop the connection
-            control.scheduleAtFixedRate(() -> {
+            ScheduledFuture<?> previous = ping.getAndSet(control.scheduleAtFixedRate(() -> {
                     byte[] ping = new byte[1];
                     newWebSocket.sendPing(ByteBuffer.wrap(ping));
-            }, 30, 45, TimeUnit.SECONDS);
+            }, 30, 45, TimeUnit.SECONDS));
+            if (previous != null) {
+                previous.cancel(false);
+            }
 
             return newWebSocket;
         })).thenCombine(whenConnected, (webSocket, isOpen) -> isOpen);
     }
 
     private WebSocket.Listener newListener(final CompletableFuture<Boolean> whenConnected) {
+        // a listener is called sequentially, and only for its own connection
+        final StreamingMessageParser messageParser = new StreamingMessageParser(rpcCoder.getObjectMapper());
         return new WebSocket.Listener() {
             @Override
             public CompletionStage<?> onText(WebSocket webSocket, CharSequence data, boolean last) {
                 try {
-                    if (last) {
-                        String message = messageBuffer.last(webSocket, data);
-                        WsResponse response = decodeResponse.decode(message);
-                        if (response.getType() == WsResponse.Type.SUBSCRIPTION) {
-                            accept(response.asEvent());
+                    TokenBuffer message = messageParser.add(data, last);
+                    if (message != null) {
+                        final long start = System.nanoTime();
+                        // the message is parsed while its parts are received, so the time of that is counted too
+                        final long parseTime = messageParser.getLastParseTime();
+                        final int size = (int) messageParser.getLastSize();
+                        if (DecodeResponse.isBatch(message)) {
+                            List<WsResponse> responses = decodeResponse.decodeBatch(message);
+                            metrics.onDecode(RpcMetrics.BATCH, parseTime + System.nanoTime() - start);
+                            metrics.onResponseBytes(RpcMetrics.BATCH, size);
+                            for (WsResponse response : responses) {
+                                accept(response);
+                            }
+                            onBatchResponse(responses);
                         } else {
-                            accept(response.asRpc());
+                            WsResponse response;
+                            try {
+                                response = decodeResponse.decode(message);
+                            } catch (IllegalStateException e) {
+                                // a server may reject a whole batch with a single error without an id
+                                RpcResponseError batchError = decodeResponse.decodeErrorWithoutId(message);
+                                if (batchError == null) {
+                                    throw e;
+                                }
+                                onBatchError(batchError);
+                                response = null;
+                            }
+                            if (response != null) {
+                                record(response, size, parseTime + System.nanoTime() - start);
+                                accept(response);
+                                onBatchResponse(Collections.singletonList(response));
+                            }
                         }
-                    } else {
-                        messageBuffer.add(webSocket, data);
                     }
                 } catch (IllegalStateException e) {
                     // happen when data cannot be properly mapped, i.e. when there is no such subscription or request
@@ -124,26 +224,203 @@ public class JavaHttpSubscriptionAdapter implements SubscriptionAdapter, RpcCall
                 } catch (Throwable e) {
                     e.printStackTrace();
                 }
-                webSocket.request(1);
+                flowControl.onMessage();
                 return null;
             }
 
             @Override
             public void onOpen(WebSocket webSocket) {
                 whenConnected.complete(true);
-                webSocket.request(1);
+                flowControl.start(webSocket);
+            }
+
+            @Override
+            public CompletionStage<?> onBinary(WebSocket webSocket, ByteBuffer data, boolean last) {
+                // not used by the protocol, but takes a message from the demand
+                flowControl.onMessage();
+                return null;
             }
 
             @Override
             public CompletionStage<?> onPing(WebSocket webSocket, ByteBuffer message) {
+                flowControl.onMessage();
                 return webSocket.sendPong(message);
             }
 
+            @Override
+            public CompletionStage<?> onPong(WebSocket webSocket, ByteBuffer message) {
+                flowControl.onMessage();
+                return null;
+            }
+
+            @Override
+            public CompletionStage<?> onClose(WebSocket webSocket, int statusCode, String reason) {
+                onDisconnect(webSocket, new IOException("Connection closed by server: " + statusCode + " " + reason));
+                return null;
+            }
+
+            @Override
+            public void onError(WebSocket webSocket, Throwable error) {
+                onDisconnect(webSocket, error);
+            }
+
         };
     }
 
+    /**
+     * Fail the calls waiting for a response on the lost connection, and start reconnecting
+     *
+     * @param lost lost connection
+     * @param reason error
+     */
+    private void onDisconnect(WebSocket lost, Throwable reason) {
+        if (closed || webSocket.get() != lost || !reconnecting.compareAndSet(false, true)) {
+            // closed by the client, or already handled
+            return;
+        }
+        IOException error = reason instanceof IOException
+                ? (IOException) reason
+                : new IOException("Connection lost", reason);
+        batches.clear();
+        batchOrder.clear();
+        // the server ids are not valid anymore, and may be given to other subscriptions on the new connection
+        for (String id : new ArrayList<>(subscriptions.keySet())) {
+            DefaultSubscription<?> subscription = subscriptions.remove(id);
+            if (subscription != null) {
+                detached.add(subscription);
+            }
+        }
+        for (Integer id : new ArrayList<>(execution.keySet())) {
+            RequestExpectation<?> expectation = execution.remove(id);
+            if (expectation != null) {
+                expectation.getHandler().completeExceptionally(new CompletionException(error));
+            }
+        }
+        if (initialBackoff <= 0) {
+            reconnecting.set(false);
+            return;
+        }
+        scheduleReconnect(1);
+    }
+
+    private void scheduleReconnect(int attempt) {
+        try {
+            control.schedule(() -> reconnect(attempt), backoff(attempt), TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+            // the adapter is closed
+            reconnecting.set(false);
+        }
+    }
+
+    private void reconnect(int attempt) {
+        if (closed) {
+            return;
+        }
+        CompletableFuture<Boolean> connected;
+        try {
+            connected = open(false);
+        } catch (Throwable t) {
+            connected = CompletableFuture.failedFuture(t);
+        }
+        connected.whenComplete((ok, t) -> {
+            if (closed) {
+                WebSocket current = webSocket.getAndSet(null);
+                if (current != null) {
+                    current.sendClose(WebSocket.NORMAL_CLOSURE, "close");
+                }
+                return;
+            }
+            if (t != null) {
+                scheduleReconnect(attempt + 1);
+                return;
+            }
+            reconnecting.set(false);
+            resubscribe();
+            WebSocket current = webSocket.get();
+            if (current != null && current.isInputClosed()) {
+                // lost again before the reconnect was completed
+                onDisconnect(current, new IOException("Connection closed"));
+            }
+        });
+    }
+
+    /**
+     * Delay before a reconnect attempt
+     *
+     * @param attempt attempt number, starting from 1
+     * @return random delay between 0 and the exponential backoff
+     */
+    long backoff(int attempt) {
+        long backoff = initialBackoff;
+        for (int i = 1; i < attempt && backoff < maxBackoff; i++) {
+            backoff *= 2;
+        }
+        backoff = Math.min(backoff, maxBackoff);
+        if (backoff <= 0) {
+            return 0;
+        }
+        return ThreadLocalRandom.current().nextLong(backoff + 1);
+    }
+
+    /**
+     * Make the subscriptions lost with the previous connection again on the new one
+     */
+    private void resubscribe() {
+        WebSocket connection = webSocket.get();
+        for (DefaultSubscription<?> subscription : new ArrayList<>(detached)) {
+            resubscribe(subscription, connection, 1);
+        }
+    }
+
+    /**
+     * Make the subscription again, retrying with a backoff until it succeeds, the subscription is closed, or the connection
+     * is replaced by a new one (which makes all subscriptions again)
+     *
+     * @param subscription subscription
+     * @param connection connection it's made for
+     * @param attempt attempt number, starting from 1
+     */
+    private <T> void resubscribe(DefaultSubscription<T> subscription, WebSocket connection, int attempt) {
+        SubscribeCall<T> call = subscription.getCall();
+        if (call == null || subscription.isClosed()) {
+            detached.remove(subscription);
+            return;
+        }
+        if (closed || webSocket.get() != connection || reconnecting.get()) {
+            return;
+        }
+        produceRpcFuture(RpcCall.create(String.class, call.getMethod(), call.getParams())).whenComplete((id, t) -> {
+            if (t != null) {
+                System.err.println("Failed to subscribe again to " + call.getMethod() + ": " + t.getMessage());
+                try {
+                    control.schedule(() -> resubscribe(subscription, connection, attempt + 1),
+                            backoff(attempt), TimeUnit.NANOSECONDS);
+                } catch (RejectedExecutionException e) {
+                    // the adapter is closed
+                }
+                return;
+            }
+            if (!detached.remove(subscription) || subscription.isClosed()) {
+                // closed meanwhile
+                produceRpcFuture(RpcCall.create(Boolean.class, call.getUnsubscribe(), id));
+                return;
+            }
+            boolean heads = PolkadotMethod.CHAIN_SUBSCRIBE_NEW_HEADS.equals(call.getMethod())
+                    || PolkadotMethod.CHAIN_SUBSCRIBE_FINALIZED_HEADS.equals(call.getMethod());
+            subscription.resubscribed(id, heads ? backfillLimit : 0);
+            subscriptions.put(id, subscription);
+        });
+    }
+
     @Override
     public <T> CompletableFuture<T> produceRpcFuture(final RpcCall<T> call) {
+        if (limiter != null) {
+            return limiter.execute(call.getPriority(), () -> send(call));
+        }
+        return send(call);
+    }
+
+    private <T> CompletableFuture<T> send(final RpcCall<T> call) {
         int id = rpcCoder.nextId();
         byte[] payload;
         final ObjectMapper objectMapper = rpcCoder.getObjectMapper();
@@ -152,18 +429,177 @@ public class JavaHttpSubscriptionAdapter implements SubscriptionAdapter, RpcCall
         } catch (JsonProcessingException e) {
             return CompletableFuture.failedFuture(e);
         }
+        final String method = call.getMethod();
+        final RpcCallEvent event = RpcCallEvent.start(method, id, payload.length, false);
         CompletableFuture<T> whenResponseReceived = new CompletableFuture<>();
-        execution.put(id, new RequestExpectation<>(rpcCoder.responseType(
-                call.getResultType(objectMapper.getTypeFactory())), whenResponseReceived));
-        return webSocket.get()
-                .sendText(new String(payload), true)
-                .thenCombine(whenResponseReceived, (a, b) -> b);
+        execution.put(id, new RequestExpectation<>(method, rpcCoder.responseType(
+                call.getResultType(objectMapper.getTypeFactory())), whenResponseReceived, event));
+        metrics.onRequest(method);
+        metrics.onRequestBytes(method, payload.length);
+        final long start = System.nanoTime();
+        CompletableFuture<WebSocket> sent = webSocket.get().sendText(new String(payload), true);
+        sent.whenComplete((ignore, t) -> {
+            if (t != null) {
+                execution.remove(id);
+            }
+        });
+        return sent
+                .thenCombine(whenResponseReceived, (a, b) -> b)
+                .whenComplete((result, t) -> {
+                    metrics.onResponse(method, System.nanoTime() - start, t);
+                    if (event != null) {
+                        event.complete(t);
+                    }
+                });
+    }
+
+
+    /**
+     * Execute multiple calls as a JSON RPC batch, sent in a single WebSocket message. Responses are matched to the calls
+     * by their ids, so they may come in any order.
+     * <br>
+     * When the adapter has a ConcurrencyLimiter the batch takes a single slot, with the highest priority of its calls.
+     *
+     * @param calls calls to execute
+     * @return futures for the results, in the same order as the calls
+     */
+    @Override
+    public List<CompletableFuture<?>> produceRpcFutures(final List<? extends RpcCall<?>> calls) {
+        if (calls.isEmpty()) {
+            return Collections.emptyList();
+        }
+        if (limiter == null) {
+            return sendBatch(calls);
+        }
+        CallPriority priority = CallPriority.BULK;
+        for (RpcCall<?> call : calls) {
+            if (call.getPriority().compareTo(priority) > 0) {
+                priority = call.getPriority();
+            }
+        }
+        // the slot is released when all calls of the batch are completed
+        CompletableFuture<List<CompletableFuture<?>>> sent = limiter.execute(priority, () -> {
+            List<CompletableFuture<?>> responses = sendBatch(calls);
+            return CompletableFuture.allOf(responses.toArray(new CompletableFuture[0]))
+                    .handle((ignore, t) -> responses);
+        });
+        List<CompletableFuture<?>> result = new ArrayList<>(calls.size());
+        for (int i = 0; i < calls.size(); i++) {
+            final int index = i;
+            result.add(sent.thenCompose(responses -> responses.get(index)));
+        }
+        return result;
+    }
+
+    private List<CompletableFuture<?>> sendBatch(final List<? extends RpcCall<?>> calls) {
+        final ObjectMapper objectMapper = rpcCoder.getObjectMapper();
+        int[] ids = new int[calls.size()];
+        List<CompletableFuture<Object>> handlers = new ArrayList<>(calls.size());
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = rpcCoder.nextId();
+            handlers.add(new CompletableFuture<>());
+        }
+        byte[] payload;
+        try {
+            payload = rpcCoder.encodeBatch(ids, calls);
+        } catch (JsonProcessingException e) {
+            handlers.forEach(handler -> handler.completeExceptionally(e));
+            return new ArrayList<>(handlers);
+        }
+        RpcCallEvent[] events = new RpcCallEvent[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            events[i] = RpcCallEvent.start(calls.get(i).getMethod(), ids[i], payload.length, true);
+            execution.put(ids[i], new RequestExpectation<>(calls.get(i).getMethod(), rpcCoder.responseType(
+                    calls.get(i).getResultType(objectMapper.getTypeFactory())), handlers.get(i), events[i]));
+            metrics.onRequest(calls.get(i).getMethod());
+        }
+        metrics.onRequestBytes(RpcMetrics.BATCH, payload.length);
+        PendingBatch batch = new PendingBatch(ids);
+        for (int id : ids) {
+            batches.put(id, batch);
+        }
+        batchOrder.add(batch);
+        final long start = System.nanoTime();
+        CompletableFuture<WebSocket> sent = webSocket.get().sendText(new String(payload), true);
+        sent.whenComplete((ignore, t) -> {
+            if (t != null) {
+                finishBatch(batch, t);
+            }
+        });
+        List<CompletableFuture<?>> result = new ArrayList<>(calls.size());
+        for (int i = 0; i < ids.length; i++) {
+            final String method = calls.get(i).getMethod();
+            final RpcCallEvent event = events[i];
+            result.add(sent.thenCombine(handlers.get(i), (a, b) -> b)
+                    .whenComplete((value, t) -> {
+                        metrics.onResponse(method, System.nanoTime() - start, t);
+                        if (event != null) {
+                            event.complete(t);
+                        }
+                    }));
+        }
+        return result;
+    }
+
+    /**
+     * Fail the calls of the batch which are not in the response, same as the HTTP adapter does. A server may skip
+     * a call in a batch response, and only a single response is expected for a batch.
+     *
+     * @param responses decoded responses of a message
+     */
+    private void onBatchResponse(List<WsResponse> responses) {
+        for (WsResponse response : responses) {
+            if (response.getType() != WsResponse.Type.RPC) {
+                continue;
+            }
+            PendingBatch batch = batches.get(response.asRpc().getId());
+            if (batch != null) {
+                finishBatch(batch, null);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Fail the oldest batch waiting for a response, when the server rejected a batch with an error without an id
+     *
+     * @param error error returned by the server
+     */
+    private void onBatchError(RpcResponseError error) {
+        PendingBatch batch = batchOrder.peek();
+        if (batch != null) {
+            finishBatch(batch, new RpcException(error.getCode(), error.getMessage(), error.getData()));
+        }
     }
 
+    /**
+     * Stop waiting for the responses of the batch, and fail the calls without a response
+     *
+     * @param batch batch
+     * @param error error for the calls, or null to fail them as not returned by the server
+     */
+    private void finishBatch(PendingBatch batch, Throwable error) {
+        if (!batch.done.compareAndSet(false, true)) {
+            return;
+        }
+        batchOrder.remove(batch);
+        for (int id : batch.ids) {
+            batches.remove(id, batch);
+            RequestExpectation<?> expectation = execution.remove(id);
+            if (expectation != null) {
+                Throwable reason = error != null
+                        ? error
+                        : new RpcException(-32603, "Server returned no response for id: " + id);
+                expectation.getHandler().completeExceptionally(new CompletionException(reason));
+            }
+        }
+    }
 
     @Override
     public <T> CompletableFuture<Subscription<T>> subscribe(final SubscribeCall<T> call) {
-        var subscription = new DefaultSubscription<T>(call.getResultType(rpcCoder.getObjectMapper().getTypeFactory()), call.getUnsubscribe(),this);
+        var subscription = new DefaultSubscription<T>(call.getResultType(rpcCoder.getObjectMapper().getTypeFactory()), call.getUnsubscribe(), this,
+                dispatchExecutor, dispatchQueueSize, coalesce.contains(call.getMethod()), metrics, flowControl);
+        subscription.setCall(call);
         var start = this.produceRpcFuture(RpcCall.create(String.class, call.getMethod(), call.getParams()));
         return start.thenApply(id -> {
             subscriptions.put(id, subscription);
@@ -172,6 +608,32 @@ public class JavaHttpSubscriptionAdapter implements SubscriptionAdapter, RpcCall
         });
     }
 
+    private void record(WsResponse response, int size, long decodeTime) {
+        if (response.getType() == WsResponse.Type.SUBSCRIPTION) {
+            String method = response.asEvent().getMethod();
+            metrics.onDecode(method, decodeTime);
+            metrics.onResponseBytes(method, size);
+            return;
+        }
+        RequestExpectation<?> expectation = execution.get(response.asRpc().getId());
+        if (expectation == null) {
+            return;
+        }
+        metrics.onDecode(expectation.getMethod(), decodeTime);
+        metrics.onResponseBytes(expectation.getMethod(), size);
+        if (expectation.getEvent() != null) {
+            expectation.getEvent().setResponseBytes(size);
+        }
+    }
+
+    private void accept(WsResponse response) {
+        if (response.getType() == WsResponse.Type.SUBSCRIPTION) {
+            accept(response.asEvent());
+        } else {
+            accept(response.asRpc());
+        }
+    }
+
     @SuppressWarnings("unchecked")
     public <T> void accept(RpcResponse<T> response) {
         RequestExpectation<T> f = (RequestExpectation<T>) execution.get(response.getId());
@@ -197,6 +659,7 @@ public class JavaHttpSubscriptionAdapter implements SubscriptionAdapter, RpcCall
         if (s == null) {
             return;
         }
+        metrics.onSubscriptionEvent(response.method);
         s.accept(new Subscription.Event<>(response.method, response.value));
     }
 
@@ -206,6 +669,7 @@ public class JavaHttpSubscriptionAdapter implements SubscriptionAdapter, RpcCall
 
     @Override
     public void close() {
+        closed = true;
         webSocket.updateAndGet(old -> {
             if (old != null) {
                 old.sendClose(WebSocket.NORMAL_CLOSURE, "close");
@@ -214,6 +678,7 @@ public class JavaHttpSubscriptionAdapter implements SubscriptionAdapter, RpcCall
         });
         execution.clear();
         subscriptions.clear();
+        detached.clear();
         control.shutdownNow();
         if (onClose != null) {
             try {
@@ -263,13 +728,38 @@ public class JavaHttpSubscriptionAdapter implements SubscriptionAdapter, RpcCall
         }
     }
 
+    private static class PendingBatch {
+        private final int[] ids;
+        private final AtomicBoolean done = new AtomicBoolean(false);
+
+        PendingBatch(int[] ids) {
+            this.ids = ids;
+        }
+    }
+
     static class RequestExpectation<T> {
+        private final String method;
         private final JavaType type;
         private final CompletableFuture<T> handler;
+        private final RpcCallEvent event;
 
-        public RequestExpectation(JavaType type, CompletableFuture<T> handler) {
+        public RequestExpectation(String method, JavaType type, CompletableFuture<T> handler, RpcCallEvent event) {
+            this.method = method;
             this.type = type;
             this.handler = handler;
+            this.event = event;
+        }
+
+        /**
+         *
+         * @return JFR event of the call, or null if it's not recorded
+         */
+        public RpcCallEvent getEvent() {
+            return event;
+        }
+
+        public String getMethod() {
+            return method;
         }
 
         public JavaType getType() {
@@ -287,6 +777,21 @@ public class JavaHttpSubscriptionAdapter implements SubscriptionAdapter, RpcCall
         private HttpClient httpClient;
         private RpcCoder rpcCoder;
         private Runnable onClose;
+        private ConcurrencyLimiter limiter;
+        private RpcMetrics metrics;
+        private Executor dispatchExecutor;
+        private boolean dispatchInline = false;
+        private int dispatchQueueSize = 1024;
+        private int receiveWindow = 32;
+        private Integer receiveBufferLimit;
+        private Duration initialBackoff = Duration.ofMillis(500);
+        private Duration maxBackoff = Duration.ofSeconds(30);
+        private int backfillLimit = 100;
+        private Set<String> coalesce = Set.of(
+                PolkadotMethod.CHAIN_SUBSCRIBE_NEW_HEADS,
+                PolkadotMethod.CHAIN_SUBSCRIBE_FINALIZED_HEADS,
+                PolkadotMethod.STATE_SUBSCRIBE_RUNTIME_VERSION
+        );
 
         /**
          * Server address URL
@@ -361,8 +866,166 @@ public class JavaHttpSubscriptionAdapter implements SubscriptionAdapter, RpcCall
             return this;
         }
 
+        /**
+         * Limit the number of concurrent requests. By default, there is no limit.
+         *
+         * @param limiter limiter
+         * @return builder
+         * @see ConcurrencyLimiter
+         */
+        public JavaHttpSubscriptionAdapter.Builder limiter(ConcurrencyLimiter limiter) {
+            this.limiter = limiter;
+            return this;
+        }
+
+        /**
+         * Record metrics of the requests and subscriptions. By default, nothing is recorded.
+         *
+         * @param metrics metrics implementation
+         * @return builder
+         * @see InMemoryRpcMetrics
+         */
+        public JavaHttpSubscriptionAdapter.Builder metrics(RpcMetrics metrics) {
+            this.metrics = metrics;
+            return this;
+        }
+
+        /**
+         * Executor to pass subscription events to the handlers. By default, a new cached thread pool is created, and
+         * it's shut down when the adapter is closed.
+         *
+         * @param dispatchExecutor executor
+         * @return builder
+         */
+        public JavaHttpSubscriptionAdapter.Builder dispatchExecutor(Executor dispatchExecutor) {
+            this.dispatchExecutor = dispatchExecutor;
+            this.dispatchInline = false;
+            return this;
+        }
+
+        /**
+         * Pass subscription events to the handlers directly from the thread that received them, without queues.
+         * A handler must be fast then, because it delays all other responses on the connection.
+         *
+         * @return builder
+         */
+        public JavaHttpSubscriptionAdapter.Builder dispatchInline() {
+            this.dispatchExecutor = null;
+            this.dispatchInline = true;
+            return this;
+        }
+
+        /**
+         * Max number of events of a subscription waiting for the handler. When the queue is full new events are
+         * dropped. Default is 1024.
+         *
+         * @param dispatchQueueSize queue size
+         * @return builder
+         */
+        public JavaHttpSubscriptionAdapter.Builder dispatchQueueSize(int dispatchQueueSize) {
+            if (dispatchQueueSize < 1) {
+                throw new IllegalArgumentException("Queue size must be positive: " + dispatchQueueSize);
+            }
+            this.dispatchQueueSize = dispatchQueueSize;
+            return this;
+        }
+
+        /**
+         * Subscriptions which keep only the latest event waiting for the handler, i.e. when the handler is slow it
+         * skips the older events and gets the most recent one. Default is new heads, finalized heads
+         * and runtime version.
+         *
+         * @param subscribeMethods subscribe methods, ex. <code>chain_subscribeNewHeads</code>
+         * @return builder
+         */
+        public JavaHttpSubscriptionAdapter.Builder coalesce(Set<String> subscribeMethods) {
+            this.coalesce = Set.copyOf(subscribeMethods);
+            return this;
+        }
+
+        /**
+         * Number of messages requested from the connection ahead of processing. With 1 the next message is read only
+         * after the previous one is processed. Default is 32.
+         *
+         * @param receiveWindow number of messages
+         * @return builder
+         */
+        public JavaHttpSubscriptionAdapter.Builder receiveWindow(int receiveWindow) {
+            if (receiveWindow < 1) {
+                throw new IllegalArgumentException("Receive window must be positive: " + receiveWindow);
+            }
+            this.receiveWindow = receiveWindow;
+            return this;
+        }
+
+        /**
+         * Max number of subscription events waiting for the handlers, across all subscriptions, before the adapter
+         * stops reading from the connection. It continues when a half of them is handled. Default is a half of
+         * the dispatch queue size, so a single fast subscription is paused before its events are dropped.
+         * <br>
+         * While reading is paused responses to the calls are not received either, so a handler must not wait for
+         * a call made through the same adapter. It's not applied with {@link #dispatchInline()}, where events are
+         * not queued.
+         *
+         * @param receiveBufferLimit number of events
+         * @return builder
+         */
+        public JavaHttpSubscriptionAdapter.Builder receiveBufferLimit(int receiveBufferLimit) {
+            if (receiveBufferLimit < 1) {
+                throw new IllegalArgumentException("Buffer limit must be positive: " + receiveBufferLimit);
+            }
+            this.receiveBufferLimit = receiveBufferLimit;
+            return this;
+        }
+
+        /**
+         * Backoff before reconnecting when the connection is lost, doubled for each next attempt, with a random jitter.
+         * Default is 500ms, up to 30 seconds.
+         *
+         * @param initial backoff before the first attempt
+         * @param max max backoff
+         * @return builder
+         */
+        public JavaHttpSubscriptionAdapter.Builder reconnect(Duration initial, Duration max) {
+            if (initial.isNegative() || initial.isZero() || max.compareTo(initial) < 0) {
+                throw new IllegalArgumentException("Invalid backoff: " + initial + " to " + max);
+            }
+            this.initialBackoff = initial;
+            this.maxBackoff = max;
+            return this;
+        }
+
+        /**
+         * Don't reconnect when the connection is lost. The subscriptions stop receiving events then.
+         *
+         * @return builder
+         */
+        public JavaHttpSubscriptionAdapter.Builder noReconnect() {
+            this.initialBackoff = null;
+            this.maxBackoff = null;
+            return this;
+        }
+
+        /**
+         * Max number of headers requested for new heads and finalized heads subscriptions after reconnect, to fill
+         * the blocks produced while the connection was lost. With a longer outage only the latest of them are
+         * requested. Default is 100, and 0 disables it.
+         *
+         * @param backfillLimit number of headers
+         * @return builder
+         */
+        public JavaHttpSubscriptionAdapter.Builder backfillLimit(int backfillLimit) {
+            if (backfillLimit < 0) {
+                throw new IllegalArgumentException("Backfill limit must not be negative: " + backfillLimit);
+            }
+            this.backfillLimit = backfillLimit;
+            return this;
+        }
 
         private void initDefaults() {
+            if (metrics == null) {
+                metrics = RpcMetrics.NONE;
+            }
             if (rpcCoder == null) {
                 final ObjectMapper objectMapper = new ObjectMapper();
                 objectMapper.registerModule(new PolkadotModule());
@@ -397,7 +1060,29 @@ public class JavaHttpSubscriptionAdapter implements SubscriptionAdapter, RpcCall
          */
         public JavaHttpSubscriptionAdapter build() {
             initDefaults();
-            return new JavaHttpSubscriptionAdapter(target, httpClient, onClose, rpcCoder);
+            Executor dispatchExecutor = this.dispatchExecutor;
+            Runnable onClose = this.onClose;
+            if (dispatchExecutor == null && !dispatchInline) {
+                ExecutorService dispatchPool = Executors.newCachedThreadPool((runnable) -> {
+                    Thread thread = new Thread(runnable, "polkaj-ws-dispatch");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                dispatchExecutor = dispatchPool;
+                final Runnable userOnClose = onClose;
+                onClose = () -> {
+                    dispatchPool.shutdownNow();
+                    if (userOnClose != null) {
+                        userOnClose.run();
+                    }
+                };
+            }
+            return new JavaHttpSubscriptionAdapter(target, httpClient, onClose, rpcCoder, limiter, metrics,
+                    dispatchExecutor, dispatchQueueSize, coalesce, new FlowControl(receiveWindow,
+                    receiveBufferLimit != null ? receiveBufferLimit : Math.max(1, dispatchQueueSize / 2)),
+                    initialBackoff != null ? initialBackoff.toNanos() : 0,
+                    maxBackoff != null ? maxBackoff.toNanos() : 0,
+                    backfillLimit);
         }
     }
 
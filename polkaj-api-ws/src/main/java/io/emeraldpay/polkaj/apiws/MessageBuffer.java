@@ -7,7 +7,10 @@ import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Buffer for WebSocket messages, when messages come split into several frames
+ *
+ * @deprecated the adapter parses the frames as they're received, without joining them
  */
+@Deprecated
 public class MessageBuffer {
 
     private final ConcurrentHashMap<WebSocket, List<CharSequence>> buffer = new ConcurrentHashMap<>();
@@ -0,0 +1,221 @@
+package io.emeraldpay.polkaj.apiws;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+
+import java.io.IOException;
+
+/**
+ * Parses a WebSocket message while its parts are received. Each part is encoded to UTF-8 and fed to the non-blocking
+ * Jackson parser, and the parsed tokens are kept in a TokenBuffer. So when the last part is received the message is
+ * already parsed, and the full message is never built as a String.
+ * <br>
+ * Not thread safe, a connection calls its listener sequentially.
+ */
+class StreamingMessageParser {
+
+    private static final int CHUNK_SIZE = 8 * 1024;
+
+    private final ObjectMapper objectMapper;
+    private final byte[] chunk = new byte[CHUNK_SIZE];
+    private int position = 0;
+
+    private JsonParser parser;
+    private ByteArrayFeeder feeder;
+    private TokenBuffer tokens;
+    private int depth;
+    private boolean complete;
+    private boolean failed;
+    /**
+     * High surrogate at the end of a previous part, which must be encoded together with the next char
+     */
+    private char highSurrogate;
+
+    private long size;
+    private long parseTime;
+    private long lastSize;
+    private long lastParseTime;
+
+    StreamingMessageParser(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Add a part of the current message
+     *
+     * @param part part of the message
+     * @param last true if it's the last part
+     * @return parsed message if it's the last part, or null if more parts are expected
+     * @throws IOException if the message is not a valid JSON. The rest of its parts are ignored then.
+     */
+    TokenBuffer add(CharSequence part, boolean last) throws IOException {
+        final long start = System.nanoTime();
+        try {
+            if (!failed) {
+                if (parser == null) {
+                    start();
+                }
+                encode(part);
+                if (last && highSurrogate != 0) {
+                    write((byte) '?');
+                    highSurrogate = 0;
+                }
+                // parse what is received so far, so only the last part is left to parse when the message is complete
+                flush();
+                if (last) {
+                    feeder.endOfInput();
+                    drain();
+                    if (!complete || depth != 0) {
+                        throw new IOException("JSON finished before data received");
+                    }
+                }
+            }
+        } catch (IOException e) {
+            failed = true;
+            if (last) {
+                reset();
+            }
+            throw e;
+        }
+        parseTime += System.nanoTime() - start;
+        if (!last) {
+            return null;
+        }
+        if (failed) {
+            reset();
+            return null;
+        }
+        TokenBuffer result = tokens;
+        lastSize = size;
+        lastParseTime = parseTime;
+        reset();
+        return result;
+    }
+
+    /**
+     *
+     * @return size in bytes of the last parsed message
+     */
+    long getLastSize() {
+        return lastSize;
+    }
+
+    /**
+     *
+     * @return time in nanoseconds spent to parse the parts of the last parsed message
+     */
+    long getLastParseTime() {
+        return lastParseTime;
+    }
+
+    private void start() throws IOException {
+        parser = objectMapper.getFactory().createNonBlockingByteArrayParser();
+        feeder = (ByteArrayFeeder) parser.getNonBlockingInputFeeder();
+        tokens = new TokenBuffer(objectMapper, false);
+        depth = 0;
+        complete = false;
+    }
+
+    private void reset() {
+        if (parser != null) {
+            try {
+                parser.close();
+            } catch (IOException e) {
+                // nothing to release for a byte array parser
+            }
+        }
+        parser = null;
+        feeder = null;
+        tokens = null;
+        position = 0;
+        highSurrogate = 0;
+        failed = false;
+        size = 0;
+        parseTime = 0;
+    }
+
+    /**
+     * Encode chars to UTF-8 into the chunk, feeding the chunk to the parser when it's full
+     */
+    private void encode(CharSequence part) throws IOException {
+        final int length = part.length();
+        for (int i = 0; i < length; i++) {
+            if (position > CHUNK_SIZE - 4) {
+                flush();
+            }
+            char c = part.charAt(i);
+            if (highSurrogate != 0) {
+                char high = highSurrogate;
+                highSurrogate = 0;
+                if (Character.isLowSurrogate(c)) {
+                    writeCodePoint(Character.toCodePoint(high, c));
+                    continue;
+                }
+                write((byte) '?');
+            }
+            if (c < 0x80) {
+                chunk[position++] = (byte) c;
+            } else if (c < 0x800) {
+                chunk[position++] = (byte) (0xc0 | (c >> 6));
+                chunk[position++] = (byte) (0x80 | (c & 0x3f));
+            } else if (Character.isHighSurrogate(c)) {
+                highSurrogate = c;
+            } else if (Character.isLowSurrogate(c)) {
+                write((byte) '?');
+            } else {
+                chunk[position++] = (byte) (0xe0 | (c >> 12));
+                chunk[position++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                chunk[position++] = (byte) (0x80 | (c & 0x3f));
+            }
+        }
+    }
+
+    private void writeCodePoint(int codePoint) {
+        chunk[position++] = (byte) (0xf0 | (codePoint >> 18));
+        chunk[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+        chunk[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+        chunk[position++] = (byte) (0x80 | (codePoint & 0x3f));
+    }
+
+    private void write(byte b) throws IOException {
+        if (position >= CHUNK_SIZE) {
+            flush();
+        }
+        chunk[position++] = b;
+    }
+
+    /**
+     * Feed the encoded bytes to the parser and take all tokens available with them
+     */
+    private void flush() throws IOException {
+        if (position == 0) {
+            return;
+        }
+        feeder.feedInput(chunk, 0, position);
+        size += position;
+        // the parser keeps a reference to the chunk, so it must consume all of it before the chunk is reused
+        drain();
+        position = 0;
+    }
+
+    private void drain() throws IOException {
+        JsonToken token;
+        while ((token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+            if (complete) {
+                throw new IOException("Unexpected data after the end of JSON");
+            }
+            tokens.copyCurrentEvent(parser);
+            if (token.isStructStart()) {
+                depth++;
+            } else if (token.isStructEnd()) {
+                depth--;
+            }
+            if (depth == 0) {
+                complete = true;
+            }
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package io.emeraldpay.polkaj.apiws;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Java Flight Recorder event for a subscription event passed to the handler, with the time spent in the handler.
+ * Disabled by default, enable <code>io.emeraldpay.polkaj.SubscriptionDispatch</code> in the JFR settings to record it.
+ */
+@Name("io.emeraldpay.polkaj.SubscriptionDispatch")
+@Label("Subscription Dispatch")
+@Description("Subscription event passed to the handler")
+@Category({"Polkaj", "RPC"})
+@Enabled(false)
+@StackTrace(false)
+class SubscriptionDispatchEvent extends Event {
+
+    @Label("Method")
+    String method;
+
+    @Label("Subscription Id")
+    String subscriptionId;
+}
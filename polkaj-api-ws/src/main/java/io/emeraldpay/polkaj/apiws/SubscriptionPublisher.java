@@ -0,0 +1,364 @@
+package io.emeraldpay.polkaj.apiws;
+
+import io.emeraldpay.polkaj.api.Subscription;
+
+import java.util.ArrayDeque;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Publishes events of a {@link Subscription} as a {@link Flow.Publisher}, so they can be consumed with a demand,
+ * and by multiple subscribers at the same time.
+ * <br>
+ * Each subscriber has its own buffer of events it has not requested yet. When the buffer is full, because the subscriber
+ * is slower than the server, the {@link Overflow} policy decides what happens: drop the oldest event, keep only
+ * the latest, or stop the subscriber with an error. Events that arrive before the first subscriber are kept
+ * in the buffer of that subscriber.
+ * <br>
+ * Events are delivered to a subscriber from the thread that received the event, or the thread that requested
+ * more of them, but never concurrently.
+ * <br>
+ * The publisher takes the handler of the subscription, i.e. it must not be used with {@link Subscription#handler(Consumer)}.
+ * Close the publisher to unsubscribe on the server; subscribers are completed then.
+ * <br>
+ * Example:
+ * <pre><code>
+ * SubscriptionPublisher&lt;BlockJson.Header&gt; heads = SubscriptionPublisher.newBuilder(
+ *          adapter.subscribe(StandardSubscriptions.getInstance().newHeads()).get()
+ *      )
+ *      .bufferSize(16)
+ *      .overflow(SubscriptionPublisher.Overflow.LATEST_ONLY)
+ *      .build();
+ * heads.subscribe(subscriber);
+ * </code></pre>
+ *
+ * @param <T> type of the event data
+ */
+public class SubscriptionPublisher<T> implements Flow.Publisher<Subscription.Event<T>>, AutoCloseable {
+
+    private final Subscription<T> subscription;
+    private final int bufferSize;
+    private final Overflow overflow;
+
+    private final CopyOnWriteArrayList<Downstream> subscribers = new CopyOnWriteArrayList<>();
+    private final LongAdder dropped = new LongAdder();
+    /**
+     * Events received before the first subscriber
+     */
+    private ArrayDeque<Subscription.Event<T>> early = new ArrayDeque<>();
+    private volatile boolean closed = false;
+
+    private SubscriptionPublisher(Subscription<T> subscription, int bufferSize, Overflow overflow) {
+        this.subscription = subscription;
+        this.bufferSize = bufferSize;
+        this.overflow = overflow;
+        Consumer<Subscription.Event<T>> handler = this::publish;
+        subscription.handler(handler);
+    }
+
+    /**
+     * Publisher with the default buffer size and overflow policy
+     *
+     * @param subscription subscription to publish
+     * @param <T> type of the event data
+     * @return publisher
+     */
+    public static <T> SubscriptionPublisher<T> of(Subscription<T> subscription) {
+        return newBuilder(subscription).build();
+    }
+
+    public static <T> Builder<T> newBuilder(Subscription<T> subscription) {
+        return new Builder<>(subscription);
+    }
+
+    /**
+     * Pass a new event to all current subscribers
+     *
+     * @param event event
+     */
+    void publish(Subscription.Event<T> event) {
+        if (closed) {
+            return;
+        }
+        if (subscribers.isEmpty()) {
+            synchronized (this) {
+                if (early != null) {
+                    if (early.size() >= bufferSize) {
+                        early.poll();
+                        dropped.increment();
+                    }
+                    early.add(event);
+                    return;
+                }
+            }
+        }
+        for (Downstream subscriber : subscribers) {
+            subscriber.offer(event);
+        }
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super Subscription.Event<T>> subscriber) {
+        Objects.requireNonNull(subscriber, "Subscriber is null");
+        Downstream downstream = new Downstream(subscriber);
+        synchronized (this) {
+            if (early != null) {
+                early.forEach(downstream.queue::add);
+                early = null;
+            }
+            subscribers.add(downstream);
+        }
+        subscriber.onSubscribe(downstream);
+        if (closed) {
+            downstream.complete();
+        } else {
+            downstream.drain();
+        }
+    }
+
+    /**
+     *
+     * @return number of current subscribers
+     */
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    /**
+     *
+     * @return number of events dropped because of the overflow of subscribers' buffers
+     */
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * Unsubscribe on the server and complete all subscribers after they receive the already buffered events
+     *
+     * @throws Exception if failed to unsubscribe
+     */
+    @Override
+    public void close() throws Exception {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        for (Downstream subscriber : subscribers) {
+            subscriber.complete();
+        }
+        subscription.close();
+    }
+
+    /**
+     * Subscriber with its buffer and demand
+     */
+    private class Downstream implements Flow.Subscription {
+        private final Flow.Subscriber<? super Subscription.Event<T>> subscriber;
+        private final ArrayDeque<Subscription.Event<T>> queue = new ArrayDeque<>();
+        private final AtomicInteger wip = new AtomicInteger();
+
+        private long requested = 0;
+        private boolean cancelled = false;
+        private boolean completed = false;
+        private Throwable error;
+        private boolean terminated = false;
+
+        Downstream(Flow.Subscriber<? super Subscription.Event<T>> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        void offer(Subscription.Event<T> event) {
+            synchronized (this) {
+                if (cancelled || completed || error != null) {
+                    return;
+                }
+                if (queue.size() >= bufferSize || (overflow == Overflow.LATEST_ONLY && !queue.isEmpty())) {
+                    switch (overflow) {
+                        case DROP_OLDEST:
+                            queue.poll();
+                            dropped.increment();
+                            break;
+                        case LATEST_ONLY:
+                            dropped.add(queue.size());
+                            queue.clear();
+                            break;
+                        case ERROR:
+                            dropped.add(queue.size() + 1);
+                            queue.clear();
+                            error = new IllegalStateException("Subscriber is too slow, buffer of " + bufferSize + " events is full");
+                            break;
+                        default:
+                            throw new IllegalStateException("Unsupported overflow: " + overflow);
+                    }
+                }
+                if (error == null) {
+                    queue.add(event);
+                }
+            }
+            drain();
+        }
+
+        void complete() {
+            synchronized (this) {
+                completed = true;
+            }
+            drain();
+        }
+
+        @Override
+        public void request(long n) {
+            synchronized (this) {
+                if (cancelled) {
+                    return;
+                }
+                if (n <= 0) {
+                    queue.clear();
+                    error = new IllegalArgumentException("Requested non-positive number of events: " + n);
+                } else {
+                    requested += n;
+                    if (requested < 0) {
+                        // overflow, i.e. unbounded
+                        requested = Long.MAX_VALUE;
+                    }
+                }
+            }
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            synchronized (this) {
+                cancelled = true;
+                queue.clear();
+            }
+            subscribers.remove(this);
+        }
+
+        /**
+         * Deliver available events within the demand, and the termination signal. Only one thread delivers events
+         * at a time, others just mark that there is more work for it.
+         */
+        void drain() {
+            if (wip.getAndIncrement() != 0) {
+                return;
+            }
+            int missed = 1;
+            do {
+                while (true) {
+                    Subscription.Event<T> event;
+                    Throwable failure = null;
+                    boolean done = false;
+                    synchronized (this) {
+                        if (cancelled || terminated) {
+                            queue.clear();
+                            break;
+                        }
+                        if (error != null) {
+                            failure = error;
+                            terminated = true;
+                        } else if (queue.isEmpty()) {
+                            if (completed) {
+                                done = true;
+                                terminated = true;
+                            } else {
+                                break;
+                            }
+                        } else if (requested == 0) {
+                            break;
+                        }
+                        event = (failure == null && !done) ? queue.poll() : null;
+                        if (event != null && requested != Long.MAX_VALUE) {
+                            requested--;
+                        }
+                    }
+                    if (failure != null) {
+                        subscribers.remove(this);
+                        subscriber.onError(failure);
+                        break;
+                    }
+                    if (done) {
+                        subscribers.remove(this);
+                        subscriber.onComplete();
+                        break;
+                    }
+                    try {
+                        subscriber.onNext(event);
+                    } catch (Throwable t) {
+                        // the subscriber violates the spec, consider it cancelled
+                        cancel();
+                        System.err.println("Error in subscriber: " + t.getMessage());
+                    }
+                }
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+    }
+
+    /**
+     * What to do with a new event when the buffer of a subscriber is full
+     */
+    public enum Overflow {
+        /**
+         * Drop the oldest event in the buffer
+         */
+        DROP_OLDEST,
+        /**
+         * Keep only the latest event, i.e. the subscriber gets the most recent state when it requests more.
+         * The buffer size is ignored.
+         */
+        LATEST_ONLY,
+        /**
+         * Stop delivering to the subscriber, and call its <code>onError</code>
+         */
+        ERROR
+    }
+
+    public static class Builder<T> {
+        private final Subscription<T> subscription;
+        private int bufferSize = Flow.defaultBufferSize();
+        private Overflow overflow = Overflow.DROP_OLDEST;
+
+        private Builder(Subscription<T> subscription) {
+            this.subscription = subscription;
+        }
+
+        /**
+         * Max number of events kept for a subscriber that has not requested them yet. Default is 256.
+         *
+         * @param bufferSize buffer size
+         * @return builder
+         */
+        public Builder<T> bufferSize(int bufferSize) {
+            if (bufferSize < 1) {
+                throw new IllegalArgumentException("Buffer size must be positive: " + bufferSize);
+            }
+            this.bufferSize = bufferSize;
+            return this;
+        }
+
+        /**
+         * What to do when a buffer is full. Default is to drop the oldest event.
+         *
+         * @param overflow overflow policy
+         * @return builder
+         */
+        public Builder<T> overflow(Overflow overflow) {
+            this.overflow = Objects.requireNonNull(overflow, "Overflow policy is null");
+            return this;
+        }
+
+        /**
+         * Apply configuration and build publisher. The publisher starts receiving events right away.
+         *
+         * @return new instance of SubscriptionPublisher
+         */
+        public SubscriptionPublisher<T> build() {
+            Objects.requireNonNull(subscription, "Subscription is not set");
+            return new SubscriptionPublisher<>(subscription, bufferSize, overflow);
+        }
+    }
+}
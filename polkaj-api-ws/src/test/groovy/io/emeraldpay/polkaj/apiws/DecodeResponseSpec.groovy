@@ -237,4 +237,159 @@ class DecodeResponseSpec extends Specification {
             }
         }
     }
+
+    def "Decode batch response"() {
+        setup:
+        def json = '[' +
+                '{"jsonrpc":"2.0","result":"0x9e3c23f49460755ba20511f483cf50759edef63613a566ef19b011ee22895d0a","id":2},' +
+                '{"jsonrpc":"2.0","result":"unknown","id":10},' +
+                '{"jsonrpc":"2.0","id":1,"result":"EsqruyKPnZvPZ6fr"}' +
+                ']'
+        def mapping = Mock(DecodeResponse.TypeMapping) {
+            1 * get(2) >> objectMapper.typeFactory.constructType(Hash256.class)
+            1 * get(10) >> null
+            1 * get(1) >> objectMapper.typeFactory.constructType(String.class)
+        }
+        def decoder = new DecodeResponse(objectMapper, mapping, Stub(DecodeResponse.TypeMapping))
+        when:
+        def act = decoder.decodeBatch(json)
+        then:
+        act.size() == 2
+        with(act[0].asRpc()) {
+            id == 2
+            result == Hash256.from("0x9e3c23f49460755ba20511f483cf50759edef63613a566ef19b011ee22895d0a")
+        }
+        with(act[1].asRpc()) {
+            id == 1
+            result == "EsqruyKPnZvPZ6fr"
+        }
+    }
+
+    def "Decode rpc response with null result"() {
+        setup:
+        def json = '{"jsonrpc":"2.0","id":1,"result":null}'
+        def mapping = Mock(DecodeResponse.TypeMapping) {
+            1 * get(1) >> objectMapper.typeFactory.constructType(BlockJson.class)
+        }
+        def decoder = new DecodeResponse(objectMapper, mapping, Stub(DecodeResponse.TypeMapping))
+        when:
+        def act = decoder.decode(json)
+        then:
+        act.type == WsResponse.Type.RPC
+        with(act.asRpc()) {
+            id == 1
+            result == null
+        }
+    }
+
+    def "Decode subscription response when params come before method"() {
+        setup:
+        def json = '{"jsonrpc":"2.0","params":{"result":{"number":"0x1d878c"},"subscription":"EsqruyKPnZvPZ6fr","extra":[1,{"a":2}]},"method":"chain_newHead"}'
+        def mapping = Mock(DecodeResponse.TypeMapping) {
+            1 * get("EsqruyKPnZvPZ6fr") >> objectMapper.typeFactory.constructType(BlockJson.Header.class)
+        }
+        def decoder = new DecodeResponse(objectMapper, Stub(DecodeResponse.TypeMapping), mapping)
+        when:
+        def act = decoder.decode(json)
+        then:
+        act.type == WsResponse.Type.SUBSCRIPTION
+        with(act.asEvent()) {
+            id == "EsqruyKPnZvPZ6fr"
+            method == "chain_newHead"
+            value instanceof BlockJson.Header
+            (value as BlockJson.Header).number == 0x1d878c
+        }
+    }
+
+    def "Decode batch response with nested results after decoded fields"() {
+        setup:
+        def json = '[' +
+                '{"jsonrpc":"2.0","id":10,"result":{"header":{"number":"0x1"}}},' +
+                '{"jsonrpc":"2.0","id":1,"result":"EsqruyKPnZvPZ6fr","extra":{"list":[1,[2]]}},' +
+                '{"jsonrpc":"2.0","id":2,"result":"0x9e3c23f49460755ba20511f483cf50759edef63613a566ef19b011ee22895d0a"}' +
+                ']'
+        def mapping = Mock(DecodeResponse.TypeMapping) {
+            1 * get(10) >> null
+            1 * get(1) >> objectMapper.typeFactory.constructType(String.class)
+            1 * get(2) >> objectMapper.typeFactory.constructType(Hash256.class)
+        }
+        def decoder = new DecodeResponse(objectMapper, mapping, Stub(DecodeResponse.TypeMapping))
+        when:
+        def act = decoder.decodeBatch(json)
+        then:
+        act.size() == 2
+        act[0].asRpc().id == 1
+        act[0].asRpc().result == "EsqruyKPnZvPZ6fr"
+        act[1].asRpc().id == 2
+        act[1].asRpc().result == Hash256.from("0x9e3c23f49460755ba20511f483cf50759edef63613a566ef19b011ee22895d0a")
+    }
+
+    def "Decode rpc response from parsed parts"() {
+        setup:
+        def parser = new StreamingMessageParser(objectMapper)
+        def mapping = Mock(DecodeResponse.TypeMapping) {
+            1 * get(1) >> objectMapper.typeFactory.constructType(Hash256.class)
+        }
+        def decoder = new DecodeResponse(objectMapper, mapping, Stub(DecodeResponse.TypeMapping))
+        when:
+        parser.add('{"jsonrpc":"2.0","result":"0x9e3c23f49460755ba20511f483cf5075', false)
+        def tokens = parser.add('9edef63613a566ef19b011ee22895d0a","id":1}', true)
+        def act = decoder.decode(tokens)
+        then:
+        !DecodeResponse.isBatch(tokens)
+        act.type == WsResponse.Type.RPC
+        with(act.asRpc()) {
+            id == 1
+            result == Hash256.from("0x9e3c23f49460755ba20511f483cf50759edef63613a566ef19b011ee22895d0a")
+        }
+    }
+
+    def "Decode error without id"() {
+        setup:
+        def decoder = new DecodeResponse(objectMapper, Stub(DecodeResponse.TypeMapping), Stub(DecodeResponse.TypeMapping))
+        def parser = new StreamingMessageParser(objectMapper)
+        when:
+        def act = decoder.decodeErrorWithoutId(parser.add(json, true))
+        then:
+        act?.code == code
+        act?.message == message
+        where:
+        json                                                                                    | code   | message
+        '{"jsonrpc":"2.0","error":{"code":-32600,"message":"Batch too large"},"id":null}'     | -32600 | "Batch too large"
+        '{"jsonrpc":"2.0","id":null,"error":{"code":-32600,"message":"Batch too large"}}'     | -32600 | "Batch too large"
+        '{"jsonrpc":"2.0","error":{"code":-32700,"message":"Parse error"}}'                   | -32700 | "Parse error"
+        '{"jsonrpc":"2.0","error":{"code":-32000,"message":"Failed"},"id":1}'                 | null   | null
+        '{"jsonrpc":"2.0","result":"0x01","id":1}'                                              | null   | null
+        '[{"jsonrpc":"2.0","result":"0x01","id":1}]'                                            | null   | null
+    }
+
+    def "Decode batch response from parsed parts"() {
+        setup:
+        def parser = new StreamingMessageParser(objectMapper)
+        def mapping = Mock(DecodeResponse.TypeMapping) {
+            1 * get(1) >> objectMapper.typeFactory.constructType(String.class)
+            1 * get(2) >> objectMapper.typeFactory.constructType(String.class)
+        }
+        def decoder = new DecodeResponse(objectMapper, mapping, Stub(DecodeResponse.TypeMapping))
+        when:
+        parser.add('[{"jsonrpc":"2.0","result":"foo","id":1},', false)
+        def tokens = parser.add('{"jsonrpc":"2.0","result":"bar","id":2}]', true)
+        def act = decoder.decodeBatch(tokens)
+        then:
+        DecodeResponse.isBatch(tokens)
+        act.size() == 2
+        act[0].asRpc().result == "foo"
+        act[1].asRpc().result == "bar"
+    }
+
+    def "Detect batch response"() {
+        expect:
+        DecodeResponse.isBatch(json) == batch
+        where:
+        json                        | batch
+        '[{"id":1}]'                | true
+        '  \n[{"id":1}]'            | true
+        '{"id":1}'                  | false
+        ''                          | false
+    }
 }
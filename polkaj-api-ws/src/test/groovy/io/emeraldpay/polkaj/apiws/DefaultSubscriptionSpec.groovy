@@ -1,11 +1,21 @@
 package io.emeraldpay.polkaj.apiws
 
+import io.emeraldpay.polkaj.api.InMemoryRpcMetrics
 import io.emeraldpay.polkaj.api.PolkadotApi
 import io.emeraldpay.polkaj.api.RpcCall
+import io.emeraldpay.polkaj.api.RpcMetrics
+import io.emeraldpay.polkaj.api.StandardCommands
 import io.emeraldpay.polkaj.api.Subscription
+import io.emeraldpay.polkaj.json.BlockJson
+import io.emeraldpay.polkaj.json.BlockResponseJson
+import io.emeraldpay.polkaj.types.Hash256
+import jdk.jfr.Recording
+import jdk.jfr.consumer.RecordingFile
 import spock.lang.Specification
 
+import java.nio.file.Files
 import java.util.concurrent.CompletableFuture
+import java.util.concurrent.Executor
 
 class DefaultSubscriptionSpec extends Specification {
 
@@ -42,6 +52,267 @@ class DefaultSubscriptionSpec extends Specification {
         handled == new Subscription.Event("test", "test")
     }
 
+    def "Delivers events received before handler"() {
+        setup:
+        def s = new DefaultSubscription(null, "test", null)
+        List<Subscription.Event> handled = []
+        when:
+        s.accept(new Subscription.Event("test", "first"))
+        s.accept(new Subscription.Event("test", "second"))
+        s.handler({ handled.add(it) })
+        s.accept(new Subscription.Event("test", "third"))
+        then:
+        handled*.result == ["first", "second", "third"]
+    }
+
+    def "Keeps limited number of events before handler"() {
+        setup:
+        def s = new DefaultSubscription(null, "test", null)
+        List<Subscription.Event> handled = []
+        when:
+        (DefaultSubscription.EARLY_EVENTS_LIMIT + 10).times {
+            s.accept(new Subscription.Event("test", it))
+        }
+        s.handler({ handled.add(it) })
+        then:
+        handled.size() == DefaultSubscription.EARLY_EVENTS_LIMIT
+        handled[0].result == 0
+    }
+
+    def "Passes events to handler on executor"() {
+        setup:
+        List<Runnable> tasks = []
+        def metrics = new InMemoryRpcMetrics()
+        def s = new DefaultSubscription(null, "test", null, { tasks.add(it) } as Executor, 16, false, metrics)
+        List<Subscription.Event> handled = []
+        s.handler({ handled.add(it) })
+        when:
+        s.accept(new Subscription.Event("test_event", "first"))
+        s.accept(new Subscription.Event("test_event", "second"))
+        then:
+        handled.isEmpty()
+        tasks.size() == 1
+        s.queueSize == 2
+        metrics.get("test_event").subscriptionQueue == 2
+
+        when:
+        tasks[0].run()
+        then:
+        handled*.result == ["first", "second"]
+        s.queueSize == 0
+        metrics.get("test_event").subscriptionQueue == 0
+    }
+
+    def "Drops new events when queue is full"() {
+        setup:
+        List<Runnable> tasks = []
+        def metrics = new InMemoryRpcMetrics()
+        def s = new DefaultSubscription(null, "test", null, { tasks.add(it) } as Executor, 2, false, metrics)
+        List<Subscription.Event> handled = []
+        s.handler({ handled.add(it) })
+        when:
+        (1..4).each { s.accept(new Subscription.Event("test_event", it)) }
+        tasks[0].run()
+        then:
+        handled*.result == [1, 2]
+        metrics.get("test_event").subscriptionDropped == 2
+    }
+
+    def "Keeps only latest event"() {
+        setup:
+        List<Runnable> tasks = []
+        def metrics = new InMemoryRpcMetrics()
+        def s = new DefaultSubscription(null, "test", null, { tasks.add(it) } as Executor, 16, true, metrics)
+        List<Subscription.Event> handled = []
+        s.handler({ handled.add(it) })
+        when:
+        (1..4).each { s.accept(new Subscription.Event("test_event", it)) }
+        then:
+        s.queueSize == 1
+        metrics.get("test_event").subscriptionQueue == 1
+
+        when:
+        tasks[0].run()
+        then:
+        handled*.result == [4]
+        metrics.get("test_event").subscriptionDropped == 3
+        metrics.get("test_event").subscriptionQueue == 0
+    }
+
+    def "Counts queued events for flow control"() {
+        setup:
+        List<Runnable> tasks = []
+        def flow = new FlowControl(4, 100)
+        def s = new DefaultSubscription(null, "test", null, { tasks.add(it) } as Executor, 16, false, RpcMetrics.NONE, flow)
+        s.handler({ })
+        when:
+        (1..3).each { s.accept(new Subscription.Event("test_event", it)) }
+        then:
+        flow.getBuffered() == 3
+
+        when:
+        tasks[0].run()
+        then:
+        flow.getBuffered() == 0
+    }
+
+    def "Handler error doesn't stop dispatch on executor"() {
+        setup:
+        List<Runnable> tasks = []
+        def s = new DefaultSubscription(null, "test", null, { tasks.add(it) } as Executor, 16, false, new InMemoryRpcMetrics())
+        List<Subscription.Event> handled = []
+        s.handler({
+            handled.add(it)
+            if (it.result == 1) {
+                throw new IllegalStateException("test")
+            }
+        })
+        when:
+        (1..2).each { s.accept(new Subscription.Event("test_event", it)) }
+        tasks[0].run()
+        then:
+        handled*.result == [1, 2]
+    }
+
+    static BlockJson.Header header(long number) {
+        def header = new BlockJson.Header()
+        header.number = number
+        return header
+    }
+
+    static Hash256 hash(long number) {
+        return Hash256.from("0x" + Long.toHexString(number).padLeft(64, "0"))
+    }
+
+    static CompletableFuture<BlockResponseJson> block(long number) {
+        def block = new BlockJson()
+        block.header = header(number)
+        return CompletableFuture.completedFuture(new BlockResponseJson(block))
+    }
+
+    def "Passes missed headers after resubscribe"() {
+        setup:
+        def adapter = Mock(JavaHttpSubscriptionAdapter)
+        def commands = StandardCommands.getInstance()
+        def s = new DefaultSubscription(null, "chain_unsubscribeNewHeads", adapter)
+        s.setId("EsqruyKPnZvPZ6fr")
+        List<Long> received = []
+        s.handler({ received.add(it.result.number) })
+        when:
+        s.accept(new Subscription.Event("chain_newHead", header(16)))
+        s.resubscribed("N8y7yBn6yPZ5EBbm", 100)
+        s.accept(new Subscription.Event("chain_newHead", header(19)))
+        then:
+        1 * adapter.produceRpcFuture(commands.getBlockHash(17)) >> CompletableFuture.completedFuture(hash(17))
+        1 * adapter.produceRpcFuture(commands.getBlockHash(18)) >> CompletableFuture.completedFuture(hash(18))
+        1 * adapter.produceRpcFuture(commands.getBlock(hash(17))) >> block(17)
+        1 * adapter.produceRpcFuture(commands.getBlock(hash(18))) >> block(18)
+        received == [16L, 17L, 18L, 19L]
+        s.id == "N8y7yBn6yPZ5EBbm"
+    }
+
+    def "Holds new headers until missed are received"() {
+        setup:
+        def adapter = Mock(JavaHttpSubscriptionAdapter)
+        def commands = StandardCommands.getInstance()
+        def missed = new CompletableFuture<Hash256>()
+        def s = new DefaultSubscription(null, "chain_unsubscribeNewHeads", adapter)
+        s.setId("EsqruyKPnZvPZ6fr")
+        List<Long> received = []
+        s.handler({ received.add(it.result.number) })
+        adapter.produceRpcFuture(commands.getBlockHash(17)) >> missed
+        adapter.produceRpcFuture(commands.getBlock(hash(17))) >> block(17)
+        when:
+        s.accept(new Subscription.Event("chain_newHead", header(16)))
+        s.resubscribed("N8y7yBn6yPZ5EBbm", 100)
+        s.accept(new Subscription.Event("chain_newHead", header(18)))
+        s.accept(new Subscription.Event("chain_newHead", header(19)))
+        then:
+        received == [16L]
+
+        when:
+        missed.complete(hash(17))
+        then:
+        received == [16L, 17L, 18L, 19L]
+    }
+
+    def "Requests only latest missed headers"() {
+        setup:
+        def adapter = Mock(JavaHttpSubscriptionAdapter)
+        def commands = StandardCommands.getInstance()
+        def s = new DefaultSubscription(null, "chain_unsubscribeNewHeads", adapter)
+        s.setId("EsqruyKPnZvPZ6fr")
+        List<Long> received = []
+        s.handler({ received.add(it.result.number) })
+        when:
+        s.accept(new Subscription.Event("chain_newHead", header(16)))
+        s.resubscribed("N8y7yBn6yPZ5EBbm", 2)
+        s.accept(new Subscription.Event("chain_newHead", header(30)))
+        then:
+        1 * adapter.produceRpcFuture(commands.getBlockHash(28)) >> CompletableFuture.completedFuture(hash(28))
+        1 * adapter.produceRpcFuture(commands.getBlockHash(29)) >> CompletableFuture.completedFuture(hash(29))
+        1 * adapter.produceRpcFuture(commands.getBlock(hash(28))) >> block(28)
+        1 * adapter.produceRpcFuture(commands.getBlock(hash(29))) >> block(29)
+        0 * adapter.produceRpcFuture(_)
+        received == [16L, 28L, 29L, 30L]
+    }
+
+    def "Passes new headers if missed are not available"() {
+        setup:
+        def adapter = Mock(JavaHttpSubscriptionAdapter)
+        def commands = StandardCommands.getInstance()
+        def s = new DefaultSubscription(null, "chain_unsubscribeNewHeads", adapter)
+        s.setId("EsqruyKPnZvPZ6fr")
+        List<Long> received = []
+        s.handler({ received.add(it.result.number) })
+        when:
+        s.accept(new Subscription.Event("chain_newHead", header(16)))
+        s.resubscribed("N8y7yBn6yPZ5EBbm", 100)
+        s.accept(new Subscription.Event("chain_newHead", header(18)))
+        then:
+        1 * adapter.produceRpcFuture(commands.getBlockHash(17)) >> CompletableFuture.failedFuture(new IOException("Connection lost"))
+        received == [16L, 18L]
+    }
+
+    def "Doesn't request headers without a gap"() {
+        setup:
+        def adapter = Mock(JavaHttpSubscriptionAdapter)
+        def s = new DefaultSubscription(null, "chain_unsubscribeNewHeads", adapter)
+        s.setId("EsqruyKPnZvPZ6fr")
+        List<Long> received = []
+        s.handler({ received.add(it.result.number) })
+        when:
+        s.accept(new Subscription.Event("chain_newHead", header(16)))
+        s.resubscribed("N8y7yBn6yPZ5EBbm", 100)
+        s.accept(new Subscription.Event("chain_newHead", header(17)))
+        then:
+        0 * adapter.produceRpcFuture(_)
+        received == [16L, 17L]
+    }
+
+    def "Passes missed headers to coalesced subscription"() {
+        setup:
+        List<Runnable> tasks = []
+        def adapter = Mock(JavaHttpSubscriptionAdapter)
+        def commands = StandardCommands.getInstance()
+        def s = new DefaultSubscription(null, "chain_unsubscribeNewHeads", adapter, { tasks.add(it) } as Executor, 16, true, RpcMetrics.NONE)
+        s.setId("EsqruyKPnZvPZ6fr")
+        List<Long> received = []
+        s.handler({ received.add(it.result.number) })
+        adapter.produceRpcFuture(commands.getBlockHash(17)) >> CompletableFuture.completedFuture(hash(17))
+        adapter.produceRpcFuture(commands.getBlock(hash(17))) >> block(17)
+        when:
+        s.accept(new Subscription.Event("chain_newHead", header(16)))
+        tasks.remove(0).run()
+        s.resubscribed("N8y7yBn6yPZ5EBbm", 100)
+        s.accept(new Subscription.Event("chain_newHead", header(18)))
+        s.accept(new Subscription.Event("chain_newHead", header(19)))
+        s.accept(new Subscription.Event("chain_newHead", header(20)))
+        tasks.remove(0).run()
+        then:
+        received == [16L, 17L, 18L, 20L]
+    }
+
     def "Close unsubscribes and self-removes"() {
         setup:
         def adapter = Mock(JavaHttpSubscriptionAdapter)
@@ -66,4 +337,27 @@ class DefaultSubscriptionSpec extends Specification {
         0 * client.execute(_) >> CompletableFuture.completedFuture(false)
         0 * adapter.removeSubscription(_)
     }
+
+    def "Records JFR event for dispatch"() {
+        setup:
+        def recording = new Recording()
+        recording.enable("io.emeraldpay.polkaj.SubscriptionDispatch")
+        def file = Files.createTempFile("polkaj", ".jfr")
+        def s = new DefaultSubscription(null, "test", null)
+        s.setId("EsqruyKPnZvPZ6fr")
+        s.handler({ })
+        when:
+        recording.start()
+        s.accept(new Subscription.Event("chain_newHead", "test"))
+        recording.stop()
+        recording.dump(file)
+        def events = RecordingFile.readAllEvents(file).findAll { it.eventType.name == "io.emeraldpay.polkaj.SubscriptionDispatch" }
+        then:
+        events.size() == 1
+        events[0].getString("method") == "chain_newHead"
+        events[0].getString("subscriptionId") == "EsqruyKPnZvPZ6fr"
+        cleanup:
+        recording.close()
+        Files.deleteIfExists(file)
+    }
 }
@@ -0,0 +1,110 @@
+package io.emeraldpay.polkaj.apiws
+
+import spock.lang.Specification
+
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+class EventRingBufferSpec extends Specification {
+
+    def "Rounds capacity to power of two"() {
+        expect:
+        new EventRingBuffer(capacity).capacity() == exp
+        where:
+        capacity | exp
+        1        | 1
+        3        | 4
+        1000     | 1024
+        1024     | 1024
+    }
+
+    def "Keeps order"() {
+        setup:
+        def buffer = new EventRingBuffer<Integer>(4)
+        when:
+        buffer.offer(1)
+        buffer.offer(2)
+        buffer.offer(3)
+        then:
+        buffer.size() == 3
+        buffer.poll() == 1
+        buffer.poll() == 2
+        buffer.poll() == 3
+        buffer.poll() == null
+        buffer.isEmpty()
+    }
+
+    def "Rejects when full"() {
+        setup:
+        def buffer = new EventRingBuffer<Integer>(2)
+        when:
+        def act = (1..3).collect { buffer.offer(it) }
+        then:
+        act == [true, true, false]
+        buffer.size() == 2
+
+        when:
+        buffer.poll()
+        then:
+        buffer.offer(4)
+        buffer.poll() == 2
+        buffer.poll() == 4
+    }
+
+    def "Reuses slots"() {
+        setup:
+        def buffer = new EventRingBuffer<Integer>(4)
+        when:
+        def act = []
+        (1..100).each {
+            buffer.offer(it)
+            if (it % 3 == 0) {
+                act.add(buffer.poll())
+                act.add(buffer.poll())
+            }
+        }
+        while (!buffer.isEmpty()) {
+            act.add(buffer.poll())
+        }
+        then:
+        act == (1..100).toList()
+    }
+
+    def "Works with concurrent producers"() {
+        setup:
+        def buffer = new EventRingBuffer<Integer>(64)
+        def executor = Executors.newFixedThreadPool(4)
+        def done = new CountDownLatch(4)
+        def consumed = new ConcurrentLinkedQueue<Integer>()
+        when:
+        4.times { producer ->
+            executor.execute {
+                (0..<10_000).each {
+                    while (!buffer.offer(producer * 10_000 + it)) {
+                        Thread.yield()
+                    }
+                }
+                done.countDown()
+            }
+        }
+        while (done.count > 0 || !buffer.isEmpty()) {
+            def value = buffer.poll()
+            if (value != null) {
+                consumed.add(value)
+            }
+        }
+        done.await(10, TimeUnit.SECONDS)
+        then:
+        consumed.size() == 40_000
+        consumed.toSet().size() == 40_000
+        // each producer's values stay in order
+        4.times { producer ->
+            def own = consumed.findAll { it >= producer * 10_000 && it < (producer + 1) * 10_000 }
+            assert own == own.toSorted()
+        }
+        cleanup:
+        executor.shutdownNow()
+    }
+}
@@ -0,0 +1,108 @@
+package io.emeraldpay.polkaj.apiws
+
+import spock.lang.Specification
+
+import java.net.http.WebSocket
+
+class FlowControlSpec extends Specification {
+
+    def "Requests window on start"() {
+        setup:
+        def ws = Mock(WebSocket)
+        def flow = new FlowControl(32, 100)
+        when:
+        flow.start(ws)
+        then:
+        1 * ws.request(32)
+        flow.getOutstanding() == 32
+    }
+
+    def "Replenishes after half of window"() {
+        setup:
+        def ws = Mock(WebSocket)
+        def flow = new FlowControl(8, 100)
+        flow.start(ws)
+        when:
+        3.times { flow.onMessage() }
+        then:
+        0 * ws.request(_)
+        flow.getOutstanding() == 5
+
+        when:
+        flow.onMessage()
+        then:
+        1 * ws.request(4)
+        flow.getOutstanding() == 8
+    }
+
+    def "Requests one by one with window of one"() {
+        setup:
+        def ws = Mock(WebSocket)
+        def flow = new FlowControl(1, 100)
+        flow.start(ws)
+        when:
+        3.times { flow.onMessage() }
+        then:
+        3 * ws.request(1)
+    }
+
+    def "Pauses when buffer is full"() {
+        setup:
+        def ws = Mock(WebSocket)
+        def flow = new FlowControl(4, 10)
+        flow.start(ws)
+        when:
+        flow.onBuffered(10)
+        4.times { flow.onMessage() }
+        then:
+        flow.isPaused()
+        0 * ws.request(_)
+        flow.getOutstanding() == 0
+    }
+
+    def "Resumes when half of buffer is consumed"() {
+        setup:
+        def ws = Mock(WebSocket)
+        def flow = new FlowControl(4, 10)
+        flow.start(ws)
+        flow.onBuffered(10)
+        4.times { flow.onMessage() }
+        when:
+        flow.onBuffered(-4)
+        then:
+        flow.isPaused()
+        0 * ws.request(_)
+
+        when:
+        flow.onBuffered(-1)
+        then:
+        !flow.isPaused()
+        1 * ws.request(4)
+        flow.getOutstanding() == 4
+        flow.getBuffered() == 5
+    }
+
+    def "Pauses on start if buffer is full"() {
+        setup:
+        def ws = Mock(WebSocket)
+        def flow = new FlowControl(2, 10)
+        flow.onBuffered(10)
+        when:
+        flow.start(ws)
+        2.times { flow.onMessage() }
+        then:
+        1 * ws.request(2)
+        flow.isPaused()
+    }
+
+    def "Rejects invalid config"() {
+        when:
+        new FlowControl(window, limit)
+        then:
+        thrown(IllegalArgumentException)
+        where:
+        window | limit
+        0      | 10
+        10     | 0
+    }
+}
@@ -1,15 +1,26 @@
 package io.emeraldpay.polkaj.apiws
 
 import com.fasterxml.jackson.databind.ObjectMapper
+import io.emeraldpay.polkaj.api.InMemoryRpcMetrics
+import io.emeraldpay.polkaj.api.LoadBalancingAdapter
 import io.emeraldpay.polkaj.api.MockWsServer
 import io.emeraldpay.polkaj.api.PolkadotApi
 import io.emeraldpay.polkaj.api.RpcCall
 import io.emeraldpay.polkaj.api.RpcCoder
+import io.emeraldpay.polkaj.api.RpcException
+import io.emeraldpay.polkaj.api.StandardSubscriptions
+import io.emeraldpay.polkaj.api.SubscribeCall
 import io.emeraldpay.polkaj.api.SubscriptionAdapter
 import io.emeraldpay.polkaj.api.SubscriptionAdapterSpec
+import io.emeraldpay.polkaj.json.BlockJson
+import groovy.json.JsonSlurper
 
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.ExecutionException
 import java.util.concurrent.ExecutorService
 import java.util.concurrent.TimeUnit
+import java.time.Duration
 
 class JavaSubscriptionAdapterSpec extends SubscriptionAdapterSpec {
 
@@ -43,6 +54,28 @@ class JavaSubscriptionAdapterSpec extends SubscriptionAdapterSpec {
         1 * rpcCoder.nextId()
     }
 
+    def "Records metrics"() {
+        setup:
+        def metrics = new InMemoryRpcMetrics()
+        def adapter = JavaHttpSubscriptionAdapter.newBuilder()
+                .metrics(metrics)
+                .connectTo("ws://localhost:${port}")
+                .build()
+        adapter.connect().get(TIMEOUT, TimeUnit.SECONDS)
+        when:
+        server.onNextReply('{"jsonrpc":"2.0","result":"Hello World!","id":0}')
+        adapter.produceRpcFuture(RpcCall.create(String.class, "test_foo")).get(TIMEOUT, TimeUnit.SECONDS)
+        def act = metrics.get("test_foo")
+        then:
+        act.latency.count == 1
+        act.decodeTime.count == 1
+        act.requestBytes == '{"jsonrpc":"2.0","id":0,"method":"test_foo","params":[]}'.length()
+        act.responseBytes == '{"jsonrpc":"2.0","result":"Hello World!","id":0}'.length()
+        metrics.inFlight == 0
+        cleanup:
+        adapter.close()
+    }
+
     def "By default connects to 9944"() {
         setup:
         server.stop()
@@ -76,4 +109,424 @@ class JavaSubscriptionAdapterSpec extends SubscriptionAdapterSpec {
         1 * onClose.run()
     }
 
+    def "Works behind LoadBalancingAdapter"() {
+        setup:
+        def server2 = new MockWsServer(port + 500)
+        server2.start()
+        Thread.sleep(SLEEP)
+        def adapter = LoadBalancingAdapter.newBuilder()
+                .endpoint("first", provideAdapter("ws://localhost:${port}"))
+                .endpoint("second", provideAdapter("ws://localhost:${port + 500}"))
+                .build()
+        when:
+        server.onNextReply('{"jsonrpc":"2.0","result":"first","id":0}')
+        server2.onNextReply('{"jsonrpc":"2.0","result":"second","id":0}')
+        def act1 = adapter.produceRpcFuture(RpcCall.create(String.class, "test_foo")).get(TIMEOUT, TimeUnit.SECONDS)
+        def act2 = adapter.produceRpcFuture(RpcCall.create(String.class, "test_foo")).get(TIMEOUT, TimeUnit.SECONDS)
+        then:
+        act1 == "first"
+        act2 == "second"
+
+        when:
+        server.onNextReply('{"jsonrpc":"2.0","result":"EsqruyKPnZvPZ6fr","id":1}')
+        adapter.subscribe(StandardSubscriptions.getInstance().newHeads()).get(TIMEOUT, TimeUnit.SECONDS)
+        server.onNextReply('{"jsonrpc":"2.0","result":"EsqruyKPnZvPZ6fs","id":2}')
+        adapter.subscribe(StandardSubscriptions.getInstance().finalizedHeads()).get(TIMEOUT, TimeUnit.SECONDS)
+        then:
+        server.received.size() == 3
+        server2.received.size() == 1
+        cleanup:
+        adapter.close()
+        server2.stop()
+    }
+
+    def "Slow subscription handler doesn't block calls"() {
+        setup:
+        def adapter = provideAdapter("ws://localhost:${port}")
+        def release = new CountDownLatch(1)
+        List<String> received = new CopyOnWriteArrayList<>()
+        when:
+        server.onNextReply('{"jsonrpc":"2.0","result":"EsqruyKPnZvPZ6fr","id":0}')
+        def sub = adapter.subscribe(SubscribeCall.create(String.class, "test_subscribe", "test_unsubscribe")).get(TIMEOUT, TimeUnit.SECONDS)
+        sub.handler({ event ->
+            release.await(TIMEOUT, TimeUnit.SECONDS)
+            received.add(event.result)
+        })
+        server.reply('{"jsonrpc":"2.0","method":"test_event","params":{"result":"first","subscription":"EsqruyKPnZvPZ6fr"}}')
+        server.onNextReply('{"jsonrpc":"2.0","result":"Hello World!","id":1}')
+        def act = adapter.produceRpcFuture(RpcCall.create(String.class, "test_foo")).get(TIMEOUT, TimeUnit.SECONDS)
+        then:
+        act == "Hello World!"
+        received.isEmpty()
+
+        when:
+        release.countDown()
+        Thread.sleep(SLEEP)
+        then:
+        received == ["first"]
+        cleanup:
+        adapter.close()
+    }
+
+    def "Slow handler gets only latest event of coalesced subscription"() {
+        setup:
+        def adapter = JavaHttpSubscriptionAdapter.newBuilder()
+                .connectTo("ws://localhost:${port}")
+                .coalesce(Set.of("test_subscribe"))
+                .build()
+        adapter.connect().get(TIMEOUT, TimeUnit.SECONDS)
+        def started = new CountDownLatch(1)
+        def release = new CountDownLatch(1)
+        List<String> received = new CopyOnWriteArrayList<>()
+        when:
+        server.onNextReply('{"jsonrpc":"2.0","result":"EsqruyKPnZvPZ6fr","id":0}')
+        def sub = adapter.subscribe(SubscribeCall.create(String.class, "test_subscribe", "test_unsubscribe")).get(TIMEOUT, TimeUnit.SECONDS)
+        sub.handler({ event ->
+            started.countDown()
+            release.await(TIMEOUT, TimeUnit.SECONDS)
+            received.add(event.result)
+        })
+        server.reply('{"jsonrpc":"2.0","method":"test_event","params":{"result":"first","subscription":"EsqruyKPnZvPZ6fr"}}')
+        started.await(TIMEOUT, TimeUnit.SECONDS)
+        ["second", "third", "fourth"].each {
+            server.reply('{"jsonrpc":"2.0","method":"test_event","params":{"result":"' + it + '","subscription":"EsqruyKPnZvPZ6fr"}}')
+        }
+        Thread.sleep(SLEEP)
+        release.countDown()
+        Thread.sleep(SLEEP)
+        then:
+        received == ["first", "fourth"]
+        cleanup:
+        adapter.close()
+    }
+
+    def "Dispatches inline when configured"() {
+        setup:
+        def adapter = JavaHttpSubscriptionAdapter.newBuilder()
+                .connectTo("ws://localhost:${port}")
+                .dispatchInline()
+                .build()
+        adapter.connect().get(TIMEOUT, TimeUnit.SECONDS)
+        List<String> threads = new CopyOnWriteArrayList<>()
+        when:
+        server.onNextReply('{"jsonrpc":"2.0","result":"EsqruyKPnZvPZ6fr","id":0}')
+        def sub = adapter.subscribe(SubscribeCall.create(String.class, "test_subscribe", "test_unsubscribe")).get(TIMEOUT, TimeUnit.SECONDS)
+        sub.handler({ event ->
+            threads.add(Thread.currentThread().name)
+        })
+        server.reply('{"jsonrpc":"2.0","method":"test_event","params":{"result":"first","subscription":"EsqruyKPnZvPZ6fr"}}')
+        Thread.sleep(SLEEP)
+        then:
+        threads.size() == 1
+        !threads[0].startsWith("polkaj-ws-dispatch")
+        cleanup:
+        adapter.close()
+    }
+
+    def "Pauses reading when handlers are behind"() {
+        setup:
+        def adapter = JavaHttpSubscriptionAdapter.newBuilder()
+                .connectTo("ws://localhost:${port}")
+                .receiveWindow(1)
+                .receiveBufferLimit(2)
+                .build()
+        adapter.connect().get(TIMEOUT, TimeUnit.SECONDS)
+        def release = new CountDownLatch(1)
+        List<String> received = new CopyOnWriteArrayList<>()
+        when:
+        server.onNextReply('{"jsonrpc":"2.0","result":"EsqruyKPnZvPZ6fr","id":0}')
+        def sub = adapter.subscribe(SubscribeCall.create(String.class, "test_subscribe", "test_unsubscribe")).get(TIMEOUT, TimeUnit.SECONDS)
+        sub.handler({ event ->
+            release.await(TIMEOUT, TimeUnit.SECONDS)
+            received.add(event.result)
+        })
+        ["first", "second", "third", "fourth"].each {
+            server.reply('{"jsonrpc":"2.0","method":"test_event","params":{"result":"' + it + '","subscription":"EsqruyKPnZvPZ6fr"}}')
+        }
+        server.onNextReply('{"jsonrpc":"2.0","result":"Hello World!","id":1}')
+        def f = adapter.produceRpcFuture(RpcCall.create(String.class, "test_foo"))
+        Thread.sleep(SLEEP)
+        then:
+        !f.isDone()
+
+        when:
+        release.countDown()
+        def act = f.get(TIMEOUT, TimeUnit.SECONDS)
+        Thread.sleep(SLEEP)
+        then:
+        act == "Hello World!"
+        received == ["first", "second", "third", "fourth"]
+        cleanup:
+        adapter.close()
+    }
+
+    static String header(long number) {
+        return '{"digest":{"logs":[]},' +
+                '"extrinsicsRoot":"0x9869230c3cc05051ce9afef4458d2515fb2141bfd3bdcd88292f41e17ea00ae7",' +
+                '"number":"0x' + Long.toHexString(number) + '",' +
+                '"parentHash":"0xbe9110f6da6a19ac645a27472e459dcca6eaf4ee4b0b12700ca5d566eea9a638",' +
+                '"stateRoot":"0x57059722d680b591a469937449df772b95625d4230b39a0a7d855e16d597f168"}'
+    }
+
+    static String hash(long number) {
+        return "0x" + Long.toHexString(number).padLeft(64, "0")
+    }
+
+    /**
+     * Restart the server on the same port, to make the adapter reconnect
+     */
+    MockWsServer restartServer() {
+        // the mock server replies only to the last connection, so the default client must not reconnect to it
+        polkadotApi.close()
+        server.stop()
+        def restarted = new MockWsServer(port)
+        restarted.setReuseAddr(true)
+        server = restarted
+        return restarted
+    }
+
+    void waitFor(Closure<Boolean> condition) {
+        long until = System.currentTimeMillis() + TIMEOUT * 1000
+        while (!condition.call() && System.currentTimeMillis() < until) {
+            Thread.sleep(50)
+        }
+    }
+
+    def "Fails batch calls missing in the response"() {
+        setup:
+        def adapter = JavaHttpSubscriptionAdapter.newBuilder()
+                .connectTo("ws://localhost:${port}")
+                .build()
+        adapter.connect().get(TIMEOUT, TimeUnit.SECONDS)
+        server.onRequest { String message ->
+            def json = new JsonSlurper().parseText(message)
+            // only the first call is answered
+            return '[{"jsonrpc":"2.0","result":"foo","id":' + json[0].id + '}]'
+        }
+        when:
+        def act = adapter.produceRpcFutures([RpcCall.create(String.class, "test_foo"), RpcCall.create(String.class, "test_bar")])
+        then:
+        act[0].get(TIMEOUT, TimeUnit.SECONDS) == "foo"
+
+        when:
+        act[1].get(TIMEOUT, TimeUnit.SECONDS)
+        then:
+        def t = thrown(ExecutionException)
+        t.cause instanceof RpcException
+        (t.cause as RpcException).code == -32603
+        cleanup:
+        adapter.close()
+    }
+
+    def "Fails batch rejected with an error without id"() {
+        setup:
+        def adapter = JavaHttpSubscriptionAdapter.newBuilder()
+                .connectTo("ws://localhost:${port}")
+                .build()
+        adapter.connect().get(TIMEOUT, TimeUnit.SECONDS)
+        server.onRequest { String message ->
+            return '{"jsonrpc":"2.0","error":{"code":-32600,"message":"Batch too large"},"id":null}'
+        }
+        when:
+        def act = adapter.produceRpcFutures([RpcCall.create(String.class, "test_foo"), RpcCall.create(String.class, "test_bar")])
+        then:
+        act.every {
+            try {
+                it.get(TIMEOUT, TimeUnit.SECONDS)
+                false
+            } catch (ExecutionException e) {
+                e.cause instanceof RpcException && (e.cause as RpcException).code == -32600
+            }
+        }
+        cleanup:
+        adapter.close()
+    }
+
+    def "Fails pending calls when connection is lost"() {
+        setup:
+        def adapter = JavaHttpSubscriptionAdapter.newBuilder()
+                .connectTo("ws://localhost:${port}")
+                .noReconnect()
+                .build()
+        adapter.connect().get(TIMEOUT, TimeUnit.SECONDS)
+        when:
+        def f = adapter.produceRpcFuture(RpcCall.create(String.class, "test_foo"))
+        Thread.sleep(SLEEP)
+        server.stop()
+        f.get(TIMEOUT, TimeUnit.SECONDS)
+        then:
+        def t = thrown(ExecutionException)
+        t.cause instanceof IOException
+        cleanup:
+        adapter.close()
+    }
+
+    def "Subscribes again after reconnect"() {
+        setup:
+        def adapter = JavaHttpSubscriptionAdapter.newBuilder()
+                .connectTo("ws://localhost:${port}")
+                .reconnect(Duration.ofMillis(50), Duration.ofMillis(200))
+                .build()
+        adapter.connect().get(TIMEOUT, TimeUnit.SECONDS)
+        List<String> received = new CopyOnWriteArrayList<>()
+        when:
+        server.onNextReply('{"jsonrpc":"2.0","result":"EsqruyKPnZvPZ6fr","id":0}')
+        def sub = adapter.subscribe(SubscribeCall.create(String.class, "test_subscribe", "test_unsubscribe")).get(TIMEOUT, TimeUnit.SECONDS)
+        sub.handler({ event -> received.add(event.result) })
+        server.reply('{"jsonrpc":"2.0","method":"test_event","params":{"result":"first","subscription":"EsqruyKPnZvPZ6fr"}}')
+        Thread.sleep(SLEEP)
+
+        def restarted = restartServer()
+        restarted.onRequest { String message ->
+            def json = new JsonSlurper().parseText(message)
+            if (json.method == "test_subscribe") {
+                return '{"jsonrpc":"2.0","result":"N8y7yBn6yPZ5EBbm","id":' + json.id + '}'
+            }
+            return null
+        }
+        restarted.start()
+        waitFor { restarted.received.any { it.value.contains("test_subscribe") } }
+        Thread.sleep(SLEEP)
+        restarted.reply('{"jsonrpc":"2.0","method":"test_event","params":{"result":"second","subscription":"N8y7yBn6yPZ5EBbm"}}')
+        Thread.sleep(SLEEP)
+        then:
+        received == ["first", "second"]
+
+        when:
+        sub.close()
+        Thread.sleep(SLEEP)
+        then:
+        restarted.received.last().value.contains('"test_unsubscribe"')
+        restarted.received.last().value.contains('"N8y7yBn6yPZ5EBbm"')
+        cleanup:
+        adapter.close()
+    }
+
+    def "Retries to subscribe again when server returns an error"() {
+        setup:
+        def adapter = JavaHttpSubscriptionAdapter.newBuilder()
+                .connectTo("ws://localhost:${port}")
+                .reconnect(Duration.ofMillis(50), Duration.ofMillis(200))
+                .build()
+        adapter.connect().get(TIMEOUT, TimeUnit.SECONDS)
+        List<String> received = new CopyOnWriteArrayList<>()
+        when:
+        server.onNextReply('{"jsonrpc":"2.0","result":"EsqruyKPnZvPZ6fr","id":0}')
+        def sub = adapter.subscribe(SubscribeCall.create(String.class, "test_subscribe", "test_unsubscribe")).get(TIMEOUT, TimeUnit.SECONDS)
+        sub.handler({ event -> received.add(event.result) })
+
+        def restarted = restartServer()
+        int attempts = 0
+        restarted.onRequest { String message ->
+            def json = new JsonSlurper().parseText(message)
+            if (json.method == "test_subscribe") {
+                attempts++
+                if (attempts == 1) {
+                    return '{"jsonrpc":"2.0","error":{"code":-32000,"message":"Not ready"},"id":' + json.id + '}'
+                }
+                return '{"jsonrpc":"2.0","result":"N8y7yBn6yPZ5EBbm","id":' + json.id + '}'
+            }
+            return null
+        }
+        restarted.start()
+        waitFor { restarted.received.count { it.value.contains("test_subscribe") } >= 2 }
+        Thread.sleep(SLEEP)
+        restarted.reply('{"jsonrpc":"2.0","method":"test_event","params":{"result":"after retry","subscription":"N8y7yBn6yPZ5EBbm"}}')
+        Thread.sleep(SLEEP)
+        then:
+        attempts == 2
+        received == ["after retry"]
+        cleanup:
+        adapter.close()
+    }
+
+    def "Subscribes again when server gives previous ids to other subscriptions"() {
+        setup:
+        def adapter = JavaHttpSubscriptionAdapter.newBuilder()
+                .connectTo("ws://localhost:${port}")
+                .reconnect(Duration.ofMillis(50), Duration.ofMillis(200))
+                .build()
+        adapter.connect().get(TIMEOUT, TimeUnit.SECONDS)
+        List<String> receivedFoo = new CopyOnWriteArrayList<>()
+        List<String> receivedBar = new CopyOnWriteArrayList<>()
+        when:
+        server.onNextReply('{"jsonrpc":"2.0","result":"EsqruyKPnZvPZ6fr","id":0}')
+        def foo = adapter.subscribe(SubscribeCall.create(String.class, "test_subscribe", "test_unsubscribe", "foo")).get(TIMEOUT, TimeUnit.SECONDS)
+        foo.handler({ event -> receivedFoo.add(event.result) })
+        server.onNextReply('{"jsonrpc":"2.0","result":"N8y7yBn6yPZ5EBbm","id":1}')
+        def bar = adapter.subscribe(SubscribeCall.create(String.class, "test_subscribe", "test_unsubscribe", "bar")).get(TIMEOUT, TimeUnit.SECONDS)
+        bar.handler({ event -> receivedBar.add(event.result) })
+
+        def restarted = restartServer()
+        int attempts = 0
+        restarted.onRequest { String message ->
+            def json = new JsonSlurper().parseText(message)
+            if (json.method != "test_subscribe") {
+                return null
+            }
+            if (json.params[0] == "bar") {
+                // the id foo had on the previous connection
+                return '{"jsonrpc":"2.0","result":"EsqruyKPnZvPZ6fr","id":' + json.id + '}'
+            }
+            attempts++
+            if (attempts == 1) {
+                return '{"jsonrpc":"2.0","error":{"code":-32000,"message":"Not ready"},"id":' + json.id + '}'
+            }
+            return '{"jsonrpc":"2.0","result":"4Jr5Zqk3vZpnqV7X","id":' + json.id + '}'
+        }
+        restarted.start()
+        waitFor { attempts >= 2 }
+        Thread.sleep(SLEEP)
+        restarted.reply('{"jsonrpc":"2.0","method":"test_event","params":{"result":"to bar","subscription":"EsqruyKPnZvPZ6fr"}}')
+        restarted.reply('{"jsonrpc":"2.0","method":"test_event","params":{"result":"to foo","subscription":"4Jr5Zqk3vZpnqV7X"}}')
+        Thread.sleep(SLEEP)
+        then:
+        receivedFoo == ["to foo"]
+        receivedBar == ["to bar"]
+        cleanup:
+        adapter.close()
+    }
+
+    def "Requests heads missed during reconnect"() {
+        setup:
+        def adapter = JavaHttpSubscriptionAdapter.newBuilder()
+                .connectTo("ws://localhost:${port}")
+                .reconnect(Duration.ofMillis(50), Duration.ofMillis(200))
+                .build()
+        adapter.connect().get(TIMEOUT, TimeUnit.SECONDS)
+        List<Long> received = new CopyOnWriteArrayList<>()
+        when:
+        server.onNextReply('{"jsonrpc":"2.0","result":"EsqruyKPnZvPZ6fr","id":0}')
+        def sub = adapter.subscribe(StandardSubscriptions.getInstance().newHeads()).get(TIMEOUT, TimeUnit.SECONDS)
+        sub.handler({ event -> received.add((event.result as BlockJson.Header).number) })
+        server.reply('{"jsonrpc":"2.0","method":"chain_newHead","params":{"result":' + header(16) + ',"subscription":"EsqruyKPnZvPZ6fr"}}')
+        Thread.sleep(SLEEP)
+
+        def restarted = restartServer()
+        restarted.onRequest { String message ->
+            def json = new JsonSlurper().parseText(message)
+            switch (json.method) {
+                case "chain_subscribeNewHeads":
+                    return '{"jsonrpc":"2.0","result":"N8y7yBn6yPZ5EBbm","id":' + json.id + '}'
+                case "chain_getBlockHash":
+                    return '{"jsonrpc":"2.0","result":"' + hash(json.params[0] as long) + '","id":' + json.id + '}'
+                case "chain_getBlock":
+                    long number = Long.parseLong((json.params[0] as String).substring(2), 16)
+                    return '{"jsonrpc":"2.0","result":{"block":{"header":' + header(number) + ',"extrinsics":[]}},"id":' + json.id + '}'
+                default:
+                    return null
+            }
+        }
+        restarted.start()
+        waitFor { restarted.received.any { it.value.contains("chain_subscribeNewHeads") } }
+        Thread.sleep(SLEEP)
+        restarted.reply('{"jsonrpc":"2.0","method":"chain_newHead","params":{"result":' + header(19) + ',"subscription":"N8y7yBn6yPZ5EBbm"}}')
+        waitFor { received.size() >= 4 }
+        Thread.sleep(SLEEP)
+        then:
+        received == [16L, 17L, 18L, 19L]
+        restarted.received.count { it.value.contains("chain_getBlockHash") } == 2
+        cleanup:
+        adapter.close()
+    }
 }
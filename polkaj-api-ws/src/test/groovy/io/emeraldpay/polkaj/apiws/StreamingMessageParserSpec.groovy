@@ -0,0 +1,114 @@
+package io.emeraldpay.polkaj.apiws
+
+import com.fasterxml.jackson.databind.JsonNode
+import com.fasterxml.jackson.databind.ObjectMapper
+import spock.lang.Specification
+
+import java.nio.charset.StandardCharsets
+
+class StreamingMessageParserSpec extends Specification {
+
+    ObjectMapper objectMapper = new ObjectMapper()
+    StreamingMessageParser parser = new StreamingMessageParser(objectMapper)
+
+    JsonNode parseParts(List<String> parts) {
+        def result = null
+        parts.eachWithIndex { String part, int i ->
+            def tokens = parser.add(part, i == parts.size() - 1)
+            if (i < parts.size() - 1) {
+                assert tokens == null
+            } else {
+                result = objectMapper.readTree(tokens.asParser())
+            }
+        }
+        return result
+    }
+
+    def "Parse single part"() {
+        when:
+        def act = parseParts(['{"jsonrpc":"2.0","result":"EsqruyKPnZvPZ6fr","id":1}'])
+        then:
+        act == objectMapper.readTree('{"jsonrpc":"2.0","result":"EsqruyKPnZvPZ6fr","id":1}')
+        parser.lastSize == 52
+    }
+
+    def "Parse multiple parts"() {
+        when:
+        def act = parseParts(['{"jsonrpc":"2.0","res', 'ult":"Esqruy', 'KPnZvPZ6fr","i', 'd":1}'])
+        then:
+        act == objectMapper.readTree('{"jsonrpc":"2.0","result":"EsqruyKPnZvPZ6fr","id":1}')
+    }
+
+    def "Parse parts split inside non-ascii chars"() {
+        setup:
+        def text = 'h\u00e9llo \u20acuro \ud83d\ude00'
+        def json = '{"result":"' + text + '","id":1}'
+        when:
+        // splits right before a 2-byte char, and between the surrogate pair of the emoji
+        def act = parseParts([json.substring(0, 12), json.substring(12, 23), json.substring(23)])
+        then:
+        act.get("result").asText() == text
+        parser.lastSize == json.getBytes(StandardCharsets.UTF_8).length
+    }
+
+    def "Parse large message"() {
+        setup:
+        def value = (0..<100_000).collect { Integer.toHexString(it) }.join("")
+        def json = '{"result":"0x' + value + '","id":1}'
+        def parts = json.toList().collate(3000).collect { it.join("") }
+        when:
+        def act = parseParts(parts)
+        then:
+        act.get("result").asText() == "0x" + value
+        act.get("id").asInt() == 1
+    }
+
+    def "Parse array"() {
+        when:
+        def tokens = parser.add('[{"id":1},', false)
+        then:
+        tokens == null
+        when:
+        tokens = parser.add('{"id":2}]', true)
+        then:
+        DecodeResponse.isBatch(tokens)
+        objectMapper.readTree(tokens.asParser()).size() == 2
+    }
+
+    def "Fails on incomplete message"() {
+        when:
+        parser.add('{"id":', false)
+        parser.add('1', true)
+        then:
+        thrown(IOException)
+
+        when:
+        def act = parseParts(['{"id":2}'])
+        then:
+        act.get("id").asInt() == 2
+    }
+
+    def "Fails on data after message"() {
+        when:
+        parser.add('{"id":1} {"id":2}', true)
+        then:
+        thrown(IOException)
+    }
+
+    def "Ignores rest of invalid message"() {
+        when:
+        parser.add('{"id":]', false)
+        then:
+        thrown(IOException)
+
+        when:
+        def rest = parser.add('1}', true)
+        then:
+        rest == null
+
+        when:
+        def act = parseParts(['{"id":3}'])
+        then:
+        act.get("id").asInt() == 3
+    }
+}
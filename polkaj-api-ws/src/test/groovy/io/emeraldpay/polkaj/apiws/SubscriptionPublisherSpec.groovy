@@ -0,0 +1,222 @@
+package io.emeraldpay.polkaj.apiws
+
+import io.emeraldpay.polkaj.api.Subscription
+import spock.lang.Specification
+
+import java.util.concurrent.Flow
+import java.util.function.Consumer
+
+class SubscriptionPublisherSpec extends Specification {
+
+    TestSubscription subscription = new TestSubscription()
+
+    def "Delivers only requested events"() {
+        setup:
+        def publisher = SubscriptionPublisher.of(subscription)
+        def subscriber = new TestSubscriber(2)
+        publisher.subscribe(subscriber)
+        when:
+        (1..5).each { subscription.emit(it) }
+        then:
+        subscriber.received == [1, 2]
+
+        when:
+        subscriber.subscription.request(10)
+        then:
+        subscriber.received == [1, 2, 3, 4, 5]
+
+        when:
+        subscription.emit(6)
+        then:
+        subscriber.received == [1, 2, 3, 4, 5, 6]
+    }
+
+    def "Keeps events received before first subscriber"() {
+        setup:
+        def publisher = SubscriptionPublisher.of(subscription)
+        when:
+        subscription.emit(1)
+        subscription.emit(2)
+        def subscriber = new TestSubscriber(10)
+        publisher.subscribe(subscriber)
+        then:
+        subscriber.received == [1, 2]
+    }
+
+    def "Delivers to multiple subscribers"() {
+        setup:
+        def publisher = SubscriptionPublisher.of(subscription)
+        def fast = new TestSubscriber(Long.MAX_VALUE)
+        def slow = new TestSubscriber(1)
+        publisher.subscribe(fast)
+        publisher.subscribe(slow)
+        when:
+        (1..3).each { subscription.emit(it) }
+        then:
+        publisher.subscriberCount == 2
+        fast.received == [1, 2, 3]
+        slow.received == [1]
+
+        when:
+        slow.subscription.request(2)
+        then:
+        slow.received == [1, 2, 3]
+    }
+
+    def "Drops oldest on overflow"() {
+        setup:
+        def publisher = SubscriptionPublisher.newBuilder(subscription)
+                .bufferSize(2)
+                .overflow(SubscriptionPublisher.Overflow.DROP_OLDEST)
+                .build()
+        def subscriber = new TestSubscriber(0)
+        publisher.subscribe(subscriber)
+        when:
+        (1..5).each { subscription.emit(it) }
+        subscriber.subscription.request(10)
+        then:
+        subscriber.received == [4, 5]
+        publisher.dropped == 3
+    }
+
+    def "Keeps only latest on overflow"() {
+        setup:
+        def publisher = SubscriptionPublisher.newBuilder(subscription)
+                .overflow(SubscriptionPublisher.Overflow.LATEST_ONLY)
+                .build()
+        def subscriber = new TestSubscriber(0)
+        publisher.subscribe(subscriber)
+        when:
+        (1..5).each { subscription.emit(it) }
+        subscriber.subscription.request(10)
+        then:
+        subscriber.received == [5]
+        publisher.dropped == 4
+    }
+
+    def "Fails subscriber on overflow"() {
+        setup:
+        def publisher = SubscriptionPublisher.newBuilder(subscription)
+                .bufferSize(2)
+                .overflow(SubscriptionPublisher.Overflow.ERROR)
+                .build()
+        def subscriber = new TestSubscriber(1)
+        publisher.subscribe(subscriber)
+        when:
+        (1..4).each { subscription.emit(it) }
+        then:
+        subscriber.received == [1]
+        subscriber.error instanceof IllegalStateException
+        publisher.subscriberCount == 0
+
+        when:
+        subscription.emit(5)
+        subscriber.subscription.request(10)
+        then:
+        subscriber.received == [1]
+    }
+
+    def "Stops delivery after cancel"() {
+        setup:
+        def publisher = SubscriptionPublisher.of(subscription)
+        def subscriber = new TestSubscriber(10)
+        publisher.subscribe(subscriber)
+        when:
+        subscription.emit(1)
+        subscriber.subscription.cancel()
+        subscription.emit(2)
+        then:
+        subscriber.received == [1]
+        publisher.subscriberCount == 0
+    }
+
+    def "Fails on non-positive request"() {
+        setup:
+        def publisher = SubscriptionPublisher.of(subscription)
+        def subscriber = new TestSubscriber(0)
+        publisher.subscribe(subscriber)
+        when:
+        subscriber.subscription.request(0)
+        then:
+        subscriber.error instanceof IllegalArgumentException
+    }
+
+    def "Close unsubscribes and completes subscribers"() {
+        setup:
+        def publisher = SubscriptionPublisher.of(subscription)
+        def subscriber = new TestSubscriber(0)
+        publisher.subscribe(subscriber)
+        subscription.emit(1)
+        when:
+        publisher.close()
+        then:
+        subscription.closed
+        !subscriber.completed
+
+        when:
+        subscriber.subscription.request(1)
+        then:
+        subscriber.received == [1]
+        subscriber.completed
+
+        when:
+        def late = new TestSubscriber(1)
+        publisher.subscribe(late)
+        then:
+        late.completed
+    }
+
+    static class TestSubscription implements Subscription<Integer> {
+        Consumer<Subscription.Event<Integer>> handler
+        boolean closed = false
+
+        @Override
+        void handler(Consumer<? extends Subscription.Event<? extends Integer>> handler) {
+            this.handler = handler
+        }
+
+        void emit(int value) {
+            handler.accept(new Subscription.Event<Integer>("test_event", value))
+        }
+
+        @Override
+        void close() {
+            closed = true
+        }
+    }
+
+    static class TestSubscriber implements Flow.Subscriber<Subscription.Event<Integer>> {
+        final long initial
+        Flow.Subscription subscription
+        List<Integer> received = []
+        Throwable error
+        boolean completed = false
+
+        TestSubscriber(long initial) {
+            this.initial = initial
+        }
+
+        @Override
+        void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription
+            if (initial > 0) {
+                subscription.request(initial)
+            }
+        }
+
+        @Override
+        void onNext(Subscription.Event<Integer> item) {
+            received.add(item.result)
+        }
+
+        @Override
+        void onError(Throwable throwable) {
+            error = throwable
+        }
+
+        @Override
+        void onComplete() {
+            completed = true
+        }
+    }
+}
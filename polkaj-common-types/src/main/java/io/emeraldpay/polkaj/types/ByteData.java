@@ -1,5 +1,8 @@
 package io.emeraldpay.polkaj.types;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 
 public class ByteData {
@@ -7,19 +10,39 @@ public class ByteData {
     protected final byte[] value;
 
     public ByteData(byte[] value) {
+        this(value, true);
+    }
+
+    /**
+     * @param value bytes value
+     * @param copy if false the instance takes ownership of the array, which must not be modified after that
+     */
+    protected ByteData(byte[] value, boolean copy) {
         if (value == null) {
             throw new NullPointerException("Value is null");
         }
-        this.value = value.clone();
+        this.value = copy ? value.clone() : value;
     }
 
     public static ByteData from(String hex) {
         byte[] value = FixedBytes.parseHex(hex);
-        return new ByteData(value);
+        return new ByteData(value, false);
     }
 
     public static ByteData empty() {
-        return new ByteData(new byte[0]);
+        return new ByteData(new byte[0], false);
+    }
+
+    /**
+     * Create a new instance without copying the provided array. Supposed to be used by decoders which have just
+     * allocated the array and never touch it afterwards. The caller MUST NOT modify the array after the call.
+     *
+     * @param value bytes value
+     * @return new instance backed by the provided array
+     * @throws NullPointerException if value is null
+     */
+    public static ByteData wrap(byte[] value) {
+        return new ByteData(value, false);
     }
 
     /**
@@ -30,16 +53,51 @@ public class ByteData {
         return value.clone();
     }
 
+    /**
+     * @return length of the value in bytes
+     */
+    public int length() {
+        return value.length;
+    }
+
+    /**
+     * @param index position of the byte
+     * @return byte at the specified position
+     * @throws IndexOutOfBoundsException if index is outside of the value
+     */
+    public byte byteAt(int index) {
+        return value[index];
+    }
+
+    /**
+     * Provides access to the value without copying it
+     *
+     * @return a read-only view of the value, positioned at 0
+     */
+    public ByteBuffer asReadOnlyBuffer() {
+        return ByteBuffer.wrap(value).asReadOnlyBuffer();
+    }
+
+    /**
+     * Write the value to the stream, without making an intermediate copy. The stream gets the internal array of this
+     * instance, so it MUST NOT modify the array or keep it after the call.
+     *
+     * @param out target stream
+     * @throws IOException if failed to write
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(value, 0, value.length);
+    }
+
+    /**
+     * @return value as hex characters with 0x prefix
+     */
+    public char[] toHexChars() {
+        return HexCodec.encode(value, true);
+    }
+
     public String toString() {
-        char[] hex = new char[value.length * 2 + 2];
-        hex[0] = '0';
-        hex[1] = 'x';
-        for (int i = 0; i < value.length; i++) {
-            byte b = value[i];
-            hex[2 + i * 2] = Character.forDigit((b & 0xf0) >> 4, 16);
-            hex[2 + i * 2 + 1] = Character.forDigit(b & 0x0f, 16);
-        }
-        return new String(hex);
+        return HexCodec.toHexString(value);
     }
 
     @Override
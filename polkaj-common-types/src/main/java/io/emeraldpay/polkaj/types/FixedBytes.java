@@ -12,38 +12,34 @@ abstract public class FixedBytes extends ByteData {
     }
 
     protected FixedBytes(byte[] value, int expectedSize) {
-        super(value);
+        this(value, expectedSize, true);
+    }
+
+    /**
+     * @param value bytes value
+     * @param expectedSize required size of the value
+     * @param copy if false the instance takes ownership of the array, which must not be modified after that
+     */
+    protected FixedBytes(byte[] value, int expectedSize, boolean copy) {
+        super(value, copy);
         if (value.length != expectedSize) {
             throw new IllegalArgumentException("Value size must be " + expectedSize + "; received: " + value.length);
         }
     }
 
     protected static byte[] parseHex(String hex, int expectedSize) {
-        if (hex.length() == expectedSize * 2 + 2 && hex.startsWith("0x")) {
-            hex = hex.substring(2);
+        int len = hex.length();
+        if (len == expectedSize * 2 + 2 && hex.startsWith("0x")) {
+            len -= 2;
         }
-        if (hex.length() != expectedSize * 2) {
-            throw new IllegalArgumentException("Invalid hex size: " + hex.length());
+        if (len != expectedSize * 2) {
+            throw new IllegalArgumentException("Invalid hex size: " + len);
         }
         return parseHex(hex);
     }
 
     protected static byte[] parseHex(String hex) {
-        if (hex == null) {
-            throw new NullPointerException("Hex value is null");
-        }
-        if (hex.startsWith("0x")) {
-            hex = hex.substring(2);
-        }
-        int len = hex.length();
-        if (len % 2 != 0) {
-            throw new NumberFormatException("Not event number of digits provided");
-        }
-        byte[] data = new byte[len / 2];
-        for (int i = 0; i < len; i += 2) {
-            data[i / 2] = Integer.valueOf(hex.substring(i, i + 2), 16).byteValue();
-        }
-        return data;
+        return HexCodec.decode(hex);
     }
 
     @Override
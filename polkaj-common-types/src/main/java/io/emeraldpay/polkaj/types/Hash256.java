@@ -26,13 +26,29 @@ public class Hash256 extends FixedBytes implements Comparable<Hash256>, Serializ
         super(value, SIZE_BYTES);
     }
 
+    private Hash256(byte[] value, boolean copy) {
+        super(value, SIZE_BYTES, copy);
+    }
+
+    /**
+     * Create a new instance without copying the provided array. The caller MUST NOT modify the array after the call.
+     *
+     * @param value 32 byte value
+     * @return hash instance backed by the provided array
+     * @throws NullPointerException     if value is null
+     * @throws IllegalArgumentException is size is not 32 bytes
+     */
+    public static Hash256 wrap(byte[] value) {
+        return new Hash256(value, false);
+    }
+
     /**
      * Creates an empty zeroed instance
      *
      * @return empty hash
      */
     public static Hash256 empty() {
-        return new Hash256(new byte[SIZE_BYTES]);
+        return new Hash256(new byte[SIZE_BYTES], false);
     }
 
     /**
@@ -45,7 +61,7 @@ public class Hash256 extends FixedBytes implements Comparable<Hash256>, Serializ
      */
     public static Hash256 from(String hex) {
         byte[] parsed = parseHex(hex, SIZE_BYTES);
-        return new Hash256(parsed);
+        return new Hash256(parsed, false);
     }
 
     @Override
@@ -26,13 +26,29 @@ public class Hash264 extends FixedBytes implements Comparable<Hash264>, Serializ
         super(value, SIZE_BYTES);
     }
 
+    private Hash264(byte[] value, boolean copy) {
+        super(value, SIZE_BYTES, copy);
+    }
+
+    /**
+     * Create a new instance without copying the provided array. The caller MUST NOT modify the array after the call.
+     *
+     * @param value 33 byte value
+     * @return hash instance backed by the provided array
+     * @throws NullPointerException     if value is null
+     * @throws IllegalArgumentException is size is not 33 bytes
+     */
+    public static Hash264 wrap(byte[] value) {
+        return new Hash264(value, false);
+    }
+
     /**
      * Creates an empty zeroed instance
      *
      * @return empty hash
      */
     public static Hash264 empty() {
-        return new Hash264(new byte[SIZE_BYTES]);
+        return new Hash264(new byte[SIZE_BYTES], false);
     }
 
     /**
@@ -45,7 +61,7 @@ public class Hash264 extends FixedBytes implements Comparable<Hash264>, Serializ
      */
     public static Hash264 from(String hex) {
         byte[] parsed = parseHex(hex, SIZE_BYTES);
-        return new Hash264(parsed);
+        return new Hash264(parsed, false);
     }
 
     @Override
@@ -26,13 +26,29 @@ public class Hash512 extends FixedBytes implements Comparable<Hash512>, Serializ
         super(value, SIZE_BYTES);
     }
 
+    private Hash512(byte[] value, boolean copy) {
+        super(value, SIZE_BYTES, copy);
+    }
+
+    /**
+     * Create a new instance without copying the provided array. The caller MUST NOT modify the array after the call.
+     *
+     * @param value 64 byte value
+     * @return hash instance backed by the provided array
+     * @throws NullPointerException     if value is null
+     * @throws IllegalArgumentException is size is not 64 bytes
+     */
+    public static Hash512 wrap(byte[] value) {
+        return new Hash512(value, false);
+    }
+
     /**
      * Creates an empty zeroed instance
      *
      * @return empty hash
      */
     public static Hash512 empty() {
-        return new Hash512(new byte[SIZE_BYTES]);
+        return new Hash512(new byte[SIZE_BYTES], false);
     }
 
     /**
@@ -45,7 +61,7 @@ public class Hash512 extends FixedBytes implements Comparable<Hash512>, Serializ
      */
     public static Hash512 from(String hex) {
         byte[] parsed = parseHex(hex, SIZE_BYTES);
-        return new Hash512(parsed);
+        return new Hash512(parsed, false);
     }
 
     @Override
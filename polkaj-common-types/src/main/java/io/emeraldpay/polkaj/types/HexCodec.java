@@ -0,0 +1,186 @@
+package io.emeraldpay.polkaj.types;
+
+import java.util.Arrays;
+
+/**
+ * Table-driven hex encoder/decoder for byte values. Works directly on <code>char[]</code> ranges, so callers that
+ * already have the characters in a buffer (e.g. a JSON parser or generator) don't need to create intermediate Strings.
+ * <br>
+ * Encoding always produces lowercase digits. Decoding accepts both lower and upper case.
+ */
+public class HexCodec {
+
+    private static final char[] DIGITS = "0123456789abcdef".toCharArray();
+    private static final char[] PREFIX = {'0', 'x'};
+
+    /**
+     * Digit value for each ASCII char, or -1 if the char is not a hex digit
+     */
+    private static final byte[] VALUES = new byte[128];
+
+    static {
+        Arrays.fill(VALUES, (byte) -1);
+        for (int i = 0; i < 10; i++) {
+            VALUES['0' + i] = (byte) i;
+        }
+        for (int i = 0; i < 6; i++) {
+            VALUES['a' + i] = (byte) (10 + i);
+            VALUES['A' + i] = (byte) (10 + i);
+        }
+    }
+
+    /**
+     * Encode bytes as hex
+     *
+     * @param src source bytes
+     * @param prefix if true the result starts with 0x
+     * @return hex characters
+     */
+    public static char[] encode(byte[] src, boolean prefix) {
+        return encode(src, 0, src.length, prefix);
+    }
+
+    /**
+     * Encode a range of bytes as hex
+     *
+     * @param src source bytes
+     * @param offset position of the first byte to encode
+     * @param len amount of bytes to encode
+     * @param prefix if true the result starts with 0x
+     * @return hex characters
+     */
+    public static char[] encode(byte[] src, int offset, int len, boolean prefix) {
+        int start = prefix ? PREFIX.length : 0;
+        char[] result = new char[start + len * 2];
+        if (prefix) {
+            result[0] = PREFIX[0];
+            result[1] = PREFIX[1];
+        }
+        encode(src, offset, len, result, start);
+        return result;
+    }
+
+    /**
+     * Encode a range of bytes as hex into the provided buffer. The buffer must have at least <code>len * 2</code> chars
+     * available starting from <code>destOffset</code>
+     *
+     * @param src source bytes
+     * @param offset position of the first byte to encode
+     * @param len amount of bytes to encode
+     * @param dest target buffer
+     * @param destOffset position in the target buffer
+     * @return position in the target buffer right after the last written char
+     */
+    public static int encode(byte[] src, int offset, int len, char[] dest, int destOffset) {
+        int pos = destOffset;
+        for (int i = offset, end = offset + len; i < end; i++) {
+            int b = src[i] & 0xff;
+            dest[pos++] = DIGITS[b >>> 4];
+            dest[pos++] = DIGITS[b & 0x0f];
+        }
+        return pos;
+    }
+
+    /**
+     * Encode bytes as a hex string with 0x prefix
+     *
+     * @param src source bytes
+     * @return hex string
+     */
+    public static String toHexString(byte[] src) {
+        return new String(encode(src, true));
+    }
+
+    /**
+     * Check if the range starts with 0x prefix
+     *
+     * @param src source chars
+     * @param offset position of the first char
+     * @param len length of the range
+     * @return true if has 0x prefix
+     */
+    public static boolean hasPrefix(char[] src, int offset, int len) {
+        return len >= 2 && src[offset] == '0' && src[offset + 1] == 'x';
+    }
+
+    /**
+     * Decode hex characters, with optional 0x prefix
+     *
+     * @param src source chars
+     * @param offset position of the first char
+     * @param len length of the range
+     * @return decoded bytes
+     * @throws NumberFormatException if the range has an odd number of digits or contains a non-hex char
+     */
+    public static byte[] decode(char[] src, int offset, int len) {
+        if (hasPrefix(src, offset, len)) {
+            offset += 2;
+            len -= 2;
+        }
+        byte[] result = new byte[decodedLength(len)];
+        decode(src, offset, len, result, 0);
+        return result;
+    }
+
+    /**
+     * Decode hex characters, without a prefix, into the provided buffer. The buffer must have at least
+     * <code>len / 2</code> bytes available starting from <code>destOffset</code>
+     *
+     * @param src source chars, without 0x prefix
+     * @param offset position of the first char
+     * @param len length of the range
+     * @param dest target buffer
+     * @param destOffset position in the target buffer
+     * @return position in the target buffer right after the last written byte
+     * @throws NumberFormatException if the range has an odd number of digits or contains a non-hex char
+     */
+    public static int decode(char[] src, int offset, int len, byte[] dest, int destOffset) {
+        decodedLength(len);
+        int pos = destOffset;
+        for (int i = offset, end = offset + len; i < end; i += 2) {
+            dest[pos++] = (byte) ((digit(src[i]) << 4) | digit(src[i + 1]));
+        }
+        return pos;
+    }
+
+    /**
+     * Decode hex string, with optional 0x prefix
+     *
+     * @param src source string
+     * @return decoded bytes
+     * @throws NullPointerException if source is null
+     * @throws NumberFormatException if the string has an odd number of digits or contains a non-hex char
+     */
+    public static byte[] decode(CharSequence src) {
+        if (src == null) {
+            throw new NullPointerException("Hex value is null");
+        }
+        int offset = 0;
+        int len = src.length();
+        if (len >= 2 && src.charAt(0) == '0' && src.charAt(1) == 'x') {
+            offset = 2;
+            len -= 2;
+        }
+        byte[] result = new byte[decodedLength(len)];
+        for (int i = 0; i < result.length; i++) {
+            int pos = offset + i * 2;
+            result[i] = (byte) ((digit(src.charAt(pos)) << 4) | digit(src.charAt(pos + 1)));
+        }
+        return result;
+    }
+
+    private static int decodedLength(int len) {
+        if (len % 2 != 0) {
+            throw new NumberFormatException("Not event number of digits provided");
+        }
+        return len / 2;
+    }
+
+    private static int digit(char c) {
+        int value = c < VALUES.length ? VALUES[c] : -1;
+        if (value < 0) {
+            throw new NumberFormatException("Invalid hex char: " + c);
+        }
+        return value;
+    }
+}
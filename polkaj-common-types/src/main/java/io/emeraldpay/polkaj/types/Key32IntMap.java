@@ -0,0 +1,201 @@
+package io.emeraldpay.polkaj.types;
+
+import java.util.Arrays;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Map of 32 byte keys, such as public keys or hashes, to primitive <code>int</code> values. Keys are stored inline
+ * and values in a parallel <code>int[]</code>, without any per-entry object.
+ *
+ * @see Key32Table
+ */
+public class Key32IntMap extends Key32Table {
+
+    private int[] values;
+
+    /**
+     * Create a new empty map with a default capacity
+     */
+    public Key32IntMap() {
+        this(0);
+    }
+
+    /**
+     * Create a new empty map
+     *
+     * @param expectedSize number of keys the map is expected to keep without a resize
+     */
+    public Key32IntMap(int expectedSize) {
+        super(expectedSize, true);
+        initValues();
+    }
+
+    /**
+     * @param key key
+     * @param value value to associate with the key
+     * @return true if the key is new, false if a previous value was replaced
+     */
+    public boolean put(Address key, int value) {
+        return put(keyOf(key), 0, value);
+    }
+
+    /**
+     * @param key 32 byte key
+     * @param value value to associate with the key
+     * @return true if the key is new, false if a previous value was replaced
+     * @throws IllegalArgumentException if the key is not 32 bytes
+     */
+    public boolean put(ByteData key, int value) {
+        return put(keyOf(key), 0, value);
+    }
+
+    /**
+     * @param key source array
+     * @param offset position of the 32 byte key in the array
+     * @param value value to associate with the key
+     * @return true if the key is new, false if a previous value was replaced
+     * @throws IndexOutOfBoundsException if there is no 32 bytes at the position
+     */
+    public boolean put(byte[] key, int offset, int value) {
+        checkKey(key, offset);
+        int slot = insert(key, offset);
+        boolean added = slot < 0;
+        if (added) {
+            slot = -slot - 1;
+        }
+        values[slot] = value;
+        return added;
+    }
+
+    /**
+     * @param key key
+     * @param defaultValue value to return if there is no such key
+     * @return value associated with the key, or the default value
+     */
+    public int get(Address key, int defaultValue) {
+        return get(keyOf(key), 0, defaultValue);
+    }
+
+    /**
+     * @param key 32 byte key
+     * @param defaultValue value to return if there is no such key
+     * @return value associated with the key, or the default value
+     * @throws IllegalArgumentException if the key is not 32 bytes
+     */
+    public int get(ByteData key, int defaultValue) {
+        return get(keyOf(key), 0, defaultValue);
+    }
+
+    /**
+     * @param key source array
+     * @param offset position of the 32 byte key in the array
+     * @param defaultValue value to return if there is no such key
+     * @return value associated with the key, or the default value
+     * @throws IndexOutOfBoundsException if there is no 32 bytes at the position
+     */
+    public int get(byte[] key, int offset, int defaultValue) {
+        checkKey(key, offset);
+        int slot = find(key, offset);
+        return slot < 0 ? defaultValue : values[slot];
+    }
+
+    /**
+     * @param key key to check
+     * @return true if the map contains the key
+     */
+    public boolean containsKey(Address key) {
+        return find(keyOf(key), 0) >= 0;
+    }
+
+    /**
+     * @param key 32 byte key to check
+     * @return true if the map contains the key
+     * @throws IllegalArgumentException if the key is not 32 bytes
+     */
+    public boolean containsKey(ByteData key) {
+        return find(keyOf(key), 0) >= 0;
+    }
+
+    /**
+     * @param key source array
+     * @param offset position of the 32 byte key in the array
+     * @return true if the map contains the key
+     * @throws IndexOutOfBoundsException if there is no 32 bytes at the position
+     */
+    public boolean containsKey(byte[] key, int offset) {
+        checkKey(key, offset);
+        return find(key, offset) >= 0;
+    }
+
+    /**
+     * @param key key to remove
+     * @return true if the key was removed, false if it wasn't in the map
+     */
+    public boolean remove(Address key) {
+        return remove(keyOf(key), 0);
+    }
+
+    /**
+     * @param key 32 byte key to remove
+     * @return true if the key was removed, false if it wasn't in the map
+     * @throws IllegalArgumentException if the key is not 32 bytes
+     */
+    public boolean remove(ByteData key) {
+        return remove(keyOf(key), 0);
+    }
+
+    /**
+     * @param key source array
+     * @param offset position of the 32 byte key in the array
+     * @return true if the key was removed, false if it wasn't in the map
+     * @throws IndexOutOfBoundsException if there is no 32 bytes at the position
+     */
+    public boolean remove(byte[] key, int offset) {
+        checkKey(key, offset);
+        int slot = find(key, offset);
+        if (slot < 0) {
+            return false;
+        }
+        delete(slot);
+        return true;
+    }
+
+    /**
+     * Call the handler for each entry in the map, in no particular order. The map must not be modified during the call.
+     *
+     * @param handler handler for the entries
+     */
+    public void forEach(ObjIntConsumer<Hash256> handler) {
+        for (int slot = nextUsed(0); slot >= 0; slot = nextUsed(slot + 1)) {
+            handler.accept(keyAt(slot), values[slot]);
+        }
+    }
+
+    @Override
+    void resizeValues(int capacity, int[] previous) {
+        int[] current = new int[capacity];
+        if (previous != null) {
+            for (int i = 0; i < previous.length; i++) {
+                if (previous[i] >= 0) {
+                    current[previous[i]] = values[i];
+                }
+            }
+        }
+        values = current;
+    }
+
+    @Override
+    void moveValue(int from, int to) {
+        values[to] = values[from];
+    }
+
+    @Override
+    void clearValue(int slot) {
+        values[slot] = 0;
+    }
+
+    @Override
+    void clearValues() {
+        Arrays.fill(values, 0);
+    }
+}
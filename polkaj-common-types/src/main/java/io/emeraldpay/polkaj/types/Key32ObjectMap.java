@@ -0,0 +1,211 @@
+package io.emeraldpay.polkaj.types;
+
+import java.util.Arrays;
+import java.util.function.BiConsumer;
+
+/**
+ * Map of 32 byte keys, such as public keys or hashes, to object values. Keys are stored inline and values in a parallel
+ * array, without any per-entry object. Null values are not allowed.
+ *
+ * @param <V> type of the values
+ * @see Key32Table
+ */
+public class Key32ObjectMap<V> extends Key32Table {
+
+    private Object[] values;
+
+    /**
+     * Create a new empty map with a default capacity
+     */
+    public Key32ObjectMap() {
+        this(0);
+    }
+
+    /**
+     * Create a new empty map
+     *
+     * @param expectedSize number of keys the map is expected to keep without a resize
+     */
+    public Key32ObjectMap(int expectedSize) {
+        super(expectedSize, true);
+        initValues();
+    }
+
+    /**
+     * @param key key
+     * @param value value to associate with the key
+     * @return previous value associated with the key, or null if the key is new
+     * @throws NullPointerException if value is null
+     */
+    public V put(Address key, V value) {
+        return put(keyOf(key), 0, value);
+    }
+
+    /**
+     * @param key 32 byte key
+     * @param value value to associate with the key
+     * @return previous value associated with the key, or null if the key is new
+     * @throws NullPointerException if value is null
+     * @throws IllegalArgumentException if the key is not 32 bytes
+     */
+    public V put(ByteData key, V value) {
+        return put(keyOf(key), 0, value);
+    }
+
+    /**
+     * @param key source array
+     * @param offset position of the 32 byte key in the array
+     * @param value value to associate with the key
+     * @return previous value associated with the key, or null if the key is new
+     * @throws NullPointerException if value is null
+     * @throws IndexOutOfBoundsException if there is no 32 bytes at the position
+     */
+    @SuppressWarnings("unchecked")
+    public V put(byte[] key, int offset, V value) {
+        if (value == null) {
+            throw new NullPointerException("Value is null");
+        }
+        checkKey(key, offset);
+        int slot = insert(key, offset);
+        if (slot < 0) {
+            values[-slot - 1] = value;
+            return null;
+        }
+        V previous = (V) values[slot];
+        values[slot] = value;
+        return previous;
+    }
+
+    /**
+     * @param key key
+     * @return value associated with the key, or null if there is no such key
+     */
+    public V get(Address key) {
+        return get(keyOf(key), 0);
+    }
+
+    /**
+     * @param key 32 byte key
+     * @return value associated with the key, or null if there is no such key
+     * @throws IllegalArgumentException if the key is not 32 bytes
+     */
+    public V get(ByteData key) {
+        return get(keyOf(key), 0);
+    }
+
+    /**
+     * @param key source array
+     * @param offset position of the 32 byte key in the array
+     * @return value associated with the key, or null if there is no such key
+     * @throws IndexOutOfBoundsException if there is no 32 bytes at the position
+     */
+    @SuppressWarnings("unchecked")
+    public V get(byte[] key, int offset) {
+        checkKey(key, offset);
+        int slot = find(key, offset);
+        return slot < 0 ? null : (V) values[slot];
+    }
+
+    /**
+     * @param key key to check
+     * @return true if the map contains the key
+     */
+    public boolean containsKey(Address key) {
+        return find(keyOf(key), 0) >= 0;
+    }
+
+    /**
+     * @param key 32 byte key to check
+     * @return true if the map contains the key
+     * @throws IllegalArgumentException if the key is not 32 bytes
+     */
+    public boolean containsKey(ByteData key) {
+        return find(keyOf(key), 0) >= 0;
+    }
+
+    /**
+     * @param key source array
+     * @param offset position of the 32 byte key in the array
+     * @return true if the map contains the key
+     * @throws IndexOutOfBoundsException if there is no 32 bytes at the position
+     */
+    public boolean containsKey(byte[] key, int offset) {
+        checkKey(key, offset);
+        return find(key, offset) >= 0;
+    }
+
+    /**
+     * @param key key to remove
+     * @return removed value, or null if the key wasn't in the map
+     */
+    public V remove(Address key) {
+        return remove(keyOf(key), 0);
+    }
+
+    /**
+     * @param key 32 byte key to remove
+     * @return removed value, or null if the key wasn't in the map
+     * @throws IllegalArgumentException if the key is not 32 bytes
+     */
+    public V remove(ByteData key) {
+        return remove(keyOf(key), 0);
+    }
+
+    /**
+     * @param key source array
+     * @param offset position of the 32 byte key in the array
+     * @return removed value, or null if the key wasn't in the map
+     * @throws IndexOutOfBoundsException if there is no 32 bytes at the position
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(byte[] key, int offset) {
+        checkKey(key, offset);
+        int slot = find(key, offset);
+        if (slot < 0) {
+            return null;
+        }
+        V previous = (V) values[slot];
+        delete(slot);
+        return previous;
+    }
+
+    /**
+     * Call the handler for each entry in the map, in no particular order. The map must not be modified during the call.
+     *
+     * @param handler handler for the entries
+     */
+    @SuppressWarnings("unchecked")
+    public void forEach(BiConsumer<Hash256, ? super V> handler) {
+        for (int slot = nextUsed(0); slot >= 0; slot = nextUsed(slot + 1)) {
+            handler.accept(keyAt(slot), (V) values[slot]);
+        }
+    }
+
+    @Override
+    void resizeValues(int capacity, int[] previous) {
+        Object[] current = new Object[capacity];
+        if (previous != null) {
+            for (int i = 0; i < previous.length; i++) {
+                if (previous[i] >= 0) {
+                    current[previous[i]] = values[i];
+                }
+            }
+        }
+        values = current;
+    }
+
+    @Override
+    void moveValue(int from, int to) {
+        values[to] = values[from];
+    }
+
+    @Override
+    void clearValue(int slot) {
+        values[slot] = null;
+    }
+
+    @Override
+    void clearValues() {
+        Arrays.fill(values, null);
+    }
+}
@@ -0,0 +1,116 @@
+package io.emeraldpay.polkaj.types;
+
+/**
+ * Set of 32 byte keys, such as public keys or hashes. Keys are stored inline, which takes about 43 bytes per key
+ * instead of 100+ bytes for a <code>HashSet&lt;Hash256&gt;</code>.
+ *
+ * @see Key32Table
+ * @see OffHeapKey32Set
+ */
+public class Key32Set extends Key32Table {
+
+    /**
+     * Create a new empty set with a default capacity
+     */
+    public Key32Set() {
+        this(0);
+    }
+
+    /**
+     * Create a new empty set
+     *
+     * @param expectedSize number of keys the set is expected to keep without a resize
+     */
+    public Key32Set(int expectedSize) {
+        super(expectedSize, false);
+    }
+
+    /**
+     * @param key key to add
+     * @return true if the key was added, false if it was already in the set
+     */
+    public boolean add(Address key) {
+        return insert(keyOf(key), 0) < 0;
+    }
+
+    /**
+     * @param key 32 byte key to add
+     * @return true if the key was added, false if it was already in the set
+     * @throws IllegalArgumentException if the key is not 32 bytes
+     */
+    public boolean add(ByteData key) {
+        return insert(keyOf(key), 0) < 0;
+    }
+
+    /**
+     * @param key source array
+     * @param offset position of the 32 byte key in the array
+     * @return true if the key was added, false if it was already in the set
+     * @throws IndexOutOfBoundsException if there is no 32 bytes at the position
+     */
+    public boolean add(byte[] key, int offset) {
+        checkKey(key, offset);
+        return insert(key, offset) < 0;
+    }
+
+    /**
+     * @param key key to check
+     * @return true if the set contains the key
+     */
+    public boolean contains(Address key) {
+        return find(keyOf(key), 0) >= 0;
+    }
+
+    /**
+     * @param key 32 byte key to check
+     * @return true if the set contains the key
+     * @throws IllegalArgumentException if the key is not 32 bytes
+     */
+    public boolean contains(ByteData key) {
+        return find(keyOf(key), 0) >= 0;
+    }
+
+    /**
+     * @param key source array
+     * @param offset position of the 32 byte key in the array
+     * @return true if the set contains the key
+     * @throws IndexOutOfBoundsException if there is no 32 bytes at the position
+     */
+    public boolean contains(byte[] key, int offset) {
+        checkKey(key, offset);
+        return find(key, offset) >= 0;
+    }
+
+    /**
+     * @param key key to remove
+     * @return true if the key was removed, false if it wasn't in the set
+     */
+    public boolean remove(Address key) {
+        return remove(keyOf(key), 0);
+    }
+
+    /**
+     * @param key 32 byte key to remove
+     * @return true if the key was removed, false if it wasn't in the set
+     * @throws IllegalArgumentException if the key is not 32 bytes
+     */
+    public boolean remove(ByteData key) {
+        return remove(keyOf(key), 0);
+    }
+
+    /**
+     * @param key source array
+     * @param offset position of the 32 byte key in the array
+     * @return true if the key was removed, false if it wasn't in the set
+     * @throws IndexOutOfBoundsException if there is no 32 bytes at the position
+     */
+    public boolean remove(byte[] key, int offset) {
+        checkKey(key, offset);
+        int slot = find(key, offset);
+        if (slot < 0) {
+            return false;
+        }
+        delete(slot);
+        return true;
+    }
+}
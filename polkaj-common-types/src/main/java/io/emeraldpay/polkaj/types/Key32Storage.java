@@ -0,0 +1,67 @@
+package io.emeraldpay.polkaj.types;
+
+/**
+ * Storage of the keys for the slots of a {@link Key32Table}, as 4 longs per slot. Only keeps the values, which slots
+ * are used is tracked by the table.
+ */
+abstract class Key32Storage {
+
+    /**
+     * @param slot slot
+     * @param word index of the long in the key, 0 to 3
+     * @return part of the key in the slot
+     */
+    abstract long get(int slot, int word);
+
+    /**
+     * @return true if the slot has the specified key
+     */
+    abstract boolean matches(int slot, long k0, long k1, long k2, long k3);
+
+    /**
+     * Set the key of the slot
+     */
+    abstract void set(int slot, long k0, long k1, long k2, long k3);
+
+    /**
+     * Copy the key between two slots
+     */
+    abstract void move(int from, int to);
+
+    /**
+     * Keys in a <code>long[]</code> on the heap
+     */
+    static final class Heap extends Key32Storage {
+        private final long[] keys;
+
+        Heap(int capacity) {
+            this.keys = new long[capacity << 2];
+        }
+
+        @Override
+        long get(int slot, int word) {
+            return keys[(slot << 2) + word];
+        }
+
+        @Override
+        boolean matches(int slot, long k0, long k1, long k2, long k3) {
+            final long[] keys = this.keys;
+            int i = slot << 2;
+            return keys[i] == k0 && keys[i + 1] == k1 && keys[i + 2] == k2 && keys[i + 3] == k3;
+        }
+
+        @Override
+        void set(int slot, long k0, long k1, long k2, long k3) {
+            int i = slot << 2;
+            keys[i] = k0;
+            keys[i + 1] = k1;
+            keys[i + 2] = k2;
+            keys[i + 3] = k3;
+        }
+
+        @Override
+        void move(int from, int to) {
+            System.arraycopy(keys, from << 2, keys, to << 2, 4);
+        }
+    }
+}
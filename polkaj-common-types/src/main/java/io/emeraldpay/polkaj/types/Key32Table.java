@@ -0,0 +1,341 @@
+package io.emeraldpay.polkaj.types;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+
+/**
+ * Base for open-addressing hash tables keyed by 32 byte values, such as public keys and hashes. Keys are stored inline
+ * in a <code>long[]</code> slab (or in a direct buffer for {@link OffHeapKey32Set}), 4 longs per slot, so an entry doesn't need any object, header or cloned array.
+ * <br>
+ * The table uses linear probing with backward shift deletion (i.e. no tombstones). Keys are expected to be uniformly
+ * distributed, so only the first 8 bytes of a key are used for hashing.
+ * <br>
+ * Keys can be provided as {@link Address} (only the pubkey is used, the network is ignored), as 32 byte {@link ByteData}
+ * (ex. {@link Hash256}) or as a range of a byte array.
+ * <br>
+ * Not thread-safe.
+ */
+public abstract class Key32Table {
+
+    /**
+     * Length of a key in bytes
+     */
+    public static final int KEY_BYTES = 32;
+
+    static final int MIN_CAPACITY = 16;
+    static final float LOAD_FACTOR = 0.75f;
+    private static final int MAX_CAPACITY = 1 << 28;
+    private static final long HASH_MULTIPLIER = 0x9E3779B97F4A7C15L;
+
+    private final int maxCapacity;
+    private final boolean withValues;
+    private final IntFunction<Key32Storage> storage;
+    private Key32Storage keys;
+    private long[] used;
+    private int mask;
+    private int shift;
+    private int threshold;
+    private int size;
+
+    Key32Table(int expectedSize, boolean withValues) {
+        this(expectedSize, MAX_CAPACITY, withValues, Key32Storage.Heap::new);
+    }
+
+    /**
+     * @param expectedSize number of keys the table is expected to keep without a resize
+     * @param maxCapacity max number of slots
+     * @param withValues true if a subclass keeps values for the slots
+     * @param storage allocates storage for the keys with the specified number of slots
+     */
+    Key32Table(int expectedSize, int maxCapacity, boolean withValues, IntFunction<Key32Storage> storage) {
+        this.maxCapacity = maxCapacity;
+        this.withValues = withValues;
+        this.storage = storage;
+        allocate(capacityFor(expectedSize, maxCapacity));
+    }
+
+    /**
+     * @return number of keys in the table
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return true if there are no keys in the table
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Remove all keys from the table. Keeps the allocated capacity.
+     */
+    public void clear() {
+        Arrays.fill(used, 0L);
+        clearValues();
+        size = 0;
+    }
+
+    /**
+     * Call the handler for each key in the table, in no particular order. The table must not be modified during the call.
+     *
+     * @param handler handler for the keys
+     */
+    public void forEachKey(Consumer<Hash256> handler) {
+        for (int slot = nextUsed(0); slot >= 0; slot = nextUsed(slot + 1)) {
+            handler.accept(keyAt(slot));
+        }
+    }
+
+    // ------------------
+    // Hooks for the value storage in subclasses, called only when the table is created with values
+
+    /**
+     * Allocate the value storage for a new table capacity
+     *
+     * @param capacity new capacity
+     * @param previous mapping from the previous slots to the new slots, or -1 for unused slots; null on first allocation
+     */
+    void resizeValues(int capacity, int[] previous) {
+    }
+
+    /**
+     * Move value between two slots of the current storage
+     */
+    void moveValue(int from, int to) {
+    }
+
+    /**
+     * Release value in the slot
+     */
+    void clearValue(int slot) {
+    }
+
+    /**
+     * Release all values
+     */
+    void clearValues() {
+    }
+
+    // ------------------
+    // Table operations
+
+    /**
+     * @return slot of the key, or <code>-(insertion slot) - 1</code> if there is no such key
+     */
+    final int find(byte[] key, int offset) {
+        long k0 = readLong(key, offset);
+        long k1 = readLong(key, offset + 8);
+        long k2 = readLong(key, offset + 16);
+        long k3 = readLong(key, offset + 24);
+        final Key32Storage keys = this.keys;
+        int slot = slotOf(k0);
+        while (isUsed(slot)) {
+            if (keys.matches(slot, k0, k1, k2, k3)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -slot - 1;
+    }
+
+    /**
+     * Add the key unless it's already in the table
+     *
+     * @return slot of the existing key, or <code>-(slot) - 1</code> if the key was added
+     */
+    final int insert(byte[] key, int offset) {
+        int slot = find(key, offset);
+        if (slot >= 0) {
+            return slot;
+        }
+        if (size >= threshold) {
+            resize((mask + 1) << 1);
+            slot = find(key, offset);
+        }
+        slot = -slot - 1;
+        keys.set(slot, readLong(key, offset), readLong(key, offset + 8), readLong(key, offset + 16), readLong(key, offset + 24));
+        used[slot >>> 6] |= 1L << slot;
+        size++;
+        return -slot - 1;
+    }
+
+    /**
+     * Remove key from the slot, shifting back the following keys from the same probe sequence
+     */
+    final void delete(int slot) {
+        final Key32Storage keys = this.keys;
+        int hole = slot;
+        int next = (hole + 1) & mask;
+        while (isUsed(next)) {
+            int ideal = slotOf(keys.get(next, 0));
+            // the entry can be moved into the hole only if the hole is between its ideal slot and the current one
+            if (((next - ideal) & mask) >= ((next - hole) & mask)) {
+                keys.move(next, hole);
+                if (withValues) {
+                    moveValue(next, hole);
+                }
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        used[hole >>> 6] &= ~(1L << hole);
+        if (withValues) {
+            clearValue(hole);
+        }
+        size--;
+    }
+
+    /**
+     * @return first used slot starting from the specified one, or -1 if there are no more
+     */
+    final int nextUsed(int slot) {
+        return nextUsed(used, mask + 1, slot);
+    }
+
+    /**
+     * @return key at the slot
+     */
+    final Hash256 keyAt(int slot) {
+        byte[] value = new byte[KEY_BYTES];
+        writeLong(keys.get(slot, 0), value, 0);
+        writeLong(keys.get(slot, 1), value, 8);
+        writeLong(keys.get(slot, 2), value, 16);
+        writeLong(keys.get(slot, 3), value, 24);
+        return Hash256.wrap(value);
+    }
+
+    private boolean isUsed(int slot) {
+        return (used[slot >>> 6] & (1L << slot)) != 0;
+    }
+
+    private int slotOf(long k0) {
+        return (int) (hash(k0) >>> shift);
+    }
+
+    private void allocate(int capacity) {
+        keys = storage.apply(capacity);
+        used = new long[(capacity + 63) >>> 6];
+        mask = capacity - 1;
+        shift = 64 - Integer.numberOfTrailingZeros(capacity);
+        threshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private void resize(int capacity) {
+        if (capacity > maxCapacity) {
+            throw new IllegalStateException((withValues ? "Map" : "Set") + " is full: " + size);
+        }
+        final Key32Storage oldKeys = this.keys;
+        final long[] oldUsed = this.used;
+        final int oldCapacity = mask + 1;
+        int[] mapping = null;
+        if (withValues) {
+            mapping = new int[oldCapacity];
+            Arrays.fill(mapping, -1);
+        }
+        allocate(capacity);
+        for (int oldSlot = nextUsed(oldUsed, oldCapacity, 0); oldSlot >= 0; oldSlot = nextUsed(oldUsed, oldCapacity, oldSlot + 1)) {
+            long k0 = oldKeys.get(oldSlot, 0);
+            int slot = slotOf(k0);
+            while (isUsed(slot)) {
+                slot = (slot + 1) & mask;
+            }
+            keys.set(slot, k0, oldKeys.get(oldSlot, 1), oldKeys.get(oldSlot, 2), oldKeys.get(oldSlot, 3));
+            used[slot >>> 6] |= 1L << slot;
+            if (mapping != null) {
+                mapping[oldSlot] = slot;
+            }
+        }
+        if (withValues) {
+            resizeValues(capacity, mapping);
+        }
+    }
+
+    static int nextUsed(long[] used, int capacity, int slot) {
+        if (slot >= capacity) {
+            return -1;
+        }
+        int word = slot >>> 6;
+        long bits = used[word] & (-1L << slot);
+        while (bits == 0) {
+            if (++word == used.length) {
+                return -1;
+            }
+            bits = used[word];
+        }
+        return (word << 6) + Long.numberOfTrailingZeros(bits);
+    }
+
+    /**
+     * Should be called by subclasses once constructed, to allocate the initial value storage
+     */
+    final void initValues() {
+        resizeValues(mask + 1, null);
+    }
+
+    /**
+     * @return current capacity of the table
+     */
+    final int capacity() {
+        return mask + 1;
+    }
+
+    // ------------------
+    // Helpers shared with other key tables
+
+    static int capacityFor(int expectedSize, int maxCapacity) {
+        if (expectedSize < 0) {
+            throw new IllegalArgumentException("Expected size cannot be negative: " + expectedSize);
+        }
+        long required = (long) Math.ceil(expectedSize / (double) LOAD_FACTOR) + 1;
+        if (required > maxCapacity) {
+            throw new IllegalArgumentException("Expected size is too large: " + expectedSize);
+        }
+        int capacity = MIN_CAPACITY;
+        while (capacity < required) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    static long hash(long k0) {
+        return k0 * HASH_MULTIPLIER;
+    }
+
+    static byte[] keyOf(Address address) {
+        return address.getPubkey();
+    }
+
+    static byte[] keyOf(ByteData value) {
+        if (value.value.length != KEY_BYTES) {
+            throw new IllegalArgumentException("Key must be " + KEY_BYTES + " bytes; received: " + value.value.length);
+        }
+        return value.value;
+    }
+
+    static void checkKey(byte[] key, int offset) {
+        if (offset < 0 || offset > key.length - KEY_BYTES) {
+            throw new IndexOutOfBoundsException("No " + KEY_BYTES + " bytes key at " + offset + " of " + key.length);
+        }
+    }
+
+    static long readLong(byte[] src, int offset) {
+        return ((long) src[offset] << 56)
+                | ((long) (src[offset + 1] & 0xff) << 48)
+                | ((long) (src[offset + 2] & 0xff) << 40)
+                | ((long) (src[offset + 3] & 0xff) << 32)
+                | ((long) (src[offset + 4] & 0xff) << 24)
+                | ((long) (src[offset + 5] & 0xff) << 16)
+                | ((long) (src[offset + 6] & 0xff) << 8)
+                | ((long) (src[offset + 7] & 0xff));
+    }
+
+    static void writeLong(long value, byte[] dest, int offset) {
+        for (int i = 7; i >= 0; i--) {
+            dest[offset + i] = (byte) value;
+            value >>>= 8;
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package io.emeraldpay.polkaj.types;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+
+/**
+ * Set of 32 byte keys, same as {@link Key32Set}, but the keys are kept outside of the Java heap in a direct buffer.
+ * Suitable for very large sets which shouldn't add to the GC pressure. Only a bitmap of used slots
+ * (1 bit per slot) stays on the heap.
+ * <br>
+ * The direct memory is released when the set is garbage collected. Max size is limited to about 25 millions keys,
+ * i.e. 1Gb of direct memory, which is the largest single direct buffer.
+ * <br>
+ * Not thread-safe.
+ *
+ * @see Key32Set
+ * @see Key32Table
+ */
+public class OffHeapKey32Set extends Key32Table {
+
+    /**
+     * Largest capacity which size in bytes still fits into a direct buffer
+     */
+    static final int MAX_CAPACITY = 1 << 25;
+
+    /**
+     * Create a new empty set with a default capacity
+     */
+    public OffHeapKey32Set() {
+        this(0);
+    }
+
+    /**
+     * Create a new empty set
+     *
+     * @param expectedSize number of keys the set is expected to keep without a resize
+     */
+    public OffHeapKey32Set(int expectedSize) {
+        this(expectedSize, MAX_CAPACITY);
+    }
+
+    OffHeapKey32Set(int expectedSize, int maxCapacity) {
+        super(expectedSize, maxCapacity, false, DirectStorage::new);
+    }
+
+    /**
+     * @param key key to add
+     * @return true if the key was added, false if it was already in the set
+     */
+    public boolean add(Address key) {
+        return insert(keyOf(key), 0) < 0;
+    }
+
+    /**
+     * @param key 32 byte key to add
+     * @return true if the key was added, false if it was already in the set
+     * @throws IllegalArgumentException if the key is not 32 bytes
+     */
+    public boolean add(ByteData key) {
+        return insert(keyOf(key), 0) < 0;
+    }
+
+    /**
+     * @param key source array
+     * @param offset position of the 32 byte key in the array
+     * @return true if the key was added, false if it was already in the set
+     * @throws IndexOutOfBoundsException if there is no 32 bytes at the position
+     */
+    public boolean add(byte[] key, int offset) {
+        checkKey(key, offset);
+        return insert(key, offset) < 0;
+    }
+
+    /**
+     * @param key key to check
+     * @return true if the set contains the key
+     */
+    public boolean contains(Address key) {
+        return find(keyOf(key), 0) >= 0;
+    }
+
+    /**
+     * @param key 32 byte key to check
+     * @return true if the set contains the key
+     * @throws IllegalArgumentException if the key is not 32 bytes
+     */
+    public boolean contains(ByteData key) {
+        return find(keyOf(key), 0) >= 0;
+    }
+
+    /**
+     * @param key source array
+     * @param offset position of the 32 byte key in the array
+     * @return true if the set contains the key
+     * @throws IndexOutOfBoundsException if there is no 32 bytes at the position
+     */
+    public boolean contains(byte[] key, int offset) {
+        checkKey(key, offset);
+        return find(key, offset) >= 0;
+    }
+
+    /**
+     * @param key key to remove
+     * @return true if the key was removed, false if it wasn't in the set
+     */
+    public boolean remove(Address key) {
+        return remove(keyOf(key), 0);
+    }
+
+    /**
+     * @param key 32 byte key to remove
+     * @return true if the key was removed, false if it wasn't in the set
+     * @throws IllegalArgumentException if the key is not 32 bytes
+     */
+    public boolean remove(ByteData key) {
+        return remove(keyOf(key), 0);
+    }
+
+    /**
+     * @param key source array
+     * @param offset position of the 32 byte key in the array
+     * @return true if the key was removed, false if it wasn't in the set
+     * @throws IndexOutOfBoundsException if there is no 32 bytes at the position
+     */
+    public boolean remove(byte[] key, int offset) {
+        checkKey(key, offset);
+        int slot = find(key, offset);
+        if (slot < 0) {
+            return false;
+        }
+        delete(slot);
+        return true;
+    }
+
+    /**
+     *
+     * @param capacity number of slots
+     * @return size in bytes of the direct buffer for the slots
+     */
+    static long bufferSize(int capacity) {
+        return (long) capacity * KEY_BYTES;
+    }
+
+    /**
+     * Keys in a direct buffer
+     */
+    private static final class DirectStorage extends Key32Storage {
+        private final LongBuffer keys;
+
+        DirectStorage(int capacity) {
+            this.keys = ByteBuffer.allocateDirect(Math.toIntExact(bufferSize(capacity)))
+                    .order(ByteOrder.nativeOrder())
+                    .asLongBuffer();
+        }
+
+        @Override
+        long get(int slot, int word) {
+            return keys.get((slot << 2) + word);
+        }
+
+        @Override
+        boolean matches(int slot, long k0, long k1, long k2, long k3) {
+            final LongBuffer keys = this.keys;
+            int i = slot << 2;
+            return keys.get(i) == k0 && keys.get(i + 1) == k1 && keys.get(i + 2) == k2 && keys.get(i + 3) == k3;
+        }
+
+        @Override
+        void set(int slot, long k0, long k1, long k2, long k3) {
+            int i = slot << 2;
+            keys.put(i, k0);
+            keys.put(i + 1, k1);
+            keys.put(i + 2, k2);
+            keys.put(i + 3, k3);
+        }
+
+        @Override
+        void move(int from, int to) {
+            for (int j = 0; j < 4; j++) {
+                keys.put((to << 2) + j, keys.get((from << 2) + j));
+            }
+        }
+    }
+}
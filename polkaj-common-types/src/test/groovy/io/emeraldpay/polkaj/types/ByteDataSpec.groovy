@@ -2,6 +2,8 @@ package io.emeraldpay.polkaj.types
 
 import spock.lang.Specification
 
+import java.nio.ReadOnlyBufferException
+
 class ByteDataSpec extends Specification {
 
     def "Create"() {
@@ -80,4 +82,68 @@ class ByteDataSpec extends Specification {
         x != y
     }
 
+    def "Wrap uses provided array"() {
+        setup:
+        byte[] bytes = [1, 2, 3] as byte[]
+        when:
+        def act = ByteData.wrap(bytes)
+        then:
+        act.bytes == [1, 2, 3] as byte[]
+        act == ByteData.from("0x010203")
+    }
+
+    def "Cannot wrap null"() {
+        when:
+        ByteData.wrap(null)
+        then:
+        thrown(NullPointerException)
+    }
+
+    def "Provides length and bytes without copying"() {
+        when:
+        def act = ByteData.from("0x0102ff")
+        then:
+        act.length() == 3
+        act.byteAt(0) == 1.byteValue()
+        act.byteAt(2) == (-1).byteValue()
+
+        when:
+        act.byteAt(3)
+        then:
+        thrown(IndexOutOfBoundsException)
+    }
+
+    def "Provides read-only buffer"() {
+        setup:
+        def data = ByteData.from("0x0102ff")
+        when:
+        def act = data.asReadOnlyBuffer()
+        then:
+        act.isReadOnly()
+        act.position() == 0
+        act.remaining() == 3
+        act.get(1) == 2.byteValue()
+
+        when:
+        act.put(0, 5.byteValue())
+        then:
+        thrown(ReadOnlyBufferException)
+        data.bytes == [1, 2, -1] as byte[]
+    }
+
+    def "Writes to stream"() {
+        setup:
+        def out = new ByteArrayOutputStream()
+        when:
+        ByteData.from("0x0102ff").writeTo(out)
+        then:
+        out.toByteArray() == [1, 2, -1] as byte[]
+    }
+
+    def "Provides hex chars"() {
+        expect:
+        new String(ByteData.from("0x0102ff").toHexChars()) == "0x0102ff"
+        new String(ByteData.empty().toHexChars()) == "0x"
+    }
+
 }
@@ -209,4 +209,19 @@ class Hash256Spec extends Specification {
         then:
         thrown(IllegalArgumentException)
     }
+
+    def "Wrap uses provided array"() {
+        when:
+        def act = Hash256.wrap(Hex.decodeHex("63c2499de640b43c924bc2bfc9ea89730e7c4790e24d126906e7af6c99cb506b"))
+        then:
+        act == Hash256.from("0x63c2499de640b43c924bc2bfc9ea89730e7c4790e24d126906e7af6c99cb506b")
+        act.length() == 32
+    }
+
+    def "Cannot wrap short value"() {
+        when:
+        Hash256.wrap(new byte[31])
+        then:
+        thrown(IllegalArgumentException)
+    }
 }
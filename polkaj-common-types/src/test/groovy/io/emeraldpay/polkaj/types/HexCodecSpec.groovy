@@ -0,0 +1,119 @@
+package io.emeraldpay.polkaj.types
+
+import org.apache.commons.codec.binary.Hex
+import spock.lang.Specification
+
+class HexCodecSpec extends Specification {
+
+    def "Encode with prefix"() {
+        expect:
+        new String(HexCodec.encode(Hex.decodeHex(hex), true)) == "0x" + hex
+        where:
+        hex << [
+                "",
+                "00",
+                "0f",
+                "ff",
+                "0102030405060708090a0b0c0d0e0f",
+                "9623f79d8bd2248c2777f88e2e5ee9063b1a2991cfab15a97c11f7f89d6e97e9"
+        ]
+    }
+
+    def "Encode without prefix"() {
+        expect:
+        new String(HexCodec.encode(Hex.decodeHex("9623f79d"), false)) == "9623f79d"
+    }
+
+    def "Encode a range into buffer"() {
+        setup:
+        char[] buf = "..........".toCharArray()
+        when:
+        def pos = HexCodec.encode(Hex.decodeHex("00a1b2c3ff"), 1, 3, buf, 2)
+        then:
+        pos == 8
+        new String(buf) == "..a1b2c3.."
+    }
+
+    def "Encode to string"() {
+        expect:
+        HexCodec.toHexString(Hex.decodeHex("a0b1")) == "0xa0b1"
+        HexCodec.toHexString(new byte[0]) == "0x"
+    }
+
+    def "Decode string"() {
+        expect:
+        Hex.encodeHexString(HexCodec.decode(hex)) == exp
+        where:
+        hex                 | exp
+        ""                  | ""
+        "0x"                | ""
+        "0x00"              | "00"
+        "ff"                | "ff"
+        "0x0123456789abcdef"| "0123456789abcdef"
+        "0xABCDEF"          | "abcdef"
+        "AbCdEf"            | "abcdef"
+    }
+
+    def "Decode char range"() {
+        setup:
+        char[] buf = '"0x9623f79d"'.toCharArray()
+        when:
+        def act = HexCodec.decode(buf, 1, 10)
+        then:
+        Hex.encodeHexString(act) == "9623f79d"
+    }
+
+    def "Decode char range into buffer"() {
+        setup:
+        char[] buf = '"9623f79d"'.toCharArray()
+        byte[] dest = new byte[6]
+        when:
+        def pos = HexCodec.decode(buf, 1, 8, dest, 1)
+        then:
+        pos == 5
+        Hex.encodeHexString(dest) == "009623f79d00"
+    }
+
+    def "Fail to decode invalid chars"() {
+        when:
+        HexCodec.decode(hex)
+        then:
+        thrown(NumberFormatException)
+        where:
+        hex << ["0g", "0x0g", "zz", "-1", "+1", "0x  ", "ab٠١"]
+    }
+
+    def "Fail to decode odd length"() {
+        when:
+        HexCodec.decode(hex)
+        then:
+        thrown(NumberFormatException)
+        where:
+        hex << ["f", "0x0", "123"]
+    }
+
+    def "Fail to decode null"() {
+        when:
+        HexCodec.decode(null as String)
+        then:
+        thrown(NullPointerException)
+    }
+
+    def "Detects prefix"() {
+        expect:
+        HexCodec.hasPrefix("0x00".toCharArray(), 0, 4)
+        HexCodec.hasPrefix("..0x".toCharArray(), 2, 2)
+        !HexCodec.hasPrefix("0x".toCharArray(), 0, 1)
+        !HexCodec.hasPrefix("00".toCharArray(), 0, 2)
+    }
+
+    def "Encode and decode all byte values"() {
+        setup:
+        byte[] all = new byte[256]
+        256.times { all[it] = (byte) it }
+        when:
+        def act = HexCodec.decode(HexCodec.toHexString(all))
+        then:
+        act == all
+    }
+}
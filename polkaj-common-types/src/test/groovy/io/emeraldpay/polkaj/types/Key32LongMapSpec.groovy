@@ -0,0 +1,96 @@
+package io.emeraldpay.polkaj.types
+
+import io.emeraldpay.polkaj.ss58.SS58Type
+import org.apache.commons.codec.binary.Hex
+import spock.lang.Specification
+
+class Key32LongMapSpec extends Specification {
+
+    def "Put and get values"() {
+        setup:
+        def map = new Key32LongMap()
+        def hash = Hash256.from("0x63c2499de640b43c924bc2bfc9ea89730e7c4790e24d126906e7af6c99cb506b")
+        when:
+        def added = map.put(hash, 100)
+        then:
+        added
+        map.size() == 1
+        map.containsKey(hash)
+        map.get(hash, -1) == 100
+        map.get(Hash256.empty(), -1) == -1
+
+        when:
+        added = map.put(hash, 200)
+        then:
+        !added
+        map.size() == 1
+        map.get(hash, -1) == 200
+    }
+
+    def "Use address and byte range as key"() {
+        setup:
+        def map = new Key32LongMap()
+        def pubkey = Hex.decodeHex("f8c2c616e5d5d805ae14f810da895ed9fe98511c201dc4d4719624a41fb9772c")
+        byte[] buf = new byte[36]
+        System.arraycopy(pubkey, 0, buf, 4, 32)
+        when:
+        map.put(new Address(SS58Type.Network.SUBSTRATE, pubkey), 5)
+        then:
+        map.get(buf, 4, -1) == 5
+        map.containsKey(buf, 4)
+        map.get(new Hash256(pubkey), -1) == 5
+    }
+
+    def "Remove values"() {
+        setup:
+        def map = new Key32LongMap()
+        map.put(Key32SetSpec.randomKey(1), 1)
+        map.put(Key32SetSpec.randomKey(2), 2)
+        when:
+        def removed = map.remove(Key32SetSpec.randomKey(1))
+        then:
+        removed
+        map.size() == 1
+        !map.containsKey(Key32SetSpec.randomKey(1))
+        map.get(Key32SetSpec.randomKey(2), -1) == 2
+
+        when:
+        removed = map.remove(Key32SetSpec.randomKey(1))
+        then:
+        !removed
+    }
+
+    def "Keeps values after grow and removal"() {
+        setup:
+        def map = new Key32LongMap(4)
+        (0..<1000).each { map.put(Key32SetSpec.randomKey(it), it) }
+        when:
+        (0..<1000).step(2).each { map.remove(Key32SetSpec.randomKey(it)) }
+        then:
+        map.size() == 500
+        (0..<1000).every { map.get(Key32SetSpec.randomKey(it), -1) == (it % 2 == 0 ? -1 : it) }
+    }
+
+    def "Iterate entries"() {
+        setup:
+        def map = new Key32LongMap()
+        (0..<50).each { map.put(Key32SetSpec.randomKey(it), it) }
+        when:
+        def act = [:]
+        map.forEach { k, v -> act[k] = v }
+        then:
+        act.size() == 50
+        (0..<50).every { act[Key32SetSpec.randomKey(it)] == it }
+    }
+
+    def "Clear values"() {
+        setup:
+        def map = new Key32LongMap()
+        map.put(Key32SetSpec.randomKey(1), 1)
+        when:
+        map.clear()
+        then:
+        map.isEmpty()
+        map.get(Key32SetSpec.randomKey(1), -1) == -1
+    }
+}
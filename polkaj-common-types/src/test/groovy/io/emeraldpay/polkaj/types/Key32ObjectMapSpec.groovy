@@ -0,0 +1,93 @@
+package io.emeraldpay.polkaj.types
+
+import io.emeraldpay.polkaj.ss58.SS58Type
+import org.apache.commons.codec.binary.Hex
+import spock.lang.Specification
+
+class Key32ObjectMapSpec extends Specification {
+
+    def "Put and get values"() {
+        setup:
+        def map = new Key32ObjectMap<String>()
+        def hash = Hash256.from("0x63c2499de640b43c924bc2bfc9ea89730e7c4790e24d126906e7af6c99cb506b")
+        when:
+        def prev = map.put(hash, "foo")
+        then:
+        prev == null
+        map.size() == 1
+        map.containsKey(hash)
+        map.get(hash) == "foo"
+        map.get(Hash256.empty()) == null
+
+        when:
+        prev = map.put(hash, "bar")
+        then:
+        prev == "foo"
+        map.size() == 1
+        map.get(hash) == "bar"
+    }
+
+    def "Use address and byte range as key"() {
+        setup:
+        def map = new Key32ObjectMap<String>()
+        def pubkey = Hex.decodeHex("f8c2c616e5d5d805ae14f810da895ed9fe98511c201dc4d4719624a41fb9772c")
+        byte[] buf = new byte[36]
+        System.arraycopy(pubkey, 0, buf, 4, 32)
+        when:
+        map.put(new Address(SS58Type.Network.SUBSTRATE, pubkey), "foo")
+        then:
+        map.get(buf, 4) == "foo"
+        map.get(new Hash256(pubkey)) == "foo"
+    }
+
+    def "Cannot put null"() {
+        setup:
+        def map = new Key32ObjectMap<String>()
+        when:
+        map.put(Hash256.empty(), null)
+        then:
+        thrown(NullPointerException)
+    }
+
+    def "Remove values"() {
+        setup:
+        def map = new Key32ObjectMap<String>()
+        map.put(Key32SetSpec.randomKey(1), "foo")
+        map.put(Key32SetSpec.randomKey(2), "bar")
+        when:
+        def removed = map.remove(Key32SetSpec.randomKey(1))
+        then:
+        removed == "foo"
+        map.size() == 1
+        map.get(Key32SetSpec.randomKey(1)) == null
+        map.get(Key32SetSpec.randomKey(2)) == "bar"
+
+        when:
+        removed = map.remove(Key32SetSpec.randomKey(1))
+        then:
+        removed == null
+    }
+
+    def "Keeps values after grow and removal"() {
+        setup:
+        def map = new Key32ObjectMap<Integer>(4)
+        (0..<1000).each { map.put(Key32SetSpec.randomKey(it), it) }
+        when:
+        (0..<1000).step(2).each { map.remove(Key32SetSpec.randomKey(it)) }
+        then:
+        map.size() == 500
+        (0..<1000).every { map.get(Key32SetSpec.randomKey(it)) == (it % 2 == 0 ? null : it) }
+    }
+
+    def "Iterate entries"() {
+        setup:
+        def map = new Key32ObjectMap<Integer>()
+        (0..<50).each { map.put(Key32SetSpec.randomKey(it), it) }
+        when:
+        def act = [:]
+        map.forEach { k, v -> act[k] = v }
+        then:
+        act.size() == 50
+        (0..<50).every { act[Key32SetSpec.randomKey(it)] == it }
+    }
+}
@@ -0,0 +1,168 @@
+package io.emeraldpay.polkaj.types
+
+import io.emeraldpay.polkaj.ss58.SS58Type
+import org.apache.commons.codec.binary.Hex
+import spock.lang.Specification
+
+class Key32SetSpec extends Specification {
+
+    def "Add and check keys"() {
+        setup:
+        def set = new Key32Set()
+        def hash = Hash256.from("0x63c2499de640b43c924bc2bfc9ea89730e7c4790e24d126906e7af6c99cb506b")
+        when:
+        def added = set.add(hash)
+        then:
+        added
+        set.size() == 1
+        set.contains(hash)
+        set.contains(Hash256.from("0x63c2499de640b43c924bc2bfc9ea89730e7c4790e24d126906e7af6c99cb506b"))
+        !set.contains(Hash256.empty())
+
+        when:
+        added = set.add(hash)
+        then:
+        !added
+        set.size() == 1
+    }
+
+    def "Empty key is a valid key"() {
+        setup:
+        def set = new Key32Set()
+        expect:
+        !set.contains(Hash256.empty())
+        set.add(Hash256.empty())
+        set.contains(Hash256.empty())
+        set.size() == 1
+    }
+
+    def "Address and hash with same bytes are same key"() {
+        setup:
+        def set = new Key32Set()
+        def pubkey = Hex.decodeHex("f8c2c616e5d5d805ae14f810da895ed9fe98511c201dc4d4719624a41fb9772c")
+        when:
+        set.add(new Address(SS58Type.Network.SUBSTRATE, pubkey))
+        then:
+        set.contains(new Address(SS58Type.Network.CANARY, pubkey))
+        set.contains(new Hash256(pubkey))
+    }
+
+    def "Use key from byte range"() {
+        setup:
+        def set = new Key32Set()
+        byte[] buf = new byte[40]
+        buf[4] = 1 as byte
+        buf[35] = 2 as byte
+        when:
+        set.add(buf, 4)
+        then:
+        set.contains(buf, 4)
+        !set.contains(buf, 3)
+        set.contains(Hash256.from("0x0100000000000000000000000000000000000000000000000000000000000002"))
+    }
+
+    def "Error on invalid key"() {
+        setup:
+        def set = new Key32Set()
+        when:
+        set.add(ByteData.from("0x0102"))
+        then:
+        thrown(IllegalArgumentException)
+
+        when:
+        set.add(new byte[40], 9)
+        then:
+        thrown(IndexOutOfBoundsException)
+
+        when:
+        set.contains(new byte[40], -1)
+        then:
+        thrown(IndexOutOfBoundsException)
+    }
+
+    def "Remove keys"() {
+        setup:
+        def set = new Key32Set()
+        def hash = Hash256.from("0x63c2499de640b43c924bc2bfc9ea89730e7c4790e24d126906e7af6c99cb506b")
+        set.add(hash)
+        set.add(Hash256.empty())
+        when:
+        def removed = set.remove(hash)
+        then:
+        removed
+        set.size() == 1
+        !set.contains(hash)
+        set.contains(Hash256.empty())
+
+        when:
+        removed = set.remove(hash)
+        then:
+        !removed
+        set.size() == 1
+    }
+
+    def "Grows and keeps all keys"() {
+        setup:
+        def set = new Key32Set(4)
+        def keys = (0..<1000).collect { randomKey(it) }
+        when:
+        keys.each { set.add(it) }
+        then:
+        set.size() == 1000
+        keys.every { set.contains(it) }
+        !set.contains(randomKey(1000))
+    }
+
+    def "Keeps keys with same prefix after removal"() {
+        setup:
+        def set = new Key32Set()
+        // same first 8 bytes, i.e. all of them collide
+        def keys = (0..<100).collect {
+            byte[] value = new byte[32]
+            value[31] = it as byte
+            Hash256.wrap(value)
+        }
+        keys.each { set.add(it) }
+        when:
+        keys.findAll { it.byteAt(31) % 3 == 0 }.each { set.remove(it) }
+        then:
+        set.size() == 66
+        keys.every { set.contains(it) == (it.byteAt(31) % 3 != 0) }
+    }
+
+    def "Iterate keys"() {
+        setup:
+        def set = new Key32Set()
+        def keys = (0..<50).collect { randomKey(it) }
+        keys.each { set.add(it) }
+        when:
+        def act = []
+        set.forEachKey { act << it }
+        then:
+        act.toSet() == keys.toSet()
+    }
+
+    def "Clear keys"() {
+        setup:
+        def set = new Key32Set()
+        set.add(randomKey(1))
+        when:
+        set.clear()
+        then:
+        set.isEmpty()
+        !set.contains(randomKey(1))
+    }
+
+    def "Error on negative size"() {
+        when:
+        new Key32Set(-1)
+        then:
+        thrown(IllegalArgumentException)
+    }
+
+    static Hash256 randomKey(int seed) {
+        byte[] value = new byte[32]
+        new Random(seed).nextBytes(value)
+        return Hash256.wrap(value)
+    }
+}
@@ -1,6 +1,7 @@
 package io.emeraldpay.polkaj.json.jackson;
 
 import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.core.TreeNode;
 import com.fasterxml.jackson.databind.JsonNode;
 
@@ -26,4 +27,18 @@ public class DeserializeCommons {
         return getHexString(node.textValue());
     }
 
+    /**
+     * Get the token the parser is positioned at, moving to the first token if the parser wasn't used yet
+     *
+     * @param jp parser
+     * @return current token, or null if there is no more content
+     * @throws IOException if failed to read
+     */
+    public static JsonToken currentToken(JsonParser jp) throws IOException {
+        if (jp.hasCurrentToken()) {
+            return jp.currentToken();
+        }
+        return jp.nextToken();
+    }
+
 }
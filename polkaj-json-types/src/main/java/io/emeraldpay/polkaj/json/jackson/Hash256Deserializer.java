@@ -2,9 +2,11 @@ package io.emeraldpay.polkaj.json.jackson;
 
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.DeserializationContext;
 import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
 import io.emeraldpay.polkaj.types.Hash256;
+import io.emeraldpay.polkaj.types.HexCodec;
 
 import java.io.IOException;
 
@@ -16,10 +18,30 @@ public class Hash256Deserializer extends StdDeserializer<Hash256> {
 
     @Override
     public Hash256 deserialize(JsonParser p, DeserializationContext ctxt) throws IOException, JsonProcessingException {
-        String hex = DeserializeCommons.getHexString(p);
-        if (hex == null) {
+        JsonToken token = DeserializeCommons.currentToken(p);
+        if (token != JsonToken.VALUE_STRING) {
+            String hex = DeserializeCommons.getHexString(p);
+            if (hex == null) {
+                return null;
+            }
+            return Hash256.from(hex);
+        }
+        // decode directly from the parser buffer, without making a String
+        char[] text = p.getTextCharacters();
+        int offset = p.getTextOffset();
+        int len = p.getTextLength();
+        if (HexCodec.hasPrefix(text, offset, len)) {
+            offset += 2;
+            len -= 2;
+        }
+        if (len == 0) {
             return null;
         }
-        return Hash256.from(hex);
+        if (len != Hash256.SIZE_BYTES * 2) {
+            throw new IllegalArgumentException("Invalid hex size: " + len);
+        }
+        byte[] value = new byte[Hash256.SIZE_BYTES];
+        HexCodec.decode(text, offset, len, value, 0);
+        return Hash256.wrap(value);
     }
 }
@@ -17,7 +17,8 @@ public class Hash256Serializer extends StdSerializer<Hash256> {
         if (value == null) {
             gen.writeNull();
         } else {
-            gen.writeString(value.toString());
+            char[] hex = value.toHexChars();
+            gen.writeString(hex, 0, hex.length);
         }
     }
 }
@@ -2,9 +2,11 @@ package io.emeraldpay.polkaj.json.jackson;
 
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.DeserializationContext;
 import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
 import io.emeraldpay.polkaj.types.ByteData;
+import io.emeraldpay.polkaj.types.HexCodec;
 
 import java.io.IOException;
 
@@ -16,10 +18,21 @@ public class HexBytesDeserializer extends StdDeserializer<ByteData> {
 
     @Override
     public ByteData deserialize(JsonParser p, DeserializationContext ctxt) throws IOException, JsonProcessingException {
-        String hex = p.readValueAs(String.class);
-        if (hex == null || hex.length() == 0 || !hex.startsWith("0x")) {
+        JsonToken token = DeserializeCommons.currentToken(p);
+        if (token != JsonToken.VALUE_STRING) {
+            String hex = p.readValueAs(String.class);
+            if (hex == null || !hex.startsWith("0x")) {
+                return null;
+            }
+            return ByteData.from(hex);
+        }
+        // decode directly from the parser buffer, without making a String
+        char[] text = p.getTextCharacters();
+        int offset = p.getTextOffset();
+        int len = p.getTextLength();
+        if (!HexCodec.hasPrefix(text, offset, len)) {
             return null;
         }
-        return ByteData.from(hex);
+        return ByteData.wrap(HexCodec.decode(text, offset, len));
     }
 }
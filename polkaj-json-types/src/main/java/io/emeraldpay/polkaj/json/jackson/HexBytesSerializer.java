@@ -17,7 +17,8 @@ public class HexBytesSerializer extends StdSerializer<ByteData> {
         if (value == null) {
             gen.writeNull();
         } else {
-            gen.writeString(value.toString());
+            char[] hex = value.toHexChars();
+            gen.writeString(hex, 0, hex.length);
         }
     }
 }
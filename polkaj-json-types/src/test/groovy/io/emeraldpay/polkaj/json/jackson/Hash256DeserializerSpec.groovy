@@ -30,4 +30,36 @@ class Hash256DeserializerSpec extends Specification {
         then:
         act == Hash256.from("0x9623f79d8bd2248c2777f88e2e5ee9063b1a2991cfab15a97c11f7f89d6e97e9")
     }
+
+    def "Read value without prefix"() {
+        setup:
+        def ser = new Hash256Deserializer()
+        def jp = objectMapper.createParser('"9623f79d8bd2248c2777f88e2e5ee9063b1a2991cfab15a97c11f7f89d6e97e9"')
+        when:
+        def act = ser.deserialize(jp, Stub(DeserializationContext))
+        then:
+        act == Hash256.from("0x9623f79d8bd2248c2777f88e2e5ee9063b1a2991cfab15a97c11f7f89d6e97e9")
+    }
+
+    def "Read empty as null"() {
+        setup:
+        def ser = new Hash256Deserializer()
+        def jp = objectMapper.createParser(json)
+        when:
+        def act = ser.deserialize(jp, Stub(DeserializationContext))
+        then:
+        act == null
+        where:
+        json << ['""', '"0x"']
+    }
+
+    def "Fail to read short value"() {
+        setup:
+        def ser = new Hash256Deserializer()
+        def jp = objectMapper.createParser('"0x9623f79d8bd2248c2777f88e2e5ee9063b1a2991cfab15a97c11f7f89d6e97"')
+        when:
+        ser.deserialize(jp, Stub(DeserializationContext))
+        then:
+        thrown(IllegalArgumentException)
+    }
 }
@@ -39,4 +39,41 @@ class HexBytesDeserializerSpec extends Specification {
         then:
         act == ByteData.from("0x9623f79d8bd2248c2777f88e2e5ee9063b1a2991cfab15a97c11f7f89d6e97e9")
     }
+
+    def "Read uppercase value"() {
+        setup:
+        def ser = new HexBytesDeserializer()
+        def jp = objectMapper.createParser('"0x9623F79D8BD2248C"')
+        when:
+        def act = ser.deserialize(jp, Stub(DeserializationContext))
+        then:
+        act == ByteData.from("0x9623f79d8bd2248c")
+    }
+
+    def "Read non-prefixed as null"() {
+        setup:
+        def ser = new HexBytesDeserializer()
+        def jp = objectMapper.createParser('"9623f79d"')
+        when:
+        def act = ser.deserialize(jp, Stub(DeserializationContext))
+        then:
+        act == null
+    }
+
+    def "Read value from a list"() {
+        when:
+        def act = objectMapper.readValue('["0x01", "0x0203", null]', ByteData[].class)
+        then:
+        act.toList() == [ByteData.from("0x01"), ByteData.from("0x0203"), null]
+    }
+
+    def "Fail to read invalid hex"() {
+        setup:
+        def ser = new HexBytesDeserializer()
+        def jp = objectMapper.createParser('"0x96zz"')
+        when:
+        ser.deserialize(jp, Stub(DeserializationContext))
+        then:
+        thrown(NumberFormatException)
+    }
 }
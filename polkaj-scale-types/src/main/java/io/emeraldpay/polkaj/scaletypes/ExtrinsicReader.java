@@ -24,8 +24,7 @@ public class ExtrinsicReader<CALL extends ExtrinsicCall> implements ScaleReader<
 
     @Override
     public Extrinsic<CALL> read(ScaleCodecReader rdr) {
-        byte[] internal = rdr.readByteArray();
-        rdr = new ScaleCodecReader(internal);
+        rdr = rdr.readNested();
         int type = rdr.readByte();
         boolean signed = (Extrinsic.TYPE_BIT_SIGNED & type) > 0;
         int version = Extrinsic.TYPE_UNMASK_VERSION & type;
@@ -84,7 +83,7 @@ public class ExtrinsicReader<CALL extends ExtrinsicCall> implements ScaleReader<
 
         @Override
         public Extrinsic.SR25519Signature read(ScaleCodecReader rdr) {
-            return new Extrinsic.SR25519Signature(new Hash512(rdr.readByteArray(64)));
+            return new Extrinsic.SR25519Signature(Hash512.wrap(rdr.readByteArray(64)));
         }
     }
 
@@ -92,7 +91,7 @@ public class ExtrinsicReader<CALL extends ExtrinsicCall> implements ScaleReader<
 
         @Override
         public Extrinsic.ED25519Signature read(ScaleCodecReader rdr) {
-            return new Extrinsic.ED25519Signature(new Hash512(rdr.readByteArray(64)));
+            return new Extrinsic.ED25519Signature(Hash512.wrap(rdr.readByteArray(64)));
         }
     }
 }
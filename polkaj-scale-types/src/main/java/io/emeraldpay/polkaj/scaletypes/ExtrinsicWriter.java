@@ -46,7 +46,7 @@ public class ExtrinsicWriter<CALL extends ExtrinsicCall> implements ScaleWriter<
         private void writeSignature(ScaleCodecWriter wrt, Extrinsic.TransactionInfo value) throws IOException {
             Extrinsic.Signature signature = value.getSignature();
             wrt.writeByte(signature.getType().getCode());
-            wrt.writeByteArray(signature.getValue().getBytes());
+            wrt.writeByteArray(signature.getValue());
         }
     }
 }
@@ -2,7 +2,10 @@ package io.emeraldpay.polkaj.scale;
 
 import io.emeraldpay.polkaj.scale.reader.*;
 
+import io.emeraldpay.polkaj.types.ByteData;
+
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
 import java.util.Optional;
 
 /**
@@ -21,11 +24,29 @@ public class ScaleCodecReader {
     public static final BoolOptionalReader BOOL_OPTIONAL = new BoolOptionalReader();
     public static final StringReader STRING = new StringReader();
 
-    private byte[] source;
+    private final ByteBuffer source;
     private int pos = 0;
 
     public ScaleCodecReader(byte[] source) {
-        this.source = source;
+        this.source = ByteBuffer.wrap(source);
+    }
+
+    /**
+     * Read from the remaining content of the buffer, without copying it. The buffer itself is not modified by the reader.
+     *
+     * @param source source buffer
+     */
+    public ScaleCodecReader(ByteBuffer source) {
+        this.source = source.slice();
+    }
+
+    /**
+     * Read from the value, without copying it.
+     *
+     * @param source source data
+     */
+    public ScaleCodecReader(ByteData source) {
+        this.source = source.asReadOnlyBuffer();
     }
 
     /**
@@ -33,7 +54,7 @@ public class ScaleCodecReader {
      * @return true if has more elements
      */
     public boolean hasNext() {
-        return pos < source.length;
+        return pos < source.limit();
     }
 
     /**
@@ -54,8 +75,8 @@ public class ScaleCodecReader {
     public void seek(int pos) {
         if (pos < 0) {
             throw new IllegalArgumentException("Position cannot be negative: " + pos);
-        } else if (pos >= source.length) {
-            throw new IllegalArgumentException("Position " + pos + " must be strictly smaller than source length: " + source.length);
+        } else if (pos >= source.limit()) {
+            throw new IllegalArgumentException("Position " + pos + " must be strictly smaller than source length: " + source.limit());
         }
 
         this.pos = pos;
@@ -66,9 +87,9 @@ public class ScaleCodecReader {
      */
     public byte readByte() {
         if (!hasNext()) {
-            throw new IndexOutOfBoundsException("Cannot read " + pos + " of " + source.length);
+            throw new IndexOutOfBoundsException("Cannot read " + pos + " of " + source.limit());
         }
-        return source[pos++];
+        return source.get(pos++);
     }
 
     /**
@@ -137,12 +158,36 @@ public class ScaleCodecReader {
     }
 
     public byte[] readByteArray(int len) {
+        checkAvailable(len);
         byte[] result = new byte[len];
-        System.arraycopy(source, pos, result, 0, result.length);
+        source.position(pos);
+        source.get(result);
         pos += len;
         return result;
     }
 
+    /**
+     * Read a length-prefixed byte array as a separate reader. The new reader shares the content with the current one,
+     * i.e. the bytes are not copied.
+     *
+     * @return reader for the nested bytes
+     */
+    public ScaleCodecReader readNested() {
+        int len = readCompactInt();
+        checkAvailable(len);
+        ByteBuffer nested = source.duplicate();
+        nested.position(pos);
+        nested.limit(pos + len);
+        pos += len;
+        return new ScaleCodecReader(nested);
+    }
+
+    private void checkAvailable(int len) {
+        if (len < 0 || len > source.limit() - pos) {
+            throw new IndexOutOfBoundsException("Cannot read " + len + " bytes at " + pos + " of " + source.limit());
+        }
+    }
+
     /**
      * Read string, encoded as UTF-8 bytes
      * @return string value
@@ -1,6 +1,7 @@
 package io.emeraldpay.polkaj.scale;
 
 import io.emeraldpay.polkaj.scale.writer.*;
+import io.emeraldpay.polkaj.types.ByteData;
 
 import java.io.Closeable;
 import java.io.IOException;
@@ -32,15 +33,50 @@ public class ScaleCodecWriter implements Closeable {
         writeByteArray(value);
     }
 
+    /**
+     * Write 32 byte value, without copying it
+     *
+     * @param value value to write
+     * @throws IOException if failed to write
+     * @throws IllegalArgumentException if value is not 32 bytes
+     */
+    public void writeUint256(ByteData value) throws IOException {
+        if (value.length() != 32) {
+            throw new IllegalArgumentException("Value must be 32 byte array");
+        }
+        writeByteArray(value);
+    }
+
     public void writeByteArray(byte[] value) throws IOException {
         out.write(value, 0, value.length);
     }
 
+    /**
+     * Write the value as-is, without copying it
+     *
+     * @param value value to write
+     * @throws IOException if failed to write
+     */
+    public void writeByteArray(ByteData value) throws IOException {
+        value.writeTo(out);
+    }
+
     public void writeAsList(byte[] value) throws IOException {
         writeCompact(value.length);
         out.write(value, 0, value.length);
     }
 
+    /**
+     * Write the value prefixed with its length, without copying it
+     *
+     * @param value value to write
+     * @throws IOException if failed to write
+     */
+    public void writeAsList(ByteData value) throws IOException {
+        writeCompact(value.length());
+        value.writeTo(out);
+    }
+
     /**
      * Write the byte into output stream as-is directly, the input is supposed to be already encoded
      *
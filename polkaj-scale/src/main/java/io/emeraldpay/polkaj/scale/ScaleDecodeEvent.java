@@ -0,0 +1,29 @@
+package io.emeraldpay.polkaj.scale;
+
+/**
+ * Java Flight Recorder event for decoding SCALE bytes with {@link ScaleExtract}. The JAR is a Multi-Release JAR,
+ * and on Java 11+ this class is replaced with an actual JFR event named <code>io.emeraldpay.polkaj.ScaleDecode</code>,
+ * which is disabled by default. On Java 8 it does nothing.
+ */
+public class ScaleDecodeEvent {
+
+    ScaleDecodeEvent() {
+    }
+
+    /**
+     * Start the event
+     *
+     * @param reader reader used to decode
+     * @param bytes size of the input
+     * @return the event, or null if the event is not recorded
+     */
+    public static ScaleDecodeEvent start(ScaleReader<?> reader, int bytes) {
+        return null;
+    }
+
+    /**
+     * Finish and commit the event
+     */
+    public void complete() {
+    }
+}
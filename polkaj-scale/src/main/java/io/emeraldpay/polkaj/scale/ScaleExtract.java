@@ -21,8 +21,15 @@ public class ScaleExtract {
             throw new NullPointerException("ScaleReader is null");
         }
         return (encoded) -> {
-            ScaleCodecReader codec = new ScaleCodecReader(encoded);
-            return codec.read(reader);
+            ScaleDecodeEvent event = ScaleDecodeEvent.start(reader, encoded.length);
+            try {
+                ScaleCodecReader codec = new ScaleCodecReader(encoded);
+                return codec.read(reader);
+            } finally {
+                if (event != null) {
+                    event.complete();
+                }
+            }
         };
     }
 
@@ -38,8 +45,15 @@ public class ScaleExtract {
             throw new NullPointerException("ScaleReader is null");
         }
         return (encoded) -> {
-            ScaleCodecReader codec = new ScaleCodecReader(encoded.getBytes());
-            return codec.read(reader);
+            ScaleDecodeEvent event = ScaleDecodeEvent.start(reader, encoded.length());
+            try {
+                ScaleCodecReader codec = new ScaleCodecReader(encoded);
+                return codec.read(reader);
+            } finally {
+                if (event != null) {
+                    event.complete();
+                }
+            }
         };
     }
 }
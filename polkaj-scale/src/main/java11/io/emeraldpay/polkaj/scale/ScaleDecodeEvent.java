@@ -0,0 +1,51 @@
+package io.emeraldpay.polkaj.scale;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Java Flight Recorder event for decoding SCALE bytes with {@link ScaleExtract}. Disabled by default, enable
+ * <code>io.emeraldpay.polkaj.ScaleDecode</code> in the JFR settings to record it.
+ */
+@Name("io.emeraldpay.polkaj.ScaleDecode")
+@Label("SCALE Decode")
+@Description("Decoding of SCALE encoded bytes")
+@Category({"Polkaj", "SCALE"})
+@Enabled(false)
+@StackTrace(false)
+public class ScaleDecodeEvent extends Event {
+
+    @Label("Reader Type")
+    String readerType;
+
+    @Label("Size")
+    @DataAmount
+    int bytes;
+
+    ScaleDecodeEvent() {
+    }
+
+    public static ScaleDecodeEvent start(ScaleReader<?> reader, int bytes) {
+        ScaleDecodeEvent event = new ScaleDecodeEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.readerType = reader.getClass().getName();
+        event.bytes = bytes;
+        event.begin();
+        return event;
+    }
+
+    public void complete() {
+        end();
+        if (shouldCommit()) {
+            commit();
+        }
+    }
+}
@@ -1,8 +1,11 @@
 package io.emeraldpay.polkaj.scale
 
+import io.emeraldpay.polkaj.types.ByteData
 import org.apache.commons.codec.binary.Hex
 import spock.lang.Specification
 
+import java.nio.ByteBuffer
+
 class ScaleCodecReaderSpec extends Specification {
 
     def "Reads unsigned 8-bit integer"() {
@@ -145,4 +148,59 @@ class ScaleCodecReaderSpec extends Specification {
         where:
         hex << ["bb931fd17f85fb26e8209eb7af5747258163df29a7dd8f87fa7617963fcfa1aa"]
     }
+
+    def "Read from ByteData"() {
+        setup:
+        def rdr = new ScaleCodecReader(ByteData.from("0x0401ff"))
+        when:
+        def act = rdr.readByteArray()
+        then:
+        Hex.encodeHexString(act) == "01"
+        rdr.readByte() == (-1).byteValue()
+        !rdr.hasNext()
+    }
+
+    def "Read remaining of ByteBuffer"() {
+        setup:
+        def buf = ByteBuffer.wrap(Hex.decodeHex("00010203"))
+        buf.position(2)
+        def rdr = new ScaleCodecReader(buf)
+        when:
+        def act = rdr.readByteArray(2)
+        then:
+        Hex.encodeHexString(act) == "0203"
+        !rdr.hasNext()
+        buf.position() == 2
+    }
+
+    def "Error to read byte array past the end"() {
+        setup:
+        def rdr = new ScaleCodecReader(Hex.decodeHex("0801"))
+        when:
+        rdr.readByteArray()
+        then:
+        thrown(IndexOutOfBoundsException)
+    }
+
+    def "Read nested"() {
+        setup:
+        def rdr = new ScaleCodecReader(Hex.decodeHex("080102ff"))
+        when:
+        def nested = rdr.readNested()
+        then:
+        nested.readByte() == 1.byteValue()
+        nested.readByte() == 2.byteValue()
+        !nested.hasNext()
+        rdr.readByte() == (-1).byteValue()
+        !rdr.hasNext()
+    }
+
+    def "Error to read nested past the end"() {
+        setup:
+        def rdr = new ScaleCodecReader(Hex.decodeHex("0c0102"))
+        when:
+        rdr.readNested()
+        then:
+        thrown(IndexOutOfBoundsException)
+    }
 }
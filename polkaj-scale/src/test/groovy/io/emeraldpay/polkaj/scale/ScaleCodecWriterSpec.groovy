@@ -1,5 +1,7 @@
 package io.emeraldpay.polkaj.scale
 
+import io.emeraldpay.polkaj.types.ByteData
+import io.emeraldpay.polkaj.types.Hash256
 import org.apache.commons.codec.binary.Hex
 import spock.lang.Specification
 
@@ -108,4 +110,28 @@ class ScaleCodecWriterSpec extends Specification {
         then:
         Hex.encodeHexString(act) == "000600000003000000017d010000bb931fd17f85fb26e8209eb7af5747258163df29a7dd8f87fa7617963fcfa1aab0a8d493285c2df73290dfb7e61f870f17b41801197a149ca93654499ea3dafe0400"
     }
+
+    def "Write ByteData"() {
+        when:
+        codec.writeByteArray(ByteData.from("0x0102"))
+        codec.writeAsList(ByteData.from("0x0304"))
+        def act = buf.toByteArray()
+        then:
+        Hex.encodeHexString(act) == "010208" + "0304"
+    }
+
+    def "Write 256 bit ByteData"() {
+        when:
+        codec.writeUint256(Hash256.from("0xbb931fd17f85fb26e8209eb7af5747258163df29a7dd8f87fa7617963fcfa1aa"))
+        def act = buf.toByteArray()
+        then:
+        Hex.encodeHexString(act) == "bb931fd17f85fb26e8209eb7af5747258163df29a7dd8f87fa7617963fcfa1aa"
+    }
+
+    def "Error to write short 256 bit ByteData"() {
+        when:
+        codec.writeUint256(ByteData.from("0xbb931f"))
+        then:
+        thrown(IllegalArgumentException)
+    }
 }
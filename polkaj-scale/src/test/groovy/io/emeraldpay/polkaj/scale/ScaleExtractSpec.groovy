@@ -1,9 +1,13 @@
 package io.emeraldpay.polkaj.scale
 
 import io.emeraldpay.polkaj.types.ByteData
+import jdk.jfr.Recording
+import jdk.jfr.consumer.RecordingFile
 import org.apache.commons.codec.binary.Hex
 import spock.lang.Specification
 
+import java.nio.file.Files
+
 class ScaleExtractSpec extends Specification {
 
     def "Extracts from bytes array"() {
@@ -43,4 +47,29 @@ class ScaleExtractSpec extends Specification {
         then:
         thrown(NullPointerException)
     }
+
+    def "Records JFR event when enabled"() {
+        setup:
+        def recording = new Recording()
+        recording.enable("io.emeraldpay.polkaj.ScaleDecode")
+        def file = Files.createTempFile("polkaj", ".jfr")
+        when:
+        recording.start()
+        ScaleExtract.fromBytesData(ScaleCodecReader.STRING).apply(ByteData.from("0x3048656c6c6f20576f726c6421"))
+        recording.stop()
+        recording.dump(file)
+        def events = RecordingFile.readAllEvents(file).findAll { it.eventType.name == "io.emeraldpay.polkaj.ScaleDecode" }
+        then:
+        events.size() == 1
+        events[0].getString("readerType") == "io.emeraldpay.polkaj.scale.reader.StringReader"
+        events[0].getInt("bytes") == 13
+        cleanup:
+        recording.close()
+        Files.deleteIfExists(file)
+    }
+
+    def "JFR event is disabled by default"() {
+        expect:
+        ScaleDecodeEvent.start(ScaleCodecReader.STRING, 13) == null
+    }
 }
@@ -128,17 +128,45 @@ public class SchnorrkelNative extends Schnorrkel {
 
     @Override
     public byte[] sign(byte[] message, KeyPair keypair) throws SchnorrkelException {
-        return SchnorrkelNative.sign(keypair.getPublicKey(), keypair.getSecretKey(), message);
+        SignatureEvent event = SignatureEvent.start(SignatureEvent.SIGN, "sr25519", message.length);
+        boolean success = false;
+        try {
+            byte[] result = SchnorrkelNative.sign(keypair.getPublicKey(), keypair.getSecretKey(), message);
+            success = true;
+            return result;
+        } finally {
+            if (event != null) {
+                event.complete(success);
+            }
+        }
     }
 
     @Override
     public boolean verify(byte[] signature, byte[] message, PublicKey publicKey) throws SchnorrkelException {
-        return SchnorrkelNative.verify(signature, message, publicKey.getPublicKey());
+        SignatureEvent event = SignatureEvent.start(SignatureEvent.VERIFY, "sr25519", message.length);
+        boolean valid = false;
+        try {
+            valid = SchnorrkelNative.verify(signature, message, publicKey.getPublicKey());
+            return valid;
+        } finally {
+            if (event != null) {
+                event.complete(valid);
+            }
+        }
     }
 
     @Override
     public boolean verifyDeprecated(byte[] signature, byte[] message, PublicKey publicKey) throws SchnorrkelException {
-        return SchnorrkelNative.verifyDeprecated(signature, message, publicKey.getPublicKey());
+        SignatureEvent event = SignatureEvent.start(SignatureEvent.VERIFY, "sr25519-deprecated", message.length);
+        boolean valid = false;
+        try {
+            valid = SchnorrkelNative.verifyDeprecated(signature, message, publicKey.getPublicKey());
+            return valid;
+        } finally {
+            if (event != null) {
+                event.complete(valid);
+            }
+        }
     }
 
     @Override
@@ -0,0 +1,35 @@
+package io.emeraldpay.polkaj.schnorrkel;
+
+/**
+ * Java Flight Recorder event for creating or verifying a signature. The JAR is a Multi-Release JAR, and on Java 11+
+ * this class is replaced with an actual JFR event named <code>io.emeraldpay.polkaj.Signature</code>, which is disabled
+ * by default. On Java 8 it does nothing.
+ */
+public class SignatureEvent {
+
+    public static final String SIGN = "sign";
+    public static final String VERIFY = "verify";
+
+    SignatureEvent() {
+    }
+
+    /**
+     * Start the event
+     *
+     * @param operation {@link #SIGN} or {@link #VERIFY}
+     * @param algorithm signature algorithm, i.e. <code>sr25519</code>
+     * @param messageBytes size of the signed message
+     * @return the event, or null if the event is not recorded
+     */
+    public static SignatureEvent start(String operation, String algorithm, int messageBytes) {
+        return null;
+    }
+
+    /**
+     * Finish and commit the event
+     *
+     * @param success true if the signature was created, or if it's valid
+     */
+    public void complete(boolean success) {
+    }
+}
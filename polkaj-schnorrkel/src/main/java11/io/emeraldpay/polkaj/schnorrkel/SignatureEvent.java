@@ -0,0 +1,63 @@
+package io.emeraldpay.polkaj.schnorrkel;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Java Flight Recorder event for creating or verifying a signature. Disabled by default, enable
+ * <code>io.emeraldpay.polkaj.Signature</code> in the JFR settings to record it.
+ */
+@Name("io.emeraldpay.polkaj.Signature")
+@Label("Signature")
+@Description("Creation or verification of a signature")
+@Category({"Polkaj", "Crypto"})
+@Enabled(false)
+@StackTrace(false)
+public class SignatureEvent extends Event {
+
+    public static final String SIGN = "sign";
+    public static final String VERIFY = "verify";
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Algorithm")
+    String algorithm;
+
+    @Label("Message Size")
+    @DataAmount
+    int messageBytes;
+
+    @Label("Success")
+    @Description("Signature is created, or is valid")
+    boolean success;
+
+    SignatureEvent() {
+    }
+
+    public static SignatureEvent start(String operation, String algorithm, int messageBytes) {
+        SignatureEvent event = new SignatureEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.operation = operation;
+        event.algorithm = algorithm;
+        event.messageBytes = messageBytes;
+        event.begin();
+        return event;
+    }
+
+    public void complete(boolean success) {
+        end();
+        if (shouldCommit()) {
+            this.success = success;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package io.emeraldpay.polkaj.ss58;
+
+import io.ipfs.multibase.Base58;
+import org.bouncycastle.jcajce.provider.digest.Blake2b;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares SS58 encoding/decoding with the previous implementation, which was based on the generic multibase Base58
+ * and created a new Blake2b digest for each call.
+ * <br>
+ * Run with <code>gradle :polkaj-ss58:jmh</code>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SS58CodecBenchmark {
+
+    private static final byte[] CHKSUM_PREFIX = "SS58PRE".getBytes();
+    private static final int SAMPLES = 1024;
+
+    private final SS58Codec codec = SS58Codec.getInstance();
+    private byte[][] pubkeys;
+    private String[] addresses;
+    private int index = 0;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(1);
+        pubkeys = new byte[SAMPLES][];
+        addresses = new String[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++) {
+            pubkeys[i] = new byte[32];
+            random.nextBytes(pubkeys[i]);
+            addresses[i] = codec.encode(SS58Type.Network.SUBSTRATE, pubkeys[i]);
+        }
+    }
+
+    private int next() {
+        index = (index + 1) & (SAMPLES - 1);
+        return index;
+    }
+
+    @Benchmark
+    public String encode() {
+        return codec.encode(SS58Type.Network.SUBSTRATE, pubkeys[next()]);
+    }
+
+    @Benchmark
+    public String encodeLegacy() {
+        return legacyEncode(SS58Type.Network.SUBSTRATE, pubkeys[next()]);
+    }
+
+    @Benchmark
+    public SS58 decode() {
+        return codec.decode(addresses[next()]);
+    }
+
+    @Benchmark
+    public SS58 decodeLegacy() {
+        return legacyDecode(addresses[next()]);
+    }
+
+    private static String legacyEncode(SS58Type type, byte[] value) {
+        byte[] checksumSource = new byte[CHKSUM_PREFIX.length + 1 + value.length];
+        System.arraycopy(CHKSUM_PREFIX, 0, checksumSource, 0, CHKSUM_PREFIX.length);
+        checksumSource[CHKSUM_PREFIX.length] = type.getValue();
+        System.arraycopy(value, 0, checksumSource, CHKSUM_PREFIX.length + 1, value.length);
+        byte[] checksum = new Blake2b.Blake2b512().digest(checksumSource);
+
+        byte[] result = new byte[1 + value.length + 2];
+        result[0] = type.getValue();
+        System.arraycopy(value, 0, result, 1, value.length);
+        System.arraycopy(checksum, 0, result, 1 + value.length, 2);
+        return Base58.encode(result);
+    }
+
+    private static SS58 legacyDecode(String value) {
+        byte[] decoded = Base58.decode(value);
+        int pubKeyLength = decoded.length - 2 - 1;
+        byte[] checksumSource = new byte[CHKSUM_PREFIX.length + 1 + pubKeyLength];
+        System.arraycopy(CHKSUM_PREFIX, 0, checksumSource, 0, CHKSUM_PREFIX.length);
+        System.arraycopy(decoded, 0, checksumSource, CHKSUM_PREFIX.length, pubKeyLength + 1);
+        byte[] checksum = new Blake2b.Blake2b512().digest(checksumSource);
+        if (checksum[0] != decoded[decoded.length - 2] || checksum[1] != decoded[decoded.length - 1]) {
+            throw new IllegalArgumentException("Incorrect checksum");
+        }
+        byte[] pubkey = new byte[pubKeyLength];
+        System.arraycopy(decoded, 1, pubkey, 0, pubKeyLength);
+        return new SS58(SS58Type.Network.from(decoded[0]), pubkey, checksum);
+    }
+}
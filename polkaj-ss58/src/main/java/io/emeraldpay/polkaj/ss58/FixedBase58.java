@@ -0,0 +1,147 @@
+package io.emeraldpay.polkaj.ss58;
+
+import java.util.Arrays;
+
+/**
+ * Base58 encoder/decoder specialized for short values, up to 36 bytes, such as an SS58 payload (1 byte type,
+ * 32 bytes pubkey and 2 bytes checksum). The value is kept as 32-bit words, and the conversion processes 5 base58
+ * digits per pass (58^5 fits into 32 bits), so it doesn't need any BigInteger arithmetic.
+ * <br>
+ * Produces the same result as a generic Base58 implementation (i.e. leading zero bytes encoded as <code>1</code>).
+ */
+class FixedBase58 {
+
+    static final int MAX_BYTES = 36;
+
+    private static final char[] ALPHABET = "123456789ABCDEFGHJKLMNPQRSTUVWXYZabcdefghijkmnopqrstuvwxyz".toCharArray();
+    private static final int[] INDEXES = new int[128];
+    private static final int WORDS = MAX_BYTES / 4;
+    /**
+     * Max number of digits for a 36 byte value, rounded up to a multiple of 5
+     */
+    private static final int MAX_DIGITS = 50;
+    private static final long BASE_5 = 58L * 58 * 58 * 58 * 58;
+    private static final long[] POWERS = {1, 58, 58 * 58, 58 * 58 * 58, 58L * 58 * 58 * 58, BASE_5};
+
+    static {
+        Arrays.fill(INDEXES, -1);
+        for (int i = 0; i < ALPHABET.length; i++) {
+            INDEXES[ALPHABET[i]] = i;
+        }
+    }
+
+    /**
+     * Encode value as Base58
+     *
+     * @param input value, up to 36 bytes
+     * @return encoded value
+     * @throws IllegalArgumentException if the input is longer than 36 bytes
+     */
+    static String encode(byte[] input) {
+        if (input.length > MAX_BYTES) {
+            throw new IllegalArgumentException("Value is too long: " + input.length);
+        }
+        int zeros = 0;
+        while (zeros < input.length && input[zeros] == 0) {
+            zeros++;
+        }
+        // the value as big-endian 32-bit words, aligned to the right
+        int[] words = new int[WORDS];
+        for (int i = 0, shift = MAX_BYTES - input.length; i < input.length; i++) {
+            int pos = shift + i;
+            words[pos >>> 2] |= (input[i] & 0xff) << ((3 - (pos & 3)) << 3);
+        }
+
+        char[] output = new char[MAX_DIGITS + input.length];
+        int pos = output.length;
+        int start = (MAX_BYTES - input.length + zeros) >>> 2;
+        while (start < WORDS) {
+            long remainder = 0;
+            for (int i = start; i < WORDS; i++) {
+                long current = (remainder << 32) | (words[i] & 0xffffffffL);
+                words[i] = (int) (current / BASE_5);
+                remainder = current % BASE_5;
+            }
+            while (start < WORDS && words[start] == 0) {
+                start++;
+            }
+            for (int i = 0; i < 5; i++) {
+                output[--pos] = ALPHABET[(int) (remainder % 58)];
+                remainder /= 58;
+            }
+        }
+        // the last pass may produce zero digits in front of the number
+        while (pos < output.length && output[pos] == ALPHABET[0]) {
+            pos++;
+        }
+        for (int i = 0; i < zeros; i++) {
+            output[--pos] = ALPHABET[0];
+        }
+        return new String(output, pos, output.length - pos);
+    }
+
+    /**
+     * Decode Base58 value, expecting it to have the specified length.
+     *
+     * @param input encoded value
+     * @param expectedLength expected length of the decoded value, up to 36 bytes
+     * @return decoded value, or null if the value has a different length
+     * @throws IllegalArgumentException if the input has a non-Base58 character
+     */
+    static byte[] decode(CharSequence input, int expectedLength) {
+        int length = input.length();
+        int zeros = 0;
+        while (zeros < length && input.charAt(zeros) == ALPHABET[0]) {
+            zeros++;
+        }
+        int[] words = new int[WORDS];
+        boolean overflow = false;
+        for (int i = zeros; i < length; ) {
+            long chunk = 0;
+            int count = 0;
+            for (; count < 5 && i < length; count++, i++) {
+                chunk = chunk * 58 + digit(input.charAt(i));
+            }
+            if (overflow) {
+                // keep going only to validate the characters
+                continue;
+            }
+            long multiplier = POWERS[count];
+            long carry = chunk;
+            for (int w = WORDS - 1; w >= 0; w--) {
+                long current = (words[w] & 0xffffffffL) * multiplier + carry;
+                words[w] = (int) current;
+                carry = current >>> 32;
+            }
+            overflow = carry != 0;
+        }
+        if (overflow) {
+            return null;
+        }
+        int leading = 0;
+        while (leading < MAX_BYTES && byteAt(words, leading) == 0) {
+            leading++;
+        }
+        int significant = MAX_BYTES - leading;
+        if (zeros + significant != expectedLength) {
+            return null;
+        }
+        byte[] result = new byte[expectedLength];
+        for (int i = 0; i < significant; i++) {
+            result[zeros + i] = byteAt(words, leading + i);
+        }
+        return result;
+    }
+
+    private static byte byteAt(int[] words, int pos) {
+        return (byte) (words[pos >>> 2] >>> ((3 - (pos & 3)) << 3));
+    }
+
+    private static int digit(char c) {
+        int value = c < INDEXES.length ? INDEXES[c] : -1;
+        if (value < 0) {
+            throw new IllegalArgumentException("Invalid Base58 character: " + c);
+        }
+        return value;
+    }
+}
@@ -1,7 +1,15 @@
 package io.emeraldpay.polkaj.ss58;
 
 import io.ipfs.multibase.Base58;
-import org.bouncycastle.jcajce.provider.digest.Blake2b;
+import org.bouncycastle.crypto.digests.Blake2bDigest;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.IntPredicate;
 
 /**
  * Encode values with SS58 encoding (checksummed Base58)
@@ -13,6 +21,22 @@ public class SS58Codec {
     private static final byte[] CHKSUM_PREFIX = "SS58PRE".getBytes();
     private static final int CHECKSUM_LEN = 2;
     private static final int TYPE_LEN = 1;
+    private static final int PUBKEY_LEN = 32;
+    private static final int CHECKSUM_DIGEST_LEN = 64;
+    private static final int ENCODED_LEN = TYPE_LEN + PUBKEY_LEN + CHECKSUM_LEN;
+    /**
+     * Max number of items processed by a single thread during bulk operations
+     */
+    private static final int BULK_BATCH_SIZE = 1024;
+
+    /**
+     * Blake2b digest is stateful, so it's reused per thread instead of creating a new one for each call
+     */
+    private static final ThreadLocal<Blake2bDigest> CHECKSUM_DIGEST = ThreadLocal.withInitial(() ->
+            //spec says it's 256, but in reality it's 512
+            new Blake2bDigest(CHECKSUM_DIGEST_LEN * 8)
+    );
+    private static final ThreadLocal<byte[]> CHECKSUM_BUFFER = ThreadLocal.withInitial(() -> new byte[CHECKSUM_DIGEST_LEN]);
 
     public static SS58Codec getInstance() {
         return DEFAULT;
@@ -33,25 +57,11 @@ public class SS58Codec {
         if (value == null) {
             throw new IllegalArgumentException("Value is null");
         }
-        if (value.length != 32) {
+        if (value.length != PUBKEY_LEN) {
             //TODO what if some different type, not pubkey?
             throw new IllegalArgumentException("Value length is expected to be 32 bytes, but has: " + value.length);
         }
-        byte[] checksumSource = new byte[CHKSUM_PREFIX.length + TYPE_LEN + value.length];
-        System.arraycopy(CHKSUM_PREFIX, 0, checksumSource, 0, CHKSUM_PREFIX.length);
-        checksumSource[CHKSUM_PREFIX.length] = SS58Type.getValue();
-        System.arraycopy(value, 0, checksumSource, CHKSUM_PREFIX.length + TYPE_LEN, value.length);
-
-        //spec says it's 256, but in reality it's 512
-        Blake2b.Blake2b512 hash = new Blake2b.Blake2b512();
-        byte[] checksum = hash.digest(checksumSource);
-
-        byte[] result = new byte[TYPE_LEN + value.length + CHECKSUM_LEN];
-        result[0] = SS58Type.getValue();
-        System.arraycopy(value, 0, result, TYPE_LEN, value.length);
-        System.arraycopy(checksum, 0, result, TYPE_LEN + value.length, 2);
-
-        return Base58.encode(result);
+        return encodePubkey(SS58Type, value, 0);
     }
 
     /**
@@ -69,19 +79,19 @@ public class SS58Codec {
             throw new IllegalArgumentException("Input value is too short");
         }
 
-        byte[] decoded = Base58.decode(value);
+        // a pubkey based value is decoded with the fixed size implementation, and only other sizes go to the generic one
+        byte[] decoded = FixedBase58.decode(value, TYPE_LEN + PUBKEY_LEN + CHECKSUM_LEN);
+        if (decoded == null) {
+            decoded = Base58.decode(value);
+        }
         //should have at least 1 byte of actual data
         if (decoded.length < TYPE_LEN + CHECKSUM_LEN + 1) {
             throw new IllegalArgumentException("Input value is too short");
         }
 
         int pubKeyLength = decoded.length - CHECKSUM_LEN - TYPE_LEN;
-        byte[] checksumSource = new byte[CHKSUM_PREFIX.length + TYPE_LEN + pubKeyLength];
-        System.arraycopy(CHKSUM_PREFIX, 0, checksumSource, 0, CHKSUM_PREFIX.length);
-        System.arraycopy(decoded, 0, checksumSource, CHKSUM_PREFIX.length, pubKeyLength + TYPE_LEN);
-
-        Blake2b.Blake2b512 hash = new Blake2b.Blake2b512();
-        byte[] checksum = hash.digest(checksumSource);
+        byte[] checksum = new byte[CHECKSUM_DIGEST_LEN];
+        checksum(decoded, pubKeyLength + TYPE_LEN, checksum);
         if (checksum[0] != decoded[decoded.length - CHECKSUM_LEN] || checksum[1] != decoded[decoded.length - CHECKSUM_LEN + 1]) {
             throw new IllegalArgumentException("Incorrect checksum");
         }
@@ -91,4 +101,218 @@ public class SS58Codec {
 
         return new SS58(SS58Type.Network.from(decoded[0]), pubkey, checksum);
     }
+
+    /**
+     * Encode multiple pubkeys with SS58. The work is split between threads of the common Fork-Join pool.
+     *
+     * @param type type of the values
+     * @param values 32 byte pubkeys
+     * @param output array for the encoded values, at the same index as the source pubkey
+     * @return indexes of invalid pubkeys (null or not 32 bytes), for which the output is set to null. Empty if all are valid.
+     * @throws IllegalArgumentException if type or values are null, or output is shorter than values
+     */
+    public BitSet encodeAll(SS58Type type, byte[][] values, String[] output) {
+        if (type == null) {
+            throw new IllegalArgumentException("AddressType is null");
+        }
+        if (values == null || output == null) {
+            throw new IllegalArgumentException("Values or output is null");
+        }
+        if (output.length < values.length) {
+            throw new IllegalArgumentException("Output has " + output.length + " items, but requires " + values.length);
+        }
+        return processAll(values.length, (i) -> {
+            byte[] value = values[i];
+            if (value == null || value.length != PUBKEY_LEN) {
+                output[i] = null;
+                return false;
+            }
+            output[i] = encodePubkey(type, value, 0);
+            return true;
+        });
+    }
+
+    /**
+     * Encode multiple pubkeys, provided as a flat buffer of 32 byte values one after another. The work is split
+     * between threads of the common Fork-Join pool.
+     *
+     * @param type type of the values
+     * @param values buffer with the pubkeys, must have at least <code>32 * output.length</code> bytes starting from the offset
+     * @param offset position of the first pubkey in the buffer
+     * @param output array for the encoded values, its length defines the number of pubkeys to encode
+     * @throws IllegalArgumentException if type, values or output are null, or the buffer is too short
+     */
+    public void encodeAll(SS58Type type, byte[] values, int offset, String[] output) {
+        if (type == null) {
+            throw new IllegalArgumentException("AddressType is null");
+        }
+        if (values == null || output == null) {
+            throw new IllegalArgumentException("Values or output is null");
+        }
+        if (offset < 0 || (long) output.length * PUBKEY_LEN > values.length - offset) {
+            throw new IllegalArgumentException("Values buffer doesn't have " + output.length + " pubkeys at " + offset);
+        }
+        processAll(output.length, (i) -> {
+            output[i] = encodePubkey(type, values, offset + i * PUBKEY_LEN);
+            return true;
+        });
+    }
+
+    /**
+     * Decode and verify multiple SS58 addresses into a flat buffer of 32 byte pubkeys. The work is split between
+     * threads of the common Fork-Join pool.
+     * <br>
+     * An address is valid if it has a correct checksum, a known network type, and a 32 byte pubkey.
+     *
+     * @param values encoded addresses
+     * @param output buffer for the decoded pubkeys, must have at least <code>32 * values.size()</code> bytes starting from the offset
+     * @param offset position of the first pubkey in the output buffer
+     * @param types optional (nullable) array for the network type of each address
+     * @return indexes of invalid addresses, for which the output is left untouched. Empty if all are valid.
+     * @throws IllegalArgumentException if values or output are null, or the output is too short
+     */
+    public BitSet decodeAll(List<String> values, byte[] output, int offset, byte[] types) {
+        if (values == null || output == null) {
+            throw new IllegalArgumentException("Values or output is null");
+        }
+        if (offset < 0 || (long) values.size() * PUBKEY_LEN > output.length - offset) {
+            throw new IllegalArgumentException("Output buffer doesn't have space for " + values.size() + " pubkeys at " + offset);
+        }
+        if (types != null && types.length < values.size()) {
+            throw new IllegalArgumentException("Types has " + types.length + " items, but requires " + values.size());
+        }
+        final List<String> source = randomAccess(values);
+        return processAll(source.size(), (i) -> {
+            int type = decodePubkey(source.get(i), output, offset + i * PUBKEY_LEN);
+            if (type < 0) {
+                return false;
+            }
+            if (types != null) {
+                types[i] = (byte) type;
+            }
+            return true;
+        });
+    }
+
+    /**
+     * Verify multiple SS58 addresses. The work is split between threads of the common Fork-Join pool.
+     * <br>
+     * An address is valid if it has a correct checksum, a known network type, and a 32 byte pubkey.
+     *
+     * @param values encoded addresses
+     * @return indexes of invalid addresses. Empty if all are valid.
+     * @throws IllegalArgumentException if values is null
+     */
+    public BitSet validateAll(List<String> values) {
+        if (values == null) {
+            throw new IllegalArgumentException("Values is null");
+        }
+        final List<String> source = randomAccess(values);
+        return processAll(source.size(), (i) -> decodePubkey(source.get(i), null, 0) >= 0);
+    }
+
+    private String encodePubkey(SS58Type type, byte[] value, int offset) {
+        byte[] result = new byte[ENCODED_LEN];
+        result[0] = type.getValue();
+        System.arraycopy(value, offset, result, TYPE_LEN, PUBKEY_LEN);
+
+        byte[] checksum = CHECKSUM_BUFFER.get();
+        checksum(result, TYPE_LEN + PUBKEY_LEN, checksum);
+        System.arraycopy(checksum, 0, result, TYPE_LEN + PUBKEY_LEN, CHECKSUM_LEN);
+
+        return FixedBase58.encode(result);
+    }
+
+    /**
+     * Decode address with a 32 byte pubkey, without throwing exceptions for invalid input
+     *
+     * @param output buffer for the pubkey, or null if only the validation is needed
+     * @return network type (as unsigned byte) or -1 if the address is invalid
+     */
+    private static int decodePubkey(String value, byte[] output, int offset) {
+        if (value == null || value.length() == 0) {
+            return -1;
+        }
+        byte[] decoded;
+        try {
+            decoded = FixedBase58.decode(value, ENCODED_LEN);
+        } catch (IllegalArgumentException e) {
+            return -1;
+        }
+        if (decoded == null || SS58Type.Network.find(decoded[0]) == null) {
+            return -1;
+        }
+        byte[] checksum = CHECKSUM_BUFFER.get();
+        checksum(decoded, TYPE_LEN + PUBKEY_LEN, checksum);
+        if (checksum[0] != decoded[ENCODED_LEN - CHECKSUM_LEN] || checksum[1] != decoded[ENCODED_LEN - CHECKSUM_LEN + 1]) {
+            return -1;
+        }
+        if (output != null) {
+            System.arraycopy(decoded, TYPE_LEN, output, offset, PUBKEY_LEN);
+        }
+        return decoded[0] & 0xff;
+    }
+
+    private static <T> List<T> randomAccess(List<T> values) {
+        if (values instanceof RandomAccess) {
+            return values;
+        }
+        return new ArrayList<>(values);
+    }
+
+    private static BitSet processAll(int count, IntPredicate action) {
+        BulkTask task = new BulkTask(0, count, action);
+        if (count <= BULK_BATCH_SIZE) {
+            return task.compute();
+        }
+        return ForkJoinPool.commonPool().invoke(task);
+    }
+
+    /**
+     * Applies the action to a range of indexes, splitting it into smaller parts for parallel execution
+     */
+    private static class BulkTask extends RecursiveTask<BitSet> {
+        private final int from;
+        private final int to;
+        private final IntPredicate action;
+
+        BulkTask(int from, int to, IntPredicate action) {
+            this.from = from;
+            this.to = to;
+            this.action = action;
+        }
+
+        @Override
+        protected BitSet compute() {
+            if (to - from <= BULK_BATCH_SIZE) {
+                BitSet invalid = new BitSet();
+                for (int i = from; i < to; i++) {
+                    if (!action.test(i)) {
+                        invalid.set(i);
+                    }
+                }
+                return invalid;
+            }
+            int middle = (from + to) >>> 1;
+            BulkTask left = new BulkTask(from, middle, action);
+            left.fork();
+            BitSet invalid = new BulkTask(middle, to, action).compute();
+            invalid.or(left.join());
+            return invalid;
+        }
+    }
+
+    /**
+     * Calculate SS58 checksum, i.e. Blake2b-512 of the prefix and the value
+     *
+     * @param source source data, starting with type
+     * @param length length of the data to checksum
+     * @param output buffer for the 64 byte hash
+     */
+    private static void checksum(byte[] source, int length, byte[] output) {
+        Blake2bDigest digest = CHECKSUM_DIGEST.get();
+        digest.update(CHKSUM_PREFIX, 0, CHKSUM_PREFIX.length);
+        digest.update(source, 0, length);
+        digest.doFinal(output, 0);
+    }
 }
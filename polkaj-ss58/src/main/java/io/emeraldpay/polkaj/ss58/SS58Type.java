@@ -49,12 +49,24 @@ public abstract class SS58Type {
         }
 
         public static Network from(byte value) {
+            Network network = find(value);
+            if (network == null) {
+                throw new IllegalArgumentException("Unsupported network: " + value);
+            }
+            return network;
+        }
+
+        /**
+         * @param value network type
+         * @return network or null if it's not supported
+         */
+        static Network find(byte value) {
             for (Network n: ALL) {
                 if (n.getValue() == value) {
                     return n;
                 }
             }
-            throw new IllegalArgumentException("Unsupported network: " + value);
+            return null;
         }
     }
 
@@ -0,0 +1,85 @@
+package io.emeraldpay.polkaj.ss58
+
+import io.ipfs.multibase.Base58
+import org.apache.commons.codec.binary.Hex
+import spock.lang.Specification
+
+class FixedBase58Spec extends Specification {
+
+    def "Encode same as generic Base58"() {
+        expect:
+        FixedBase58.encode(Hex.decodeHex(hex)) == Base58.encode(Hex.decodeHex(hex))
+        where:
+        hex << [
+                "",
+                "00",
+                "0000",
+                "01",
+                "ff",
+                "0001",
+                "2af8c2c616e5d5d805ae14f810da895ed9fe98511c201dc4d4719624a41fb9772c1234",
+                "00f8c2c616e5d5d805ae14f810da895ed9fe98511c201dc4d4719624a41fb9772c1234",
+                "0000000000000000000000000000000000000000000000000000000000000000000000",
+                "ffffffffffffffffffffffffffffffffffffffffffffffffffffffffffffffffffffffff",
+        ]
+    }
+
+    def "Encode random values same as generic Base58"() {
+        setup:
+        def random = new Random(1)
+        expect:
+        (0..<1000).every {
+            byte[] value = new byte[random.nextInt(37)]
+            random.nextBytes(value)
+            FixedBase58.encode(value) == Base58.encode(value) && FixedBase58.decode(Base58.encode(value), value.length) == value
+        }
+    }
+
+    def "Decode value of expected length"() {
+        setup:
+        def value = Hex.decodeHex("2af8c2c616e5d5d805ae14f810da895ed9fe98511c201dc4d4719624a41fb9772c1234")
+        when:
+        def act = FixedBase58.decode(Base58.encode(value), 35)
+        then:
+        act == value
+    }
+
+    def "Decode value with leading zeroes"() {
+        setup:
+        def value = Hex.decodeHex("000000c616e5d5d805ae14f810da895ed9fe98511c201dc4d4719624a41fb9772c1234")
+        when:
+        def act = FixedBase58.decode(Base58.encode(value), 35)
+        then:
+        act == value
+    }
+
+    def "Returns null for different length"() {
+        expect:
+        FixedBase58.decode(Base58.encode(Hex.decodeHex(hex)), 35) == null
+        where:
+        hex << [
+                "",
+                "2a0102",
+                "2af8c2c616e5d5d805ae14f810da895ed9fe98511c201dc4d4719624a41fb9772c12",
+                "2af8c2c616e5d5d805ae14f810da895ed9fe98511c201dc4d4719624a41fb9772c123456",
+                "002af8c2c616e5d5d805ae14f810da895ed9fe98511c201dc4d4719624a41fb9772c1234",
+                "2af8c2c616e5d5d805ae14f810da895ed9fe98511c201dc4d4719624a41fb9772c12345678900000000000"
+        ]
+    }
+
+    def "Error on invalid character"() {
+        when:
+        FixedBase58.decode(value, 35)
+        then:
+        thrown(IllegalArgumentException)
+        where:
+        value << ["0", "5HgsbKKAqD82bDv25MakEihbS4DXKCdyM76HQFRZYmMdYLc0", "5HgsbKKAqD82bDv25MakEihbS4DXKCdyM76HQFRZYmMdYLcI", "5Hgsb ", "5Hgsbф"]
+    }
+
+    def "Error on too long value"() {
+        when:
+        FixedBase58.encode(new byte[37])
+        then:
+        thrown(IllegalArgumentException)
+    }
+}
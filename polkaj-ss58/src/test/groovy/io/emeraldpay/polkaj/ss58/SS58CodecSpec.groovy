@@ -144,4 +144,147 @@ class SS58CodecSpec extends Specification {
         def t = thrown(IllegalArgumentException)
         t.message == 'Incorrect checksum'
     }
+
+    def "Throws error for invalid character"() {
+        setup:
+        def encoder = SS58Codec.instance
+        when:
+        encoder.decode('kRKzYtM2KGB9DgonEbuRYdooSDbkyyR8TixhUbvKqsA240A')
+        then:
+        thrown(IllegalArgumentException)
+    }
+
+    def "Encode and decode zero pubkey"() {
+        setup:
+        def encoder = SS58Codec.instance
+        def pubkey = new byte[32]
+        when:
+        def addr = encoder.encode(SS58Type.Network.LIVE, pubkey)
+        def act = encoder.decode(addr)
+        then:
+        act.value == pubkey
+        act.type == SS58Type.Network.LIVE
+    }
+
+    def "Encode and decode in parallel"() {
+        setup:
+        def encoder = SS58Codec.instance
+        def pubkeys = (0..<200).collect {
+            byte[] value = new byte[32]
+            new Random(it).nextBytes(value)
+            value
+        }
+        when:
+        def act = pubkeys.parallelStream()
+                .map { encoder.decode(encoder.encode(SS58Type.Network.SUBSTRATE, it)).value }
+                .collect(java.util.stream.Collectors.toList())
+        then:
+        act == pubkeys
+    }
+
+    def "Encode all pubkeys from array"() {
+        setup:
+        def encoder = SS58Codec.instance
+        byte[][] pubkeys = [
+                Hex.decodeHex('f8c2c616e5d5d805ae14f810da895ed9fe98511c201dc4d4719624a41fb9772c'),
+                null,
+                Hex.decodeHex('aeac712776ba8e165216861798f8138819dcd4a81388171c81d607c48afb3610'),
+                Hex.decodeHex('aeac712776ba8e165216861798f8138819dcd4a81388171c81d607c48afb36'),
+        ]
+        def output = new String[4]
+        when:
+        def invalid = encoder.encodeAll(SS58Type.Network.SUBSTRATE, pubkeys, output)
+        then:
+        invalid == bits(1, 3)
+        output.toList() == ['5HgsbKKAqD82bDv25MakEihbS4DXKCdyM76HQFRZYmMdYLcJ', null, '5G1jR2ZrhR3zsJF2BwzCwfUHayerHVzXsfr55AH4Eij5wmE2', null]
+    }
+
+    def "Encode all pubkeys from flat buffer"() {
+        setup:
+        def encoder = SS58Codec.instance
+        def random = new Random(1)
+        byte[] buffer = new byte[10 + 5000 * 32]
+        random.nextBytes(buffer)
+        def output = new String[5000]
+        when:
+        encoder.encodeAll(SS58Type.Network.CANARY, buffer, 10, output)
+        then:
+        (0..<5000).every {
+            output[it] == encoder.encode(SS58Type.Network.CANARY, Arrays.copyOfRange(buffer, 10 + it * 32, 10 + it * 32 + 32))
+        }
+    }
+
+    def "Error to encode into short output"() {
+        setup:
+        def encoder = SS58Codec.instance
+        when:
+        encoder.encodeAll(SS58Type.Network.CANARY, new byte[32 * 3], 1, new String[3])
+        then:
+        thrown(IllegalArgumentException)
+
+        when:
+        encoder.encodeAll(SS58Type.Network.CANARY, [new byte[32], new byte[32]] as byte[][], new String[1])
+        then:
+        thrown(IllegalArgumentException)
+    }
+
+    def "Decode all addresses"() {
+        setup:
+        def encoder = SS58Codec.instance
+        def addresses = [
+                '5HgsbKKAqD82bDv25MakEihbS4DXKCdyM76HQFRZYmMdYLcJ',
+                'kRKzYtM2KGB9DgonEbuRYdooSDbkyyR8TixhUbvKqsA24mB',
+                'FqZJib4Kz759A1VFd2cXX4paQB42w7Uamsyhi4z3kGgCkQy',
+                'not an address',
+                null,
+                '',
+        ]
+        byte[] output = new byte[6 * 32]
+        byte[] types = new byte[6]
+        when:
+        def invalid = encoder.decodeAll(addresses, output, 0, types)
+        then:
+        invalid == bits(1, 3, 4, 5)
+        Hex.encodeHexString(Arrays.copyOfRange(output, 0, 32)) == 'f8c2c616e5d5d805ae14f810da895ed9fe98511c201dc4d4719624a41fb9772c'
+        Hex.encodeHexString(Arrays.copyOfRange(output, 64, 96)) == '9053cc32597892cc2cd43ea6e3c0db7a3b4c52e5fe6052762080dbc3e3222c0b'
+        types[0] == SS58Type.Network.SUBSTRATE.value
+        types[2] == SS58Type.Network.CANARY.value
+    }
+
+    def "Decode all encoded addresses"() {
+        setup:
+        def encoder = SS58Codec.instance
+        def random = new Random(1)
+        byte[] buffer = new byte[5000 * 32]
+        random.nextBytes(buffer)
+        def addresses = new String[5000]
+        encoder.encodeAll(SS58Type.Network.SUBSTRATE, buffer, 0, addresses)
+        byte[] output = new byte[5000 * 32]
+        when:
+        def invalid = encoder.decodeAll(addresses.toList(), output, 0, null)
+        then:
+        invalid.isEmpty()
+        output == buffer
+    }
+
+    def "Validate all addresses"() {
+        setup:
+        def encoder = SS58Codec.instance
+        def addresses = new LinkedList<String>([
+                '5HgsbKKAqD82bDv25MakEihbS4DXKCdyM76HQFRZYmMdYLcJ',
+                'kRKzYtM2KGB9DgonEbuRYdooSDbkyyR8TixhUbvKqsA24mB',
+                Base58.encode([42, 1, 2] as byte[]),
+                'FqZJib4Kz759A1VFd2cXX4paQB42w7Uamsyhi4z3kGgCkQy',
+        ])
+        when:
+        def invalid = encoder.validateAll(addresses)
+        then:
+        invalid == bits(1, 2)
+    }
+
+    static BitSet bits(int... indexes) {
+        def result = new BitSet()
+        indexes.each { result.set(it) }
+        return result
+    }
 }
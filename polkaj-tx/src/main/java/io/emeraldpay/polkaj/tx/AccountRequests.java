@@ -5,7 +5,13 @@ import java.io.IOException;
 import java.math.BigInteger;
 import java.nio.ByteBuffer;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
+import io.emeraldpay.polkaj.api.PolkadotApi;
 import io.emeraldpay.polkaj.scale.ScaleCodecReader;
 import io.emeraldpay.polkaj.scale.ScaleCodecWriter;
 import io.emeraldpay.polkaj.scaletypes.AccountInfo;
@@ -45,6 +51,18 @@ public class AccountRequests {
         return new AddressBalance(address);
     }
 
+    /**
+     * Get current balances of multiple addresses, with a few <code>state_queryStorageAt</code> calls instead of a call
+     * per address
+     *
+     * @param addresses addresses
+     * @return balances reader
+     * @see BulkStorageReader
+     */
+    public static AddressBalances balanceOf(Collection<Address> addresses) {
+        return new AddressBalances(addresses);
+    }
+
     /**
      * Transfer value from one account to another
      * @return builder for transfer
@@ -73,12 +91,12 @@ public class AccountRequests {
             ByteBuffer buffer = ByteBuffer.allocate(len);
             Hashing.xxhash128(buffer, key1);
             Hashing.xxhash128(buffer, key2);
-            return new ByteData(buffer.flip().array());
+            return ByteData.wrap(buffer.flip().array());
         }
 
         @Override
         public DotAmount apply(ByteData result) {
-            return new ScaleCodecReader(result.getBytes()).read(new BalanceReader());
+            return new ScaleCodecReader(result).read(new BalanceReader());
         }
     }
 
@@ -100,7 +118,7 @@ public class AccountRequests {
             Hashing.xxhash128(buffer, key2);
             Hashing.blake2128(buffer, address);
             buffer.put(address.getPubkey());
-            return new ByteData(buffer.flip().array());
+            return ByteData.wrap(buffer.flip().array());
         }
 
         @Override
@@ -108,7 +126,50 @@ public class AccountRequests {
             if (result == null) {
                 return null;
             }
-            return new ScaleCodecReader(result.getBytes()).read(new AccountInfoReader(address.getNetwork()));
+            return new ScaleCodecReader(result).read(new AccountInfoReader(address.getNetwork()));
+        }
+    }
+
+    public static class AddressBalances {
+
+        private final Map<Address, AddressBalance> requests;
+
+        public AddressBalances(Collection<Address> addresses) {
+            Map<Address, AddressBalance> requests = new LinkedHashMap<>();
+            for (Address address : addresses) {
+                requests.put(address, new AddressBalance(address));
+            }
+            this.requests = Collections.unmodifiableMap(requests);
+        }
+
+        /**
+         *
+         * @return balance request for each address
+         */
+        public Map<Address, AddressBalance> getRequests() {
+            return requests;
+        }
+
+        /**
+         * Execute with API at the current best block
+         *
+         * @param api connected api
+         * @return future to the balances, in the same order as the addresses. Balance is <code>null</code> for an
+         * address that doesn't exist
+         */
+        public CompletableFuture<Map<Address, AccountInfo>> execute(PolkadotApi api) {
+            return execute(BulkStorageReader.newBuilder().api(api).build());
+        }
+
+        /**
+         * Execute with a configured reader
+         *
+         * @param reader reader
+         * @return future to the balances, in the same order as the addresses. Balance is <code>null</code> for an
+         * address that doesn't exist
+         */
+        public CompletableFuture<Map<Address, AccountInfo>> execute(BulkStorageReader reader) {
+            return reader.read(requests);
         }
     }
 
@@ -132,7 +193,7 @@ public class AccountRequests {
             ByteArrayOutputStream buf = new ByteArrayOutputStream();
             ScaleCodecWriter writer = new ScaleCodecWriter(buf);
             writer.write(CODEC, extrinsic);
-            return new ByteData(buf.toByteArray());
+            return ByteData.wrap(buf.toByteArray());
         }
 
         @Override
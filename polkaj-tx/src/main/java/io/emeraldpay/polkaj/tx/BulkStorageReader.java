@@ -0,0 +1,348 @@
+package io.emeraldpay.polkaj.tx;
+
+import io.emeraldpay.polkaj.api.PolkadotApi;
+import io.emeraldpay.polkaj.api.PolkadotMethod;
+import io.emeraldpay.polkaj.api.RpcCall;
+import io.emeraldpay.polkaj.api.StandardCommands;
+import io.emeraldpay.polkaj.json.StorageChangeSetJson;
+import io.emeraldpay.polkaj.types.ByteData;
+import io.emeraldpay.polkaj.types.Hash256;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiConsumer;
+
+/**
+ * Reads many storage keys at the same block with <code>state_queryStorageAt</code>, instead of making a separate
+ * <code>state_getStorage</code> call for each of them.
+ * <br>
+ * The keys are split into chunks, and up to <code>parallelism</code> chunks are requested at the same time. The chunk
+ * size is adapted to the response time: if a chunk is received faster than a half of the target latency the next
+ * one is doubled, and if it's slower than the target latency the next one is halved.
+ * <br>
+ * All chunks are read at the same block. If the block is not set, the current best block is requested first.
+ * <br>
+ * Example:
+ * <pre><code>
+ * BulkStorageReader reader = BulkStorageReader.newBuilder()
+ *      .api(api)
+ *      .at(blockHash)
+ *      .build();
+ * Map&lt;Address, AccountInfo&gt; balances = reader.read(AccountRequests.balanceOf(addresses).getRequests()).get();
+ * </code></pre>
+ *
+ * @see AccountRequests#balanceOf(Collection)
+ */
+public class BulkStorageReader {
+
+    private final PolkadotApi api;
+    private final Hash256 at;
+    private final int minChunkSize;
+    private final int maxChunkSize;
+    private final int parallelism;
+    private final long targetLatency;
+
+    private int chunkSize;
+
+    private BulkStorageReader(PolkadotApi api, Hash256 at,
+                              int minChunkSize, int initialChunkSize, int maxChunkSize,
+                              int parallelism, long targetLatency) {
+        this.api = api;
+        this.at = at;
+        this.minChunkSize = minChunkSize;
+        this.chunkSize = initialChunkSize;
+        this.maxChunkSize = maxChunkSize;
+        this.parallelism = parallelism;
+        this.targetLatency = targetLatency;
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    /**
+     * Read storage requests and convert results to Java classes
+     *
+     * @param requests requests, by a custom key such as an address
+     * @param <K> type of the key
+     * @param <T> type of the result
+     * @return future to the results, in the same order as the requests. A result is <code>null</code> if the request
+     * converts a missing value to null
+     */
+    public <K, T> CompletableFuture<Map<K, T>> read(Map<K, ? extends StorageRequest<T>> requests) {
+        Map<K, T> result = new LinkedHashMap<>(requests.size() * 4 / 3 + 1);
+        // pre-fill to keep the order of the requests, chunks may be received in any order
+        requests.keySet().forEach((key) -> result.put(key, null));
+        return read(requests, result::put).thenApply((count) -> result);
+    }
+
+    /**
+     * Read storage requests and convert results to Java classes, passing the results to the handler as they're
+     * received, without keeping them in memory.
+     * <br>
+     * The handler is called from the thread that received a response, but never concurrently, and the results are
+     * not ordered.
+     *
+     * @param requests requests, by a custom key such as an address
+     * @param handler handler for the results
+     * @param <K> type of the key
+     * @param <T> type of the result
+     * @return future to the number of the results, completed after all results are handled
+     */
+    public <K, T> CompletableFuture<Long> read(Map<K, ? extends StorageRequest<T>> requests, BiConsumer<K, T> handler) {
+        List<K> ids = new ArrayList<>(requests.size());
+        List<StorageRequest<T>> decoders = new ArrayList<>(requests.size());
+        List<ByteData> keys = new ArrayList<>(requests.size());
+        requests.forEach((id, request) -> {
+            ids.add(id);
+            decoders.add(request);
+            keys.add(request.encodeRequest());
+        });
+        return execute(keys, (index, value) -> handler.accept(ids.get(index), decoders.get(index).apply(value)));
+    }
+
+    /**
+     * Read raw values of the storage keys
+     *
+     * @param keys storage keys
+     * @return future to the values by the keys, in the same order. A value is <code>null</code> if there is
+     * no value for the key
+     */
+    public CompletableFuture<Map<ByteData, ByteData>> readRaw(Collection<ByteData> keys) {
+        List<ByteData> list = new ArrayList<>(keys);
+        Map<ByteData, ByteData> result = new LinkedHashMap<>(list.size() * 4 / 3 + 1);
+        list.forEach((key) -> result.put(key, null));
+        return execute(list, (index, value) -> result.put(list.get(index), value)).thenApply((count) -> result);
+    }
+
+    private CompletableFuture<Long> execute(List<ByteData> keys, BiConsumer<Integer, ByteData> handler) {
+        if (keys.isEmpty()) {
+            return CompletableFuture.completedFuture(0L);
+        }
+        CompletableFuture<Hash256> block = at != null
+                ? CompletableFuture.completedFuture(at)
+                : api.execute(StandardCommands.getInstance().getBlockHash());
+        return block.thenCompose((hash) -> new Job(keys, hash, handler).start());
+    }
+
+    /**
+     * Call to read a chunk of keys
+     *
+     * @param keys keys
+     * @param at block hash
+     * @return call
+     */
+    static RpcCall<List<StorageChangeSetJson>> chunkCall(List<ByteData> keys, Hash256 at) {
+        return RpcCall.create(StorageChangeSetJson.class, PolkadotMethod.STATE_QUERY_STORAGE_AT, keys, at).expectList();
+    }
+
+    private synchronized void adapt(long latency) {
+        if (latency < targetLatency / 2) {
+            chunkSize = Math.min(maxChunkSize, chunkSize * 2);
+        } else if (latency > targetLatency) {
+            chunkSize = Math.max(minChunkSize, chunkSize / 2);
+        }
+    }
+
+    /**
+     *
+     * @return current chunk size
+     */
+    public synchronized int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * Reading of a list of keys
+     */
+    private class Job {
+        private final List<ByteData> keys;
+        private final Hash256 at;
+        private final BiConsumer<Integer, ByteData> handler;
+        private final CompletableFuture<Long> result = new CompletableFuture<>();
+
+        private int position = 0;
+        private int running = 0;
+        private long count = 0;
+        private boolean scheduling = false;
+
+        Job(List<ByteData> keys, Hash256 at, BiConsumer<Integer, ByteData> handler) {
+            this.keys = keys;
+            this.at = at;
+            this.handler = handler;
+        }
+
+        CompletableFuture<Long> start() {
+            schedule();
+            return result;
+        }
+
+        private synchronized void schedule() {
+            if (scheduling) {
+                // a chunk completed synchronously inside the loop below, which picks up the free slot
+                return;
+            }
+            scheduling = true;
+            try {
+                while (!result.isDone() && running < parallelism && position < keys.size()) {
+                    int from = position;
+                    int to = Math.min(keys.size(), from + getChunkSize());
+                    position = to;
+                    running++;
+                    request(from, to);
+                }
+                if (running == 0 && position >= keys.size()) {
+                    result.complete(count);
+                }
+            } finally {
+                scheduling = false;
+            }
+        }
+
+        private void request(int from, int to) {
+            List<ByteData> chunk = keys.subList(from, to);
+            long startTime = System.nanoTime();
+            CompletableFuture<List<StorageChangeSetJson>> response;
+            try {
+                response = api.execute(chunkCall(chunk, at));
+            } catch (Throwable t) {
+                response = new CompletableFuture<>();
+                response.completeExceptionally(t);
+            }
+            response.whenComplete((changes, t) -> {
+                if (t == null) {
+                    adapt(System.nanoTime() - startTime);
+                }
+                onChunk(from, to, changes, t);
+            });
+        }
+
+        private synchronized void onChunk(int from, int to, List<StorageChangeSetJson> changes, Throwable t) {
+            running--;
+            if (result.isDone()) {
+                return;
+            }
+            if (t != null) {
+                result.completeExceptionally(t);
+                return;
+            }
+            try {
+                Map<ByteData, ByteData> values = new HashMap<>((to - from) * 4 / 3 + 1);
+                if (changes != null) {
+                    for (StorageChangeSetJson changeSet : changes) {
+                        if (changeSet.getChanges() == null) {
+                            continue;
+                        }
+                        for (StorageChangeSetJson.KeyValueOption change : changeSet.getChanges()) {
+                            values.put(change.getKey(), change.getData());
+                        }
+                    }
+                }
+                for (int i = from; i < to; i++) {
+                    handler.accept(i, values.get(keys.get(i)));
+                }
+                count += to - from;
+            } catch (Throwable handlerError) {
+                result.completeExceptionally(handlerError);
+                return;
+            }
+            schedule();
+        }
+    }
+
+    public static class Builder {
+        private PolkadotApi api;
+        private Hash256 at;
+        private int minChunkSize = 16;
+        private int initialChunkSize = 128;
+        private int maxChunkSize = 1000;
+        private int parallelism = 4;
+        private Duration targetLatency = Duration.ofMillis(500);
+
+        /**
+         * Api to make the calls
+         *
+         * @param api api
+         * @return builder
+         */
+        public Builder api(PolkadotApi api) {
+            this.api = api;
+            return this;
+        }
+
+        /**
+         * Block to read the storage at. By default, the current best block at the moment of each read.
+         *
+         * @param at block hash
+         * @return builder
+         */
+        public Builder at(Hash256 at) {
+            this.at = at;
+            return this;
+        }
+
+        /**
+         * Limits of the number of keys in a single call. Default is 16 to 1000, starting with 128.
+         *
+         * @param min min chunk size
+         * @param initial size of the first chunk
+         * @param max max chunk size
+         * @return builder
+         */
+        public Builder chunkSize(int min, int initial, int max) {
+            if (min < 1 || initial < min || max < initial) {
+                throw new IllegalArgumentException("Invalid chunk size: " + min + " <= " + initial + " <= " + max);
+            }
+            this.minChunkSize = min;
+            this.initialChunkSize = initial;
+            this.maxChunkSize = max;
+            return this;
+        }
+
+        /**
+         * Max number of calls in flight. Default is 4.
+         *
+         * @param parallelism number of concurrent calls
+         * @return builder
+         */
+        public Builder parallelism(int parallelism) {
+            if (parallelism < 1) {
+                throw new IllegalArgumentException("Parallelism must be positive: " + parallelism);
+            }
+            this.parallelism = parallelism;
+            return this;
+        }
+
+        /**
+         * Target response time for a chunk. Default is 500ms.
+         *
+         * @param targetLatency latency
+         * @return builder
+         */
+        public Builder targetLatency(Duration targetLatency) {
+            if (targetLatency.isNegative() || targetLatency.isZero()) {
+                throw new IllegalArgumentException("Latency must be positive: " + targetLatency);
+            }
+            this.targetLatency = targetLatency;
+            return this;
+        }
+
+        /**
+         * Apply configuration and build reader
+         *
+         * @return new instance of BulkStorageReader
+         */
+        public BulkStorageReader build() {
+            Objects.requireNonNull(api, "Api is not set");
+            return new BulkStorageReader(api, at, minChunkSize, initialChunkSize, maxChunkSize,
+                    parallelism, targetLatency.toNanos());
+        }
+    }
+}
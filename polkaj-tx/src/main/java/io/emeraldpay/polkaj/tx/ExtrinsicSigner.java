@@ -20,6 +20,7 @@ import io.emeraldpay.polkaj.scaletypes.Extrinsic;
 import io.emeraldpay.polkaj.scaletypes.ExtrinsicCall;
 import io.emeraldpay.polkaj.schnorrkel.Schnorrkel;
 import io.emeraldpay.polkaj.schnorrkel.SchnorrkelException;
+import io.emeraldpay.polkaj.schnorrkel.SignatureEvent;
 import io.emeraldpay.polkaj.types.Address;
 import io.emeraldpay.polkaj.types.Hash512;
 import org.bouncycastle.asn1.edec.EdECObjectIdentifiers;
@@ -86,7 +87,7 @@ public class ExtrinsicSigner<CALL extends ExtrinsicCall> {
     public Hash512 sign(ExtrinsicContext ctx, CALL call, Schnorrkel.KeyPair key) throws SignException {
         byte[] payload = getPayload(ctx, call, false);
         try {
-            return new Hash512(Schnorrkel.getInstance().sign(payload, key));
+            return Hash512.wrap(Schnorrkel.getInstance().sign(payload, key));
         } catch (SchnorrkelException e) {
             throw new SignException("Failed to sign", e);
         }
@@ -109,7 +110,17 @@ public class ExtrinsicSigner<CALL extends ExtrinsicCall> {
         Extrinsic.SignatureType signatureType = signature.getType();
         try {
             if (Extrinsic.SignatureType.ED25519 == signatureType) {
-                return isValidEd25519Signature(payload, signature, address);
+                // sr25519 events are recorded by Schnorrkel itself
+                SignatureEvent event = SignatureEvent.start(SignatureEvent.VERIFY, "ed25519", payload.length);
+                boolean valid = false;
+                try {
+                    valid = isValidEd25519Signature(payload, signature, address);
+                    return valid;
+                } finally {
+                    if (event != null) {
+                        event.complete(valid);
+                    }
+                }
             }
             else {
                 return Schnorrkel.getInstance()
@@ -193,11 +204,11 @@ public class ExtrinsicSigner<CALL extends ExtrinsicCall> {
             wrt.write(ScaleCodecWriter.COMPACT_BIGINT, context.getTip().getValue());
             wrt.writeUint32(context.getRuntimeVersion());
             wrt.writeUint32(context.getTxVersion());
-            wrt.writeUint256(context.getGenesis().getBytes());
+            wrt.writeUint256(context.getGenesis());
             if (context.getEra().isImmortal()) {
-                wrt.writeUint256(context.getGenesis().getBytes());
+                wrt.writeUint256(context.getGenesis());
             } else {
-                wrt.writeUint256(context.getEraBlockHash().getBytes());
+                wrt.writeUint256(context.getEraBlockHash());
             }
         }
     }
@@ -0,0 +1,379 @@
+package io.emeraldpay.polkaj.tx;
+
+import io.emeraldpay.polkaj.api.PolkadotApi;
+import io.emeraldpay.polkaj.api.PolkadotMethod;
+import io.emeraldpay.polkaj.api.RpcCall;
+import io.emeraldpay.polkaj.api.StandardCommands;
+import io.emeraldpay.polkaj.json.StorageChangeSetJson;
+import io.emeraldpay.polkaj.types.ByteData;
+import io.emeraldpay.polkaj.types.Hash256;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Reads the history of storage keys over a range of blocks with <code>state_queryStorage</code>. Instead of a single
+ * call for the whole range, which is slow and often times out on the node, the range is split into smaller ranges,
+ * which are requested in parallel. With an api that spreads calls over several nodes, such as
+ * {@link io.emeraldpay.polkaj.api.LoadBalancingAdapter}, the ranges are read from all of them.
+ * <br>
+ * The results are merged back in the order of blocks, and are the same as with a single call: the first change set
+ * has values of all keys at the first block, and each next one has only the values changed at its block.
+ * <br>
+ * At most <code>parallelism</code> ranges are requested or kept in memory at the same time, so a slow consumer
+ * doesn't make the reader buffer the whole history.
+ * <br>
+ * Example:
+ * <pre><code>
+ * StorageRangeReader reader = StorageRangeReader.newBuilder()
+ *      .api(api)
+ *      .blocksPerRange(500)
+ *      .parallelism(8)
+ *      .build();
+ * try (Stream&lt;StorageChangeSetJson&gt; history = reader.stream(keys, 1_000_000, 1_100_000)) {
+ *     history.forEach(this::process);
+ * }
+ * </code></pre>
+ */
+public class StorageRangeReader {
+
+    private final PolkadotApi api;
+    private final int blocksPerRange;
+    private final int parallelism;
+
+    private StorageRangeReader(PolkadotApi api, int blocksPerRange, int parallelism) {
+        this.api = api;
+        this.blocksPerRange = blocksPerRange;
+        this.parallelism = parallelism;
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    /**
+     * Read changes of the keys between the blocks. Closing the stream cancels the requests in flight.
+     *
+     * @param keys storage keys
+     * @param fromBlock first block, inclusive
+     * @param toBlock last block, inclusive
+     * @return stream of the change sets, in the order of blocks
+     */
+    public Stream<StorageChangeSetJson> stream(List<ByteData> keys, long fromBlock, long toBlock) {
+        RangeIterator iterator = new RangeIterator(new Ranges(keys, fromBlock, toBlock));
+        Spliterator<StorageChangeSetJson> spliterator = Spliterators.spliteratorUnknownSize(iterator,
+                Spliterator.ORDERED | Spliterator.NONNULL | Spliterator.IMMUTABLE);
+        return StreamSupport.stream(spliterator, false).onClose(iterator::close);
+    }
+
+    /**
+     * Read changes of the keys between the blocks without blocking
+     *
+     * @param keys storage keys
+     * @param fromBlock first block, inclusive
+     * @param toBlock last block, inclusive
+     * @param handler handler for the change sets, called in the order of blocks and never concurrently
+     * @return future to the number of change sets, completed after all of them are handled
+     */
+    public CompletableFuture<Long> read(List<ByteData> keys, long fromBlock, long toBlock,
+                                        Consumer<StorageChangeSetJson> handler) {
+        Ranges ranges = new Ranges(keys, fromBlock, toBlock);
+        CompletableFuture<Long> result = new CompletableFuture<>();
+        ranges.fill();
+        drain(ranges, handler, 0, result);
+        return result;
+    }
+
+    private void drain(Ranges ranges, Consumer<StorageChangeSetJson> handler, long count,
+                       CompletableFuture<Long> result) {
+        long updated = count;
+        // ranges already received are handled in a loop, so they don't make a recursion for each range
+        while (true) {
+            CompletableFuture<List<StorageChangeSetJson>> head = ranges.peek();
+            if (head == null) {
+                result.complete(updated);
+                return;
+            }
+            if (!head.isDone()) {
+                final long handled = updated;
+                head.whenComplete((sets, t) -> drain(ranges, handler, handled, result));
+                return;
+            }
+            if (result.isDone()) {
+                ranges.cancel();
+                return;
+            }
+            List<StorageChangeSetJson> sets;
+            try {
+                sets = head.join();
+            } catch (CompletionException e) {
+                ranges.cancel();
+                result.completeExceptionally(e.getCause() != null ? e.getCause() : e);
+                return;
+            } catch (CancellationException e) {
+                ranges.cancel();
+                result.completeExceptionally(e);
+                return;
+            }
+            try {
+                ranges.poll();
+                ranges.fill();
+                for (StorageChangeSetJson changeSet : ranges.merge(sets)) {
+                    handler.accept(changeSet);
+                    updated++;
+                }
+            } catch (Throwable handlerError) {
+                ranges.cancel();
+                result.completeExceptionally(handlerError);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Call to read a range of blocks
+     *
+     * @param keys storage keys
+     * @param from first block hash
+     * @param to last block hash
+     * @return call
+     */
+    static RpcCall<List<StorageChangeSetJson>> rangeCall(List<ByteData> keys, Hash256 from, Hash256 to) {
+        return RpcCall.create(StorageChangeSetJson.class, PolkadotMethod.STATE_QUERY_STORAGE, keys, from, to).expectList();
+    }
+
+    private CompletableFuture<Hash256> blockHash(long height) {
+        return api.execute(StandardCommands.getInstance().getBlockHash(height)).thenApply((hash) -> {
+            if (hash == null) {
+                throw new IllegalStateException("Block " + height + " is not found");
+            }
+            return hash;
+        });
+    }
+
+    private CompletableFuture<List<StorageChangeSetJson>> requestRange(List<ByteData> keys, long from, long to) {
+        return blockHash(from)
+                .thenCombine(blockHash(to), (fromHash, toHash) -> rangeCall(keys, fromHash, toHash))
+                .thenCompose(api::execute);
+    }
+
+    /**
+     * State of a read: ranges in flight, and the last known values to merge them
+     */
+    private class Ranges {
+        private final List<ByteData> keys;
+        private final long toBlock;
+        private final Deque<CompletableFuture<List<StorageChangeSetJson>>> window = new ArrayDeque<>();
+        private final Map<ByteData, ByteData> values = new HashMap<>();
+
+        private long nextBlock;
+        private boolean first = true;
+
+        Ranges(List<ByteData> keys, long fromBlock, long toBlock) {
+            if (fromBlock < 0 || toBlock < fromBlock) {
+                throw new IllegalArgumentException("Invalid block range: " + fromBlock + " to " + toBlock);
+            }
+            this.keys = new ArrayList<>(keys);
+            this.nextBlock = fromBlock;
+            this.toBlock = toBlock;
+        }
+
+        /**
+         * Request next ranges, up to the parallelism limit
+         */
+        synchronized void fill() {
+            while (window.size() < parallelism && nextBlock <= toBlock) {
+                long to = Math.min(toBlock, nextBlock + blocksPerRange - 1);
+                window.add(requestRange(keys, nextBlock, to));
+                nextBlock = to + 1;
+            }
+        }
+
+        synchronized CompletableFuture<List<StorageChangeSetJson>> peek() {
+            return window.peek();
+        }
+
+        synchronized CompletableFuture<List<StorageChangeSetJson>> poll() {
+            return window.poll();
+        }
+
+        /**
+         * Merge change sets of the next range. The first change set of each range has all keys, including
+         * the unchanged ones, so for all ranges except the first it's reduced to the actual changes.
+         *
+         * @param sets change sets of the next range
+         * @return change sets to return
+         */
+        synchronized List<StorageChangeSetJson> merge(List<StorageChangeSetJson> sets) {
+            if (sets == null || sets.isEmpty()) {
+                return Collections.emptyList();
+            }
+            List<StorageChangeSetJson> result = new ArrayList<>(sets.size());
+            for (int i = 0; i < sets.size(); i++) {
+                StorageChangeSetJson changeSet = sets.get(i);
+                List<StorageChangeSetJson.KeyValueOption> changes = changeSet.getChanges() == null
+                        ? Collections.emptyList()
+                        : changeSet.getChanges();
+                if (i == 0 && !first) {
+                    List<StorageChangeSetJson.KeyValueOption> actual = new ArrayList<>(changes.size());
+                    for (StorageChangeSetJson.KeyValueOption change : changes) {
+                        if (!values.containsKey(change.getKey())
+                                || !Objects.equals(values.get(change.getKey()), change.getData())) {
+                            actual.add(change);
+                        }
+                    }
+                    if (actual.isEmpty()) {
+                        continue;
+                    }
+                    if (actual.size() < changes.size()) {
+                        StorageChangeSetJson reduced = new StorageChangeSetJson();
+                        reduced.setBlock(changeSet.getBlock());
+                        reduced.setChanges(actual);
+                        changeSet = reduced;
+                        changes = actual;
+                    }
+                }
+                for (StorageChangeSetJson.KeyValueOption change : changes) {
+                    values.put(change.getKey(), change.getData());
+                }
+                result.add(changeSet);
+            }
+            first = false;
+            return result;
+        }
+
+        synchronized void cancel() {
+            window.forEach((f) -> f.cancel(false));
+            window.clear();
+            nextBlock = toBlock + 1;
+        }
+    }
+
+    private static class RangeIterator implements Iterator<StorageChangeSetJson> {
+        private final Ranges ranges;
+        private List<StorageChangeSetJson> current = Collections.emptyList();
+        private int position = 0;
+        private boolean started = false;
+
+        RangeIterator(Ranges ranges) {
+            this.ranges = ranges;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (!started) {
+                started = true;
+                ranges.fill();
+            }
+            while (position >= current.size()) {
+                CompletableFuture<List<StorageChangeSetJson>> head = ranges.poll();
+                if (head == null) {
+                    return false;
+                }
+                List<StorageChangeSetJson> sets;
+                try {
+                    sets = head.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    ranges.cancel();
+                    throw new CompletionException(e);
+                } catch (ExecutionException e) {
+                    ranges.cancel();
+                    if (e.getCause() instanceof RuntimeException) {
+                        throw (RuntimeException) e.getCause();
+                    }
+                    throw new CompletionException(e.getCause());
+                }
+                ranges.fill();
+                current = ranges.merge(sets);
+                position = 0;
+            }
+            return true;
+        }
+
+        @Override
+        public StorageChangeSetJson next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return current.get(position++);
+        }
+
+        void close() {
+            current = Collections.emptyList();
+            ranges.cancel();
+        }
+    }
+
+    public static class Builder {
+        private PolkadotApi api;
+        private int blocksPerRange = 1000;
+        private int parallelism = 4;
+
+        /**
+         * Api to make the calls
+         *
+         * @param api api
+         * @return builder
+         */
+        public Builder api(PolkadotApi api) {
+            this.api = api;
+            return this;
+        }
+
+        /**
+         * Number of blocks requested in a single call. Default is 1000.
+         *
+         * @param blocksPerRange number of blocks
+         * @return builder
+         */
+        public Builder blocksPerRange(int blocksPerRange) {
+            if (blocksPerRange < 1) {
+                throw new IllegalArgumentException("Blocks per range must be positive: " + blocksPerRange);
+            }
+            this.blocksPerRange = blocksPerRange;
+            return this;
+        }
+
+        /**
+         * Max number of ranges requested at the same time. Default is 4.
+         *
+         * @param parallelism number of ranges
+         * @return builder
+         */
+        public Builder parallelism(int parallelism) {
+            if (parallelism < 1) {
+                throw new IllegalArgumentException("Parallelism must be positive: " + parallelism);
+            }
+            this.parallelism = parallelism;
+            return this;
+        }
+
+        /**
+         * Apply configuration and build reader
+         *
+         * @return new instance of StorageRangeReader
+         */
+        public StorageRangeReader build() {
+            Objects.requireNonNull(api, "Api is not set");
+            return new StorageRangeReader(api, blocksPerRange, parallelism);
+        }
+    }
+}
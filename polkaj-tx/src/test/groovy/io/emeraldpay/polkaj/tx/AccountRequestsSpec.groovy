@@ -54,6 +54,20 @@ class AccountRequestsSpec extends Specification {
         }
     }
 
+    def "Prepare balance request for multiple addresses"() {
+        setup:
+        def addresses = [
+                Address.from("1WG3jyNqniQMRZGQUc7QD2kVLT8hkRPGMSqAb5XYQM1UDxN"),
+                Address.from("5GrwvaEF5zXb26Fz9rcQpDWS57CtERHpNehXCPcNoHGKutQY")
+        ]
+        when:
+        def act = AccountRequests.balanceOf(addresses).requests
+        then:
+        act.keySet().toList() == addresses
+        Hex.encodeHexString(act[addresses[0]].encodeRequest().bytes) == "26aa394eea5630e07c48ae0c9558cef7b99d880ec681799c0cf30e8886371da9762b7694480fb50358c23ab18950158b1650c532ed1a8641e8922aa24ade0ff411d03edd9ed1c6b7fe42f1a801cee37c"
+        act[addresses[1]].encodeRequest() == AccountRequests.balanceOf(addresses[1]).encodeRequest()
+    }
+
     def "Encode transfer"() {
         when:
         def transfer = AccountRequests.transfer()
@@ -0,0 +1,217 @@
+package io.emeraldpay.polkaj.tx
+
+import io.emeraldpay.polkaj.api.PolkadotApi
+import io.emeraldpay.polkaj.api.RpcException
+import io.emeraldpay.polkaj.api.StandardCommands
+import io.emeraldpay.polkaj.json.StorageChangeSetJson
+import io.emeraldpay.polkaj.types.ByteData
+import io.emeraldpay.polkaj.types.Hash256
+import spock.lang.Specification
+
+import java.time.Duration
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.ExecutionException
+
+class BulkStorageReaderSpec extends Specification {
+
+    static Hash256 HASH = Hash256.from("0x5d83f66b61701da4cbd7a60137db89c69469a4f798b62aba9176ab253b423828")
+
+    PolkadotApi api = Mock()
+
+    static ByteData key(int i) {
+        return ByteData.from(String.format("0x26aa394e%08x", i))
+    }
+
+    static List<ByteData> keys(int from, int count) {
+        return (from..<(from + count)).collect { key(it) }
+    }
+
+    static ByteData value(int i) {
+        return ByteData.from(String.format("0x%08x", i))
+    }
+
+    static CompletableFuture<List<StorageChangeSetJson>> response(List<ByteData> keys, Closure<ByteData> value) {
+        def changes = new StorageChangeSetJson().tap {
+            block = HASH
+            changes = keys.collect { key ->
+                new StorageChangeSetJson.KeyValueOption().tap {
+                    it.key = key
+                    it.data = value(key)
+                }
+            }
+        }
+        return CompletableFuture.completedFuture([changes])
+    }
+
+    def "Reads keys in chunks"() {
+        setup:
+        def reader = BulkStorageReader.newBuilder()
+                .api(api)
+                .at(HASH)
+                .chunkSize(2, 2, 2)
+                .build()
+        when:
+        def act = reader.readRaw(keys(0, 5)).get()
+        then:
+        1 * api.execute(BulkStorageReader.chunkCall(keys(0, 2), HASH)) >> response(keys(0, 2)) { value(1) }
+        1 * api.execute(BulkStorageReader.chunkCall(keys(2, 2), HASH)) >> response(keys(2, 2)) { null }
+        1 * api.execute(BulkStorageReader.chunkCall(keys(4, 1), HASH)) >> response(keys(4, 1)) { value(2) }
+        0 * api.execute(_)
+        act.keySet().toList() == keys(0, 5)
+        act.values().toList() == [value(1), value(1), null, null, value(2)]
+    }
+
+    def "Reads at the current block if not set"() {
+        setup:
+        def reader = BulkStorageReader.newBuilder()
+                .api(api)
+                .build()
+        when:
+        def act = reader.readRaw(keys(0, 3)).get()
+        then:
+        1 * api.execute(StandardCommands.getInstance().getBlockHash()) >> CompletableFuture.completedFuture(HASH)
+        1 * api.execute(BulkStorageReader.chunkCall(keys(0, 3), HASH)) >> response(keys(0, 3)) { it }
+        act.values().toList() == keys(0, 3)
+    }
+
+    def "Limits calls in flight"() {
+        setup:
+        def reader = BulkStorageReader.newBuilder()
+                .api(api)
+                .at(HASH)
+                .chunkSize(1, 1, 1)
+                .parallelism(2)
+                .build()
+        def pending = []
+        api.execute(_) >> {
+            def f = new CompletableFuture()
+            pending.add(f)
+            return f
+        }
+        when:
+        def act = reader.readRaw(keys(0, 5))
+        then:
+        pending.size() == 2
+
+        when:
+        pending[0].complete([])
+        then:
+        pending.size() == 3
+        !act.done
+
+        when:
+        pending[1].complete([])
+        pending[2].complete([])
+        pending[3].complete([])
+        pending[4].complete([])
+        then:
+        pending.size() == 5
+        act.get().size() == 5
+    }
+
+    def "Increases chunk size when fast"() {
+        setup:
+        def reader = BulkStorageReader.newBuilder()
+                .api(api)
+                .at(HASH)
+                .chunkSize(2, 2, 8)
+                .parallelism(1)
+                .targetLatency(Duration.ofSeconds(10))
+                .build()
+        when:
+        def act = reader.readRaw(keys(0, 20)).get()
+        then:
+        1 * api.execute(BulkStorageReader.chunkCall(keys(0, 2), HASH)) >> response(keys(0, 2)) { it }
+        1 * api.execute(BulkStorageReader.chunkCall(keys(2, 4), HASH)) >> response(keys(2, 4)) { it }
+        1 * api.execute(BulkStorageReader.chunkCall(keys(6, 8), HASH)) >> response(keys(6, 8)) { it }
+        1 * api.execute(BulkStorageReader.chunkCall(keys(14, 6), HASH)) >> response(keys(14, 6)) { it }
+        act.size() == 20
+        reader.chunkSize == 8
+    }
+
+    def "Decodes requests"() {
+        setup:
+        def reader = BulkStorageReader.newBuilder()
+                .api(api)
+                .at(HASH)
+                .build()
+        def requests = [
+                a: new TestRequest(key: key(1)),
+                b: new TestRequest(key: key(2)),
+                c: new TestRequest(key: key(3)),
+        ]
+        when:
+        def act = reader.read(requests).get()
+        then:
+        1 * api.execute(BulkStorageReader.chunkCall(keys(1, 3), HASH)) >> response(keys(1, 3)) {
+            it == key(2) ? null : value(100)
+        }
+        act == [a: 100, b: -1, c: 100]
+    }
+
+    def "Passes results to handler"() {
+        setup:
+        def reader = BulkStorageReader.newBuilder()
+                .api(api)
+                .at(HASH)
+                .chunkSize(1, 1, 1)
+                .build()
+        def requests = [
+                a: new TestRequest(key: key(1)),
+                b: new TestRequest(key: key(2)),
+        ]
+        def results = [:]
+        when:
+        def act = reader.read(requests, { k, v -> results[k] = v }).get()
+        then:
+        2 * api.execute(_) >> { args -> response(args[0].params[0]) { value(5) } }
+        act == 2
+        results == [a: 5, b: 5]
+    }
+
+    def "Fails on error"() {
+        setup:
+        def reader = BulkStorageReader.newBuilder()
+                .api(api)
+                .at(HASH)
+                .chunkSize(2, 2, 2)
+                .parallelism(1)
+                .build()
+        def failed = new CompletableFuture()
+        failed.completeExceptionally(new RpcException(-32602, "Invalid params"))
+        when:
+        reader.readRaw(keys(0, 6)).get()
+        then:
+        1 * api.execute(BulkStorageReader.chunkCall(keys(0, 2), HASH)) >> response(keys(0, 2)) { it }
+        1 * api.execute(BulkStorageReader.chunkCall(keys(2, 2), HASH)) >> failed
+        0 * api.execute(_)
+        def t = thrown(ExecutionException)
+        t.cause instanceof RpcException
+    }
+
+    def "Doesn't call for empty list"() {
+        setup:
+        def reader = BulkStorageReader.newBuilder()
+                .api(api)
+                .build()
+        when:
+        def act = reader.readRaw([]).get()
+        then:
+        0 * api.execute(_)
+        act.isEmpty()
+    }
+
+    static class TestRequest extends StorageRequest<Integer> {
+        ByteData key
+
+        @Override
+        ByteData encodeRequest() {
+            return key
+        }
+
+        @Override
+        Integer apply(ByteData result) {
+            return result == null ? -1 : new BigInteger(1, result.bytes).intValue()
+        }
+    }
+}
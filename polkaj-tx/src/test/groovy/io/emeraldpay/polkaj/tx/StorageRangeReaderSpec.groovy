@@ -0,0 +1,198 @@
+package io.emeraldpay.polkaj.tx
+
+import io.emeraldpay.polkaj.api.PolkadotApi
+import io.emeraldpay.polkaj.api.RpcException
+import io.emeraldpay.polkaj.api.StandardCommands
+import io.emeraldpay.polkaj.json.StorageChangeSetJson
+import io.emeraldpay.polkaj.types.ByteData
+import io.emeraldpay.polkaj.types.Hash256
+import spock.lang.Specification
+
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.TimeUnit
+import java.util.stream.Collectors
+
+class StorageRangeReaderSpec extends Specification {
+
+    static ByteData KEY_1 = ByteData.from("0x26aa394eea5630e07c48ae0c9558cef701")
+    static ByteData KEY_2 = ByteData.from("0x26aa394eea5630e07c48ae0c9558cef702")
+
+    PolkadotApi api = Mock()
+
+    static Hash256 hash(long block) {
+        return Hash256.from(String.format("0x%064x", block))
+    }
+
+    static StorageChangeSetJson changeSet(long block, Map<ByteData, String> changes) {
+        return new StorageChangeSetJson().tap {
+            it.block = hash(block)
+            it.changes = changes.collect { key, value ->
+                new StorageChangeSetJson.KeyValueOption().tap {
+                    it.key = key
+                    it.data = value == null ? null : ByteData.from(value)
+                }
+            }
+        }
+    }
+
+    def setup() {
+        api.execute({ it.method == "chain_getBlockHash" }) >> { args ->
+            CompletableFuture.completedFuture(hash(args[0].params[0] as long))
+        }
+    }
+
+    def "Splits range and merges in order"() {
+        setup:
+        def reader = StorageRangeReader.newBuilder()
+                .api(api)
+                .blocksPerRange(10)
+                .build()
+        def second = new CompletableFuture()
+        when:
+        def act = []
+        def f = reader.read([KEY_1, KEY_2], 100, 125, { act.add(it) })
+        then:
+        1 * api.execute(StorageRangeReader.rangeCall([KEY_1, KEY_2], hash(100), hash(109))) >> CompletableFuture.completedFuture([
+                changeSet(100, [(KEY_1): "0x01", (KEY_2): null]),
+                changeSet(105, [(KEY_1): "0x02"]),
+        ])
+        1 * api.execute(StorageRangeReader.rangeCall([KEY_1, KEY_2], hash(110), hash(119))) >> second
+        1 * api.execute(StorageRangeReader.rangeCall([KEY_1, KEY_2], hash(120), hash(125))) >> CompletableFuture.completedFuture([
+                changeSet(120, [(KEY_1): "0x02", (KEY_2): "0x03"]),
+        ])
+        act == [
+                changeSet(100, [(KEY_1): "0x01", (KEY_2): null]),
+                changeSet(105, [(KEY_1): "0x02"]),
+        ]
+        !f.done
+
+        when:
+        second.complete([
+                changeSet(110, [(KEY_1): "0x02", (KEY_2): null]),
+                changeSet(115, [(KEY_2): "0x03"]),
+        ])
+        then:
+        f.get() == 3
+        act == [
+                changeSet(100, [(KEY_1): "0x01", (KEY_2): null]),
+                changeSet(105, [(KEY_1): "0x02"]),
+                changeSet(115, [(KEY_2): "0x03"]),
+        ]
+    }
+
+    def "Keeps only changed values at the start of a range"() {
+        setup:
+        def reader = StorageRangeReader.newBuilder()
+                .api(api)
+                .blocksPerRange(10)
+                .build()
+        when:
+        def act = reader.stream([KEY_1, KEY_2], 0, 19).collect(Collectors.toList())
+        then:
+        1 * api.execute(StorageRangeReader.rangeCall([KEY_1, KEY_2], hash(0), hash(9))) >> CompletableFuture.completedFuture([
+                changeSet(0, [(KEY_1): "0x01", (KEY_2): "0x01"]),
+        ])
+        1 * api.execute(StorageRangeReader.rangeCall([KEY_1, KEY_2], hash(10), hash(19))) >> CompletableFuture.completedFuture([
+                changeSet(10, [(KEY_1): "0x01", (KEY_2): "0x02"]),
+        ])
+        act == [
+                changeSet(0, [(KEY_1): "0x01", (KEY_2): "0x01"]),
+                changeSet(10, [(KEY_2): "0x02"]),
+        ]
+    }
+
+    def "Limits ranges in flight"() {
+        setup:
+        def reader = StorageRangeReader.newBuilder()
+                .api(api)
+                .blocksPerRange(1)
+                .parallelism(2)
+                .build()
+        def pending = []
+        api.execute({ it.method == "state_queryStorage" }) >> {
+            def f = new CompletableFuture()
+            pending.add(f)
+            return f
+        }
+        when:
+        def act = reader.read([KEY_1], 0, 4, {})
+        then:
+        pending.size() == 2
+
+        when:
+        pending[1].complete([])
+        then:
+        pending.size() == 2
+
+        when:
+        pending[0].complete([changeSet(0, [(KEY_1): "0x01"])])
+        then:
+        pending.size() == 4
+        !act.done
+
+        when:
+        pending[2..<pending.size()]*.complete([])
+        pending.last().complete([])
+        then:
+        pending.size() == 5
+        act.get() == 1
+    }
+
+    def "Reads many ranges received immediately"() {
+        setup:
+        def reader = StorageRangeReader.newBuilder()
+                .api(api)
+                .blocksPerRange(1)
+                .parallelism(4)
+                .build()
+        api.execute({ it.method == "state_queryStorage" }) >> {
+            CompletableFuture.completedFuture([])
+        }
+        when:
+        def act = reader.read([KEY_1], 0, 19999, {}).get(30, TimeUnit.SECONDS)
+        then:
+        act == 0
+    }
+
+    def "Fails if block is not found"() {
+        setup:
+        def api = Mock(PolkadotApi)
+        def reader = StorageRangeReader.newBuilder()
+                .api(api)
+                .build()
+        when:
+        reader.stream([KEY_1], 0, 100).count()
+        then:
+        1 * api.execute(StandardCommands.getInstance().getBlockHash(0)) >> CompletableFuture.completedFuture(hash(0))
+        1 * api.execute(StandardCommands.getInstance().getBlockHash(100)) >> CompletableFuture.completedFuture(null)
+        def t = thrown(IllegalStateException)
+        t.message == "Block 100 is not found"
+    }
+
+    def "Fails on error"() {
+        setup:
+        def reader = StorageRangeReader.newBuilder()
+                .api(api)
+                .blocksPerRange(10)
+                .parallelism(1)
+                .build()
+        def failed = new CompletableFuture()
+        failed.completeExceptionally(new RpcException(-32000, "Timeout"))
+        when:
+        reader.stream([KEY_1], 0, 100).count()
+        then:
+        1 * api.execute(StorageRangeReader.rangeCall([KEY_1], hash(0), hash(9))) >> failed
+        thrown(RpcException)
+    }
+
+    def "Rejects invalid range"() {
+        setup:
+        def reader = StorageRangeReader.newBuilder()
+                .api(api)
+                .build()
+        when:
+        reader.stream([KEY_1], 10, 9)
+        then:
+        thrown(IllegalArgumentException)
+    }
+}